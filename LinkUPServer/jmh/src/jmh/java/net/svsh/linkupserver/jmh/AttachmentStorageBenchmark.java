@@ -0,0 +1,82 @@
+package net.svsh.linkupserver.jmh;
+
+import net.svsh.linkupserver.attachment.service.AttachmentStorage;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Upload (chunked append + hash + dedup move) and download throughput for one large file and for small files.
+// download writes into a FileChannel, so transferTo takes the kernel's zero-copy path like Tomcat's sendfile does;
+// downloadToStream is the fallback through a wrapped OutputStream
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+public class AttachmentStorageBenchmark {
+
+    private static final int CHUNK_SIZE = 4 * 1024 * 1024;
+
+    @Param({"4096", "268435456"})
+    public long fileSize;
+
+    private Path root;
+    private AttachmentStorage storage;
+    private byte[] chunk;
+    private Path blob;
+    private FileChannel sink;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("linkup-attachments-bench");
+        storage = new AttachmentStorage(root, 86_400_000, 3_600_000);
+        chunk = new byte[(int) Math.min(fileSize, CHUNK_SIZE)];
+        ThreadLocalRandom.current().nextBytes(chunk);
+        blob = storage.findBlob(upload());
+        sink = FileChannel.open(root.resolve("download.bin"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        sink.close();
+        try (Stream<Path> files = Files.walk(root)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    // Content is random per trial but identical per invocation, so later uploads also exercise dedup
+    @Benchmark
+    public String upload() throws IOException {
+        AttachmentStorage.Upload upload = storage.createUpload("bench@linkup.net", "bench.bin", "application/octet-stream", fileSize);
+        long offset = 0;
+        while (offset < fileSize) {
+            int length = (int) Math.min(chunk.length, fileSize - offset);
+            try (InputStream body = new ByteArrayInputStream(chunk, 0, length)) {
+                offset = storage.appendChunk(upload, offset, body);
+            }
+        }
+        return storage.complete(storage.findUpload(upload.uploadId()));
+    }
+
+    @Benchmark
+    public void download() throws IOException {
+        sink.position(0);
+        AttachmentStorage.transfer(blob, 0, fileSize, sink);
+    }
+
+    @Benchmark
+    public void downloadToStream() throws IOException {
+        AttachmentStorage.transfer(blob, 0, fileSize, OutputStream.nullOutputStream());
+    }
+}
@@ -0,0 +1,85 @@
+package net.svsh.linkupserver.jmh;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletException;
+import net.svsh.linkupserver.cluster.ClusterBus;
+import net.svsh.linkupserver.security.jwt.JWTAuthFilter;
+import net.svsh.linkupserver.security.jwt.JWTUtils;
+import net.svsh.linkupserver.security.jwt.VerifiedTokenCache;
+import net.svsh.linkupserver.security.token.RevocationList;
+import net.svsh.linkupserver.user.User;
+import net.svsh.linkupserver.user.UserRepository;
+import net.svsh.linkupserver.user.UserRole;
+import net.svsh.linkupserver.user.service.UserDetailsCache;
+import net.svsh.linkupserver.user.service.UserService;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// cacheSize 0 disables both caches, so every request pays for signature verification and the user lookup.
+// The revocation list holds 10k revoked sessions, the token's own session is not one of them
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JwtAuthFilterBenchmark {
+
+    @Param({"10000", "0"})
+    public long cacheSize;
+
+    private JWTAuthFilter filter;
+    private String authorization;
+
+    @Setup
+    public void setUp() throws ServletException {
+        JWTUtils jwtUtils = new JWTUtils();
+        User user = new User("bench", "bench@linkup.net", "$2a$10$abcdefghijklmnopqrstuu", UserRole.USER);
+
+        UserRepository userRepository = Mockito.mock(UserRepository.class);
+        Mockito.when(userRepository.findByEmail(user.getEmail())).thenReturn(Optional.of(user));
+        UserService userService = new UserService(userRepository, new UserDetailsCache(cacheSize, Duration.ofMinutes(5)));
+
+        filter = new JWTAuthFilter();
+        ReflectionTestUtils.setField(filter, "verifiedTokenCache", new VerifiedTokenCache(jwtUtils, cacheSize));
+        ReflectionTestUtils.setField(filter, "userService", userService);
+        ReflectionTestUtils.setField(filter, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(filter, "revocationList", revocationList());
+        filter.afterPropertiesSet();
+        authorization = "Bearer " + jwtUtils.generateToken(user, UUID.randomUUID().toString());
+    }
+
+    private static RevocationList revocationList() {
+        RevocationList revocationList = new RevocationList(Mockito.mock(ClusterBus.class), null, 100_000, 0.01, 600_000);
+        List<String> sessionIds = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            sessionIds.add(UUID.randomUUID().toString());
+        }
+        revocationList.revoke(sessionIds);
+        return revocationList;
+    }
+
+    @TearDown(Level.Invocation)
+    public void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Benchmark
+    public MockHttpServletResponse doFilterInternal() throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/users/1");
+        request.addHeader("Authorization", authorization);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}
@@ -0,0 +1,62 @@
+package net.svsh.linkupserver.jmh;
+
+import io.jsonwebtoken.Jwts;
+import net.svsh.linkupserver.security.jwt.JWTUtils;
+import net.svsh.linkupserver.security.jwt.ParsedToken;
+import net.svsh.linkupserver.user.User;
+import net.svsh.linkupserver.user.UserRole;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.SecretKey;
+import java.util.concurrent.TimeUnit;
+
+// Run with -prof gc (enabled in build.gradle) to compare gc.alloc.rate.norm between the parse paths
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JwtBenchmark {
+
+    private JWTUtils jwtUtils;
+    private SecretKey secretKey;
+    private User user;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtils = new JWTUtils();
+        secretKey = (SecretKey) ReflectionTestUtils.getField(jwtUtils, "SECRET_KEY");
+        user = new User("bench", "bench@linkup.net", "hash", UserRole.USER);
+        token = jwtUtils.generateToken(user);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtUtils.generateToken(user);
+    }
+
+    @Benchmark
+    public String extractUsername() {
+        return jwtUtils.extractUsername(token);
+    }
+
+    @Benchmark
+    public Boolean validateToken() {
+        return jwtUtils.validateToken(token, user);
+    }
+
+    // What JWTAuthFilter does now on a cache miss: one verification with the shared parser
+    @Benchmark
+    public ParsedToken parseTokenSinglePass() {
+        return jwtUtils.parseToken(token);
+    }
+
+    // What JWTAuthFilter used to do: extractUsername then validateToken, three parses with a new parser each time
+    @Benchmark
+    public void legacyThreeParsePath(Blackhole blackhole) {
+        blackhole.consume(Jwts.parser().verifyWith(secretKey).build().parseSignedClaims(token).getPayload().getSubject());
+        blackhole.consume(Jwts.parser().verifyWith(secretKey).build().parseSignedClaims(token).getPayload().getSubject());
+        blackhole.consume(Jwts.parser().verifyWith(secretKey).build().parseSignedClaims(token).getPayload().getExpiration());
+    }
+}
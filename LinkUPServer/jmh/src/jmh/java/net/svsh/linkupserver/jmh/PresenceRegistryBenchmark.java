@@ -0,0 +1,58 @@
+package net.svsh.linkupserver.jmh;
+
+import net.svsh.linkupserver.presence.service.PresenceRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Many threads heartbeating at once while others run bulk contact-list lookups
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PresenceRegistryBenchmark {
+
+    @Param({"100000"})
+    public int userCount;
+
+    private PresenceRegistry registry;
+    private long[] contacts;
+
+    @Setup
+    public void setUp() {
+        registry = new PresenceRegistry(30_000, 1_000, 16, 200, 100_000);
+        for (long userId = 0; userId < userCount; userId += 2) {
+            registry.heartbeat(userId);
+        }
+        contacts = new long[500];
+        for (int i = 0; i < contacts.length; i++) {
+            contacts[i] = ThreadLocalRandom.current().nextLong(userCount);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        registry.destroy();
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(8)
+    public void heartbeat() {
+        registry.heartbeat(ThreadLocalRandom.current().nextLong(userCount));
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(2)
+    public boolean[] onlineOf500Contacts() {
+        return registry.onlineOf(contacts);
+    }
+
+    // Worst case for CAS contention, every thread heartbeats the same user
+    @Benchmark
+    @Threads(8)
+    public void heartbeatSameUser() {
+        registry.heartbeat(42);
+    }
+}
@@ -0,0 +1,82 @@
+package net.svsh.linkupserver.jmh;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import jakarta.servlet.ServletException;
+import net.svsh.linkupserver.requestlog.RequestLog;
+import net.svsh.linkupserver.requestlog.RequestLogFilter;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+// Per request cost of the request log next to a bare filter chain and to the println the services used to do.
+// The writer's output is switched off, it runs on its own thread and only its queue is shared with the callers.
+// At sampleRate 1 the writer may fall behind, dropped entries are part of what is measured
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(8)
+public class RequestLogBenchmark {
+
+    @Param({"0", "0.01", "1"})
+    public double sampleRate;
+
+    private RequestLog requestLog;
+    private RequestLogFilter filter;
+    // Locks per call like System.out, without flooding the console
+    private PrintStream console;
+
+    @Setup
+    public void setUp() throws ServletException {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("linkup.requests")).setLevel(ch.qos.logback.classic.Level.OFF);
+        requestLog = new RequestLog(new ObjectMapper().registerModule(new JavaTimeModule()), true, sampleRate, "",
+                1000, 10_000, 200, "password,token,refreshToken,access_token,authorization");
+        filter = new RequestLogFilter();
+        ReflectionTestUtils.setField(filter, "requestLog", requestLog);
+        console = new PrintStream(OutputStream.nullOutputStream(), true);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        requestLog.destroy();
+    }
+
+    @Benchmark
+    public MockHttpServletResponse baseline() throws ServletException, IOException {
+        MockHttpServletRequest request = request();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        new MockFilterChain().doFilter(request, response);
+        return response;
+    }
+
+    @Benchmark
+    public MockHttpServletResponse requestLog() throws ServletException, IOException {
+        MockHttpServletRequest request = request();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    @Benchmark
+    public MockHttpServletResponse consolePrint() throws ServletException, IOException {
+        MockHttpServletRequest request = request();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        new MockFilterChain().doFilter(request, response);
+        console.println(request.getMethod() + " " + request.getRequestURI() + " " + request.getQueryString() + " " + response.getStatus());
+        return response;
+    }
+
+    private static MockHttpServletRequest request() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/sync");
+        request.setQueryString("cursor=1234&limit=500&access_token=secret");
+        return request;
+    }
+}
@@ -0,0 +1,104 @@
+package net.svsh.linkupserver.jmh;
+
+import net.svsh.linkupserver.search.index.SearchIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Query latency over a pre-built corpus of flushed segments, and incremental indexing throughput (add + flush + merge)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+public class SearchIndexBenchmark {
+
+    private static final int CHATS = 20_000;
+    private static final int MEMBER_CHATS = 200;
+    private static final int VOCABULARY = 50_000;
+    private static final int WORDS_PER_MESSAGE = 12;
+    private static final int INDEX_BATCH = 10_000;
+
+    @Param({"1000000"})
+    public int messages;
+
+    private Path root;
+    private SearchIndex index;
+    private SearchIndex incremental;
+    private long nextMessageId;
+    private long[] memberChats;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("linkup-search-bench");
+        random = new SplittableRandom(42);
+        index = new SearchIndex(root.resolve("corpus"), 50_000, 8);
+        for (long id = 1; id <= messages; id++) {
+            index.add(id, 1 + random.nextInt(CHATS), message());
+            if (index.needsFlush()) {
+                index.flush();
+            }
+        }
+        index.flush();
+        incremental = new SearchIndex(root.resolve("incremental"), INDEX_BATCH, 8);
+        nextMessageId = 1;
+
+        // Chats of a busy user, spread over the whole id range
+        memberChats = new long[MEMBER_CHATS];
+        for (int i = 0; i < MEMBER_CHATS; i++) {
+            memberChats[i] = 1 + (long) i * (CHATS / MEMBER_CHATS);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        index.close();
+        incremental.close();
+        try (Stream<Path> files = Files.walk(root)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public List<Long> commonTerm() {
+        return index.search("w1", memberChats, Long.MAX_VALUE, 20);
+    }
+
+    @Benchmark
+    public List<Long> rareTerm() {
+        return index.search("w" + (VOCABULARY - 1 - random.nextInt(1000)), memberChats, Long.MAX_VALUE, 20);
+    }
+
+    @Benchmark
+    public List<Long> twoTerms() {
+        return index.search("w2 w" + (10 + random.nextInt(100)), memberChats, Long.MAX_VALUE, 20);
+    }
+
+    // One memtable worth of messages per invocation, segments accumulate and get merged as in production
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void indexBatch() throws IOException {
+        for (int i = 0; i < INDEX_BATCH; i++) {
+            incremental.add(nextMessageId++, 1 + random.nextInt(CHATS), message());
+        }
+        incremental.flush();
+    }
+
+    // Skewed towards low word numbers so a few terms are very common, like real chat text
+    private String message() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < WORDS_PER_MESSAGE; i++) {
+            double skew = random.nextDouble();
+            text.append('w').append((int) (VOCABULARY * skew * skew * skew)).append(' ');
+        }
+        return text.toString();
+    }
+}
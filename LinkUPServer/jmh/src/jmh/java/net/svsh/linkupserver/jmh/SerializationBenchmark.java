@@ -0,0 +1,58 @@
+package net.svsh.linkupserver.jmh;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import net.svsh.linkupserver.dto.RequestResponse;
+import net.svsh.linkupserver.dto.UserSummary;
+import net.svsh.linkupserver.user.User;
+import net.svsh.linkupserver.user.UserRole;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SerializationBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int userCount;
+
+    private ObjectWriter writer;
+    private RequestResponse singleUser;
+    private RequestResponse manyUsers;
+
+    @Setup
+    public void setUp() {
+        writer = new ObjectMapper().findAndRegisterModules().writerFor(RequestResponse.class);
+
+        User user = new User("bench", "bench@linkup.net", "$2a$10$abcdefghijklmnopqrstuu", UserRole.USER);
+        user.setId(1L);
+        singleUser = new RequestResponse();
+        singleUser.setStatusCode(200);
+        singleUser.setMessage("User with ID 1 successfully found");
+        singleUser.setUser(user);
+
+        List<UserSummary> users = new ArrayList<>(userCount);
+        for (long id = 1; id <= userCount; id++) {
+            users.add(new UserSummary(id, "user" + id, "user" + id + "@linkup.net", UserRole.USER));
+        }
+        manyUsers = new RequestResponse();
+        manyUsers.setStatusCode(200);
+        manyUsers.setMessage("All users successfully");
+        manyUsers.setUsers(users);
+    }
+
+    @Benchmark
+    public byte[] oneUser() throws JsonProcessingException {
+        return writer.writeValueAsBytes(singleUser);
+    }
+
+    @Benchmark
+    public byte[] manyUsers() throws JsonProcessingException {
+        return writer.writeValueAsBytes(manyUsers);
+    }
+}
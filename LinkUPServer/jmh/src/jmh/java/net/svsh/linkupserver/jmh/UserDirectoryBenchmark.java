@@ -0,0 +1,75 @@
+package net.svsh.linkupserver.jmh;
+
+import net.svsh.linkupserver.dto.UserSummary;
+import net.svsh.linkupserver.user.UserRole;
+import net.svsh.linkupserver.user.directory.UserDirectory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Typeahead lookups for short and long prefixes, with and without a full delta of unfolded changes
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+public class UserDirectoryBenchmark {
+
+    private static final String[] NAMES = {"anna", "ben", "carla", "david", "elena", "felix", "greta", "hugo", "ines", "jonas"};
+
+    @Param({"1000000"})
+    public int userCount;
+
+    @Param({"0", "1024"})
+    public int pendingChanges;
+
+    private UserDirectory directory;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        random = new SplittableRandom(42);
+        List<UserSummary> users = new ArrayList<>(userCount);
+        for (long id = 1; id <= userCount; id++) {
+            users.add(user(id));
+        }
+        directory = new UserDirectory();
+        directory.load(users);
+        for (int i = 0; i < pendingChanges; i++) {
+            directory.put(user(1 + random.nextInt(userCount)));
+        }
+    }
+
+    @Benchmark
+    public List<UserSummary> shortPrefix() {
+        return directory.search(NAMES[random.nextInt(NAMES.length)].substring(0, 1), 10);
+    }
+
+    @Benchmark
+    public List<UserSummary> longPrefix() {
+        return directory.search(NAMES[random.nextInt(NAMES.length)] + random.nextInt(1000), 10);
+    }
+
+    @Benchmark
+    public List<UserSummary> noMatch() {
+        return directory.search("zz" + random.nextInt(1000), 10);
+    }
+
+    // Cost the maintainer pays once the delta is full, readers keep using the previous snapshot meanwhile
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void compact() {
+        for (int i = 0; i < 1024; i++) {
+            directory.put(user(1 + random.nextInt(userCount)));
+        }
+        directory.compact();
+    }
+
+    private UserSummary user(long id) {
+        String username = NAMES[random.nextInt(NAMES.length)] + random.nextInt(1_000_000);
+        return new UserSummary(id, username, username + "@linkup.net", UserRole.USER);
+    }
+}
@@ -0,0 +1,99 @@
+package net.svsh.linkupserver.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+
+// One virtual user's chat connection, a SEND is timed until the server fans the MESSAGE back to the sender
+final class ChatSocket implements WebSocket.Listener {
+
+    static final String ENDPOINT = "WS SEND -> MESSAGE";
+
+    private final ObjectMapper objectMapper;
+    private final LatencyRecorder recorder;
+    private final Map<String, Long> pending = new ConcurrentHashMap<>();
+    private final StringBuilder partial = new StringBuilder();
+    private WebSocket webSocket;
+
+    private ChatSocket(ObjectMapper objectMapper, LatencyRecorder recorder) {
+        this.objectMapper = objectMapper;
+        this.recorder = recorder;
+    }
+
+    static ChatSocket connect(HttpClient client, URI uri, String token, ObjectMapper objectMapper, LatencyRecorder recorder) {
+        ChatSocket socket = new ChatSocket(objectMapper, recorder);
+        long start = System.nanoTime();
+        try {
+            socket.webSocket = client.newWebSocketBuilder()
+                    .header("Authorization", "Bearer " + token)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .buildAsync(uri, socket)
+                    .join();
+            recorder.record("WS connect", System.nanoTime() - start, true);
+            return socket;
+        } catch (RuntimeException e) {
+            recorder.record("WS connect", System.nanoTime() - start, false);
+            return null;
+        }
+    }
+
+    void send(long chatId, String content) {
+        String clientId = UUID.randomUUID().toString();
+        ObjectNode frame = objectMapper.createObjectNode()
+                .put("type", "SEND")
+                .put("chatId", chatId)
+                .put("content", content)
+                .put("clientId", clientId);
+        pending.put(clientId, System.nanoTime());
+        try {
+            webSocket.sendText(frame.toString(), true).join();
+        } catch (RuntimeException e) {
+            complete(clientId, false);
+        }
+    }
+
+    // Sends that never came back count as errors
+    void close() {
+        pending.keySet().forEach(clientId -> complete(clientId, false));
+        webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "done");
+    }
+
+    @Override
+    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+        partial.append(data);
+        if (last) {
+            onFrame(partial.toString());
+            partial.setLength(0);
+        }
+        webSocket.request(1);
+        return null;
+    }
+
+    private void onFrame(String text) {
+        try {
+            JsonNode frame = objectMapper.readTree(text);
+            String clientId = frame.path("clientId").asText(null);
+            if (clientId != null) {
+                complete(clientId, "MESSAGE".equals(frame.path("type").asText()));
+            }
+        } catch (Exception e) {
+            // Not a frame we sent, ignore
+        }
+    }
+
+    private void complete(String clientId, boolean success) {
+        Long start = pending.remove(clientId);
+        if (start != null) {
+            recorder.record(ENDPOINT, System.nanoTime() - start, success);
+        }
+    }
+}
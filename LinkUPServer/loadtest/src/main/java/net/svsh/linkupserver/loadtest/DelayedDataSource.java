@@ -0,0 +1,77 @@
+package net.svsh.linkupserver.loadtest;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+// Stands in for a database across a slow network: every statement execution, commit and rollback waits the
+// given latency before it reaches the embedded MariaDB. The wait blocks the calling thread the way a socket
+// read does, so platform threads sit idle while virtual threads unmount.
+final class DelayedDataSource extends DelegatingDataSource {
+
+    private final long latencyNanos;
+
+    DelayedDataSource(DataSource target, Duration latency) {
+        super(target);
+        this.latencyNanos = latency.toNanos();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return delayed(Connection.class, super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return delayed(Connection.class, super.getConnection(username, password));
+    }
+
+    private <T> T delayed(Class<T> type, T target) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (isRoundTrip(method)) {
+                simulateRoundTrip(latencyNanos);
+            }
+            Object result = invoke(method, target, args);
+            return switch (method.getName()) {
+                case "createStatement" -> delayed(Statement.class, (Statement) result);
+                case "prepareStatement" -> delayed(PreparedStatement.class, (PreparedStatement) result);
+                case "prepareCall" -> delayed(CallableStatement.class, (CallableStatement) result);
+                default -> result;
+            };
+        };
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private static boolean isRoundTrip(Method method) {
+        String name = method.getName();
+        return name.startsWith("execute") || name.equals("commit") || name.equals("rollback");
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void simulateRoundTrip(long nanos) throws SQLException {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the simulated database", e);
+        }
+    }
+}
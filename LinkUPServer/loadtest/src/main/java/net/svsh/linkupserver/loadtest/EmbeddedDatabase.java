@@ -0,0 +1,96 @@
+package net.svsh.linkupserver.loadtest;
+
+import ch.vorburger.exec.ManagedProcessException;
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// A throwaway MariaDB server, so the server runs against the same SQL dialect and driver as in production
+final class EmbeddedDatabase implements AutoCloseable {
+
+    static final String NAME = "linkup";
+
+    private final DB db;
+    private final int port;
+
+    private EmbeddedDatabase(DB db, int port) {
+        this.db = db;
+        this.port = port;
+    }
+
+    static EmbeddedDatabase start(String baseDir) throws ManagedProcessException, IOException {
+        return start(baseDir, 0);
+    }
+
+    // Writes a binlog, so a replica can follow it
+    static EmbeddedDatabase startPrimary(String baseDir) throws ManagedProcessException, IOException {
+        return start(baseDir, 1);
+    }
+
+    // A second server replicating everything the primary does from now on, standing in for a read replica
+    static EmbeddedDatabase startReplica(String baseDir, EmbeddedDatabase primary)
+            throws ManagedProcessException, IOException, SQLException {
+        EmbeddedDatabase replica = start(baseDir, 2);
+        String binlogFile;
+        long binlogPosition;
+        try (Connection connection = DriverManager.getConnection(primary.jdbcUrl(), "root", "");
+             Statement statement = connection.createStatement();
+             ResultSet status = statement.executeQuery("SHOW MASTER STATUS")) {
+            status.next();
+            binlogFile = status.getString("File");
+            binlogPosition = status.getLong("Position");
+        }
+        // Both servers created the database themselves, replication starts right after that
+        try (Connection connection = DriverManager.getConnection(replica.jdbcUrl(), "root", "");
+             Statement statement = connection.createStatement()) {
+            statement.execute("CHANGE MASTER TO MASTER_HOST='127.0.0.1', MASTER_PORT=" + primary.port +
+                    ", MASTER_USER='root', MASTER_PASSWORD='', MASTER_LOG_FILE='" + binlogFile +
+                    "', MASTER_LOG_POS=" + binlogPosition);
+            statement.execute("START SLAVE");
+        }
+        return replica;
+    }
+
+    // serverId 0 runs without a binlog
+    private static EmbeddedDatabase start(String baseDir, int serverId) throws ManagedProcessException, IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        DBConfigurationBuilder configuration = DBConfigurationBuilder.newBuilder();
+        configuration.setPort(port);
+        configuration.addArg("--character-set-server=utf8mb4");
+        configuration.addArg("--max-connections=1000");
+        if (serverId > 0) {
+            configuration.addArg("--server-id=" + serverId);
+            configuration.addArg("--log-bin=linkup-bin");
+            configuration.addArg("--binlog-format=ROW");
+        }
+        if (baseDir != null) {
+            configuration.setUnpackingFromClasspath(false);
+            configuration.setBaseDir(baseDir);
+        }
+
+        DB db = DB.newEmbeddedDB(configuration.build());
+        db.start();
+        db.createDB(NAME);
+        return new EmbeddedDatabase(db, port);
+    }
+
+    String jdbcUrl() {
+        return "jdbc:mysql://localhost:" + port + "/" + NAME + "?rewriteBatchedStatements=true";
+    }
+
+    @Override
+    public void close() throws ManagedProcessException {
+        db.stop();
+    }
+}
@@ -0,0 +1,186 @@
+package net.svsh.linkupserver.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import net.svsh.linkupserver.chat.FanoutMode;
+import net.svsh.linkupserver.chat.Message;
+import net.svsh.linkupserver.chat.persistence.FanoutPolicy;
+import net.svsh.linkupserver.chat.persistence.InboxReader;
+import net.svsh.linkupserver.chat.persistence.InboxWriter;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+// Write cost and inbox read latency of one group chat per size, once forced to fan out on write and once on read.
+// Runs InboxWriter and InboxReader straight against an embedded MariaDB, the message insert itself is the same
+// for both modes and left out. Every member also has a few direct chats so inbox reads scan realistic rows.
+//   ./gradlew :loadtest:fanoutBenchmark --args="--sizes=10,100,1000,5000 --messages=200 --reads=1000"
+public class FanoutBenchmark {
+
+    private static final int INSERT_BATCH_SIZE = 1000;
+    private static final int INBOX_PAGE_SIZE = 50;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (arg.startsWith("--") && separator > 2) {
+                options.put(arg.substring(2, separator), arg.substring(separator + 1));
+            }
+        }
+        int[] sizes = Arrays.stream(options.getOrDefault("sizes", "10,100,1000,5000").split(","))
+                .mapToInt(Integer::parseInt)
+                .toArray();
+        int messages = Integer.parseInt(options.getOrDefault("messages", "200"));
+        int reads = Integer.parseInt(options.getOrDefault("reads", "1000"));
+        int directChats = Integer.parseInt(options.getOrDefault("direct-chats", "20"));
+        Path report = Path.of(options.getOrDefault("report", "build/results/loadtest/fanout.json"));
+
+        try (EmbeddedDatabase database = EmbeddedDatabase.start(options.get("db-base-dir"))) {
+            SingleConnectionDataSource dataSource = new SingleConnectionDataSource(database.jdbcUrl(), "root", "", true);
+            new ResourceDatabasePopulator(new ClassPathResource("loadtest-users.sql"), new ClassPathResource("schema.sql"))
+                    .execute(dataSource);
+            FanoutBenchmark benchmark = new FanoutBenchmark(new JdbcTemplate(dataSource),
+                    new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+
+            // Disjoint members per chat, so each read only sees the one group chat under test
+            int users = 2 * Arrays.stream(sizes).sum();
+            benchmark.seed(users, directChats);
+
+            LatencyRecorder recorder = new LatencyRecorder();
+            Map<String, Long> inboxRows = new LinkedHashMap<>();
+            int firstMember = 1;
+            for (int size : sizes) {
+                for (FanoutMode mode : FanoutMode.values()) {
+                    String name = String.format("size=%d %s", size, mode);
+                    inboxRows.put(name, benchmark.run(name, mode, firstMember, size, messages, reads, recorder));
+                    firstMember += size;
+                }
+            }
+
+            List<LatencyRecorder.EndpointReport> results = recorder.report(Duration.ZERO);
+            print(results, inboxRows);
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("messages", messages);
+            result.put("reads", reads);
+            result.put("directChats", directChats);
+            result.put("inboxRowWrites", inboxRows);
+            result.put("results", results);
+            Files.createDirectories(report.toAbsolutePath().getParent());
+            new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(report.toFile(), result);
+            System.out.println("\nReport written to " + report.toAbsolutePath());
+            dataSource.destroy();
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SplittableRandom random = new SplittableRandom(42);
+    private long nextChatId = 1;
+    private long nextMessageId = 1;
+
+    private FanoutBenchmark(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    // Users get ids 1..users, their direct chats fan out on write like any two person chat
+    private void seed(int users, int directChats) {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 1; i <= users; i++) {
+            rows.add(new Object[]{"fanout" + i, "fanout" + i + "@loadtest.local", "-", "USER"});
+            if (rows.size() == INSERT_BATCH_SIZE || i == users) {
+                jdbcTemplate.batchUpdate("INSERT INTO users (username, email, password, roles) VALUES (?, ?, ?, ?)", rows);
+                rows.clear();
+            }
+        }
+
+        InboxWriter writer = new InboxWriter(jdbcTemplate, new FanoutPolicy(jdbcTemplate, Integer.MAX_VALUE), 60_000);
+        List<Message> batch = new ArrayList<>();
+        for (long user = 1; user <= users; user++) {
+            for (int i = 0; i < directChats / 2; i++) {
+                long partner = 1 + (user + random.nextInt(users - 1)) % users;
+                long chatId = createChat("direct", "INDIVIDUAL", List.of(user, partner));
+                batch.add(new Message(nextMessageId++, user, chatId, "hello", Instant.now()));
+                if (batch.size() == INSERT_BATCH_SIZE) {
+                    apply(writer, batch);
+                    batch = new ArrayList<>();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            apply(writer, batch);
+        }
+    }
+
+    private long run(String name, FanoutMode mode, int firstMember, int size, int messages, int reads,
+                     LatencyRecorder recorder) {
+        List<Long> members = new ArrayList<>(size);
+        for (long user = firstMember; user < firstMember + size; user++) {
+            members.add(user);
+        }
+        long chatId = createChat("group " + name, "GROUP", members);
+        FanoutPolicy policy = new FanoutPolicy(jdbcTemplate, mode == FanoutMode.WRITE ? Integer.MAX_VALUE : 1);
+        InboxWriter writer = new InboxWriter(jdbcTemplate, policy, 60_000);
+        InboxReader reader = new InboxReader(jdbcTemplate);
+
+        // One message per flush is the worst case, a busy group gets several coalesced into one head per batch
+        for (int i = 0; i < messages; i++) {
+            Message message = new Message(nextMessageId++, members.get(random.nextInt(size)), chatId,
+                    "benchmark message " + i, Instant.now());
+            long start = System.nanoTime();
+            apply(writer, List.of(message));
+            recorder.record("write " + name, System.nanoTime() - start, true);
+        }
+        for (int i = 0; i < reads; i++) {
+            long userId = members.get(random.nextInt(size));
+            long start = System.nanoTime();
+            boolean found = reader.page(userId, Long.MAX_VALUE, Long.MAX_VALUE, INBOX_PAGE_SIZE).stream()
+                    .anyMatch(entry -> entry.chatId() == chatId);
+            recorder.record("read " + name, System.nanoTime() - start, found);
+        }
+        return writer.fanoutStats().inboxRowWrites();
+    }
+
+    private void apply(InboxWriter writer, List<Message> batch) {
+        transactionTemplate.executeWithoutResult(status -> writer.apply(batch));
+    }
+
+    private long createChat(String name, String type, List<Long> members) {
+        long chatId = nextChatId++;
+        jdbcTemplate.update("INSERT INTO chats (id, name, type) VALUES (?, ?, ?)", chatId, name, type);
+        List<Object[]> rows = new ArrayList<>(members.size());
+        for (Long userId : members) {
+            rows.add(new Object[]{chatId, userId});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO chat_participants (chat_id, user_id) VALUES (?, ?)", rows);
+        return chatId;
+    }
+
+    private static void print(List<LatencyRecorder.EndpointReport> results, Map<String, Long> inboxRows) {
+        System.out.printf("%n%-28s %9s %8s %9s %9s %9s %9s%n",
+                "operation", "count", "errors", "p50 ms", "p95 ms", "p99 ms", "max ms");
+        for (LatencyRecorder.EndpointReport result : results) {
+            System.out.printf("%-28s %9d %8d %9.2f %9.2f %9.2f %9.2f%n",
+                    result.endpoint(), result.requests(), result.errors(), result.p50Millis(), result.p95Millis(),
+                    result.p99Millis(), result.maxMillis());
+        }
+        System.out.printf("%n%-28s %14s%n", "chat", "inbox rows");
+        inboxRows.forEach((name, rows) -> System.out.printf("%-28s %14d%n", name, rows));
+    }
+}
@@ -0,0 +1,121 @@
+package net.svsh.linkupserver.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+// History page latency of one chat per size, against an embedded MariaDB holding all of them at once.
+// Runs the SQL MessageRepository.findHistory compiles to, once for the newest page and once from a random
+// cursor anywhere in the chat. The keyset index should keep both flat as the chat grows.
+//   ./gradlew :loadtest:historyBenchmark --args="--sizes=100,10000,1000000,10000000 --reads=2000"
+public class HistoryBenchmark {
+
+    private static final int PAGE_SIZE = 50;
+    private static final String FIND_HISTORY = "SELECT id, chat_id, sender_id, content, sent_at FROM messages " +
+            "WHERE chat_id = ? AND id < ? ORDER BY id DESC LIMIT ?";
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (arg.startsWith("--") && separator > 2) {
+                options.put(arg.substring(2, separator), arg.substring(separator + 1));
+            }
+        }
+        int[] sizes = Arrays.stream(options.getOrDefault("sizes", "100,10000,1000000,10000000").split(","))
+                .mapToInt(Integer::parseInt)
+                .toArray();
+        int reads = Integer.parseInt(options.getOrDefault("reads", "2000"));
+        Path report = Path.of(options.getOrDefault("report", "build/results/loadtest/history.json"));
+
+        try (EmbeddedDatabase database = EmbeddedDatabase.start(options.get("db-base-dir"))) {
+            SingleConnectionDataSource dataSource = new SingleConnectionDataSource(database.jdbcUrl(), "root", "", true);
+            new ResourceDatabasePopulator(new ClassPathResource("loadtest-users.sql"), new ClassPathResource("schema.sql"))
+                    .execute(dataSource);
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            jdbcTemplate.update("INSERT INTO users (username, email, password, roles) VALUES ('history', 'history@loadtest.local', '-', 'USER')");
+            long senderId = jdbcTemplate.queryForObject("SELECT id FROM users WHERE username = 'history'", Long.class);
+
+            // Every chat is seeded before the first read, so the small ones are measured against the full table
+            Map<Integer, Long> chats = new LinkedHashMap<>();
+            for (int size : sizes) {
+                jdbcTemplate.update("INSERT INTO chats (name, type) VALUES (?, 'GROUP')", "history " + size);
+                long chatId = jdbcTemplate.queryForObject("SELECT LAST_INSERT_ID()", Long.class);
+                long start = System.nanoTime();
+                LoadTestDataset.insertHistory(jdbcTemplate, chatId, senderId, size);
+                System.out.printf("Seeded %d messages in %d ms%n", size, Duration.ofNanos(System.nanoTime() - start).toMillis());
+                chats.put(size, chatId);
+            }
+            jdbcTemplate.execute("ANALYZE TABLE messages");
+
+            HistoryBenchmark benchmark = new HistoryBenchmark(jdbcTemplate);
+            LatencyRecorder recorder = new LatencyRecorder();
+            chats.forEach((size, chatId) -> benchmark.run(LoadTestDataset.magnitude(size), chatId, reads, recorder));
+
+            List<LatencyRecorder.EndpointReport> results = recorder.report(Duration.ZERO);
+            print(results);
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("sizes", sizes);
+            result.put("reads", reads);
+            result.put("pageSize", PAGE_SIZE);
+            result.put("results", results);
+            Files.createDirectories(report.toAbsolutePath().getParent());
+            new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(report.toFile(), result);
+            System.out.println("\nReport written to " + report.toAbsolutePath());
+            dataSource.destroy();
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    private HistoryBenchmark(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    private void run(String name, long chatId, int reads, LatencyRecorder recorder) {
+        long first = jdbcTemplate.queryForObject("SELECT MIN(id) FROM messages WHERE chat_id = ?", Long.class, chatId);
+        long last = jdbcTemplate.queryForObject("SELECT MAX(id) FROM messages WHERE chat_id = ?", Long.class, chatId);
+
+        // Untimed round first, the timed ones should not pay for loading the index pages from disk
+        for (int i = 0; i < reads / 10; i++) {
+            page(chatId, Long.MAX_VALUE);
+        }
+        for (int i = 0; i < reads; i++) {
+            long start = System.nanoTime();
+            int rows = page(chatId, Long.MAX_VALUE);
+            recorder.record("findHistory " + name + " newest", System.nanoTime() - start, rows > 0);
+
+            long cursor = random.nextLong(first, last + 2);
+            start = System.nanoTime();
+            page(chatId, cursor);
+            recorder.record("findHistory " + name + " random", System.nanoTime() - start, true);
+        }
+    }
+
+    private int page(long chatId, long before) {
+        return jdbcTemplate.queryForList(FIND_HISTORY, chatId, before, PAGE_SIZE).size();
+    }
+
+    private static void print(List<LatencyRecorder.EndpointReport> results) {
+        System.out.printf("%n%-28s %9s %9s %9s %9s %9s%n", "query", "count", "p50 ms", "p95 ms", "p99 ms", "max ms");
+        for (LatencyRecorder.EndpointReport result : results) {
+            System.out.printf("%-28s %9d %9.2f %9.2f %9.2f %9.2f%n",
+                    result.endpoint(), result.requests(), result.p50Millis(), result.p95Millis(),
+                    result.p99Millis(), result.maxMillis());
+        }
+    }
+}
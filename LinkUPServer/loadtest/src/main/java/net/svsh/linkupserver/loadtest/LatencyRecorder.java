@@ -0,0 +1,64 @@
+package net.svsh.linkupserver.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Latency histograms and error counts per endpoint, shared by all virtual users
+final class LatencyRecorder {
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    void record(String endpoint, long nanos, boolean success) {
+        Endpoint stats = endpoints.computeIfAbsent(endpoint, key -> new Endpoint());
+        stats.latencyMicros.recordValue(Math.max(1, TimeUnit.NANOSECONDS.toMicros(nanos)));
+        if (!success) {
+            stats.errors.increment();
+        }
+    }
+
+    List<EndpointReport> report(Duration elapsed) {
+        double seconds = Math.max(1, elapsed.toMillis()) / 1000.0;
+        List<EndpointReport> report = new ArrayList<>();
+        new TreeMap<>(endpoints).forEach((name, stats) -> {
+            Histogram histogram = stats.latencyMicros.copy();
+            long count = histogram.getTotalCount();
+            long errors = stats.errors.sum();
+            report.add(new EndpointReport(name,
+                    count,
+                    errors,
+                    count == 0 ? 0 : 100.0 * errors / count,
+                    count / seconds,
+                    histogram.getValueAtPercentile(50) / 1000.0,
+                    histogram.getValueAtPercentile(95) / 1000.0,
+                    histogram.getValueAtPercentile(99) / 1000.0,
+                    histogram.getMaxValue() / 1000.0));
+        });
+        return report;
+    }
+
+    private static final class Endpoint {
+        // Three significant digits, auto-resizing so a stalled request cannot overflow the range
+        private final ConcurrentHistogram latencyMicros = new ConcurrentHistogram(3);
+        private final LongAdder errors = new LongAdder();
+    }
+
+    record EndpointReport(String endpoint,
+                          long requests,
+                          long errors,
+                          double errorRate,
+                          double throughput,
+                          double p50Millis,
+                          double p95Millis,
+                          double p99Millis,
+                          double maxMillis) {
+    }
+}
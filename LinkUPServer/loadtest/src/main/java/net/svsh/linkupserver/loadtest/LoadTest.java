@@ -0,0 +1,187 @@
+package net.svsh.linkupserver.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import net.svsh.linkupserver.LinkUpServerApplication;
+import net.svsh.linkupserver.cluster.ClusterFanout;
+import net.svsh.linkupserver.datasource.DataSourceRoutingStats;
+import net.svsh.linkupserver.datasource.ReadWriteRoutingDataSource;
+import net.svsh.linkupserver.user.UserRepository;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.CommandLinePropertySource;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Boots the server against an embedded MariaDB, runs the scripted users and prints per endpoint results.
+// --replica=true adds a second MariaDB replicating the first, readOnly transactions are then routed to it.
+// --db-latency=20ms delays every statement, e.g. to compare platform and virtual threads against a slow database
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        Path attachments = Files.createTempDirectory("linkup-loadtest");
+
+        try (EmbeddedDatabase database = options.replica()
+                ? EmbeddedDatabase.startPrimary(options.dbBaseDir())
+                : EmbeddedDatabase.start(options.dbBaseDir());
+             EmbeddedDatabase replica = options.replica() ? EmbeddedDatabase.startReplica(options.dbBaseDir(), database) : null;
+             ConfigurableApplicationContext server = startServer(database, replica, attachments, options)) {
+            LoadTestDataset dataset = new LoadTestDataset(server.getBean(JdbcTemplate.class),
+                    server.getBean(UserRepository.class), server.getBean(ClusterFanout.class));
+            dataset.seed(options.chatCount(), options.historySizes());
+
+            int port = ((WebServerApplicationContext) server).getWebServer().getPort();
+            boolean virtualThreads = server.getEnvironment().getProperty("spring.threads.virtual.enabled", Boolean.class, false);
+            System.out.printf("Server on port %d, %s threads, %d users, ramp-up %s, duration %s, db latency %s%n",
+                    port, virtualThreads ? "virtual" : "platform", options.users(), options.rampUp(), options.duration(),
+                    options.dbLatency());
+
+            LatencyRecorder recorder = new LatencyRecorder();
+            Duration elapsed = run(options, dataset, "http://localhost:" + port + "/", recorder);
+
+            List<LatencyRecorder.EndpointReport> report = recorder.report(elapsed);
+            DataSourceRoutingStats routing = server.getBean(ReadWriteRoutingDataSource.class).stats();
+            print(report);
+            System.out.printf("%nConnections: %d primary, %d replica, %d reads pinned to primary, %d replica fallbacks%n",
+                    routing.primaryConnections(), routing.replicaConnections(), routing.pinnedReads(), routing.fallbackReads());
+            write(options, virtualThreads, elapsed, report, routing);
+        }
+        // Client and server pools are not all daemon threads
+        System.exit(0);
+    }
+
+    private static ConfigurableApplicationContext startServer(EmbeddedDatabase database, EmbeddedDatabase replica,
+                                                              Path attachments, LoadTestOptions options) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("spring.datasource.url", database.jdbcUrl());
+        properties.put("spring.datasource.username", "root");
+        properties.put("spring.datasource.password", "");
+        properties.put("spring.datasource.hikari.maximum-pool-size", 50);
+        if (replica != null) {
+            properties.put("linkup.datasource.replica-urls", replica.jdbcUrl());
+            properties.put("linkup.datasource.replica-pool-size", 50);
+        }
+        // Same schema.sql as production, ddl-auto would create its own tables without the indexes
+        properties.put("spring.jpa.hibernate.ddl-auto", "none");
+        properties.put("spring.sql.init.schema-locations", "classpath:loadtest-users.sql,classpath:schema.sql");
+        properties.put("server.port", 0);
+        properties.put("management.server.port", 0);
+        properties.put("linkup.attachments.root", attachments.resolve("attachments").toString());
+        properties.put("linkup.search.root", attachments.resolve("search").toString());
+        // Every virtual user comes from the same address, the harness measures the server and not its limiter
+        properties.put("linkup.ratelimit.enabled", false);
+
+        // Has to outrank application.properties, which points at the production database, but not explicit arguments
+        return new SpringApplicationBuilder(LinkUpServerApplication.class)
+                .initializers(context -> {
+                    MutablePropertySources sources = context.getEnvironment().getPropertySources();
+                    MapPropertySource harness = new MapPropertySource("loadTest", properties);
+                    if (sources.contains(CommandLinePropertySource.COMMAND_LINE_PROPERTY_SOURCE_NAME)) {
+                        sources.addAfter(CommandLinePropertySource.COMMAND_LINE_PROPERTY_SOURCE_NAME, harness);
+                    } else {
+                        sources.addFirst(harness);
+                    }
+                    if (!options.dbLatency().isZero()) {
+                        context.getBeanFactory().addBeanPostProcessor(delayDataSource(options.dbLatency()));
+                    }
+                })
+                .run(options.serverArgs());
+    }
+
+    // Wraps the DataSource everything injects, so JPA, JdbcTemplate and both primary and replica reads pay the latency
+    private static BeanPostProcessor delayDataSource(Duration latency) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return "dataSource".equals(beanName) ? new DelayedDataSource((DataSource) bean, latency) : bean;
+            }
+        };
+    }
+
+    private static Duration run(LoadTestOptions options, LoadTestDataset dataset, String baseUrl,
+                                LatencyRecorder recorder) throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        ObjectMapper objectMapper = new ObjectMapper();
+        String runId = Long.toString(System.currentTimeMillis(), 36);
+
+        long start = System.nanoTime();
+        long deadline = start + options.rampUp().toNanos() + options.duration().toNanos();
+        long rampStepNanos = options.users() == 0 ? 0 : options.rampUp().toNanos() / options.users();
+
+        // One virtual thread per user keeps thousands of users cheap on the client side
+        ExecutorService users = Executors.newVirtualThreadPerTaskExecutor();
+        for (int i = 0; i < options.users(); i++) {
+            long startAt = start + i * rampStepNanos;
+            VirtualUser user = new VirtualUser(i, runId, baseUrl, deadline, options, dataset, client, objectMapper, recorder);
+            users.execute(() -> {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(startAt - System.nanoTime());
+                    user.run();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        users.shutdown();
+        // Users finish their current call after the deadline, give stragglers the request timeout
+        if (!users.awaitTermination(options.rampUp().toSeconds() + options.duration().toSeconds() + 60, TimeUnit.SECONDS)) {
+            users.shutdownNow();
+        }
+        return Duration.ofNanos(System.nanoTime() - start);
+    }
+
+    private static void print(List<LatencyRecorder.EndpointReport> report) {
+        System.out.printf("%n%-36s %9s %8s %7s %9s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "errors", "err %", "req/s", "p50 ms", "p95 ms", "p99 ms", "max ms");
+        for (LatencyRecorder.EndpointReport endpoint : report) {
+            System.out.printf("%-36s %9d %8d %7.2f %9.1f %9.2f %9.2f %9.2f %9.2f%n",
+                    endpoint.endpoint(), endpoint.requests(), endpoint.errors(), endpoint.errorRate(),
+                    endpoint.throughput(), endpoint.p50Millis(), endpoint.p95Millis(), endpoint.p99Millis(),
+                    endpoint.maxMillis());
+        }
+    }
+
+    // JSON next to the table so runs can be compared by a script, e.g. platform against virtual threads
+    private static void write(LoadTestOptions options, boolean virtualThreads, Duration elapsed,
+                              List<LatencyRecorder.EndpointReport> report, DataSourceRoutingStats routing) throws Exception {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("users", options.users());
+        result.put("rampUpSeconds", options.rampUp().toSeconds());
+        result.put("durationSeconds", options.duration().toSeconds());
+        result.put("thinkTimeMillis", options.thinkTime().toMillis());
+        result.put("chatSize", options.chatSize());
+        result.put("historySizes", options.historySizes());
+        result.put("websocket", options.websocket());
+        result.put("virtualThreads", virtualThreads);
+        result.put("replica", options.replica());
+        result.put("dbLatencyMillis", options.dbLatency().toMillis());
+        result.put("dataSourceRouting", routing);
+        result.put("elapsedSeconds", elapsed.toMillis() / 1000.0);
+        result.put("endpoints", report);
+
+        Path file = options.report().toAbsolutePath();
+        Files.createDirectories(file.getParent());
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file.toFile(), result);
+        System.out.println("\nReport written to " + file);
+    }
+}
@@ -0,0 +1,100 @@
+package net.svsh.linkupserver.loadtest;
+
+import net.svsh.linkupserver.cluster.ClusterFanout;
+import net.svsh.linkupserver.user.User;
+import net.svsh.linkupserver.user.UserRepository;
+import net.svsh.linkupserver.user.UserRole;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Group chats the virtual users talk in, pre-filled with history so paging runs against a realistic table.
+// Chats take the history sizes in turn, history reads are reported per size
+final class LoadTestDataset {
+
+    private static final int INSERT_BATCH_SIZE = 1000;
+    // Rows one INSERT ... SELECT copies at most, keeps single statements and their undo log bounded
+    private static final int COPY_LIMIT = 1_000_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UserRepository userRepository;
+    private final ClusterFanout clusterFanout;
+    private final List<Long> chatIds = new ArrayList<>();
+    private final Map<Long, Integer> historySizes = new HashMap<>();
+
+    LoadTestDataset(JdbcTemplate jdbcTemplate, UserRepository userRepository, ClusterFanout clusterFanout) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.userRepository = userRepository;
+        this.clusterFanout = clusterFanout;
+    }
+
+    void seed(int chats, int[] sizes) {
+        // History is written by a user that never logs in, the password is not a valid hash on purpose
+        User author = userRepository.save(new User("loadtest-author", "author@loadtest.local", "-", UserRole.USER));
+
+        for (int i = 0; i < chats; i++) {
+            long chatId = createChat("loadtest-" + i);
+            int size = sizes[i % sizes.length];
+            insertHistory(jdbcTemplate, chatId, author.getId(), size);
+            chatIds.add(chatId);
+            historySizes.put(chatId, size);
+        }
+    }
+
+    long chatOf(int user, int chatSize) {
+        return chatIds.get(user / chatSize);
+    }
+
+    int historySizeOf(long chatId) {
+        return historySizes.get(chatId);
+    }
+
+    // The first rows go in as batches, the rest by copying the chat's rows onto itself, doubling per statement.
+    // Row by row inserts would take hours for the largest sizes
+    static void insertHistory(JdbcTemplate jdbcTemplate, long chatId, long senderId, int messages) {
+        List<Object[]> batch = new ArrayList<>(INSERT_BATCH_SIZE);
+        int inserted = Math.min(messages, INSERT_BATCH_SIZE);
+        for (int i = 0; i < inserted; i++) {
+            batch.add(new Object[]{senderId, chatId, "history message " + i});
+        }
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO messages (sender_id, chat_id, content) VALUES (?, ?, ?)", batch);
+        }
+        while (inserted < messages) {
+            int copied = Math.min(Math.min(inserted, messages - inserted), COPY_LIMIT);
+            jdbcTemplate.update("INSERT INTO messages (sender_id, chat_id, content) " +
+                    "SELECT sender_id, chat_id, content FROM messages WHERE chat_id = ? ORDER BY id LIMIT ?", chatId, copied);
+            inserted += copied;
+        }
+    }
+
+    // 1e2 for powers of ten, so reports list the sizes in order and readably
+    static String magnitude(int size) {
+        int exponent = (int) Math.log10(size);
+        return size > 0 && Math.pow(10, exponent) == size ? "1e" + exponent : Integer.toString(size);
+    }
+
+    // There is no membership API yet, so users are added straight to the table before they connect
+    void join(long chatId, long userId) {
+        jdbcTemplate.update("INSERT INTO chat_participants (chat_id, user_id) VALUES (?, ?)", chatId, userId);
+        clusterFanout.invalidateParticipants(chatId);
+    }
+
+    private long createChat(String name) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO chats (name, type) VALUES (?, 'GROUP')", Statement.RETURN_GENERATED_KEYS);
+            statement.setString(1, name);
+            return statement;
+        }, keyHolder);
+        return keyHolder.getKey().longValue();
+    }
+}
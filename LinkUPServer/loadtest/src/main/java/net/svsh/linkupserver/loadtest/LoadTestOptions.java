@@ -0,0 +1,71 @@
+package net.svsh.linkupserver.loadtest;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// --key=value arguments of a load test run, anything not listed here is passed on to the server
+record LoadTestOptions(int users,
+                       Duration rampUp,
+                       Duration duration,
+                       Duration thinkTime,
+                       int chatSize,
+                       int[] historySizes,
+                       boolean websocket,
+                       boolean replica,
+                       Duration dbLatency,
+                       String dbBaseDir,
+                       Path report,
+                       String[] serverArgs) {
+
+    static LoadTestOptions parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        List<String> serverArgs = new ArrayList<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            String key = arg.startsWith("--") && separator > 2 ? arg.substring(2, separator) : null;
+            if (key != null && isHarnessOption(key)) {
+                options.put(key, arg.substring(separator + 1));
+            } else {
+                serverArgs.add(arg);
+            }
+        }
+
+        return new LoadTestOptions(
+                Integer.parseInt(options.getOrDefault("users", "100")),
+                DurationStyle.detectAndParse(options.getOrDefault("ramp-up", "30s")),
+                DurationStyle.detectAndParse(options.getOrDefault("duration", "2m")),
+                DurationStyle.detectAndParse(options.getOrDefault("think-time", "100ms")),
+                Integer.parseInt(options.getOrDefault("chat-size", "10")),
+                sizes(options.getOrDefault("history-sizes", "100,10000,1000000")),
+                Boolean.parseBoolean(options.getOrDefault("websocket", "true")),
+                Boolean.parseBoolean(options.getOrDefault("replica", "false")),
+                DurationStyle.detectAndParse(options.getOrDefault("db-latency", "0ms")),
+                options.get("db-base-dir"),
+                Path.of(options.getOrDefault("report", "build/results/loadtest/report.json")),
+                serverArgs.toArray(String[]::new));
+    }
+
+    private static boolean isHarnessOption(String key) {
+        return switch (key) {
+            case "users", "ramp-up", "duration", "think-time", "chat-size", "history-sizes",
+                 "websocket", "replica", "db-latency", "db-base-dir", "report" -> true;
+            default -> false;
+        };
+    }
+
+    // Messages per chat, chats take them in turn
+    private static int[] sizes(String value) {
+        return Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+    }
+
+    int chatCount() {
+        return (users + chatSize - 1) / chatSize;
+    }
+}
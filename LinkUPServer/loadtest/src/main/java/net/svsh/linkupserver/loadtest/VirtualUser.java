@@ -0,0 +1,158 @@
+package net.svsh.linkupserver.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Scripted user: register, login, validate the token, then a weighted mix of authenticated calls until the deadline
+final class VirtualUser implements Runnable {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final int index;
+    private final String runId;
+    private final String baseUrl;
+    private final long deadlineNanos;
+    private final LoadTestOptions options;
+    private final LoadTestDataset dataset;
+    private final HttpClient client;
+    private final ObjectMapper objectMapper;
+    private final LatencyRecorder recorder;
+
+    private String token;
+    private long userId;
+
+    VirtualUser(int index, String runId, String baseUrl, long deadlineNanos, LoadTestOptions options,
+                LoadTestDataset dataset, HttpClient client, ObjectMapper objectMapper, LatencyRecorder recorder) {
+        this.index = index;
+        this.runId = runId;
+        this.baseUrl = baseUrl;
+        this.deadlineNanos = deadlineNanos;
+        this.options = options;
+        this.dataset = dataset;
+        this.client = client;
+        this.objectMapper = objectMapper;
+        this.recorder = recorder;
+    }
+
+    @Override
+    public void run() {
+        String email = "vu-" + runId + "-" + index + "@loadtest.local";
+        String password = "password-" + index;
+
+        JsonNode registered = post("POST api/auth/register", "api/auth/register",
+                Map.of("username", "vu" + index, "email", email, "password", password));
+        if (registered == null) {
+            return;
+        }
+        userId = registered.path("user").path("id").asLong();
+
+        JsonNode loggedIn = post("POST api/auth/login", "api/auth/login", Map.of("email", email, "password", password));
+        if (loggedIn == null) {
+            return;
+        }
+        token = loggedIn.path("token").asText();
+
+        if (post("POST api/validate-token", "api/validate-token", Map.of("email", email)) == null) {
+            return;
+        }
+
+        long chatId = dataset.chatOf(index, options.chatSize());
+        dataset.join(chatId, userId);
+        String history = "GET api/chats/{chatId}/messages " + LoadTestDataset.magnitude(dataset.historySizeOf(chatId));
+        ChatSocket socket = options.websocket()
+                ? ChatSocket.connect(client, URI.create(baseUrl.replaceFirst("^http", "ws") + "ws/chat"), token, objectMapper, recorder)
+                : null;
+
+        while (System.nanoTime() < deadlineNanos && !Thread.currentThread().isInterrupted()) {
+            int action = ThreadLocalRandom.current().nextInt(100);
+            if (action < 30 && socket != null) {
+                socket.send(chatId, "load test message from " + index);
+            } else if (action < 50) {
+                get(history, "api/chats/" + chatId + "/messages?limit=50");
+            } else if (action < 55) {
+                get("GET api/inbox", "api/inbox?limit=50");
+            } else if (action < 60) {
+                get("GET api/search/messages", "api/search/messages?q=message+" + ThreadLocalRandom.current().nextInt(100));
+            } else if (action < 75) {
+                post("POST api/presence/heartbeat", "api/presence/heartbeat", Map.of());
+            } else if (action < 90) {
+                post("POST api/presence/query", "api/presence/query", Map.of("userIds", new long[]{userId}));
+            } else if (action < 95) {
+                get("GET api/users/search", "api/users/search?q=vu" + ThreadLocalRandom.current().nextInt(10) + "&limit=10");
+            } else {
+                get("GET api/users", "api/users?limit=50");
+            }
+            pause();
+        }
+
+        if (socket != null) {
+            socket.close();
+        }
+    }
+
+    private JsonNode get(String endpoint, String path) {
+        return call(endpoint, request(path).GET().build());
+    }
+
+    private JsonNode post(String endpoint, String path, Object body) {
+        try {
+            HttpRequest request = request(path)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+                    .build();
+            return call(endpoint, request);
+        } catch (Exception e) {
+            recorder.record(endpoint, 0, false);
+            return null;
+        }
+    }
+
+    private HttpRequest.Builder request(String path) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(REQUEST_TIMEOUT);
+        if (token != null) {
+            builder.header("Authorization", "Bearer " + token);
+        }
+        return builder;
+    }
+
+    // Most endpoints answer 200 with the real outcome in statusCode, both count
+    private JsonNode call(String endpoint, HttpRequest request) {
+        long start = System.nanoTime();
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            long elapsed = System.nanoTime() - start;
+            JsonNode body = response.body().isEmpty() ? objectMapper.nullNode() : objectMapper.readTree(response.body());
+            boolean success = response.statusCode() < 400 && body.path("statusCode").asInt(200) < 400;
+            recorder.record(endpoint, elapsed, success);
+            return success ? body : null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            recorder.record(endpoint, System.nanoTime() - start, false);
+            return null;
+        } catch (Exception e) {
+            recorder.record(endpoint, System.nanoTime() - start, false);
+            return null;
+        }
+    }
+
+    private void pause() {
+        long thinkMillis = options.thinkTime().toMillis();
+        if (thinkMillis <= 0) {
+            return;
+        }
+        try {
+            // Jittered so the users do not fire in lockstep
+            Thread.sleep(thinkMillis / 2 + ThreadLocalRandom.current().nextLong(thinkMillis + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,8 @@
+-- The users table predates schema.sql and only exists in the production database, the load test recreates it
+CREATE TABLE IF NOT EXISTS users (
+    id INT UNIQUE NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    username VARCHAR(255),
+    email VARCHAR(255) UNIQUE,
+    password VARCHAR(255),
+    roles VARCHAR(50)
+);
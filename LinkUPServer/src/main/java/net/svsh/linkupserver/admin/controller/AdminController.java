@@ -0,0 +1,122 @@
+package net.svsh.linkupserver.admin.controller;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import net.svsh.linkupserver.chat.persistence.MessagePipelineStats;
+import net.svsh.linkupserver.chat.persistence.MessageWriteBehindQueue;
+import net.svsh.linkupserver.chat.readstate.ReadStateRegistry;
+import net.svsh.linkupserver.chat.persistence.FanoutStats;
+import net.svsh.linkupserver.chat.persistence.InboxWriter;
+import net.svsh.linkupserver.chat.readstate.ReadStateStats;
+import net.svsh.linkupserver.datasource.DataSourceRoutingStats;
+import net.svsh.linkupserver.datasource.ReadWriteRoutingDataSource;
+import net.svsh.linkupserver.requestlog.RequestLog;
+import net.svsh.linkupserver.requestlog.RequestLogStats;
+import net.svsh.linkupserver.search.index.SearchIndexStats;
+import net.svsh.linkupserver.search.service.MessageSearchIndex;
+import net.svsh.linkupserver.security.jwt.VerifiedTokenCache;
+import net.svsh.linkupserver.security.password.PasswordHashingExecutor;
+import net.svsh.linkupserver.security.password.PasswordHashingStats;
+import net.svsh.linkupserver.security.ratelimit.RateLimitStats;
+import net.svsh.linkupserver.security.ratelimit.RateLimiter;
+import net.svsh.linkupserver.user.service.UserDetailsCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+public class AdminController {
+
+    @Autowired
+    private VerifiedTokenCache verifiedTokenCache;
+
+    @Autowired
+    private UserDetailsCache userDetailsCache;
+
+    @Autowired
+    private MessageWriteBehindQueue messageWriteBehindQueue;
+
+    @Autowired
+    private PasswordHashingExecutor passwordHashingExecutor;
+
+    @Autowired
+    private ReadStateRegistry readStateRegistry;
+
+    @Autowired
+    private InboxWriter inboxWriter;
+
+    @Autowired
+    private MessageSearchIndex messageSearchIndex;
+
+    @Autowired
+    private RateLimiter rateLimiter;
+
+    @Autowired
+    private ReadWriteRoutingDataSource routingDataSource;
+
+    @Autowired
+    private RequestLog requestLog;
+
+    @RequestMapping(value = "api/admin/token-cache", method = RequestMethod.GET)
+    public ResponseEntity<Map<String, Long>> getTokenCacheStats() {
+        return ResponseEntity.ok(toResponse(verifiedTokenCache.size(), verifiedTokenCache.stats()));
+    }
+
+    @RequestMapping(value = "api/admin/user-cache", method = RequestMethod.GET)
+    public ResponseEntity<Map<String, Long>> getUserCacheStats() {
+        return ResponseEntity.ok(toResponse(userDetailsCache.size(), userDetailsCache.stats()));
+    }
+
+    @RequestMapping(value = "api/admin/message-pipeline", method = RequestMethod.GET)
+    public ResponseEntity<MessagePipelineStats> getMessagePipelineStats() {
+        return ResponseEntity.ok(messageWriteBehindQueue.stats());
+    }
+
+    @RequestMapping(value = "api/admin/password-hashing", method = RequestMethod.GET)
+    public ResponseEntity<PasswordHashingStats> getPasswordHashingStats() {
+        return ResponseEntity.ok(passwordHashingExecutor.stats());
+    }
+
+    @RequestMapping(value = "api/admin/read-state", method = RequestMethod.GET)
+    public ResponseEntity<ReadStateStats> getReadStateStats() {
+        return ResponseEntity.ok(readStateRegistry.stats());
+    }
+
+    @RequestMapping(value = "api/admin/fanout", method = RequestMethod.GET)
+    public ResponseEntity<FanoutStats> getFanoutStats() {
+        return ResponseEntity.ok(inboxWriter.fanoutStats());
+    }
+
+    @RequestMapping(value = "api/admin/rate-limit", method = RequestMethod.GET)
+    public ResponseEntity<RateLimitStats> getRateLimitStats() {
+        return ResponseEntity.ok(rateLimiter.stats());
+    }
+
+    @RequestMapping(value = "api/admin/datasource", method = RequestMethod.GET)
+    public ResponseEntity<DataSourceRoutingStats> getDataSourceRoutingStats() {
+        return ResponseEntity.ok(routingDataSource.stats());
+    }
+
+    @RequestMapping(value = "api/admin/request-log", method = RequestMethod.GET)
+    public ResponseEntity<RequestLogStats> getRequestLogStats() {
+        return ResponseEntity.ok(requestLog.stats());
+    }
+
+    @RequestMapping(value = "api/admin/search-index", method = RequestMethod.GET)
+    public ResponseEntity<SearchIndexStats> getSearchIndexStats() {
+        return ResponseEntity.ok(messageSearchIndex.stats());
+    }
+
+    private static Map<String, Long> toResponse(long size, CacheStats stats) {
+        Map<String, Long> response = new LinkedHashMap<>();
+        response.put("size", size);
+        response.put("hits", stats.hitCount());
+        response.put("misses", stats.missCount());
+        response.put("evictions", stats.evictionCount());
+        return response;
+    }
+}
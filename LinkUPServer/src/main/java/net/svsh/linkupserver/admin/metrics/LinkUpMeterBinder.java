@@ -0,0 +1,195 @@
+package net.svsh.linkupserver.admin.metrics;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import net.svsh.linkupserver.chat.gateway.ChatSessionRegistry;
+import net.svsh.linkupserver.chat.persistence.InboxWriter;
+import net.svsh.linkupserver.chat.persistence.MessageWriteBehindQueue;
+import net.svsh.linkupserver.chat.readstate.ReadStateRegistry;
+import net.svsh.linkupserver.datasource.ReadWriteRoutingDataSource;
+import net.svsh.linkupserver.presence.service.PresenceRegistry;
+import net.svsh.linkupserver.requestlog.RequestLog;
+import net.svsh.linkupserver.search.service.MessageSearchIndex;
+import net.svsh.linkupserver.security.jwt.VerifiedTokenCache;
+import net.svsh.linkupserver.security.password.PasswordHashingExecutor;
+import net.svsh.linkupserver.security.ratelimit.RateLimitGroup;
+import net.svsh.linkupserver.security.ratelimit.RateLimiter;
+import net.svsh.linkupserver.security.token.RevocationList;
+import net.svsh.linkupserver.user.service.UserDetailsCache;
+import net.svsh.linkupserver.user.service.UserDirectoryIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+// Publishes the same numbers as the api/admin endpoints so they can be scraped from /actuator/prometheus
+@Component
+public class LinkUpMeterBinder implements MeterBinder {
+
+    @Autowired
+    private VerifiedTokenCache verifiedTokenCache;
+
+    @Autowired
+    private UserDetailsCache userDetailsCache;
+
+    @Autowired
+    private MessageWriteBehindQueue messageWriteBehindQueue;
+
+    @Autowired
+    private PasswordHashingExecutor passwordHashingExecutor;
+
+    @Autowired
+    private ReadStateRegistry readStateRegistry;
+
+    @Autowired
+    private InboxWriter inboxWriter;
+
+    @Autowired
+    private MessageSearchIndex messageSearchIndex;
+
+    @Autowired
+    private UserDirectoryIndex userDirectoryIndex;
+
+    @Autowired
+    private RateLimiter rateLimiter;
+
+    @Autowired
+    private RevocationList revocationList;
+
+    @Autowired
+    private ReadWriteRoutingDataSource routingDataSource;
+
+    @Autowired
+    private RequestLog requestLog;
+
+    @Autowired
+    private PresenceRegistry presenceRegistry;
+
+    @Autowired
+    private ChatSessionRegistry chatSessionRegistry;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        // Meters only hold weak references, so they are registered against the beans themselves
+        bindCache(registry, "token", verifiedTokenCache, VerifiedTokenCache::stats, VerifiedTokenCache::size);
+        bindCache(registry, "user", userDetailsCache, UserDetailsCache::stats, UserDetailsCache::size);
+
+        MessageWriteBehindQueue queue = messageWriteBehindQueue;
+        Gauge.builder("linkup.chat.persistence.queue.depth", queue, q -> q.stats().queueDepth())
+                .register(registry);
+        FunctionCounter.builder("linkup.chat.persistence.enqueued", queue, q -> q.stats().enqueued())
+                .register(registry);
+        FunctionCounter.builder("linkup.chat.persistence.rejected", queue, q -> q.stats().rejected())
+                .register(registry);
+        FunctionCounter.builder("linkup.chat.persistence.persisted", queue, q -> q.stats().persisted())
+                .register(registry);
+        FunctionCounter.builder("linkup.chat.persistence.failed.flushes", queue, q -> q.stats().failedFlushes())
+                .register(registry);
+        FunctionCounter.builder("linkup.chat.persistence.dead.lettered", queue, q -> q.stats().deadLettered())
+                .register(registry);
+        FunctionTimer.builder("linkup.chat.persistence.flush", queue,
+                        q -> q.stats().batches(), q -> q.stats().totalFlushMillis(), TimeUnit.MILLISECONDS)
+                .register(registry);
+
+        PasswordHashingExecutor hashing = passwordHashingExecutor;
+        Gauge.builder("linkup.security.hashing.queue.depth", hashing, h -> h.stats().queueDepth())
+                .register(registry);
+        FunctionCounter.builder("linkup.security.hashing.rejected", hashing, h -> h.stats().rejected())
+                .register(registry);
+        FunctionTimer.builder("linkup.security.hashing.queue.wait", hashing,
+                        h -> h.stats().completed(), h -> h.stats().totalQueueWaitMillis(), TimeUnit.MILLISECONDS)
+                .register(registry);
+        FunctionTimer.builder("linkup.security.hashing.hash", hashing,
+                        h -> h.stats().completed(), h -> h.stats().totalHashMillis(), TimeUnit.MILLISECONDS)
+                .register(registry);
+
+        // Events minus persisted cursors is what coalescing saved
+        ReadStateRegistry readState = readStateRegistry;
+        FunctionCounter.builder("linkup.chat.read.events", readState, r -> r.stats().readEvents())
+                .register(registry);
+        FunctionCounter.builder("linkup.chat.read.persisted", readState, r -> r.stats().persistedCursors())
+                .register(registry);
+        Gauge.builder("linkup.chat.read.dirty", readState, r -> r.stats().dirtyCursors())
+                .register(registry);
+
+        InboxWriter inbox = inboxWriter;
+        FunctionCounter.builder("linkup.chat.fanout", inbox, i -> i.fanoutStats().writeFanouts())
+                .tag("mode", "write")
+                .register(registry);
+        FunctionCounter.builder("linkup.chat.fanout", inbox, i -> i.fanoutStats().readFanouts())
+                .tag("mode", "read")
+                .register(registry);
+        FunctionCounter.builder("linkup.chat.fanout.inbox.rows", inbox, i -> i.fanoutStats().inboxRowWrites())
+                .register(registry);
+
+        MessageSearchIndex search = messageSearchIndex;
+        Gauge.builder("linkup.search.segments", search, s -> s.stats().segments())
+                .register(registry);
+        Gauge.builder("linkup.search.segment.bytes", search, s -> s.stats().segmentBytes())
+                .register(registry);
+        FunctionCounter.builder("linkup.search.indexed", search, s -> s.stats().indexedMessages())
+                .register(registry);
+        FunctionTimer.builder("linkup.search.query", search,
+                        s -> s.stats().queries(), s -> s.stats().queries() * s.stats().averageQueryMillis(), TimeUnit.MILLISECONDS)
+                .register(registry);
+
+        for (RateLimitGroup group : RateLimitGroup.values()) {
+            FunctionCounter.builder("linkup.ratelimit.rejected", rateLimiter, r -> r.rejected(group))
+                    .tag("group", group.name().toLowerCase())
+                    .register(registry);
+        }
+
+        ReadWriteRoutingDataSource routing = routingDataSource;
+        FunctionCounter.builder("linkup.datasource.connections", routing, r -> r.stats().primaryConnections())
+                .tag("target", "primary")
+                .register(registry);
+        FunctionCounter.builder("linkup.datasource.connections", routing, r -> r.stats().replicaConnections())
+                .tag("target", "replica")
+                .register(registry);
+        FunctionCounter.builder("linkup.datasource.fallback.reads", routing, r -> r.stats().fallbackReads())
+                .register(registry);
+        Gauge.builder("linkup.datasource.replicas.healthy", routing, r -> r.stats().healthyReplicas())
+                .register(registry);
+
+        FunctionCounter.builder("linkup.requestlog.written", requestLog, r -> r.stats().written())
+                .register(registry);
+        FunctionCounter.builder("linkup.requestlog.dropped", requestLog, r -> r.stats().dropped())
+                .register(registry);
+
+        Gauge.builder("linkup.security.revoked.sessions", revocationList, RevocationList::size)
+                .register(registry);
+
+        Gauge.builder("linkup.users.directory.size", userDirectoryIndex, UserDirectoryIndex::size)
+                .register(registry);
+
+        Gauge.builder("linkup.presence.online", presenceRegistry, PresenceRegistry::onlineCount)
+                .register(registry);
+        FunctionCounter.builder("linkup.presence.changes.dropped", presenceRegistry, PresenceRegistry::droppedChanges)
+                .register(registry);
+        Gauge.builder("linkup.chat.connections", chatSessionRegistry, ChatSessionRegistry::connectionCount)
+                .register(registry);
+    }
+
+    private static <T> void bindCache(MeterRegistry registry, String name, T cache,
+                                      Function<T, CacheStats> stats, ToDoubleFunction<T> size) {
+        Gauge.builder("linkup.cache.size", cache, size)
+                .tag("cache", name)
+                .register(registry);
+        cacheCounter(registry, "linkup.cache.hits", name, cache, stats, CacheStats::hitCount);
+        cacheCounter(registry, "linkup.cache.misses", name, cache, stats, CacheStats::missCount);
+        cacheCounter(registry, "linkup.cache.evictions", name, cache, stats, CacheStats::evictionCount);
+    }
+
+    private static <T> void cacheCounter(MeterRegistry registry, String meter, String name, T cache,
+                                         Function<T, CacheStats> stats, ToDoubleFunction<CacheStats> value) {
+        FunctionCounter.builder(meter, cache, c -> value.applyAsDouble(stats.apply(c)))
+                .tag("cache", name)
+                .register(registry);
+    }
+}
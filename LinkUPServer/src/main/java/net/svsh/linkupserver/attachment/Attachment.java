@@ -0,0 +1,33 @@
+package net.svsh.linkupserver.attachment;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "attachments")
+public class Attachment {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "message_id")
+    private Long messageId;
+
+    @Column(name = "file_url")
+    private String fileUrl;
+
+    @Column(name = "file_type")
+    private String fileType;
+
+    public Attachment(Long messageId, String fileUrl, String fileType) {
+        this.messageId = messageId;
+        this.fileUrl = fileUrl;
+        this.fileType = fileType;
+    }
+}
@@ -0,0 +1,18 @@
+package net.svsh.linkupserver.attachment;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+@Transactional(readOnly = true)
+public interface AttachmentRepository extends JpaRepository<Attachment, Long> {
+    // A file can be read by the participants of any chat it was sent to. On the primary, recipients
+    // fetch it as soon as the message arrives, before a replica may have the attachment row.
+    @Transactional
+    @Query("SELECT CASE WHEN COUNT(a) > 0 THEN true ELSE false END FROM Attachment a, Message m, ChatParticipant p, User u " +
+            "WHERE m.id = a.messageId AND p.chatId = m.chatId AND p.userId = u.id AND a.fileUrl = :fileUrl AND u.email = :email")
+    boolean isVisibleTo(@Param("fileUrl") String fileUrl, @Param("email") String email);
+}
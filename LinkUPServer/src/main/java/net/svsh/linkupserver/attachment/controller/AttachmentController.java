@@ -0,0 +1,124 @@
+package net.svsh.linkupserver.attachment.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import net.svsh.linkupserver.attachment.dto.AttachmentResponse;
+import net.svsh.linkupserver.attachment.service.AttachmentService;
+import net.svsh.linkupserver.attachment.service.AttachmentStorage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+@RestController
+public class AttachmentController {
+
+    // Tomcat's sendfile hand-off, the connector then streams the file with FileChannel.transferTo itself
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    @Autowired
+    private AttachmentService attachmentService;
+
+    @Autowired
+    private AttachmentStorage attachmentStorage;
+
+    @RequestMapping(value = "api/attachments/uploads", method = RequestMethod.POST)
+    public ResponseEntity<AttachmentResponse> createUpload(@RequestBody AttachmentResponse uploadRequest) {
+        AttachmentResponse response = attachmentService.createUpload(currentEmail(), uploadRequest);
+        return ResponseEntity.status(response.getStatusCode()).body(response);
+    }
+
+    @RequestMapping(value = "api/attachments/uploads/{uploadId}", method = RequestMethod.GET)
+    public ResponseEntity<AttachmentResponse> getUpload(@PathVariable String uploadId) {
+        AttachmentResponse response = attachmentService.getUpload(currentEmail(), uploadId);
+        return ResponseEntity.status(response.getStatusCode()).body(response);
+    }
+
+    // The chunk is the raw request body (application/octet-stream), read as a stream rather than bound to a byte[]
+    @RequestMapping(value = "api/attachments/uploads/{uploadId}", method = RequestMethod.PUT)
+    public ResponseEntity<AttachmentResponse> appendChunk(@PathVariable String uploadId, @RequestParam long offset,
+                                                          HttpServletRequest request) throws IOException {
+        AttachmentResponse response = attachmentService.appendChunk(currentEmail(), uploadId, offset, request.getInputStream());
+        return ResponseEntity.status(response.getStatusCode()).body(response);
+    }
+
+    @RequestMapping(value = "api/attachments/uploads/{uploadId}/complete", method = RequestMethod.POST)
+    public ResponseEntity<AttachmentResponse> complete(@PathVariable String uploadId,
+                                                       @RequestParam(required = false) Long messageId) {
+        AttachmentResponse response = attachmentService.complete(currentEmail(), uploadId, messageId);
+        return ResponseEntity.status(response.getStatusCode()).body(response);
+    }
+
+    @RequestMapping(value = "api/attachments/{hash}", method = RequestMethod.GET)
+    public void download(@PathVariable String hash, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path blob = attachmentStorage.findBlob(hash);
+        if (blob == null || !attachmentService.canDownload(currentEmail(), hash)) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+
+        long fileSize = Files.size(blob);
+        long start = 0;
+        long length = fileSize;
+
+        // Only single ranges are honoured, anything else gets the whole file which HTTP allows
+        List<HttpRange> ranges;
+        try {
+            ranges = HttpRange.parseRanges(request.getHeader(HttpHeaders.RANGE));
+        } catch (IllegalArgumentException e) {
+            ranges = List.of();
+        }
+        if (ranges.size() == 1) {
+            HttpRange range = ranges.get(0);
+            if (isUnsatisfiable(range, fileSize)) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + fileSize);
+                response.sendError(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+            start = range.getRangeStart(fileSize);
+            length = range.getRangeEnd(fileSize) - start + 1;
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (start + length - 1) + "/" + fileSize);
+        }
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        // Content addressed, the bytes behind a hash never change
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, max-age=31536000, immutable");
+        response.setHeader(HttpHeaders.ETAG, "\"" + hash + "\"");
+        response.setContentType("application/octet-stream");
+        response.setContentLengthLong(length);
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, blob.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + length);
+            return;
+        }
+        AttachmentStorage.transfer(blob, start, length, response.getOutputStream());
+    }
+
+    private static boolean isUnsatisfiable(HttpRange range, long fileSize) {
+        try {
+            return range.getRangeStart(fileSize) >= fileSize;
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+    }
+
+    private static String currentEmail() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        return auth.getName();
+    }
+}
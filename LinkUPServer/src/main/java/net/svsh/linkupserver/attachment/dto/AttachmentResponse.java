@@ -0,0 +1,22 @@
+package net.svsh.linkupserver.attachment.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class AttachmentResponse {
+    private int statusCode;
+    private String error;
+    private String message;
+    private String uploadId;
+    private String fileName;
+    private String fileType;
+    private Long size;
+    private Long offset;
+    private Long messageId;
+    private String hash;
+    private String fileUrl;
+}
@@ -0,0 +1,175 @@
+package net.svsh.linkupserver.attachment.service;
+
+import net.svsh.linkupserver.attachment.Attachment;
+import net.svsh.linkupserver.attachment.AttachmentRepository;
+import net.svsh.linkupserver.attachment.dto.AttachmentResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStream;
+
+@Service
+public class AttachmentService {
+
+    public static final String DOWNLOAD_PATH = "/api/attachments/";
+
+    @Autowired
+    private AttachmentStorage attachmentStorage;
+
+    @Autowired
+    private AttachmentRepository attachmentRepository;
+
+    @Autowired
+    private PendingAttachments pendingAttachments;
+
+    @Value("${linkup.attachments.max-size:104857600}")
+    private long maxSize;
+
+    public AttachmentResponse createUpload(String email, AttachmentResponse uploadRequest) {
+        AttachmentResponse uploadResponse = new AttachmentResponse();
+
+        try {
+            Long size = uploadRequest.getSize();
+            if (size == null || size <= 0 || size > maxSize || uploadRequest.getFileType() == null) {
+                uploadResponse.setStatusCode(400);
+                uploadResponse.setMessage("A file type and a size between 1 and " + maxSize + " bytes are required");
+                return uploadResponse;
+            }
+
+            AttachmentStorage.Upload upload = attachmentStorage.createUpload(email, uploadRequest.getFileName(),
+                    uploadRequest.getFileType(), size);
+            fill(uploadResponse, upload);
+            uploadResponse.setStatusCode(200);
+            uploadResponse.setMessage("Upload created");
+        } catch (Exception e) {
+            uploadResponse.setStatusCode(500);
+            uploadResponse.setError(e.getMessage());
+        }
+
+        return uploadResponse;
+    }
+
+    // Lets a client that lost its connection ask where to resume from
+    public AttachmentResponse getUpload(String email, String uploadId) {
+        AttachmentResponse uploadResponse = new AttachmentResponse();
+
+        try {
+            AttachmentStorage.Upload upload = findOwnedUpload(email, uploadId, uploadResponse);
+            if (upload != null) {
+                fill(uploadResponse, upload);
+                uploadResponse.setStatusCode(200);
+                uploadResponse.setMessage("Upload found");
+            }
+        } catch (Exception e) {
+            uploadResponse.setStatusCode(500);
+            uploadResponse.setError(e.getMessage());
+        }
+
+        return uploadResponse;
+    }
+
+    public AttachmentResponse appendChunk(String email, String uploadId, long offset, InputStream body) {
+        AttachmentResponse chunkResponse = new AttachmentResponse();
+
+        try {
+            AttachmentStorage.Upload upload = findOwnedUpload(email, uploadId, chunkResponse);
+            if (upload == null) {
+                return chunkResponse;
+            }
+
+            long newOffset = attachmentStorage.appendChunk(upload, offset, body);
+            chunkResponse.setUploadId(uploadId);
+            chunkResponse.setSize(upload.size());
+            chunkResponse.setOffset(newOffset);
+            chunkResponse.setStatusCode(200);
+            chunkResponse.setMessage("Chunk stored");
+        } catch (AttachmentStorage.OffsetMismatchException e) {
+            chunkResponse.setUploadId(uploadId);
+            chunkResponse.setOffset(e.getExpectedOffset());
+            chunkResponse.setStatusCode(409);
+            chunkResponse.setError(e.getMessage());
+        } catch (AttachmentStorage.ChunkTooLargeException e) {
+            chunkResponse.setUploadId(uploadId);
+            chunkResponse.setStatusCode(400);
+            chunkResponse.setError(e.getMessage());
+        } catch (Exception e) {
+            chunkResponse.setStatusCode(500);
+            chunkResponse.setError(e.getMessage());
+        }
+
+        return chunkResponse;
+    }
+
+    public AttachmentResponse complete(String email, String uploadId, Long messageId) {
+        AttachmentResponse completeResponse = new AttachmentResponse();
+
+        try {
+            AttachmentStorage.Upload upload = findOwnedUpload(email, uploadId, completeResponse);
+            if (upload == null) {
+                return completeResponse;
+            }
+            if (upload.offset() != upload.size()) {
+                fill(completeResponse, upload);
+                completeResponse.setStatusCode(409);
+                completeResponse.setMessage("Upload is incomplete");
+                return completeResponse;
+            }
+            // Files can only be attached to the caller's own messages, the upload is kept so the client can retry.
+            // A message sent moments ago may still be in a write-behind queue, its attachment waits for it
+            boolean deferred = false;
+            if (messageId != null && !pendingAttachments.isSender(messageId, email)) {
+                if (!pendingAttachments.mayStillArrive(messageId)) {
+                    completeResponse.setStatusCode(404);
+                    completeResponse.setMessage("No message found");
+                    return completeResponse;
+                }
+                deferred = true;
+            }
+
+            String hash = attachmentStorage.complete(upload);
+            String fileUrl = DOWNLOAD_PATH + hash;
+            if (deferred) {
+                pendingAttachments.defer(messageId, email, fileUrl, upload.fileType());
+            } else if (messageId != null) {
+                attachmentRepository.save(new Attachment(messageId, fileUrl, upload.fileType()));
+            }
+
+            completeResponse.setHash(hash);
+            completeResponse.setFileUrl(fileUrl);
+            completeResponse.setFileType(upload.fileType());
+            completeResponse.setSize(upload.size());
+            completeResponse.setMessageId(messageId);
+            completeResponse.setStatusCode(deferred ? 202 : 200);
+            completeResponse.setMessage(deferred ? "Upload completed, it is attached once the message is saved" : "Upload completed");
+        } catch (Exception e) {
+            completeResponse.setStatusCode(500);
+            completeResponse.setError(e.getMessage());
+        }
+
+        return completeResponse;
+    }
+
+    // Unknown blobs and blobs the caller may not see look the same, so hashes cannot be probed
+    public boolean canDownload(String email, String hash) {
+        return attachmentRepository.isVisibleTo(DOWNLOAD_PATH + hash, email);
+    }
+
+    private AttachmentStorage.Upload findOwnedUpload(String email, String uploadId, AttachmentResponse response) throws Exception {
+        AttachmentStorage.Upload upload = attachmentStorage.findUpload(uploadId);
+        if (upload == null || !upload.owner().equals(email)) {
+            response.setStatusCode(404);
+            response.setMessage("No upload found");
+            return null;
+        }
+        return upload;
+    }
+
+    private static void fill(AttachmentResponse response, AttachmentStorage.Upload upload) {
+        response.setUploadId(upload.uploadId());
+        response.setFileName(upload.fileName());
+        response.setFileType(upload.fileType());
+        response.setSize(upload.size());
+        response.setOffset(upload.offset());
+    }
+}
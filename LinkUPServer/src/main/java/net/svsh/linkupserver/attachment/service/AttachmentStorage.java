@@ -0,0 +1,292 @@
+package net.svsh.linkupserver.attachment.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// Local filesystem backend. In-progress uploads live under uploads/ as a .part file plus a .meta sidecar,
+// so they survive restarts; finished files are stored once under blobs/ by their SHA-256.
+// Uploads that see no chunk for upload-ttl are assumed abandoned and removed in the background.
+@Component
+public class AttachmentStorage implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(AttachmentStorage.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+
+    private final Path uploadsDir;
+    private final Path blobsDir;
+    private final long uploadTtlMillis;
+    private final ScheduledExecutorService cleaner;
+
+    public AttachmentStorage(@Value("${linkup.attachments.root:./data/attachments}") Path root,
+                             @Value("${linkup.attachments.upload-ttl-ms:86400000}") long uploadTtlMillis,
+                             @Value("${linkup.attachments.cleanup-interval-ms:3600000}") long cleanupIntervalMillis) throws IOException {
+        this.uploadsDir = Files.createDirectories(root.resolve("uploads"));
+        this.blobsDir = Files.createDirectories(root.resolve("blobs"));
+        this.uploadTtlMillis = uploadTtlMillis;
+        this.cleaner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "attachment-upload-cleaner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.cleaner.scheduleWithFixedDelay(this::removeAbandonedUploads, cleanupIntervalMillis, cleanupIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    public record Upload(String uploadId, String owner, String fileName, String fileType, long size, long offset) {
+    }
+
+    public static class OffsetMismatchException extends IOException {
+        private final long expectedOffset;
+
+        public OffsetMismatchException(long expectedOffset) {
+            super("Upload is at offset " + expectedOffset);
+            this.expectedOffset = expectedOffset;
+        }
+
+        public long getExpectedOffset() {
+            return expectedOffset;
+        }
+    }
+
+    public static class ChunkTooLargeException extends IOException {
+        public ChunkTooLargeException(long size) {
+            super("Chunk goes past the declared size of " + size + " bytes");
+        }
+    }
+
+    public Upload createUpload(String owner, String fileName, String fileType, long size) throws IOException {
+        String uploadId = UUID.randomUUID().toString();
+        Properties meta = new Properties();
+        meta.setProperty("owner", owner);
+        meta.setProperty("fileName", fileName == null ? "" : fileName);
+        meta.setProperty("fileType", fileType);
+        meta.setProperty("size", Long.toString(size));
+        Files.createFile(partPath(uploadId));
+        try (Writer writer = Files.newBufferedWriter(metaPath(uploadId), StandardCharsets.UTF_8)) {
+            meta.store(writer, null);
+        }
+        return new Upload(uploadId, owner, fileName, fileType, size, 0);
+    }
+
+    // Returns null for unknown or malformed ids
+    public Upload findUpload(String uploadId) throws IOException {
+        if (!isUuid(uploadId) || !Files.exists(metaPath(uploadId))) {
+            return null;
+        }
+        Properties meta = new Properties();
+        try (Reader reader = Files.newBufferedReader(metaPath(uploadId), StandardCharsets.UTF_8)) {
+            meta.load(reader);
+        }
+        return new Upload(uploadId, meta.getProperty("owner"), meta.getProperty("fileName"), meta.getProperty("fileType"),
+                Long.parseLong(meta.getProperty("size")), Files.size(partPath(uploadId)));
+    }
+
+    // Streams one chunk onto the end of the part file through a fixed buffer, the request body is never held in memory
+    public long appendChunk(Upload upload, long offset, InputStream body) throws IOException {
+        try (FileChannel channel = FileChannel.open(partPath(upload.uploadId()), StandardOpenOption.WRITE);
+             FileLock lock = tryLock(channel)) {
+            if (lock == null || channel.size() != offset) {
+                throw new OffsetMismatchException(channel.size());
+            }
+
+            ReadableByteChannel source = Channels.newChannel(body);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            long position = offset;
+            while (source.read(buffer) != -1) {
+                buffer.flip();
+                if (position + buffer.remaining() > upload.size()) {
+                    channel.truncate(offset);
+                    throw new ChunkTooLargeException(upload.size());
+                }
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+                buffer.clear();
+            }
+            channel.force(false);
+            return position;
+        }
+    }
+
+    // Hashes the finished part file and moves it into blobs/, identical content is only kept once
+    public String complete(Upload upload) throws IOException {
+        Path part = partPath(upload.uploadId());
+        String hash = sha256(part);
+        Path blob = blobPath(hash);
+        Files.createDirectories(blob.getParent());
+        try {
+            Files.move(part, blob, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            Files.delete(part);
+        }
+        if (Files.exists(part)) {
+            // Some platforms replace silently on ATOMIC_MOVE, either way the blob now holds this content
+            Files.delete(part);
+        }
+        Files.deleteIfExists(metaPath(upload.uploadId()));
+        return hash;
+    }
+
+    public void abort(Upload upload) throws IOException {
+        Files.deleteIfExists(partPath(upload.uploadId()));
+        Files.deleteIfExists(metaPath(upload.uploadId()));
+    }
+
+    // Removes uploads whose part file has not grown for the ttl, returns how many were removed
+    public int removeAbandonedUploads(long nowMillis) throws IOException {
+        FileTime cutoff = FileTime.fromMillis(nowMillis - uploadTtlMillis);
+        int removed = 0;
+        try (Stream<Path> metas = Files.list(uploadsDir)) {
+            for (Path meta : (Iterable<Path>) metas.filter(path -> path.toString().endsWith(".meta"))::iterator) {
+                String name = meta.getFileName().toString();
+                try {
+                    Upload upload = findUpload(name.substring(0, name.length() - ".meta".length()));
+                    if (upload != null && lastActivity(upload).compareTo(cutoff) < 0) {
+                        abort(upload);
+                        removed++;
+                    }
+                } catch (NoSuchFileException e) {
+                    // Completed or aborted while we looked at it
+                }
+            }
+        }
+        return removed;
+    }
+
+    // Returns null for unknown or malformed hashes
+    public Path findBlob(String hash) {
+        if (hash == null || !HASH.matcher(hash).matches()) {
+            return null;
+        }
+        Path blob = blobPath(hash);
+        return Files.isRegularFile(blob) ? blob : null;
+    }
+
+    // Copies a byte range through a channel wrapping the stream, the bytes pass through a heap buffer
+    public static void transfer(Path blob, long start, long length, OutputStream output) throws IOException {
+        transfer(blob, start, length, Channels.newChannel(output));
+    }
+
+    // Copies a byte range with transferTo. Into a FileChannel or SocketChannel the kernel moves the bytes itself
+    // (sendfile, copy_file_range) without copying them through the heap
+    public static void transfer(Path blob, long start, long length, WritableByteChannel target) throws IOException {
+        try (FileChannel channel = FileChannel.open(blob, StandardOpenOption.READ)) {
+            long position = start;
+            long end = start + length;
+            while (position < end) {
+                long transferred = channel.transferTo(position, end - position, target);
+                if (transferred <= 0) {
+                    throw new NoSuchFileException(blob.toString(), null, "File shrank while it was being sent");
+                }
+                position += transferred;
+            }
+        }
+    }
+
+    private void removeAbandonedUploads() {
+        try {
+            int removed = removeAbandonedUploads(System.currentTimeMillis());
+            if (removed > 0) {
+                log.info("Removed {} abandoned attachment uploads", removed);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to remove abandoned attachment uploads", e);
+        }
+    }
+
+    // A chunk touches the part file, a fresh upload without chunks only has its sidecar
+    private FileTime lastActivity(Upload upload) throws IOException {
+        FileTime part = Files.getLastModifiedTime(partPath(upload.uploadId()));
+        FileTime meta = Files.getLastModifiedTime(metaPath(upload.uploadId()));
+        return part.compareTo(meta) > 0 ? part : meta;
+    }
+
+    // Another request is already writing this upload when the lock is taken
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            return null;
+        }
+    }
+
+    private static String sha256(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private Path partPath(String uploadId) {
+        return uploadsDir.resolve(uploadId + ".part");
+    }
+
+    private Path metaPath(String uploadId) {
+        return uploadsDir.resolve(uploadId + ".meta");
+    }
+
+    // Fanned out over 256 directories so no single directory grows huge
+    private Path blobPath(String hash) {
+        return blobsDir.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private static boolean isUuid(String value) {
+        try {
+            return value != null && UUID.fromString(value).toString().equals(value);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        cleaner.shutdown();
+        cleaner.awaitTermination(5, TimeUnit.SECONDS);
+    }
+}
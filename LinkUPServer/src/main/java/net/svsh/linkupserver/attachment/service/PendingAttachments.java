@@ -0,0 +1,97 @@
+package net.svsh.linkupserver.attachment.service;
+
+import net.svsh.linkupserver.attachment.Attachment;
+import net.svsh.linkupserver.attachment.AttachmentRepository;
+import net.svsh.linkupserver.chat.MessageRepository;
+import net.svsh.linkupserver.chat.persistence.MessageIdAllocator;
+import net.svsh.linkupserver.datasource.PrimaryReads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Files completed for a message whose row the write-behind queue has not written yet, on this node or another.
+// The attachment row references messages(id), so it is saved once the message shows up on the primary and the
+// caller turns out to be its sender. A message that is still missing grace-ms after its id's send time was lost
+// or dead-lettered and its files are dropped unattached. Held in memory only, a restart drops them as well.
+@Component
+public class PendingAttachments implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(PendingAttachments.class);
+
+    private final MessageRepository messageRepository;
+    private final AttachmentRepository attachmentRepository;
+    private final long graceMillis;
+    private final Queue<Pending> pending = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService retrier;
+
+    public PendingAttachments(MessageRepository messageRepository,
+                              AttachmentRepository attachmentRepository,
+                              @Value("${linkup.attachments.pending-message-grace-ms:60000}") long graceMillis,
+                              @Value("${linkup.attachments.pending-retry-interval-ms:250}") long retryIntervalMillis) {
+        this.messageRepository = messageRepository;
+        this.attachmentRepository = attachmentRepository;
+        this.graceMillis = graceMillis;
+        this.retrier = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "attachment-pending-retrier");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.retrier.scheduleWithFixedDelay(this::retry, retryIntervalMillis, retryIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Asked on the primary, a replica can lag behind the write-behind flush as well
+    public boolean isSender(long messageId, String email) {
+        return PrimaryReads.call(() -> messageRepository.isSender(messageId, email));
+    }
+
+    // Only an id allocated within the grace window can still be on its way, any other unknown id is not a message
+    public boolean mayStillArrive(long messageId) {
+        return Math.abs(System.currentTimeMillis() - MessageIdAllocator.millisOf(messageId)) <= graceMillis;
+    }
+
+    public void defer(long messageId, String email, String fileUrl, String fileType) {
+        pending.add(new Pending(messageId, email, fileUrl, fileType, MessageIdAllocator.millisOf(messageId) + graceMillis));
+    }
+
+    void retry() {
+        long now = System.currentTimeMillis();
+        for (Iterator<Pending> iterator = pending.iterator(); iterator.hasNext(); ) {
+            Pending attachment = iterator.next();
+            try {
+                if (isSender(attachment.messageId(), attachment.email())) {
+                    attachmentRepository.save(new Attachment(attachment.messageId(), attachment.fileUrl(), attachment.fileType()));
+                    iterator.remove();
+                } else if (now > attachment.deadlineMillis()) {
+                    log.debug("Message {} never arrived, {} is left unattached", attachment.messageId(), attachment.fileUrl());
+                    iterator.remove();
+                }
+            } catch (RuntimeException e) {
+                log.warn("Failed to attach {} to message {}", attachment.fileUrl(), attachment.messageId(), e);
+                if (now > attachment.deadlineMillis()) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        retrier.shutdown();
+        retrier.awaitTermination(5, TimeUnit.SECONDS);
+        if (!pending.isEmpty()) {
+            log.warn("Shutting down with {} attachments still waiting for their message", pending.size());
+        }
+    }
+
+    private record Pending(long messageId, String email, String fileUrl, String fileType, long deadlineMillis) {
+    }
+}
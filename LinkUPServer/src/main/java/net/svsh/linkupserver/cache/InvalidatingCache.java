@@ -0,0 +1,48 @@
+package net.svsh.linkupserver.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+// A Caffeine cache for values read from the database, which get(key, loader) would read under the lock of the
+// key's hash bin: a blocking query there pins the virtual thread and stalls every other key in the bin. Here
+// the caller's thread loads after a miss and puts the value, two threads may load the same key at once.
+// Every invalidate bumps a generation, a load that overlapped one may have read the row from before the change
+// and is handed to its caller without being kept.
+public final class InvalidatingCache<K, V> {
+
+    private final Cache<K, V> cache;
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public InvalidatingCache(Cache<K, V> cache) {
+        this.cache = cache;
+    }
+
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        V value = cache.getIfPresent(key);
+        if (value == null) {
+            long generation = invalidations.get();
+            value = loader.apply(key);
+            cache.put(key, value);
+            if (invalidations.get() != generation) {
+                cache.invalidate(key);
+            }
+        }
+        return value;
+    }
+
+    public void invalidate(K key) {
+        invalidations.incrementAndGet();
+        cache.invalidate(key);
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long estimatedSize() {
+        return cache.estimatedSize();
+    }
+}
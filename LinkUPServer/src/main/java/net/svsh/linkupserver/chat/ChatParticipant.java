@@ -0,0 +1,29 @@
+package net.svsh.linkupserver.chat;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "chat_participants")
+public class ChatParticipant {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "chat_id")
+    private Long chatId;
+
+    @Column(name = "user_id")
+    private Long userId;
+
+    public ChatParticipant(Long chatId, Long userId) {
+        this.chatId = chatId;
+        this.userId = userId;
+    }
+}
@@ -0,0 +1,28 @@
+package net.svsh.linkupserver.chat;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+@Transactional(readOnly = true)
+public interface ChatParticipantRepository extends JpaRepository<ChatParticipant, Long> {
+    @Query("SELECT p.chatId FROM ChatParticipant p WHERE p.userId = :userId")
+    List<Long> findChatIdsByUserId(@Param("userId") Long userId);
+
+    List<ChatParticipant> findByUserIdIn(Collection<Long> userIds);
+
+    @Query("SELECT p.userId FROM ChatParticipant p WHERE p.chatId = :chatId")
+    List<Long> findUserIdsByChatId(@Param("chatId") Long chatId);
+
+    boolean existsByChatIdAndUserId(Long chatId, Long userId);
+
+    @Query("SELECT CASE WHEN COUNT(p) > 0 THEN true ELSE false END FROM ChatParticipant p, User u " +
+            "WHERE p.userId = u.id AND p.chatId = :chatId AND u.email = :email")
+    boolean isParticipant(@Param("chatId") Long chatId, @Param("email") String email);
+}
@@ -0,0 +1,10 @@
+package net.svsh.linkupserver.chat;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+@Transactional(readOnly = true)
+public interface ChatRepository extends JpaRepository<Chat, Long> {
+}
@@ -0,0 +1,6 @@
+package net.svsh.linkupserver.chat;
+
+public enum ChatType {
+    INDIVIDUAL,
+    GROUP
+}
@@ -0,0 +1,9 @@
+package net.svsh.linkupserver.chat;
+
+// How a chat's new messages reach its participants' inboxes, chosen per chat by FanoutPolicy
+public enum FanoutMode {
+    // Copied into every participant's inbox row
+    WRITE,
+    // Only kept in the chat's shared head row, which inbox reads join in
+    READ
+}
@@ -0,0 +1,40 @@
+package net.svsh.linkupserver.chat;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "messages")
+public class Message {
+    // Assigned by MessageIdAllocator, rows are inserted by MessageWriteBehindQueue
+    @Id
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "sender_id")
+    private Long senderId;
+
+    @Column(name = "chat_id")
+    private Long chatId;
+
+    @Column(name = "content")
+    private String content;
+
+    @Column(name = "sent_at")
+    private Instant sentAt;
+
+    public Message(Long id, Long senderId, Long chatId, String content, Instant sentAt) {
+        this.id = id;
+        this.senderId = senderId;
+        this.chatId = chatId;
+        this.content = content;
+        this.sentAt = sentAt;
+    }
+}
@@ -0,0 +1,31 @@
+package net.svsh.linkupserver.chat;
+
+import net.svsh.linkupserver.chat.dto.MessageView;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+@Transactional(readOnly = true)
+public interface MessageRepository extends JpaRepository<Message, Long> {
+    // Keyset page over idx_messages_chat_id_id, newest first, cost does not grow with history size
+    @Query("SELECT new net.svsh.linkupserver.chat.dto.MessageView(m.id, m.chatId, m.senderId, m.content, m.sentAt) " +
+            "FROM Message m WHERE m.chatId = :chatId AND m.id < :beforeId ORDER BY m.id DESC")
+    List<MessageView> findHistory(@Param("chatId") Long chatId, @Param("beforeId") Long beforeId, Pageable pageable);
+
+    // Primary key lookups for the ids a search or the change log returned, callers run it inside PrimaryReads
+    @Query("SELECT new net.svsh.linkupserver.chat.dto.MessageView(m.id, m.chatId, m.senderId, m.content, m.sentAt) " +
+            "FROM Message m WHERE m.id IN :ids ORDER BY m.id DESC")
+    List<MessageView> findViewsByIds(@Param("ids") List<Long> ids);
+
+    // On the primary, the sender usually asks right after the message was written
+    @Transactional
+    @Query("SELECT CASE WHEN COUNT(m) > 0 THEN true ELSE false END FROM Message m, User u " +
+            "WHERE m.senderId = u.id AND m.id = :messageId AND u.email = :email")
+    boolean isSender(@Param("messageId") Long messageId, @Param("email") String email);
+}
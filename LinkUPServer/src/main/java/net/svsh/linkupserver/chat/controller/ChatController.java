@@ -0,0 +1,25 @@
+package net.svsh.linkupserver.chat.controller;
+
+import net.svsh.linkupserver.chat.dto.ChatResponse;
+import net.svsh.linkupserver.chat.service.ChatService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+public class ChatController {
+
+    @Autowired
+    private ChatService chatService;
+
+    @RequestMapping(value = "api/chats/{chatId}/messages", method = RequestMethod.GET)
+    public ResponseEntity<ChatResponse> getHistory(@PathVariable Long chatId,
+                                                   @RequestParam(required = false) Long before,
+                                                   @RequestParam(required = false) Integer limit) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        ChatResponse response = chatService.getHistory(auth.getName(), chatId, before, limit);
+        return ResponseEntity.status(response.getStatusCode()).body(response);
+    }
+}
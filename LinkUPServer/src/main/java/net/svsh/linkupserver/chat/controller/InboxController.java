@@ -0,0 +1,32 @@
+package net.svsh.linkupserver.chat.controller;
+
+import net.svsh.linkupserver.chat.dto.InboxResponse;
+import net.svsh.linkupserver.chat.service.InboxService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+public class InboxController {
+
+    @Autowired
+    private InboxService inboxService;
+
+    @RequestMapping(value = "api/inbox", method = RequestMethod.GET)
+    public ResponseEntity<InboxResponse> getInbox(@RequestParam(required = false) Long before,
+                                                  @RequestParam(required = false) Long beforeChat,
+                                                  @RequestParam(required = false) Integer limit) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        InboxResponse response = inboxService.getInbox(auth.getName(), before, beforeChat, limit);
+        return ResponseEntity.status(response.getStatusCode()).body(response);
+    }
+
+    @RequestMapping(value = "api/inbox/{chatId}/read", method = RequestMethod.POST)
+    public ResponseEntity<InboxResponse> markRead(@PathVariable Long chatId, @RequestParam Long messageId) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        InboxResponse response = inboxService.markRead(auth.getName(), chatId, messageId);
+        return ResponseEntity.status(response.getStatusCode()).body(response);
+    }
+}
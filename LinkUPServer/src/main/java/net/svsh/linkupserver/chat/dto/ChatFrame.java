@@ -0,0 +1,62 @@
+package net.svsh.linkupserver.chat.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import net.svsh.linkupserver.chat.Message;
+
+// A single JSON frame exchanged over the chat WebSocket
+@Data
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ChatFrame {
+    public static final String SEND = "SEND";
+    public static final String MESSAGE = "MESSAGE";
+    public static final String ERROR = "ERROR";
+    public static final String HEARTBEAT = "HEARTBEAT";
+    public static final String PRESENCE = "PRESENCE";
+    public static final String READ = "READ";
+
+    private String type;
+    private Long chatId;
+    private Long messageId;
+    private Long senderId;
+    private String content;
+    private Long sentAt;
+    private String clientId;
+    private String error;
+    private Long userId;
+    private Boolean online;
+    private Long lastSeen;
+
+    public static ChatFrame message(Message message, String clientId) {
+        ChatFrame frame = new ChatFrame();
+        frame.setType(MESSAGE);
+        frame.setChatId(message.getChatId());
+        frame.setMessageId(message.getId());
+        frame.setSenderId(message.getSenderId());
+        frame.setContent(message.getContent());
+        frame.setSentAt(message.getSentAt().toEpochMilli());
+        frame.setClientId(clientId);
+        return frame;
+    }
+
+    public static ChatFrame error(String clientId, String error) {
+        ChatFrame frame = new ChatFrame();
+        frame.setType(ERROR);
+        frame.setClientId(clientId);
+        frame.setError(error);
+        return frame;
+    }
+
+    public static ChatFrame presence(long userId, boolean online, long lastSeen) {
+        ChatFrame frame = new ChatFrame();
+        frame.setType(PRESENCE);
+        frame.setUserId(userId);
+        frame.setOnline(online);
+        frame.setLastSeen(lastSeen);
+        return frame;
+    }
+}
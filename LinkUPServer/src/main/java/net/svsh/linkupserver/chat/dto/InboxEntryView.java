@@ -0,0 +1,18 @@
+package net.svsh.linkupserver.chat.dto;
+
+import java.time.Instant;
+
+// One chat of a user's chat list, read from the user's inbox row or, for large chats, the shared chat head
+public record InboxEntryView(Long chatId,
+                             String name,
+                             String type,
+                             Long lastMessageId,
+                             Long lastSenderId,
+                             String lastPreview,
+                             Instant lastMessageAt,
+                             int unreadCount) {
+
+    public InboxEntryView withUnreadCount(int unreadCount) {
+        return new InboxEntryView(chatId, name, type, lastMessageId, lastSenderId, lastPreview, lastMessageAt, unreadCount);
+    }
+}
@@ -0,0 +1,7 @@
+package net.svsh.linkupserver.chat.dto;
+
+import java.time.Instant;
+
+// Read-only projection of a messages row, selected directly so history pages never load entities
+public record MessageView(Long id, Long chatId, Long senderId, String content, Instant sentAt) {
+}
@@ -0,0 +1,13 @@
+package net.svsh.linkupserver.chat.gateway;
+
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Set;
+
+// An open, authenticated WebSocket together with the chats its user takes part in
+public record ChatConnection(WebSocketSession session, Long userId, Set<Long> chatIds) {
+
+    public boolean isMember(Long chatId) {
+        return chatIds.contains(chatId);
+    }
+}
@@ -0,0 +1,72 @@
+package net.svsh.linkupserver.chat.gateway;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Delivers messages off the sender's thread. Each chat is pinned to one lane so its messages stay in order.
+@Component
+public class ChatDispatcher implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatDispatcher.class);
+
+    @Autowired
+    private ChatSessionRegistry chatSessionRegistry;
+
+    @Autowired
+    private ChatSessionCloser chatSessionCloser;
+
+    private final ExecutorService[] lanes;
+
+    public ChatDispatcher(@Value("${linkup.chat.dispatch.lanes:4}") int laneCount) {
+        this.lanes = new ExecutorService[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            int lane = i;
+            lanes[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "chat-dispatch-" + lane);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public void dispatch(Long chatId, TextMessage payload) {
+        lanes[Math.floorMod(chatId.hashCode(), lanes.length)].execute(() -> deliver(chatId, payload));
+    }
+
+    private void deliver(Long chatId, TextMessage payload) {
+        for (WebSocketSession session : chatSessionRegistry.sessionsOf(chatId)) {
+            try {
+                // Sessions are ConcurrentWebSocketSessionDecorators, a slow client buffers instead of stalling the lane
+                session.sendMessage(payload);
+            } catch (Exception e) {
+                // Usually a client that went away or stopped reading, not worth more than debug
+                log.debug("Dropping session {} of chat {} after a failed send", session.getId(), chatId, e);
+                chatSessionCloser.closed(session.getId());
+                // Closed as well, a client left registered nowhere would think it is still receiving
+                try {
+                    session.close(CloseStatus.SESSION_NOT_RELIABLE);
+                } catch (IOException closeFailed) {
+                    log.debug("Failed to close session {}", session.getId(), closeFailed);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package net.svsh.linkupserver.chat.gateway;
+
+import net.svsh.linkupserver.cluster.UserNodeDirectory;
+import net.svsh.linkupserver.presence.service.PresenceRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+// Everything a closed session has to undo, whether the client closed it or a failed send gave up on it.
+// Only the call that unregisters the session does the rest, so closing it twice is harmless
+@Component
+public class ChatSessionCloser {
+
+    @Autowired
+    private ChatSessionRegistry chatSessionRegistry;
+
+    @Autowired
+    private UserNodeDirectory userNodeDirectory;
+
+    @Autowired
+    private PresenceRegistry presenceRegistry;
+
+    public void closed(String sessionId) {
+        ChatConnection connection = chatSessionRegistry.unregister(sessionId);
+        if (connection != null && chatSessionRegistry.connectionsOf(connection.userId()).isEmpty()) {
+            userNodeDirectory.leave(connection.userId());
+            presenceRegistry.disconnect(connection.userId());
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package net.svsh.linkupserver.chat.gateway;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// In-memory index of which open sessions belong to which chat, used for fan-out without touching the DB
+@Component
+public class ChatSessionRegistry {
+
+    private final ConcurrentHashMap<String, ChatConnection> connections = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Set<WebSocketSession>> sessionsByChat = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Set<ChatConnection>> connectionsByUser = new ConcurrentHashMap<>();
+
+    public ChatConnection register(WebSocketSession session, Long userId, Collection<Long> chatIds) {
+        Set<Long> memberships = ConcurrentHashMap.newKeySet();
+        memberships.addAll(chatIds);
+
+        ChatConnection connection = new ChatConnection(session, userId, memberships);
+        connections.put(session.getId(), connection);
+        addTo(connectionsByUser, userId, connection);
+        for (Long chatId : memberships) {
+            addTo(sessionsByChat, chatId, session);
+        }
+        return connection;
+    }
+
+    public ChatConnection get(String sessionId) {
+        return connections.get(sessionId);
+    }
+
+    // Returns the connection it removed, null when the session was not registered (any more)
+    public ChatConnection unregister(String sessionId) {
+        ChatConnection connection = connections.remove(sessionId);
+        if (connection == null) {
+            return null;
+        }
+
+        removeFrom(connectionsByUser, connection.userId(), connection);
+        for (Long chatId : connection.chatIds()) {
+            removeFrom(sessionsByChat, chatId, connection.session());
+        }
+        return connection;
+    }
+
+    // Adds a new participant's open sessions to a chat, e.g. when they are added to a group
+    public void join(Long chatId, Long userId) {
+        for (ChatConnection connection : connectionsByUser.getOrDefault(userId, Collections.emptySet())) {
+            connection.chatIds().add(chatId);
+            addTo(sessionsByChat, chatId, connection.session());
+        }
+    }
+
+    public void leave(Long chatId, Long userId) {
+        for (ChatConnection connection : connectionsByUser.getOrDefault(userId, Collections.emptySet())) {
+            connection.chatIds().remove(chatId);
+            removeFrom(sessionsByChat, chatId, connection.session());
+        }
+    }
+
+    public Set<WebSocketSession> sessionsOf(Long chatId) {
+        return sessionsByChat.getOrDefault(chatId, Collections.emptySet());
+    }
+
+    public Set<ChatConnection> connectionsOf(Long userId) {
+        return connectionsByUser.getOrDefault(userId, Collections.emptySet());
+    }
+
+    public int connectionCount() {
+        return connections.size();
+    }
+
+    // Adds inside compute, so it cannot land in a set that removeFrom just dropped from the map
+    private static <K, V> void addTo(ConcurrentHashMap<K, Set<V>> index, K key, V value) {
+        index.compute(key, (k, values) -> {
+            Set<V> updated = values == null ? ConcurrentHashMap.newKeySet() : values;
+            updated.add(value);
+            return updated;
+        });
+    }
+
+    // Drops the key once its set is empty so chats with nobody online do not leak entries
+    private static <K, V> void removeFrom(ConcurrentHashMap<K, Set<V>> index, K key, V value) {
+        index.computeIfPresent(key, (k, values) -> {
+            values.remove(value);
+            return values.isEmpty() ? null : values;
+        });
+    }
+}
@@ -0,0 +1,138 @@
+package net.svsh.linkupserver.chat.gateway;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.svsh.linkupserver.chat.Message;
+import net.svsh.linkupserver.chat.dto.ChatFrame;
+import net.svsh.linkupserver.chat.readstate.ReadStateRegistry;
+import net.svsh.linkupserver.chat.service.ChatService;
+import net.svsh.linkupserver.cluster.ClusterFanout;
+import net.svsh.linkupserver.cluster.UserNodeDirectory;
+import net.svsh.linkupserver.presence.service.PresenceRegistry;
+import net.svsh.linkupserver.security.ratelimit.RateLimitGroup;
+import net.svsh.linkupserver.security.ratelimit.RateLimiter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+
+@Component
+public class ChatWebSocketHandler extends TextWebSocketHandler {
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private ChatSessionRegistry chatSessionRegistry;
+
+    @Autowired
+    private ChatSessionCloser chatSessionCloser;
+
+    @Autowired
+    private ClusterFanout clusterFanout;
+
+    @Autowired
+    private UserNodeDirectory userNodeDirectory;
+
+    @Autowired
+    private PresenceRegistry presenceRegistry;
+
+    @Autowired
+    private ReadStateRegistry readStateRegistry;
+
+    @Autowired
+    private RateLimiter rateLimiter;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${linkup.chat.send-time-limit-ms:10000}")
+    private int sendTimeLimit;
+
+    @Value("${linkup.chat.buffer-size-limit:524288}")
+    private int bufferSizeLimit;
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        Long userId = (Long) session.getAttributes().get(JWTHandshakeInterceptor.USER_ID);
+        WebSocketSession concurrentSession = new ConcurrentWebSocketSessionDecorator(session, sendTimeLimit, bufferSizeLimit);
+        chatSessionRegistry.register(concurrentSession, userId, chatService.getChatIds(userId));
+        userNodeDirectory.join(userId);
+        presenceRegistry.heartbeat(userId);
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage textMessage) throws IOException {
+        ChatConnection connection = chatSessionRegistry.get(session.getId());
+        if (connection == null) {
+            return;
+        }
+
+        ChatFrame frame;
+        try {
+            frame = objectMapper.readValue(textMessage.getPayload(), ChatFrame.class);
+        } catch (IOException e) {
+            reply(connection, ChatFrame.error(null, "Malformed frame"));
+            return;
+        }
+
+        if (ChatFrame.HEARTBEAT.equals(frame.getType())) {
+            presenceRegistry.heartbeat(connection.userId());
+            return;
+        }
+
+        // Sent while scrolling, so it is only absorbed into the cursor and never answered
+        if (ChatFrame.READ.equals(frame.getType()) && frame.getChatId() != null && frame.getMessageId() != null) {
+            if (connection.isMember(frame.getChatId())) {
+                readStateRegistry.markRead(connection.userId(), frame.getChatId(), frame.getMessageId());
+            }
+            return;
+        }
+
+        if (!ChatFrame.SEND.equals(frame.getType()) || frame.getChatId() == null
+                || frame.getContent() == null || frame.getContent().isBlank()) {
+            reply(connection, ChatFrame.error(frame.getClientId(), "Invalid frame"));
+            return;
+        }
+
+        if (!connection.isMember(frame.getChatId())) {
+            reply(connection, ChatFrame.error(frame.getClientId(), "Not a participant of chat " + frame.getChatId()));
+            return;
+        }
+
+        // Sends bypass the HTTP filter chain once the socket is open, so they are limited per user here
+        if (rateLimiter.tryAcquire(RateLimitGroup.SEND, "user:" + connection.userId()) > 0) {
+            reply(connection, ChatFrame.error(frame.getClientId(), "Rate limit exceeded, retry later"));
+            return;
+        }
+
+        Message message;
+        try {
+            message = chatService.sendMessage(connection.userId(), frame.getChatId(), frame.getContent());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (message == null) {
+            reply(connection, ChatFrame.error(frame.getClientId(), "Server busy, retry later"));
+            return;
+        }
+
+        TextMessage payload = new TextMessage(objectMapper.writeValueAsString(ChatFrame.message(message, frame.getClientId())));
+        clusterFanout.publish(message, payload);
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        chatSessionCloser.closed(session.getId());
+    }
+
+    private void reply(ChatConnection connection, ChatFrame frame) throws IOException {
+        connection.session().sendMessage(new TextMessage(objectMapper.writeValueAsString(frame)));
+    }
+}
@@ -0,0 +1,76 @@
+package net.svsh.linkupserver.chat.gateway;
+
+import net.svsh.linkupserver.security.jwt.ParsedToken;
+import net.svsh.linkupserver.security.jwt.VerifiedTokenCache;
+import net.svsh.linkupserver.security.token.RevocationList;
+import net.svsh.linkupserver.user.User;
+import net.svsh.linkupserver.user.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.Map;
+import java.util.Optional;
+
+@Component
+public class JWTHandshakeInterceptor implements HandshakeInterceptor {
+
+    public static final String USER_ID = "userId";
+    public static final String EMAIL = "email";
+
+    @Autowired
+    private VerifiedTokenCache verifiedTokenCache;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RevocationList revocationList;
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        String token = extractToken(request);
+        if (token == null) {
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+
+        try {
+            ParsedToken parsedToken = verifiedTokenCache.verify(token);
+            Optional<User> user = parsedToken.isExpired() || parsedToken.refresh() || revocationList.isRevoked(parsedToken.sessionId())
+                    ? Optional.empty()
+                    : userRepository.findByEmail(parsedToken.subject());
+            if (user.isEmpty()) {
+                response.setStatusCode(HttpStatus.UNAUTHORIZED);
+                return false;
+            }
+
+            attributes.put(USER_ID, user.get().getId());
+            attributes.put(EMAIL, user.get().getEmail());
+            return true;
+        } catch (Exception e) {
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+
+    // Browsers cannot set headers on a WebSocket upgrade, so the token may also come as a query parameter
+    private static String extractToken(ServerHttpRequest request) {
+        String authHeader = request.getHeaders().getFirst("Authorization");
+        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            return authHeader.substring(7);
+        }
+        return UriComponentsBuilder.fromUri(request.getURI()).build().getQueryParams().getFirst("token");
+    }
+}
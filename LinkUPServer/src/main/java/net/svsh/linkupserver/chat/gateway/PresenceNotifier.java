@@ -0,0 +1,66 @@
+package net.svsh.linkupserver.chat.gateway;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.svsh.linkupserver.chat.dto.ChatFrame;
+import net.svsh.linkupserver.chat.service.ChatService;
+import net.svsh.linkupserver.cluster.ClusterFanout;
+import net.svsh.linkupserver.presence.service.PresenceChange;
+import net.svsh.linkupserver.presence.service.PresenceListener;
+import net.svsh.linkupserver.presence.service.PresenceRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.List;
+import java.util.Map;
+
+// Pushes PRESENCE frames to every chat the user takes part in when they come online or go offline
+@Component
+public class PresenceNotifier implements PresenceListener, InitializingBean {
+
+    private static final Logger log = LoggerFactory.getLogger(PresenceNotifier.class);
+
+    @Autowired
+    private PresenceRegistry presenceRegistry;
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private ClusterFanout clusterFanout;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Override
+    public void afterPropertiesSet() {
+        presenceRegistry.subscribe(this);
+    }
+
+    // One participant query for the whole batch instead of one per change
+    @Override
+    public void onPresenceChanges(List<PresenceChange> changes) {
+        Map<Long, List<Long>> chatIds = chatService.getChatIds(changes.stream().map(PresenceChange::userId).toList());
+        for (PresenceChange change : changes) {
+            List<Long> chats = chatIds.getOrDefault(change.userId(), List.of());
+            if (chats.isEmpty()) {
+                continue;
+            }
+            TextMessage payload;
+            try {
+                payload = new TextMessage(objectMapper.writeValueAsString(
+                        ChatFrame.presence(change.userId(), change.online(), change.lastSeenMillis())));
+            } catch (JsonProcessingException e) {
+                log.error("Failed to serialize presence of user {}", change.userId(), e);
+                continue;
+            }
+            for (Long chatId : chats) {
+                clusterFanout.publish(chatId, payload);
+            }
+        }
+    }
+}
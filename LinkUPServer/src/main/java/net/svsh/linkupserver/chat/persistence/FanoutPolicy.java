@@ -0,0 +1,58 @@
+package net.svsh.linkupserver.chat.persistence;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import net.svsh.linkupserver.cache.InvalidatingCache;
+import net.svsh.linkupserver.chat.FanoutMode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+// Picks fan-out on write for chats below read-threshold participants and fan-out on read from there on.
+// A chat only goes back to writes below three quarters of the threshold, so one hovering around it does not
+// switch, and rewrite every participant's inbox row, on each join and leave.
+@Component
+public class FanoutPolicy {
+
+    private static final String COUNT_PARTICIPANTS = "SELECT COUNT(*) FROM chat_participants WHERE chat_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int readThreshold;
+    private final InvalidatingCache<Long, Integer> participantCounts = new InvalidatingCache<>(Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterWrite(Duration.ofMinutes(1))
+            .build());
+
+    public FanoutPolicy(JdbcTemplate jdbcTemplate,
+                        @Value("${linkup.chat.fanout.read-threshold:500}") int readThreshold) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.readThreshold = readThreshold;
+    }
+
+    public int readThreshold() {
+        return readThreshold;
+    }
+
+    public int participantCount(long chatId) {
+        return participantCounts.get(chatId, id -> jdbcTemplate.queryForObject(COUNT_PARTICIPANTS, Integer.class, id));
+    }
+
+    // Live delivery keeps no per-participant state, so it follows the threshold without hysteresis
+    public boolean isLarge(long chatId) {
+        return participantCount(chatId) >= readThreshold;
+    }
+
+    public FanoutMode next(long chatId, FanoutMode current) {
+        int participants = participantCount(chatId);
+        if (current == FanoutMode.READ) {
+            return participants < readThreshold - readThreshold / 4 ? FanoutMode.WRITE : FanoutMode.READ;
+        }
+        return participants >= readThreshold ? FanoutMode.READ : FanoutMode.WRITE;
+    }
+
+    // Called when chat membership changes so the next message is counted against the new size
+    public void invalidate(long chatId) {
+        participantCounts.invalidate(chatId);
+    }
+}
@@ -0,0 +1,9 @@
+package net.svsh.linkupserver.chat.persistence;
+
+public record FanoutStats(int readThreshold,
+                          long writeFanouts,
+                          long readFanouts,
+                          long inboxRowWrites,
+                          long switchedToRead,
+                          long switchedToWrite) {
+}
@@ -0,0 +1,77 @@
+package net.svsh.linkupserver.chat.persistence;
+
+import net.svsh.linkupserver.chat.dto.InboxEntryView;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// Reads one page of a user's chat list from both fan-out modes: the user's own inbox rows for chats that fan out
+// on write, and the shared head rows of the large chats they are in. Both sides are keyset scans ordered the
+// same way, merged here. Unread counts are left at 0 for the caller to fill in.
+@Component
+public class InboxReader {
+
+    private static final Comparator<InboxEntryView> NEWEST_FIRST = Comparator
+            .comparing(InboxEntryView::lastMessageId, Comparator.reverseOrder())
+            .thenComparing(InboxEntryView::chatId, Comparator.reverseOrder());
+
+    // Range scan on idx_inbox_user_last_message, the joins are primary key lookups per row.
+    // Rows of chats that fan out on read are stale and skipped, their head stands in for them.
+    private static final String SELECT_OWN_ROWS =
+            "SELECT i.chat_id, c.name, c.type, i.last_message_id, i.last_sender_id, i.last_preview, i.last_message_at " +
+            "FROM inbox i JOIN chats c ON c.id = i.chat_id LEFT JOIN chat_heads h ON h.chat_id = i.chat_id " +
+            "WHERE i.user_id = ? AND (h.fanout IS NULL OR h.fanout = 'WRITE') " +
+            "AND (i.last_message_id < ? OR (i.last_message_id = ? AND i.chat_id < ?)) " +
+            "ORDER BY i.last_message_id DESC, i.chat_id DESC " +
+            "LIMIT ?";
+    // Range scan on idx_chat_participants_user_fanout, which reads only the large chats the user is in, few even
+    // for heavy users, never all of their chats. The head's mode is checked too while a switch is being reconciled
+    private static final String SELECT_SHARED_HEADS =
+            "SELECT h.chat_id, c.name, c.type, h.last_message_id, h.last_sender_id, h.last_preview, h.last_message_at " +
+            "FROM chat_participants p JOIN chat_heads h ON h.chat_id = p.chat_id JOIN chats c ON c.id = h.chat_id " +
+            "WHERE p.user_id = ? AND p.fanout = 'READ' AND h.fanout = 'READ' " +
+            "AND (h.last_message_id < ? OR (h.last_message_id = ? AND h.chat_id < ?)) " +
+            "ORDER BY h.last_message_id DESC, h.chat_id DESC " +
+            "LIMIT ?";
+    private static final RowMapper<InboxEntryView> ENTRY = (rs, rowNum) -> {
+        Timestamp lastMessageAt = rs.getTimestamp("last_message_at");
+        long lastSenderId = rs.getLong("last_sender_id");
+        return new InboxEntryView(
+                rs.getLong("chat_id"),
+                rs.getString("name"),
+                rs.getString("type"),
+                rs.getLong("last_message_id"),
+                rs.wasNull() ? null : lastSenderId,
+                rs.getString("last_preview"),
+                lastMessageAt == null ? null : lastMessageAt.toInstant(),
+                0);
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public InboxReader(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Newest chats first, strictly after the (message id, chat id) cursor
+    public List<InboxEntryView> page(long userId, long messageCursor, long chatCursor, int limit) {
+        List<InboxEntryView> own = jdbcTemplate.query(SELECT_OWN_ROWS, ENTRY,
+                userId, messageCursor, messageCursor, chatCursor, limit);
+        List<InboxEntryView> shared = jdbcTemplate.query(SELECT_SHARED_HEADS, ENTRY,
+                userId, messageCursor, messageCursor, chatCursor, limit);
+        if (shared.isEmpty()) {
+            return own;
+        }
+
+        List<InboxEntryView> merged = new ArrayList<>(own.size() + shared.size());
+        merged.addAll(own);
+        merged.addAll(shared);
+        merged.sort(NEWEST_FIRST);
+        return merged.size() > limit ? merged.subList(0, limit) : merged;
+    }
+}
@@ -0,0 +1,213 @@
+package net.svsh.linkupserver.chat.persistence;
+
+import net.svsh.linkupserver.chat.FanoutMode;
+import net.svsh.linkupserver.chat.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Keeps the last message of every chat's head row, and of the per-user inbox rows of chats that fan out on write,
+// in step with the messages table, one batch at a time. Read cursors and unread counts are written by ReadStateRegistry.
+@Component
+public class InboxWriter implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(InboxWriter.class);
+
+    static final int PREVIEW_LENGTH = 255;
+
+    // The newest message wins when batches overlap
+    private static final String UPSERT_HEAD =
+            "INSERT INTO chat_heads (chat_id, last_message_id, last_sender_id, last_preview, last_message_at) " +
+            "VALUES (?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE " +
+            "last_sender_id = CASE WHEN VALUES(last_message_id) > last_message_id THEN VALUES(last_sender_id) ELSE last_sender_id END, " +
+            "last_preview = CASE WHEN VALUES(last_message_id) > last_message_id THEN VALUES(last_preview) ELSE last_preview END, " +
+            "last_message_at = CASE WHEN VALUES(last_message_id) > last_message_id THEN VALUES(last_message_at) ELSE last_message_at END, " +
+            "last_message_id = GREATEST(last_message_id, VALUES(last_message_id))";
+    private static final String SELECT_MODES = "SELECT chat_id, fanout FROM chat_heads WHERE chat_id IN (%s)";
+    private static final String UPDATE_MODE = "UPDATE chat_heads SET fanout = ? WHERE chat_id = ?";
+    private static final String UPDATE_PARTICIPANT_MODE = "UPDATE chat_participants SET fanout = ? WHERE chat_id = ?";
+    // Participants added to a large chat outside this server start as WRITE, only large chats are visited
+    private static final String RECONCILE_PARTICIPANT_MODES =
+            "UPDATE chat_participants p JOIN chat_heads h ON h.chat_id = p.chat_id SET p.fanout = 'READ' " +
+            "WHERE h.fanout = 'READ' AND p.fanout = 'WRITE'";
+    // Copied from the head rather than the batch, so a chat switching back to writes also picks up what
+    // other nodes wrote while it was reading. Creates rows for participants that have none yet.
+    private static final String COPY_HEAD_TO_INBOX =
+            "INSERT INTO inbox (user_id, chat_id, last_message_id, last_sender_id, last_preview, last_message_at) " +
+            "SELECT p.user_id, p.chat_id, h.last_message_id, h.last_sender_id, h.last_preview, h.last_message_at " +
+            "FROM chat_participants p JOIN chat_heads h ON h.chat_id = p.chat_id WHERE p.chat_id = ? " +
+            "ON DUPLICATE KEY UPDATE " +
+            "last_sender_id = CASE WHEN VALUES(last_message_id) > last_message_id THEN VALUES(last_sender_id) ELSE last_sender_id END, " +
+            "last_preview = CASE WHEN VALUES(last_message_id) > last_message_id THEN VALUES(last_preview) ELSE last_preview END, " +
+            "last_message_at = CASE WHEN VALUES(last_message_id) > last_message_id THEN VALUES(last_message_at) ELSE last_message_at END, " +
+            "last_message_id = GREATEST(last_message_id, VALUES(last_message_id))";
+    private static final String BACKFILL_ROWS =
+            "INSERT IGNORE INTO inbox (user_id, chat_id, last_message_id, last_read_message_id) " +
+            "SELECT p.user_id, p.chat_id, COALESCE(MAX(m.id), 0), COALESCE(MAX(m.id), 0) " +
+            "FROM chat_participants p " +
+            "LEFT JOIN inbox i ON i.user_id = p.user_id AND i.chat_id = p.chat_id " +
+            "LEFT JOIN messages m ON m.chat_id = p.chat_id " +
+            "WHERE i.user_id IS NULL " +
+            "GROUP BY p.user_id, p.chat_id";
+    private static final String BACKFILL_PREVIEWS =
+            "UPDATE inbox i JOIN messages m ON m.id = i.last_message_id " +
+            "SET i.last_sender_id = m.sender_id, i.last_preview = LEFT(m.content, " + PREVIEW_LENGTH + "), " +
+            "i.last_message_at = m.sent_at " +
+            "WHERE i.last_message_at IS NULL AND i.last_message_id > 0";
+    private static final String BACKFILL_HEADS =
+            "INSERT IGNORE INTO chat_heads (chat_id, last_message_id) " +
+            "SELECT m.chat_id, MAX(m.id) FROM messages m " +
+            "LEFT JOIN chat_heads h ON h.chat_id = m.chat_id " +
+            "WHERE h.chat_id IS NULL " +
+            "GROUP BY m.chat_id";
+    private static final String BACKFILL_HEAD_PREVIEWS =
+            "UPDATE chat_heads h JOIN messages m ON m.id = h.last_message_id " +
+            "SET h.last_sender_id = m.sender_id, h.last_preview = LEFT(m.content, " + PREVIEW_LENGTH + "), " +
+            "h.last_message_at = m.sent_at " +
+            "WHERE h.last_message_at IS NULL";
+    private static final String BACKFILL = "inbox-backfill";
+    private static final String SELECT_MIGRATION = "SELECT COUNT(*) FROM data_migrations WHERE name = ?";
+    private static final String INSERT_MIGRATION = "INSERT IGNORE INTO data_migrations (name) VALUES (?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FanoutPolicy fanoutPolicy;
+    private final long reconcileIntervalMillis;
+    private final ScheduledExecutorService reconciler;
+
+    private final LongAdder writeFanouts = new LongAdder();
+    private final LongAdder readFanouts = new LongAdder();
+    private final LongAdder inboxRowWrites = new LongAdder();
+    private final LongAdder switchedToRead = new LongAdder();
+    private final LongAdder switchedToWrite = new LongAdder();
+
+    public InboxWriter(JdbcTemplate jdbcTemplate,
+                       FanoutPolicy fanoutPolicy,
+                       @Value("${linkup.chat.fanout.reconcile-interval-ms:60000}") long reconcileIntervalMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.fanoutPolicy = fanoutPolicy;
+        this.reconcileIntervalMillis = reconcileIntervalMillis;
+        this.reconciler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "inbox-fanout-reconciler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Called inside the write-behind transaction, so an inbox never points at a message that was not stored.
+    // Every chat costs one head row, chats that fan out on write also one inbox row per participant.
+    public void apply(List<Message> batch) {
+        Map<Long, Message> latestByChat = new LinkedHashMap<>();
+        for (Message message : batch) {
+            latestByChat.merge(message.getChatId(), message,
+                    (current, candidate) -> candidate.getId() > current.getId() ? candidate : current);
+        }
+        List<Message> latest = new ArrayList<>(latestByChat.values());
+        // Head rows are locked in chat order, so two nodes flushing overlapping chats cannot deadlock
+        latest.sort(Comparator.comparing(Message::getChatId));
+        jdbcTemplate.batchUpdate(UPSERT_HEAD, latest, latest.size(), (statement, message) -> {
+            statement.setLong(1, message.getChatId());
+            statement.setLong(2, message.getId());
+            statement.setLong(3, message.getSenderId());
+            statement.setString(4, preview(message.getContent()));
+            statement.setTimestamp(5, Timestamp.from(message.getSentAt()));
+        });
+
+        // Read after the upsert, which holds the head rows' locks, so a switch made by another node is never missed
+        Map<Long, FanoutMode> modes = new HashMap<>();
+        jdbcTemplate.query(String.format(SELECT_MODES, String.join(",", Collections.nCopies(latest.size(), "?"))),
+                resultSet -> {
+                    modes.put(resultSet.getLong("chat_id"), FanoutMode.valueOf(resultSet.getString("fanout")));
+                }, latestByChat.keySet().toArray());
+
+        List<Object[]> switches = new ArrayList<>();
+        List<Long> writeChats = new ArrayList<>();
+        for (Message message : latest) {
+            long chatId = message.getChatId();
+            FanoutMode current = modes.getOrDefault(chatId, FanoutMode.WRITE);
+            FanoutMode next = fanoutPolicy.next(chatId, current);
+            if (next != current) {
+                switches.add(new Object[]{next.name(), chatId});
+                (next == FanoutMode.READ ? switchedToRead : switchedToWrite).increment();
+            }
+            if (next == FanoutMode.WRITE) {
+                writeChats.add(chatId);
+                inboxRowWrites.add(fanoutPolicy.participantCount(chatId));
+            }
+        }
+        if (!switches.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_MODE, switches);
+            jdbcTemplate.batchUpdate(UPDATE_PARTICIPANT_MODE, switches);
+        }
+        if (!writeChats.isEmpty()) {
+            jdbcTemplate.batchUpdate(COPY_HEAD_TO_INBOX, writeChats, writeChats.size(),
+                    (statement, chatId) -> statement.setLong(1, chatId));
+        }
+        writeFanouts.add(writeChats.size());
+        readFanouts.add(latest.size() - writeChats.size());
+    }
+
+    public FanoutStats fanoutStats() {
+        return new FanoutStats(fanoutPolicy.readThreshold(), writeFanouts.sum(), readFanouts.sum(), inboxRowWrites.sum(),
+                switchedToRead.sum(), switchedToWrite.sum());
+    }
+
+    // Existing chats get their inbox and head rows once, with everything sent before the upgrade counted as read.
+    // The backfill reads all of messages, the marker keeps later startups from repeating it. Nodes starting
+    // together may both run it, every statement in it is idempotent
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        if (jdbcTemplate.queryForObject(SELECT_MIGRATION, Integer.class, BACKFILL) == 0) {
+            if (jdbcTemplate.update(BACKFILL_ROWS) > 0) {
+                jdbcTemplate.update(BACKFILL_PREVIEWS);
+            }
+            if (jdbcTemplate.update(BACKFILL_HEADS) > 0) {
+                jdbcTemplate.update(BACKFILL_HEAD_PREVIEWS);
+            }
+            jdbcTemplate.update(INSERT_MIGRATION, BACKFILL);
+        }
+        reconciler.scheduleWithFixedDelay(this::reconcile, 0, reconcileIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // A member added to a large chat shows up in their inbox after at most one interval
+    private void reconcile() {
+        try {
+            jdbcTemplate.update(RECONCILE_PARTICIPANT_MODES);
+        } catch (RuntimeException e) {
+            log.error("Failed to reconcile participant fan-out modes", e);
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        reconciler.shutdown();
+        reconciler.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    static String preview(String content) {
+        if (content.length() <= PREVIEW_LENGTH) {
+            return content;
+        }
+        // Never cut a surrogate pair in half
+        int end = Character.isHighSurrogate(content.charAt(PREVIEW_LENGTH - 1)) ? PREVIEW_LENGTH - 1 : PREVIEW_LENGTH;
+        return content.substring(0, end);
+    }
+}
@@ -0,0 +1,68 @@
+package net.svsh.linkupserver.chat.persistence;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// Hands out message ids up front so a message can be acknowledged and delivered before its row is written.
+// An id is milliseconds since EPOCH, then the node index, then a per-millisecond sequence, so ids of all nodes
+// sort by send time and never collide. 41 + 5 + 7 bits stay below 2^53, JavaScript clients read them exactly.
+@Component
+public class MessageIdAllocator {
+
+    static final long EPOCH = Instant.parse("2025-01-01T00:00:00Z").toEpochMilli();
+    static final int NODE_BITS = 5;
+    static final int SEQUENCE_BITS = 7;
+    static final int MAX_NODES = 1 << NODE_BITS;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int TIMESTAMP_SHIFT = NODE_BITS + SEQUENCE_BITS;
+
+    private final long nodeBits;
+    private final LongSupplier clock;
+    private final AtomicLong lastId = new AtomicLong();
+
+    public MessageIdAllocator(@Value("${linkup.cluster.node-index:0}") int nodeIndex) {
+        this(nodeIndex, System::currentTimeMillis);
+    }
+
+    MessageIdAllocator(int nodeIndex, LongSupplier clock) {
+        if (nodeIndex < 0 || nodeIndex >= MAX_NODES) {
+            throw new IllegalArgumentException("Node index must be between 0 and " + (MAX_NODES - 1) + ", was " + nodeIndex);
+        }
+        this.nodeBits = (long) nodeIndex << SEQUENCE_BITS;
+        this.clock = clock;
+    }
+
+    // Lock-free. A full sequence borrows the next millisecond and a clock that steps back keeps counting
+    // from the last id, either way ids of this node only go up.
+    public long nextId() {
+        while (true) {
+            long last = lastId.get();
+            long lastMillis = last >>> TIMESTAMP_SHIFT;
+            long millis = Math.max(clock.getAsLong() - EPOCH, lastMillis);
+            long next;
+            if (millis > lastMillis) {
+                next = millis << TIMESTAMP_SHIFT | nodeBits;
+            } else if ((last & SEQUENCE_MASK) < SEQUENCE_MASK) {
+                next = last + 1;
+            } else {
+                next = (lastMillis + 1) << TIMESTAMP_SHIFT | nodeBits;
+            }
+            if (lastId.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
+
+    // Lowest id any node can allocate at the given time, for scans that start from a point in time
+    public static long firstIdAt(long epochMillis) {
+        return Math.max(0, epochMillis - EPOCH) << TIMESTAMP_SHIFT;
+    }
+
+    public static long millisOf(long id) {
+        return (id >>> TIMESTAMP_SHIFT) + EPOCH;
+    }
+}
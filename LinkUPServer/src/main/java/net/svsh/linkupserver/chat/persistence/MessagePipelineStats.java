@@ -0,0 +1,16 @@
+package net.svsh.linkupserver.chat.persistence;
+
+public record MessagePipelineStats(int queueDepth,
+                                   int queueCapacity,
+                                   long enqueued,
+                                   long rejected,
+                                   long persisted,
+                                   long batches,
+                                   long failedFlushes,
+                                   long deadLettered,
+                                   int lastBatchSize,
+                                   double averageBatchSize,
+                                   double averageFlushMillis,
+                                   double totalFlushMillis,
+                                   double maxFlushMillis) {
+}
@@ -0,0 +1,256 @@
+package net.svsh.linkupserver.chat.persistence;
+
+import net.svsh.linkupserver.chat.Message;
+import net.svsh.linkupserver.sync.Change;
+import net.svsh.linkupserver.sync.ChangeLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Acknowledges messages once they are queued and writes them to the messages table in JDBC batches.
+// The acknowledgement means accepted, not durable: if the process dies, whatever is still queued (at most
+// queue-capacity messages, normally one flush interval's worth) is lost without the sender being told.
+// A client that must not lose a message keeps it until it shows up in its next sync or history page.
+@Component
+public class MessageWriteBehindQueue implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageWriteBehindQueue.class);
+    private static final String INSERT_MESSAGE =
+            "INSERT INTO messages (id, sender_id, chat_id, content, sent_at) VALUES (?, ?, ?, ?, ?)";
+    private static final String INSERT_DEAD_LETTER =
+            "INSERT INTO message_dead_letters (message_id, sender_id, chat_id, content, sent_at, error) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final int MAX_ERROR_LENGTH = 1000;
+    private static final long MAX_RETRY_BACKOFF_MS = 5000;
+    private static final int SHUTDOWN_FLUSH_ATTEMPTS = 3;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final InboxWriter inboxWriter;
+    private final ChangeLog changeLog;
+    private final BlockingQueue<Message> queue;
+    private final int capacity;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final long offerTimeoutMillis;
+    private final long shutdownTimeoutMillis;
+    private final Thread worker;
+    private final List<PersistedMessageListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean running = true;
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder persisted = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder failedFlushes = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+    private final LongAdder flushNanos = new LongAdder();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+    private volatile int lastBatchSize;
+
+    public MessageWriteBehindQueue(JdbcTemplate jdbcTemplate,
+                                   TransactionTemplate transactionTemplate,
+                                   InboxWriter inboxWriter,
+                                   ChangeLog changeLog,
+                                   @Value("${linkup.chat.persistence.queue-capacity:50000}") int capacity,
+                                   @Value("${linkup.chat.persistence.batch-size:500}") int batchSize,
+                                   @Value("${linkup.chat.persistence.flush-interval-ms:50}") long flushIntervalMillis,
+                                   @Value("${linkup.chat.persistence.offer-timeout-ms:100}") long offerTimeoutMillis,
+                                   @Value("${linkup.chat.persistence.shutdown-timeout-ms:30000}") long shutdownTimeoutMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.inboxWriter = inboxWriter;
+        this.changeLog = changeLog;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+        this.worker = new Thread(this::run, "message-write-behind");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    // Returns false when the queue stays full for the offer timeout, the caller should ask the client to retry
+    public boolean offer(Message message) throws InterruptedException {
+        if (!running || !queue.offer(message, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+            rejected.increment();
+            return false;
+        }
+        enqueued.increment();
+        return true;
+    }
+
+    public void subscribe(PersistedMessageListener listener) {
+        listeners.add(listener);
+    }
+
+    public MessagePipelineStats stats() {
+        long batchCount = batches.sum();
+        return new MessagePipelineStats(
+                queue.size(),
+                capacity,
+                enqueued.sum(),
+                rejected.sum(),
+                persisted.sum(),
+                batchCount,
+                failedFlushes.sum(),
+                deadLettered.sum(),
+                lastBatchSize,
+                batchCount == 0 ? 0 : (double) persisted.sum() / batchCount,
+                batchCount == 0 ? 0 : flushNanos.sum() / 1_000_000.0 / batchCount,
+                flushNanos.sum() / 1_000_000.0,
+                maxFlushNanos.get() / 1_000_000.0);
+    }
+
+    private void run() {
+        List<Message> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                collect(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (!batch.isEmpty()) {
+                flushWithRetry(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    // Waits for the first message, then keeps collecting until the batch is full or the window closes
+    private void collect(List<Message> batch) throws InterruptedException {
+        Message first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        while (batch.size() < batchSize) {
+            if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || !running) {
+                return;
+            }
+            Message next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    // Keeps retrying while the server runs, a full queue then pushes back on senders instead of dropping messages.
+    // A constraint violation is about the rows, not the database, and would fail every retry: the batch is split
+    // until the offending messages are on their own and those are set aside, so one bad row cannot stall the rest.
+    private void flushWithRetry(List<Message> batch) {
+        long backoff = 50;
+        int attemptsAfterShutdown = 0;
+        while (true) {
+            try {
+                flush(batch);
+                return;
+            } catch (DataIntegrityViolationException e) {
+                failedFlushes.increment();
+                if (batch.size() == 1) {
+                    deadLetter(batch.get(0), e);
+                } else {
+                    List<Message> first = new ArrayList<>(batch.subList(0, batch.size() / 2));
+                    List<Message> second = new ArrayList<>(batch.subList(batch.size() / 2, batch.size()));
+                    flushWithRetry(first);
+                    flushWithRetry(second);
+                }
+                return;
+            } catch (RuntimeException e) {
+                failedFlushes.increment();
+                log.warn("Failed to persist {} messages, retrying in {} ms", batch.size(), backoff, e);
+                if (!running && ++attemptsAfterShutdown >= SHUTDOWN_FLUSH_ATTEMPTS) {
+                    return;
+                }
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoff = Math.min(backoff * 2, MAX_RETRY_BACKOFF_MS);
+            }
+        }
+    }
+
+    // Kept with its error for someone to look at, the dead-letter table has no foreign keys and room for any content
+    private void deadLetter(Message message, DataIntegrityViolationException cause) {
+        deadLettered.increment();
+        log.error("Message {} in chat {} from user {} was rejected by the database and set aside",
+                message.getId(), message.getChatId(), message.getSenderId(), cause);
+        String error = String.valueOf(cause.getMostSpecificCause().getMessage());
+        try {
+            jdbcTemplate.update(INSERT_DEAD_LETTER, message.getId(), message.getSenderId(), message.getChatId(),
+                    message.getContent(), Timestamp.from(message.getSentAt()),
+                    error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error);
+        } catch (RuntimeException e) {
+            log.error("Failed to dead-letter message {}, it is lost", message.getId(), e);
+        }
+    }
+
+    private void flush(List<Message> batch) {
+        long start = System.nanoTime();
+        // Messages, inbox rows and their change log entries commit together, a retried batch never inserts a message twice
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(INSERT_MESSAGE, batch, batch.size(), (statement, message) -> {
+                statement.setLong(1, message.getId());
+                statement.setLong(2, message.getSenderId());
+                statement.setLong(3, message.getChatId());
+                statement.setString(4, message.getContent());
+                statement.setTimestamp(5, Timestamp.from(message.getSentAt()));
+            });
+            inboxWriter.apply(batch);
+            changeLog.append(batch.stream().map(Change::message).toList());
+        });
+        long elapsed = System.nanoTime() - start;
+
+        persisted.add(batch.size());
+        batches.increment();
+        flushNanos.add(elapsed);
+        maxFlushNanos.accumulateAndGet(elapsed, Math::max);
+        lastBatchSize = batch.size();
+
+        // A failing listener must not make the batch look unsaved, that would insert it a second time
+        for (PersistedMessageListener listener : listeners) {
+            try {
+                listener.onPersisted(batch);
+            } catch (RuntimeException e) {
+                log.warn("Persisted message listener failed", e);
+            }
+        }
+    }
+
+    // Stops accepting messages and drains what is already queued before the datasource closes
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        worker.join(shutdownTimeoutMillis);
+        if (worker.isAlive() || !queue.isEmpty()) {
+            log.error("Message write-behind queue shut down with {} unsaved messages", queue.size());
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package net.svsh.linkupserver.chat.persistence;
+
+import net.svsh.linkupserver.chat.Message;
+
+import java.util.List;
+
+// Called on the write-behind worker after a batch has been committed, implementations must not block for long
+public interface PersistedMessageListener {
+
+    void onPersisted(List<Message> batch);
+}
@@ -0,0 +1,132 @@
+package net.svsh.linkupserver.chat.readstate;
+
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+// The newest message ids of one chat in ascending order, so an unread count is a binary search
+// instead of a COUNT over messages or a counter per participant bumped on every send.
+// The array starts small and doubles up to the capacity, most chats never need the full log.
+final class ChatLog {
+
+    private static final int INITIAL_LENGTH = 16;
+
+    private final int capacity;
+    private final ReentrantLock lock = new ReentrantLock();
+    private long[] ids;
+    private int start;
+    private int size;
+    private volatile int length;
+    private volatile boolean loaded;
+
+    ChatLog(int capacity) {
+        this.capacity = capacity;
+        this.ids = new long[Math.min(capacity, INITIAL_LENGTH)];
+        this.length = ids.length;
+    }
+
+    boolean isLoaded() {
+        return loaded;
+    }
+
+    // Ids the log has room for right now, what it costs in memory
+    int length() {
+        return length;
+    }
+
+    // Ids are allocated in order but can arrive slightly out of order from concurrent senders
+    void append(long id) {
+        lock.lock();
+        try {
+            insert(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Merges the persisted ids, newest first, with anything appended while they were being read
+    void load(List<Long> newestFirst) {
+        lock.lock();
+        try {
+            grow(size + newestFirst.size());
+            for (int i = newestFirst.size() - 1; i >= 0; i--) {
+                insert(newestFirst.get(i));
+            }
+            loaded = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // A full log whose oldest id is past the cursor can only say "at least capacity"
+    int countAfter(long cursor) {
+        lock.lock();
+        try {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (get(mid) <= cursor) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return size - low;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void insert(long id) {
+        int position = size;
+        while (position > 0 && get(position - 1) >= id) {
+            if (get(position - 1) == id) {
+                return;
+            }
+            position--;
+        }
+        if (size == ids.length) {
+            grow(size + 1);
+        }
+        if (size == ids.length) {
+            // Older than everything kept, it cannot change any count that is not already saturated
+            if (position == 0) {
+                return;
+            }
+            start = (start + 1) % ids.length;
+            size--;
+            position--;
+        }
+        for (int i = size; i > position; i--) {
+            set(i, get(i - 1));
+        }
+        set(position, id);
+        size++;
+    }
+
+    // Doubles towards the needed length, never past the capacity. Unwraps the ring, so start is 0 afterwards
+    private void grow(int needed) {
+        int grown = ids.length;
+        while (grown < needed && grown < capacity) {
+            grown = (int) Math.min(capacity, 2L * grown);
+        }
+        if (grown == ids.length) {
+            return;
+        }
+        long[] copy = new long[grown];
+        for (int i = 0; i < size; i++) {
+            copy[i] = get(i);
+        }
+        ids = copy;
+        start = 0;
+        length = grown;
+    }
+
+    private long get(int index) {
+        return ids[(start + index) % ids.length];
+    }
+
+    private void set(int index, long id) {
+        ids[(start + index) % ids.length] = id;
+    }
+}
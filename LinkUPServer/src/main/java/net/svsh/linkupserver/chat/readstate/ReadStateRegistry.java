@@ -0,0 +1,322 @@
+package net.svsh.linkupserver.chat.readstate;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import net.svsh.linkupserver.chat.Message;
+import net.svsh.linkupserver.cluster.ClusterBus;
+import net.svsh.linkupserver.cluster.ClusterEnvelope;
+import net.svsh.linkupserver.cluster.ClusterListener;
+import net.svsh.linkupserver.sync.Change;
+import net.svsh.linkupserver.sync.ChangeLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+// Read cursors and unread counts per (user, chat), kept in memory. A burst of read events only moves the
+// cursor, the flusher writes the highest cursor of each dirty (user, chat) once per interval.
+// After a restart cursors come back from inbox.last_read_message_id and unread counts from the message ids.
+// Every node keeps its own cursors, the cursors a node persists are broadcast so the others move theirs too.
+@Component
+public class ReadStateRegistry implements ClusterListener, InitializingBean, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadStateRegistry.class);
+
+    private static final String SELECT_CURSORS = "SELECT chat_id, last_read_message_id FROM inbox WHERE user_id = ?";
+    // Joined with UNION ALL for every chat whose log is not loaded yet, each part is a range scan on idx_messages_chat_id_id
+    private static final String SELECT_RECENT_IDS =
+            "(SELECT chat_id, id FROM messages WHERE chat_id = ? ORDER BY id DESC LIMIT ?)";
+    private static final String UPSERT_CURSOR =
+            "INSERT INTO inbox (user_id, chat_id, last_read_message_id, unread_count) VALUES (?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE " +
+            "unread_count = IF(VALUES(last_read_message_id) >= last_read_message_id, VALUES(unread_count), unread_count), " +
+            "last_read_message_id = GREATEST(last_read_message_id, VALUES(last_read_message_id))";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ChangeLog changeLog;
+    private final ClusterBus clusterBus;
+    private final int logCapacity;
+    private final int batchSize;
+    private final long userIdleMillis;
+    private final Map<Long, UserReadState> users = new ConcurrentHashMap<>();
+    private final Cache<Long, ChatLog> chatLogs;
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService flusher;
+
+    private final LongAdder readEvents = new LongAdder();
+    private final LongAdder persistedCursors = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder failedFlushes = new LongAdder();
+
+    public ReadStateRegistry(JdbcTemplate jdbcTemplate,
+                             ChangeLog changeLog,
+                             ClusterBus clusterBus,
+                             @Value("${linkup.chat.read-state.log-capacity:1000}") int logCapacity,
+                             @Value("${linkup.chat.read-state.max-log-ids:10000000}") long maxLogIds,
+                             @Value("${linkup.chat.read-state.log-ttl:10m}") Duration logTtl,
+                             @Value("${linkup.chat.read-state.flush-interval-ms:1000}") long flushIntervalMillis,
+                             @Value("${linkup.chat.read-state.batch-size:500}") int batchSize,
+                             @Value("${linkup.chat.read-state.user-idle-ms:600000}") long userIdleMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.changeLog = changeLog;
+        this.clusterBus = clusterBus;
+        this.logCapacity = logCapacity;
+        this.batchSize = batchSize;
+        this.userIdleMillis = userIdleMillis;
+        // Logs only mirror the messages table, dropping one just means reading it again.
+        // Expiry after write, not access, bounds how stale a log is for chats whose messages are sent through other
+        // nodes: a busy chat is read again every TTL even if a MESSAGE envelope was lost on the way.
+        // Bounded by the ids the logs hold room for, not by chats, so a few busy chats cannot take the heap.
+        this.chatLogs = Caffeine.newBuilder()
+                .maximumWeight(maxLogIds)
+                .<Long, ChatLog>weigher((chatId, chatLog) -> chatLog.length())
+                .expireAfterWrite(logTtl)
+                .build();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "read-state-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flusher.scheduleWithFixedDelay(this::flushAndSweep, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        clusterBus.subscribe(this);
+    }
+
+    // A sent message is unread for everyone but its sender, who has read the chat up to it
+    public void onMessage(Message message) {
+        onRemoteMessage(message.getChatId(), message.getId());
+        markRead(message.getSenderId(), message.getChatId(), message.getId());
+    }
+
+    // Sent through another node, which also owns moving the sender's cursor. Never touches the database,
+    // so it is safe on the cluster bus threads
+    public void onRemoteMessage(long chatId, long messageId) {
+        ChatLog chatLog = chatLogs.getIfPresent(chatId);
+        if (chatLog != null) {
+            chatLog.append(messageId);
+        }
+    }
+
+    // Only ever moves forward, events for older messages are absorbed without touching the database
+    public void markRead(long userId, long chatId, long messageId) {
+        readEvents.increment();
+        AtomicLong cursor = userState(userId).cursor(chatId);
+        long previous = cursor.getAndAccumulate(messageId, Math::max);
+        if (messageId > previous) {
+            dirty.add(key(userId, chatId));
+        }
+    }
+
+    public long cursor(long userId, long chatId) {
+        return userState(userId).cursor(chatId).get();
+    }
+
+    public int unreadCount(long userId, long chatId) {
+        return unreadCounts(userId, List.of(chatId)).get(chatId);
+    }
+
+    // One query for the logs of all chats that are not cached, however many chats the page has
+    public Map<Long, Integer> unreadCounts(long userId, Collection<Long> chatIds) {
+        UserReadState state = userState(userId);
+        Map<Long, Integer> counts = new HashMap<>();
+        chatLogs(chatIds).forEach((chatId, chatLog) -> counts.put(chatId, chatLog.countAfter(state.cursor(chatId).get())));
+        return counts;
+    }
+
+    public ReadStateStats stats() {
+        return new ReadStateStats(users.size(), chatLogs.estimatedSize(), dirty.size(),
+                readEvents.sum(), persistedCursors.sum(), batches.sum(), failedFlushes.sum());
+    }
+
+    private UserReadState userState(long userId) {
+        UserReadState state = users.get(userId);
+        if (state == null) {
+            UserReadState loaded = new UserReadState();
+            loadCursors(userId, loaded);
+            state = users.putIfAbsent(userId, loaded);
+            if (state == null) {
+                state = loaded;
+            }
+        } else if (state.stale) {
+            state.stale = false;
+            loadCursors(userId, state);
+        }
+        state.lastAccess = System.currentTimeMillis();
+        return state;
+    }
+
+    // Merged into what is in memory, a cursor moved while the query ran is kept
+    private void loadCursors(long userId, UserReadState state) {
+        jdbcTemplate.query(SELECT_CURSORS, rs -> {
+            state.cursor(rs.getLong("chat_id")).accumulateAndGet(rs.getLong("last_read_message_id"), Math::max);
+        }, userId);
+    }
+
+    private Map<Long, ChatLog> chatLogs(Collection<Long> chatIds) {
+        Map<Long, ChatLog> logs = new HashMap<>();
+        Map<Long, List<Long>> recentIds = new HashMap<>();
+        for (Long chatId : chatIds) {
+            ChatLog chatLog = chatLogs.get(chatId, id -> new ChatLog(logCapacity));
+            logs.put(chatId, chatLog);
+            if (!chatLog.isLoaded()) {
+                recentIds.put(chatId, new ArrayList<>());
+            }
+        }
+        if (recentIds.isEmpty()) {
+            return logs;
+        }
+
+        List<Object> args = new ArrayList<>(2 * recentIds.size());
+        recentIds.keySet().forEach(chatId -> {
+            args.add(chatId);
+            args.add(logCapacity);
+        });
+        String sql = String.join(" UNION ALL ", Collections.nCopies(recentIds.size(), SELECT_RECENT_IDS));
+        jdbcTemplate.query(sql, rs -> {
+            recentIds.get(rs.getLong("chat_id")).add(rs.getLong("id"));
+        }, args.toArray());
+        // Concurrent loaders are harmless, the merge drops duplicates
+        recentIds.forEach((chatId, ids) -> {
+            ChatLog chatLog = logs.get(chatId);
+            chatLog.load(ids);
+            // The weight is taken on insert, replacing the log with itself weighs it again at its loaded length
+            chatLogs.asMap().replace(chatId, chatLog, chatLog);
+        });
+        return logs;
+    }
+
+    private void flushAndSweep() {
+        try {
+            flush();
+            sweep();
+        } catch (RuntimeException e) {
+            failedFlushes.increment();
+            log.error("Failed to persist read cursors", e);
+        }
+    }
+
+    private void flush() {
+        List<long[]> batch = new ArrayList<>(batchSize);
+        for (Long key : dirty) {
+            dirty.remove(key);
+            long userId = key >>> 32;
+            long chatId = key & 0xFFFFFFFFL;
+            // The unread count is filled in by write, once the logs of the whole batch are loaded
+            batch.add(new long[]{userId, chatId, cursor(userId, chatId), 0});
+            if (batch.size() == batchSize) {
+                write(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+    }
+
+    private void write(List<long[]> batch) {
+        try {
+            countUnread(batch);
+            jdbcTemplate.batchUpdate(UPSERT_CURSOR, batch, batch.size(), (statement, row) -> {
+                statement.setLong(1, row[0]);
+                statement.setLong(2, row[1]);
+                statement.setLong(3, row[2]);
+                statement.setLong(4, row[3]);
+            });
+            // Other devices of the user pick up the coalesced cursor on their next sync, not every read event
+            changeLog.append(batch.stream().map(row -> Change.read(row[0], row[1], row[2])).toList());
+            clusterBus.broadcast(ClusterEnvelope.read(clusterBus.localNodeId(),
+                    batch.stream().map(row -> new ClusterEnvelope.ReadCursor(row[0], row[1], row[2])).toList()));
+            persistedCursors.add(batch.size());
+            batches.increment();
+        } catch (RuntimeException e) {
+            // Marked dirty again so the next interval retries with whatever the cursor has moved to by then
+            batch.forEach(row -> dirty.add(key(row[0], row[1])));
+            throw e;
+        }
+    }
+
+    // One query loads the logs of every chat in the batch that is not cached yet
+    private void countUnread(List<long[]> batch) {
+        Map<Long, ChatLog> logs = chatLogs(batch.stream().map(row -> row[1]).collect(Collectors.toSet()));
+        batch.forEach(row -> row[3] = logs.get(row[1]).countAfter(row[2]));
+    }
+
+    // Forgets users that went quiet once nothing of theirs is waiting to be written
+    private void sweep() {
+        long idleBefore = System.currentTimeMillis() - userIdleMillis;
+        users.entrySet().removeIf(entry -> entry.getValue().lastAccess < idleBefore
+                && entry.getValue().cursors.keySet().stream().noneMatch(chatId -> dirty.contains(key(entry.getKey(), chatId))));
+    }
+
+    // User and chat ids are INT columns, so both fit in one long
+    private static long key(long userId, long chatId) {
+        return userId << 32 | chatId;
+    }
+
+    // Writes what is still dirty before the datasource closes
+    @Override
+    public void destroy() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(10, TimeUnit.SECONDS);
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Read state shut down with {} unsaved cursors", dirty.size(), e);
+        }
+    }
+
+    // Cursors another node persisted. Only users already loaded here are moved, the rest read the new cursor
+    // from the database when they are first needed, so the bus thread never queries
+    @Override
+    public void onEnvelope(ClusterEnvelope envelope) {
+        if (!ClusterEnvelope.READ.equals(envelope.getType())) {
+            return;
+        }
+        for (ClusterEnvelope.ReadCursor readCursor : envelope.getReadCursors()) {
+            UserReadState state = users.get(readCursor.userId());
+            if (state != null) {
+                state.cursor(readCursor.chatId()).accumulateAndGet(readCursor.messageId(), Math::max);
+            }
+        }
+    }
+
+    // READ envelopes from the peer may have been lost, every user's cursors are read again on next use. The peer
+    // persists cursors before broadcasting them, so the reload finds what the lost envelopes carried
+    @Override
+    public void onEnvelopesMissed(String nodeId) {
+        users.values().forEach(state -> state.stale = true);
+    }
+
+    private static final class UserReadState {
+        private final Map<Long, AtomicLong> cursors = new ConcurrentHashMap<>();
+        private volatile long lastAccess;
+        private volatile boolean stale;
+
+        // Chats without a persisted cursor start unread from the beginning
+        AtomicLong cursor(long chatId) {
+            return cursors.computeIfAbsent(chatId, id -> new AtomicLong());
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package net.svsh.linkupserver.chat.readstate;
+
+public record ReadStateStats(int users,
+                             long chats,
+                             int dirtyCursors,
+                             long readEvents,
+                             long persistedCursors,
+                             long batches,
+                             long failedFlushes) {
+}
@@ -0,0 +1,95 @@
+package net.svsh.linkupserver.chat.service;
+
+import net.svsh.linkupserver.chat.ChatParticipant;
+import net.svsh.linkupserver.chat.ChatParticipantRepository;
+import net.svsh.linkupserver.chat.Message;
+import net.svsh.linkupserver.chat.MessageRepository;
+import net.svsh.linkupserver.chat.dto.ChatResponse;
+import net.svsh.linkupserver.chat.dto.MessageView;
+import net.svsh.linkupserver.chat.persistence.MessageIdAllocator;
+import net.svsh.linkupserver.chat.persistence.MessageWriteBehindQueue;
+import net.svsh.linkupserver.chat.readstate.ReadStateRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Service
+public class ChatService {
+
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+
+    @Autowired
+    private ChatParticipantRepository chatParticipantRepository;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private MessageIdAllocator messageIdAllocator;
+
+    @Autowired
+    private MessageWriteBehindQueue messageWriteBehindQueue;
+
+    @Autowired
+    private ReadStateRegistry readStateRegistry;
+
+    public List<Long> getChatIds(Long userId) {
+        return chatParticipantRepository.findChatIdsByUserId(userId);
+    }
+
+    // Chat ids of many users in one query, users without chats are left out
+    public Map<Long, List<Long>> getChatIds(Collection<Long> userIds) {
+        Map<Long, List<Long>> chatIds = new HashMap<>();
+        for (ChatParticipant participant : chatParticipantRepository.findByUserIdIn(userIds)) {
+            chatIds.computeIfAbsent(participant.getUserId(), id -> new ArrayList<>()).add(participant.getChatId());
+        }
+        return chatIds;
+    }
+
+    // Returns null when the persistence queue is saturated and the message was not accepted
+    public Message sendMessage(Long senderId, Long chatId, String content) throws InterruptedException {
+        Message message = new Message(messageIdAllocator.nextId(), senderId, chatId, content, Instant.now());
+        if (!messageWriteBehindQueue.offer(message)) {
+            return null;
+        }
+        readStateRegistry.onMessage(message);
+        return message;
+    }
+
+    // Pages backwards from the cursor, the last id of a page is the cursor for the next, older page
+    public ChatResponse getHistory(String email, Long chatId, Long before, Integer limit) {
+        ChatResponse historyResponse = new ChatResponse();
+
+        try {
+            if (!chatParticipantRepository.isParticipant(chatId, email)) {
+                historyResponse.setStatusCode(403);
+                historyResponse.setMessage("Not a participant of chat " + chatId);
+                return historyResponse;
+            }
+
+            int pageSize = limit == null || limit <= 0 ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+            long cursor = before == null ? Long.MAX_VALUE : before;
+            List<MessageView> messages = messageRepository.findHistory(chatId, cursor, Pageable.ofSize(pageSize));
+
+            historyResponse.setMessages(messages);
+            if (messages.size() == pageSize) {
+                historyResponse.setNextCursor(messages.get(messages.size() - 1).id());
+            }
+            historyResponse.setStatusCode(200);
+            historyResponse.setMessage("Chat history successfully found");
+        } catch (Exception e) {
+            historyResponse.setStatusCode(500);
+            historyResponse.setError(e.getMessage());
+        }
+
+        return historyResponse;
+    }
+}
@@ -0,0 +1,108 @@
+package net.svsh.linkupserver.chat.service;
+
+import net.svsh.linkupserver.chat.ChatParticipantRepository;
+import net.svsh.linkupserver.chat.dto.InboxEntryView;
+import net.svsh.linkupserver.chat.dto.InboxResponse;
+import net.svsh.linkupserver.chat.persistence.InboxReader;
+import net.svsh.linkupserver.chat.readstate.ReadStateRegistry;
+import net.svsh.linkupserver.user.User;
+import net.svsh.linkupserver.user.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@Service
+public class InboxService {
+
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+
+    @Autowired
+    private InboxReader inboxReader;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ChatParticipantRepository chatParticipantRepository;
+
+    @Autowired
+    private ReadStateRegistry readStateRegistry;
+
+    // Newest chats first, the cursor is the last entry's message id plus its chat id to break ties between empty chats
+    public InboxResponse getInbox(String email, Long before, Long beforeChat, Integer limit) {
+        InboxResponse inboxResponse = new InboxResponse();
+
+        try {
+            Optional<User> user = userRepository.findByEmail(email);
+            if (user.isEmpty()) {
+                inboxResponse.setStatusCode(404);
+                inboxResponse.setMessage("User not found");
+                return inboxResponse;
+            }
+
+            long userId = user.get().getId();
+            int pageSize = limit == null || limit <= 0 ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+            long messageCursor = before == null ? Long.MAX_VALUE : before;
+            long chatCursor = beforeChat == null ? Long.MAX_VALUE : beforeChat;
+            List<InboxEntryView> rows = inboxReader.page(userId, messageCursor, chatCursor, pageSize);
+
+            // Unread counts come from the in-memory read state once the result set is closed, the persisted
+            // column can lag by a flush interval. Chats not in memory yet are loaded for the whole page in one
+            // query. Counts saturate at linkup.chat.read-state.log-capacity ("N+")
+            Map<Long, Integer> unreadCounts = readStateRegistry.unreadCounts(userId,
+                    rows.stream().map(InboxEntryView::chatId).toList());
+            List<InboxEntryView> chats = rows.stream()
+                    .map(entry -> entry.withUnreadCount(unreadCounts.get(entry.chatId())))
+                    .toList();
+
+            inboxResponse.setChats(chats);
+            if (chats.size() == pageSize) {
+                InboxEntryView last = chats.get(chats.size() - 1);
+                inboxResponse.setNextCursor(last.lastMessageId());
+                inboxResponse.setNextChatCursor(last.chatId());
+            }
+            inboxResponse.setStatusCode(200);
+            inboxResponse.setMessage("Inbox successfully found");
+        } catch (Exception e) {
+            inboxResponse.setStatusCode(500);
+            inboxResponse.setError(e.getMessage());
+        }
+
+        return inboxResponse;
+    }
+
+    // Moves the read cursor forward only, a late event for an older message is ignored.
+    // The cursor is written to the database by the read state flusher, not on every call
+    public InboxResponse markRead(String email, Long chatId, Long messageId) {
+        InboxResponse readResponse = new InboxResponse();
+
+        try {
+            Optional<User> user = userRepository.findByEmail(email);
+            if (user.isEmpty()) {
+                readResponse.setStatusCode(404);
+                readResponse.setMessage("User not found");
+                return readResponse;
+            }
+
+            Long userId = user.get().getId();
+            if (!chatParticipantRepository.existsByChatIdAndUserId(chatId, userId)) {
+                readResponse.setStatusCode(403);
+                readResponse.setMessage("Not a participant of chat " + chatId);
+                return readResponse;
+            }
+
+            readStateRegistry.markRead(userId, chatId, messageId);
+            readResponse.setStatusCode(200);
+            readResponse.setMessage("Chat " + chatId + " read up to message " + messageId);
+        } catch (Exception e) {
+            readResponse.setStatusCode(500);
+            readResponse.setError(e.getMessage());
+        }
+
+        return readResponse;
+    }
+}
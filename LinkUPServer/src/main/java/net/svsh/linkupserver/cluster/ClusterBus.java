@@ -0,0 +1,19 @@
+package net.svsh.linkupserver.cluster;
+
+import java.util.Set;
+
+// Transport between LinkUPServer nodes. Delivery is asynchronous and best-effort, send never blocks the caller.
+public interface ClusterBus extends AutoCloseable {
+    String localNodeId();
+
+    Set<String> peers();
+
+    void send(String nodeId, ClusterEnvelope envelope);
+
+    void broadcast(ClusterEnvelope envelope);
+
+    void subscribe(ClusterListener listener);
+
+    @Override
+    void close();
+}
@@ -0,0 +1,32 @@
+package net.svsh.linkupserver.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+@Configuration
+public class ClusterConfig {
+
+    // "loopback" keeps every node in this JVM, "tcp" builds a mesh from linkup.cluster.peers.
+    // tcp listens on loopback unless bind-host says otherwise and refuses to start without a secret.
+    @Bean(destroyMethod = "close")
+    public ClusterBus clusterBus(@Value("${linkup.cluster.mode:loopback}") String mode,
+                                 @Value("${linkup.cluster.name:linkup}") String clusterName,
+                                 @Value("${linkup.cluster.node-id:node-0}") String nodeId,
+                                 @Value("${linkup.cluster.bind-host:127.0.0.1}") String bindHost,
+                                 @Value("${linkup.cluster.port:7700}") int port,
+                                 @Value("${linkup.cluster.peers:}") String peers,
+                                 @Value("${linkup.cluster.secret:}") String secret,
+                                 @Value("${linkup.cluster.queue-capacity:10000}") int queueCapacity,
+                                 ObjectMapper objectMapper) throws IOException {
+        if ("tcp".equalsIgnoreCase(mode)) {
+            return new TcpClusterBus(nodeId, new InetSocketAddress(bindHost, port), TcpClusterBus.parsePeers(peers),
+                    secret, queueCapacity, objectMapper);
+        }
+        return new LoopbackClusterBus(clusterName, nodeId);
+    }
+}
@@ -0,0 +1,86 @@
+package net.svsh.linkupserver.cluster;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import net.svsh.linkupserver.chat.Message;
+
+import java.util.List;
+
+// Unit of traffic between LinkUPServer nodes
+@Data
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ClusterEnvelope {
+    public static final String MESSAGE = "MESSAGE";
+    public static final String JOIN = "JOIN";
+    public static final String LEAVE = "LEAVE";
+    public static final String SYNC = "SYNC";
+    public static final String USERS = "USERS";
+    public static final String REVOKED = "REVOKED";
+    public static final String READ = "READ";
+    // Sent by the bus itself ahead of a resend, the receiver may have missed envelopes from the source
+    public static final String RESYNC = "RESYNC";
+
+    private String type;
+    private String sourceNode;
+    private Long chatId;
+    private List<Long> userIds;
+    private String payload;
+    private Long messageId;
+    private List<String> sessionIds;
+    private List<ReadCursor> readCursors;
+
+    public static ClusterEnvelope message(String sourceNode, Long chatId, String payload) {
+        ClusterEnvelope envelope = new ClusterEnvelope();
+        envelope.setType(MESSAGE);
+        envelope.setSourceNode(sourceNode);
+        envelope.setChatId(chatId);
+        envelope.setPayload(payload);
+        return envelope;
+    }
+
+    // A chat message rather than a presence frame, receivers also add it to their unread counts
+    public static ClusterEnvelope message(String sourceNode, Message message, String payload) {
+        ClusterEnvelope envelope = message(sourceNode, message.getChatId(), payload);
+        envelope.setMessageId(message.getId());
+        return envelope;
+    }
+
+    public static ClusterEnvelope directory(String type, String sourceNode, List<Long> userIds) {
+        ClusterEnvelope envelope = new ClusterEnvelope();
+        envelope.setType(type);
+        envelope.setSourceNode(sourceNode);
+        envelope.setUserIds(userIds);
+        return envelope;
+    }
+
+    public static ClusterEnvelope revoked(String sourceNode, List<String> sessionIds) {
+        ClusterEnvelope envelope = new ClusterEnvelope();
+        envelope.setType(REVOKED);
+        envelope.setSourceNode(sourceNode);
+        envelope.setSessionIds(sessionIds);
+        return envelope;
+    }
+
+    public static ClusterEnvelope read(String sourceNode, List<ReadCursor> readCursors) {
+        ClusterEnvelope envelope = new ClusterEnvelope();
+        envelope.setType(READ);
+        envelope.setSourceNode(sourceNode);
+        envelope.setReadCursors(readCursors);
+        return envelope;
+    }
+
+    public static ClusterEnvelope resync(String sourceNode) {
+        ClusterEnvelope envelope = new ClusterEnvelope();
+        envelope.setType(RESYNC);
+        envelope.setSourceNode(sourceNode);
+        return envelope;
+    }
+
+    // A persisted read cursor, the chat is read by the user up to and including the message
+    public record ReadCursor(long userId, long chatId, long messageId) {
+    }
+}
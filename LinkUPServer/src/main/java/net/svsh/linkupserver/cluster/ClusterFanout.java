@@ -0,0 +1,102 @@
+package net.svsh.linkupserver.cluster;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import net.svsh.linkupserver.cache.InvalidatingCache;
+import net.svsh.linkupserver.chat.ChatParticipantRepository;
+import net.svsh.linkupserver.chat.Message;
+import net.svsh.linkupserver.chat.gateway.ChatDispatcher;
+import net.svsh.linkupserver.chat.persistence.FanoutPolicy;
+import net.svsh.linkupserver.chat.readstate.ReadStateRegistry;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.TextMessage;
+
+import java.time.Duration;
+import java.util.List;
+
+// Delivers a chat frame to local sessions and forwards it to the nodes hosting the chat's other participants
+@Component
+public class ClusterFanout implements ClusterListener, InitializingBean {
+
+    @Autowired
+    private ClusterBus clusterBus;
+
+    @Autowired
+    private UserNodeDirectory userNodeDirectory;
+
+    @Autowired
+    private ChatDispatcher chatDispatcher;
+
+    @Autowired
+    private ChatParticipantRepository chatParticipantRepository;
+
+    @Autowired
+    private ReadStateRegistry readStateRegistry;
+
+    @Autowired
+    private FanoutPolicy fanoutPolicy;
+
+    private final InvalidatingCache<Long, List<Long>> participantsByChat = new InvalidatingCache<>(Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterWrite(Duration.ofMinutes(1))
+            .build());
+
+    @Override
+    public void afterPropertiesSet() {
+        clusterBus.subscribe(this);
+    }
+
+    public void publish(Long chatId, TextMessage payload) {
+        publish(chatId, payload, null);
+    }
+
+    public void publish(Message message, TextMessage payload) {
+        publish(message.getChatId(), payload, message);
+    }
+
+    private void publish(Long chatId, TextMessage payload, Message message) {
+        chatDispatcher.dispatch(chatId, payload);
+
+        // Single node deployments never pay for the participant lookup
+        if (!userNodeDirectory.hasRemoteUsers()) {
+            return;
+        }
+        // Members of large groups are on most nodes anyway, so every node gets the frame and delivers it to
+        // its own sessions of the chat instead of this one resolving thousands of participants per message
+        if (fanoutPolicy.isLarge(chatId)) {
+            clusterBus.broadcast(envelope(chatId, payload, message));
+            return;
+        }
+        List<Long> participants = participantsByChat.get(chatId, chatParticipantRepository::findUserIdsByChatId);
+        ClusterEnvelope envelope = null;
+        for (String node : userNodeDirectory.remoteNodesOf(participants)) {
+            if (envelope == null) {
+                envelope = envelope(chatId, payload, message);
+            }
+            clusterBus.send(node, envelope);
+        }
+    }
+
+    private ClusterEnvelope envelope(Long chatId, TextMessage payload, Message message) {
+        return message == null
+                ? ClusterEnvelope.message(clusterBus.localNodeId(), chatId, payload.getPayload())
+                : ClusterEnvelope.message(clusterBus.localNodeId(), message, payload.getPayload());
+    }
+
+    // Called when chat membership changes so the next message is routed, and fanned out, with the new participants
+    public void invalidateParticipants(Long chatId) {
+        participantsByChat.invalidate(chatId);
+        fanoutPolicy.invalidate(chatId);
+    }
+
+    @Override
+    public void onEnvelope(ClusterEnvelope envelope) {
+        if (ClusterEnvelope.MESSAGE.equals(envelope.getType())) {
+            chatDispatcher.dispatch(envelope.getChatId(), new TextMessage(envelope.getPayload()));
+            if (envelope.getMessageId() != null) {
+                readStateRegistry.onRemoteMessage(envelope.getChatId(), envelope.getMessageId());
+            }
+        }
+    }
+}
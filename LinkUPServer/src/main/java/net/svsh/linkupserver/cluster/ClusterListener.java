@@ -0,0 +1,20 @@
+package net.svsh.linkupserver.cluster;
+
+public interface ClusterListener {
+    void onEnvelope(ClusterEnvelope envelope);
+
+    // Called whenever a link to a peer is (re)established or has dropped envelopes, e.g. to resend state the peer missed
+    default void onPeerConnected(String nodeId) {
+    }
+
+    // Called on the receiving end when envelopes from the peer may not have arrived: its link to this node was
+    // (re)established or dropped envelopes. Nothing the peer sent later has been delivered yet, so state read
+    // from the database from here on includes whatever the missed envelopes announced
+    default void onEnvelopesMissed(String nodeId) {
+    }
+
+    // Called on the receiving end once no link from the peer has been up for a grace period, e.g. it crashed.
+    // What it announced about itself is stale; it sends everything again when it is back
+    default void onPeerDisconnected(String nodeId) {
+    }
+}
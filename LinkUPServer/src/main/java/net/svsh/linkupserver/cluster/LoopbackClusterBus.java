@@ -0,0 +1,112 @@
+package net.svsh.linkupserver.cluster;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// In-JVM bus, every bus created with the same cluster name is a peer. Used by tests and single-node setups.
+public class LoopbackClusterBus implements ClusterBus {
+
+    private static final ConcurrentHashMap<String, ConcurrentHashMap<String, LoopbackClusterBus>> CLUSTERS = new ConcurrentHashMap<>();
+
+    private final String clusterName;
+    private final String localNodeId;
+    private final ConcurrentHashMap<String, LoopbackClusterBus> members;
+    private final List<ClusterListener> listeners = new CopyOnWriteArrayList<>();
+    private final ExecutorService inbox;
+
+    public LoopbackClusterBus(String clusterName, String localNodeId) {
+        this.clusterName = clusterName;
+        this.localNodeId = localNodeId;
+        this.inbox = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cluster-loopback-" + localNodeId);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.members = CLUSTERS.computeIfAbsent(clusterName, name -> new ConcurrentHashMap<>());
+        if (members.putIfAbsent(localNodeId, this) != null) {
+            throw new IllegalStateException("Node " + localNodeId + " already joined cluster " + clusterName);
+        }
+        for (LoopbackClusterBus member : members.values()) {
+            if (member != this) {
+                member.peerConnected(localNodeId);
+            }
+        }
+    }
+
+    @Override
+    public String localNodeId() {
+        return localNodeId;
+    }
+
+    @Override
+    public Set<String> peers() {
+        Set<String> peers = new HashSet<>(members.keySet());
+        peers.remove(localNodeId);
+        return peers;
+    }
+
+    @Override
+    public void send(String nodeId, ClusterEnvelope envelope) {
+        LoopbackClusterBus target = members.get(nodeId);
+        if (target != null && target != this) {
+            target.deliver(envelope);
+        }
+    }
+
+    @Override
+    public void broadcast(ClusterEnvelope envelope) {
+        for (LoopbackClusterBus member : members.values()) {
+            if (member != this) {
+                member.deliver(envelope);
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(ClusterListener listener) {
+        listeners.add(listener);
+        // Members that joined before this listener existed count as freshly connected peers
+        for (String peer : peers()) {
+            inbox.execute(() -> listener.onPeerConnected(peer));
+        }
+    }
+
+    @Override
+    public void close() {
+        members.remove(localNodeId, this);
+        CLUSTERS.computeIfPresent(clusterName, (name, nodes) -> nodes.isEmpty() ? null : nodes);
+        for (LoopbackClusterBus member : members.values()) {
+            member.peerDisconnected(localNodeId);
+        }
+        inbox.shutdown();
+    }
+
+    private void deliver(ClusterEnvelope envelope) {
+        inbox.execute(() -> {
+            for (ClusterListener listener : listeners) {
+                listener.onEnvelope(envelope);
+            }
+        });
+    }
+
+    private void peerConnected(String nodeId) {
+        inbox.execute(() -> {
+            for (ClusterListener listener : listeners) {
+                listener.onPeerConnected(nodeId);
+            }
+        });
+    }
+
+    private void peerDisconnected(String nodeId) {
+        inbox.execute(() -> {
+            for (ClusterListener listener : listeners) {
+                listener.onPeerDisconnected(nodeId);
+            }
+        });
+    }
+}
@@ -0,0 +1,435 @@
+package net.svsh.linkupserver.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Full mesh over plain TCP. Every node dials every configured peer and only writes on that outbound link;
+// inbound links are read-only. Frames are a 4 byte length followed by the JSON envelope.
+// Before any frame both ends prove they know the cluster secret: the acceptor sends a nonce, the dialer answers with
+// its node id, its own nonce and an HMAC over the acceptor's nonce, and the acceptor answers with an HMAC over the
+// dialer's nonce. Connections that fail either check are closed, so only nodes holding the secret can send or listen.
+public class TcpClusterBus implements ClusterBus {
+
+    private static final Logger log = LoggerFactory.getLogger(TcpClusterBus.class);
+    private static final int MAX_FRAME_BYTES = 16 * 1024 * 1024;
+    private static final long MAX_RECONNECT_BACKOFF_MS = 5000;
+    private static final int NONCE_BYTES = 16;
+    private static final int MAX_NODE_ID_BYTES = 256;
+    private static final int HANDSHAKE_TIMEOUT_MS = 5000;
+    private static final String HMAC = "HmacSHA256";
+    // How long a peer may have no inbound link before it counts as gone, well above its reconnect backoff
+    private static final long PEER_DOWN_GRACE_MS = 3 * MAX_RECONNECT_BACKOFF_MS;
+
+    private final String localNodeId;
+    private final SecretKeySpec secret;
+    private final SecureRandom random = new SecureRandom();
+    private final ObjectMapper objectMapper;
+    private final ServerSocket serverSocket;
+    private final Map<String, PeerLink> peers = new ConcurrentHashMap<>();
+    private final Set<Socket> inboundSockets = ConcurrentHashMap.newKeySet();
+    // Authenticated inbound links per node, a peer briefly has two while it replaces a dead one
+    private final Map<String, AtomicInteger> inboundLinks = new ConcurrentHashMap<>();
+    private final List<ClusterListener> listeners = new CopyOnWriteArrayList<>();
+    private final ExecutorService threads = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "cluster-tcp");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ScheduledExecutorService peerDownTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cluster-tcp-peer-down");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final long peerDownGraceMillis;
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder rejectedConnections = new LongAdder();
+    private volatile boolean running = true;
+
+    public TcpClusterBus(String localNodeId, InetSocketAddress bindAddress, Map<String, InetSocketAddress> peerAddresses,
+                         String secret, int queueCapacity, ObjectMapper objectMapper) throws IOException {
+        this(localNodeId, bindAddress, peerAddresses, secret, queueCapacity, objectMapper, PEER_DOWN_GRACE_MS);
+    }
+
+    TcpClusterBus(String localNodeId, InetSocketAddress bindAddress, Map<String, InetSocketAddress> peerAddresses,
+                  String secret, int queueCapacity, ObjectMapper objectMapper, long peerDownGraceMillis) throws IOException {
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalArgumentException("A cluster secret is required for the tcp cluster bus");
+        }
+        this.localNodeId = localNodeId;
+        this.secret = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC);
+        this.objectMapper = objectMapper;
+        this.peerDownGraceMillis = peerDownGraceMillis;
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.setReuseAddress(true);
+        this.serverSocket.bind(bindAddress);
+        threads.execute(this::acceptLoop);
+
+        peerAddresses.forEach((nodeId, address) -> {
+            if (!nodeId.equals(localNodeId)) {
+                PeerLink link = new PeerLink(nodeId, address, queueCapacity);
+                peers.put(nodeId, link);
+                threads.execute(link::writeLoop);
+            }
+        });
+    }
+
+    // Parses "node-1@host:port,node-2@host:port"
+    public static Map<String, InetSocketAddress> parsePeers(String peers) {
+        Map<String, InetSocketAddress> addresses = new ConcurrentHashMap<>();
+        if (peers == null || peers.isBlank()) {
+            return addresses;
+        }
+        for (String peer : peers.split(",")) {
+            String[] idAndAddress = peer.trim().split("@");
+            String[] hostAndPort = idAndAddress[1].split(":");
+            addresses.put(idAndAddress[0], new InetSocketAddress(hostAndPort[0], Integer.parseInt(hostAndPort[1])));
+        }
+        return addresses;
+    }
+
+    @Override
+    public String localNodeId() {
+        return localNodeId;
+    }
+
+    @Override
+    public Set<String> peers() {
+        return peers.keySet();
+    }
+
+    @Override
+    public void send(String nodeId, ClusterEnvelope envelope) {
+        PeerLink link = peers.get(nodeId);
+        if (link != null) {
+            link.enqueue(envelope);
+        }
+    }
+
+    @Override
+    public void broadcast(ClusterEnvelope envelope) {
+        for (PeerLink link : peers.values()) {
+            link.enqueue(envelope);
+        }
+    }
+
+    @Override
+    public void subscribe(ClusterListener listener) {
+        listeners.add(listener);
+    }
+
+    public int boundPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public long droppedCount() {
+        return dropped.sum();
+    }
+
+    public long rejectedConnectionCount() {
+        return rejectedConnections.sum();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        closeQuietly(serverSocket);
+        for (PeerLink link : peers.values()) {
+            closeQuietly(link.socket);
+        }
+        for (Socket socket : inboundSockets) {
+            closeQuietly(socket);
+        }
+        threads.shutdownNow();
+        peerDownTimer.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                inboundSockets.add(socket);
+                threads.execute(() -> readLoop(socket));
+            } catch (IOException e) {
+                if (running) {
+                    log.warn("Cluster accept failed", e);
+                }
+            }
+        }
+    }
+
+    private void readLoop(Socket socket) {
+        String nodeId = null;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+            nodeId = acceptHandshake(socket, input);
+            if (nodeId == null) {
+                rejectedConnections.increment();
+                log.warn("Rejected cluster connection from {}, it does not know the cluster secret",
+                        socket.getRemoteSocketAddress());
+                return;
+            }
+            inboundLinks.computeIfAbsent(nodeId, id -> new AtomicInteger()).incrementAndGet();
+            while (running) {
+                int length = input.readInt();
+                if (length <= 0 || length > MAX_FRAME_BYTES) {
+                    throw new IOException("Invalid cluster frame length " + length);
+                }
+                byte[] frame = new byte[length];
+                input.readFully(frame);
+                ClusterEnvelope envelope = objectMapper.readValue(frame, ClusterEnvelope.class);
+                // A node only speaks for itself, e.g. it cannot announce users as joined on another node
+                if (!nodeId.equals(envelope.getSourceNode())) {
+                    log.warn("Dropped {} envelope from node {} claiming to come from {}",
+                            envelope.getType(), nodeId, envelope.getSourceNode());
+                    continue;
+                }
+                boolean resync = ClusterEnvelope.RESYNC.equals(envelope.getType());
+                for (ClusterListener listener : listeners) {
+                    try {
+                        if (resync) {
+                            listener.onEnvelopesMissed(nodeId);
+                        } else {
+                            listener.onEnvelope(envelope);
+                        }
+                    } catch (RuntimeException e) {
+                        log.warn("Cluster listener failed on {} envelope from {}", envelope.getType(), nodeId, e);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // Peer went away, it dials back in when it restarts
+        } finally {
+            inboundSockets.remove(socket);
+            closeQuietly(socket);
+            if (nodeId != null) {
+                inboundLinkClosed(nodeId);
+            }
+        }
+    }
+
+    // A peer that only reconnects is back within the grace period, one that stays away is reported gone
+    private void inboundLinkClosed(String nodeId) {
+        if (inboundLinks.get(nodeId).decrementAndGet() > 0 || !running) {
+            return;
+        }
+        peerDownTimer.schedule(() -> {
+            if (!running || inboundLinks.get(nodeId).get() > 0) {
+                return;
+            }
+            log.warn("Cluster peer {} has had no link to this node for {} ms, forgetting its state", nodeId, peerDownGraceMillis);
+            for (ClusterListener listener : listeners) {
+                try {
+                    listener.onPeerDisconnected(nodeId);
+                } catch (RuntimeException e) {
+                    log.warn("Cluster listener failed on the loss of {}", nodeId, e);
+                }
+            }
+        }, peerDownGraceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Returns the authenticated node id of the dialer, or null when it did not prove it knows the secret
+    private String acceptHandshake(Socket socket, DataInputStream input) throws IOException {
+        socket.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+        DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+        byte[] challenge = nonce();
+        output.write(challenge);
+        output.flush();
+
+        int nodeIdLength = input.readUnsignedShort();
+        if (nodeIdLength == 0 || nodeIdLength > MAX_NODE_ID_BYTES) {
+            return null;
+        }
+        byte[] nodeId = new byte[nodeIdLength];
+        input.readFully(nodeId);
+        byte[] dialerChallenge = new byte[NONCE_BYTES];
+        input.readFully(dialerChallenge);
+        byte[] proof = new byte[32];
+        input.readFully(proof);
+        if (!MessageDigest.isEqual(proof, sign("dial", challenge, nodeId))) {
+            return null;
+        }
+
+        output.write(sign("accept", dialerChallenge, nodeId));
+        output.flush();
+        socket.setSoTimeout(0);
+        return new String(nodeId, StandardCharsets.UTF_8);
+    }
+
+    // Proves this node to the peer and checks the peer's answer, false when the peer does not know the secret
+    private boolean dialHandshake(Socket socket, DataOutputStream output) throws IOException {
+        socket.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+        DataInputStream input = new DataInputStream(socket.getInputStream());
+        byte[] challenge = new byte[NONCE_BYTES];
+        input.readFully(challenge);
+
+        byte[] nodeId = localNodeId.getBytes(StandardCharsets.UTF_8);
+        byte[] dialerChallenge = nonce();
+        output.writeShort(nodeId.length);
+        output.write(nodeId);
+        output.write(dialerChallenge);
+        output.write(sign("dial", challenge, nodeId));
+        output.flush();
+
+        byte[] proof = new byte[32];
+        input.readFully(proof);
+        socket.setSoTimeout(0);
+        return MessageDigest.isEqual(proof, sign("accept", dialerChallenge, nodeId));
+    }
+
+    private byte[] nonce() {
+        byte[] nonce = new byte[NONCE_BYTES];
+        random.nextBytes(nonce);
+        return nonce;
+    }
+
+    // The role is part of what is signed, so an acceptor's answer cannot be replayed as a dialer's proof
+    private byte[] sign(String role, byte[] challenge, byte[] nodeId) {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(secret);
+            mac.update(role.getBytes(StandardCharsets.UTF_8));
+            mac.update(challenge);
+            mac.update(nodeId);
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(HMAC + " is not available", e);
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (Exception ignored) {
+        }
+    }
+
+    private class PeerLink {
+        private final String nodeId;
+        private final InetSocketAddress address;
+        private final BlockingQueue<ClusterEnvelope> queue;
+        // Set when an envelope was dropped, JOIN/LEAVE/USERS/REVOKED lost that way are resent once the queue drains
+        private final AtomicBoolean resyncNeeded = new AtomicBoolean();
+        private volatile Socket socket;
+
+        PeerLink(String nodeId, InetSocketAddress address, int queueCapacity) {
+            this.nodeId = nodeId;
+            this.address = address;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        }
+
+        // A peer that is down or too slow loses traffic instead of stalling chat delivery on this node
+        void enqueue(ClusterEnvelope envelope) {
+            if (!queue.offer(envelope)) {
+                dropped.increment();
+                resyncNeeded.set(true);
+            }
+        }
+
+        void writeLoop() {
+            long backoff = 100;
+            ClusterEnvelope pending = null;
+            while (running) {
+                try (Socket connected = new Socket()) {
+                    connected.setTcpNoDelay(true);
+                    connected.connect(address, 2000);
+                    socket = connected;
+                    backoff = 100;
+                    DataOutputStream output = new DataOutputStream(new BufferedOutputStream(connected.getOutputStream()));
+                    if (!dialHandshake(connected, output)) {
+                        log.warn("Cluster peer {} at {} does not know the cluster secret", nodeId, address);
+                        throw new SocketException("Cluster handshake with " + nodeId + " failed");
+                    }
+                    // Everything the peer may have missed is resent, drops before this point included
+                    resyncNeeded.set(false);
+                    resync(output);
+
+                    while (running) {
+                        if (pending == null) {
+                            pending = queue.poll(1, TimeUnit.SECONDS);
+                            if (pending == null) {
+                                continue;
+                            }
+                        }
+                        write(output, pending);
+                        pending = null;
+                        // Batch whatever queued up meanwhile into the same flush
+                        if (queue.isEmpty()) {
+                            output.flush();
+                            if (resyncNeeded.compareAndSet(true, false)) {
+                                resync(output);
+                            }
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (SocketException e) {
+                    // Connection refused or reset, retry below
+                } catch (IOException e) {
+                    log.warn("Cluster link to {} failed", nodeId, e);
+                }
+
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoff = Math.min(backoff * 2, MAX_RECONNECT_BACKOFF_MS);
+            }
+        }
+
+        private void write(DataOutputStream output, ClusterEnvelope envelope) throws IOException {
+            byte[] frame = objectMapper.writeValueAsBytes(envelope);
+            output.writeInt(frame.length);
+            output.write(frame);
+        }
+
+        // The marker goes out first and around the queue, so the peer learns of the gap before anything newer
+        private void resync(DataOutputStream output) throws IOException {
+            write(output, ClusterEnvelope.resync(localNodeId));
+            output.flush();
+            for (ClusterListener listener : listeners) {
+                try {
+                    listener.onPeerConnected(nodeId);
+                } catch (RuntimeException e) {
+                    log.warn("Cluster listener failed to resync {}", nodeId, e);
+                }
+            }
+        }
+    }
+}
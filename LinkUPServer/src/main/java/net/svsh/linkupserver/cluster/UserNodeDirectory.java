@@ -0,0 +1,109 @@
+package net.svsh.linkupserver.cluster;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Replicated map of which node each connected user is on. Every node announces its own users,
+// so a message is only sent to nodes that actually host one of the chat's participants.
+@Component
+public class UserNodeDirectory implements ClusterListener, InitializingBean {
+
+    @Autowired
+    private ClusterBus clusterBus;
+
+    private final Set<Long> localUsers = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<String, Set<Long>> usersByRemoteNode = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Set<String>> remoteNodesByUser = new ConcurrentHashMap<>();
+
+    @Override
+    public void afterPropertiesSet() {
+        clusterBus.subscribe(this);
+    }
+
+    public void join(long userId) {
+        if (localUsers.add(userId)) {
+            clusterBus.broadcast(ClusterEnvelope.directory(ClusterEnvelope.JOIN, clusterBus.localNodeId(), List.of(userId)));
+        }
+    }
+
+    public void leave(long userId) {
+        if (localUsers.remove(userId)) {
+            clusterBus.broadcast(ClusterEnvelope.directory(ClusterEnvelope.LEAVE, clusterBus.localNodeId(), List.of(userId)));
+        }
+    }
+
+    public boolean hasRemoteUsers() {
+        return !remoteNodesByUser.isEmpty();
+    }
+
+    // Connected to another node, whatever this node's own presence says
+    public boolean isConnectedElsewhere(long userId) {
+        return remoteNodesByUser.containsKey(userId);
+    }
+
+    public Set<String> remoteNodesOf(Collection<Long> userIds) {
+        Set<String> nodes = new HashSet<>();
+        for (Long userId : userIds) {
+            nodes.addAll(remoteNodesByUser.getOrDefault(userId, Collections.emptySet()));
+        }
+        return nodes;
+    }
+
+    @Override
+    public void onEnvelope(ClusterEnvelope envelope) {
+        String node = envelope.getSourceNode();
+        switch (envelope.getType()) {
+            case ClusterEnvelope.JOIN -> envelope.getUserIds().forEach(userId -> add(node, userId));
+            case ClusterEnvelope.LEAVE -> envelope.getUserIds().forEach(userId -> remove(node, userId));
+            case ClusterEnvelope.SYNC -> {
+                // A full snapshot replaces whatever we believed about that node, e.g. after it restarted
+                forget(node);
+                envelope.getUserIds().forEach(userId -> add(node, userId));
+            }
+            default -> {
+            }
+        }
+    }
+
+    @Override
+    public void onPeerConnected(String nodeId) {
+        clusterBus.send(nodeId, ClusterEnvelope.directory(ClusterEnvelope.SYNC, clusterBus.localNodeId(), new ArrayList<>(localUsers)));
+    }
+
+    // Its sockets died with it. It sends a SYNC when it comes back
+    @Override
+    public void onPeerDisconnected(String nodeId) {
+        forget(nodeId);
+    }
+
+    private void forget(String node) {
+        for (Long userId : usersByRemoteNode.getOrDefault(node, Collections.emptySet())) {
+            remove(node, userId);
+        }
+    }
+
+    private void add(String node, Long userId) {
+        usersByRemoteNode.computeIfAbsent(node, id -> ConcurrentHashMap.newKeySet()).add(userId);
+        remoteNodesByUser.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(node);
+    }
+
+    private void remove(String node, Long userId) {
+        usersByRemoteNode.computeIfPresent(node, (id, users) -> {
+            users.remove(userId);
+            return users.isEmpty() ? null : users;
+        });
+        remoteNodesByUser.computeIfPresent(userId, (id, nodes) -> {
+            nodes.remove(node);
+            return nodes.isEmpty() ? null : nodes;
+        });
+    }
+}
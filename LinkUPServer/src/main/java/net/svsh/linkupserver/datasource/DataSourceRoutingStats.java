@@ -0,0 +1,10 @@
+package net.svsh.linkupserver.datasource;
+
+public record DataSourceRoutingStats(int replicas,
+                                     int healthyReplicas,
+                                     long primaryConnections,
+                                     long replicaConnections,
+                                     long pinnedReads,
+                                     long fallbackReads,
+                                     long failedReplicaConnections) {
+}
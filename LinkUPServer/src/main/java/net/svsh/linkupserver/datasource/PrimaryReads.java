@@ -0,0 +1,30 @@
+package net.svsh.linkupserver.datasource;
+
+import java.util.function.Supplier;
+
+// Reads that have to see every row the primary has, even inside readOnly transactions. For work that first
+// learns ids from the primary (the change log, the search index) and then loads the rows: a lagging replica
+// would leave some out and the caller would move past them. Unlike a write, it does not pin the client.
+public final class PrimaryReads {
+
+    private static final ThreadLocal<Boolean> ACTIVE = new ThreadLocal<>();
+
+    private PrimaryReads() {
+    }
+
+    public static <T> T call(Supplier<T> work) {
+        Boolean outer = ACTIVE.get();
+        ACTIVE.set(Boolean.TRUE);
+        try {
+            return work.get();
+        } finally {
+            if (outer == null) {
+                ACTIVE.remove();
+            }
+        }
+    }
+
+    static boolean isActive() {
+        return ACTIVE.get() != null;
+    }
+}
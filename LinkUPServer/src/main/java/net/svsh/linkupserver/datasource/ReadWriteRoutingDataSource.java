@@ -0,0 +1,87 @@
+package net.svsh.linkupserver.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.LongAdder;
+
+// Hands out replica connections inside readOnly transactions and primary connections for everything else,
+// including JdbcTemplate calls outside a transaction and reads inside PrimaryReads. Only works behind a LazyConnectionDataSourceProxy:
+// the transaction manager asks for the connection before the transaction is marked readOnly, the proxy defers
+// the real getConnection to the first statement.
+public class ReadWriteRoutingDataSource extends AbstractDataSource {
+
+    private final HikariDataSource primary;
+    private final ReplicaPool replicaPool;
+    private final ReadYourWrites readYourWrites;
+
+    private final LongAdder primaryConnections = new LongAdder();
+    private final LongAdder replicaConnections = new LongAdder();
+    private final LongAdder pinnedReads = new LongAdder();
+    private final LongAdder fallbackReads = new LongAdder();
+    private final LongAdder failedReplicaConnections = new LongAdder();
+
+    public ReadWriteRoutingDataSource(HikariDataSource primary, ReplicaPool replicaPool, ReadYourWrites readYourWrites) {
+        this.primary = primary;
+        this.replicaPool = replicaPool;
+        this.readYourWrites = readYourWrites;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                readYourWrites.recordWrite();
+            }
+            primaryConnections.increment();
+            return primary.getConnection();
+        }
+
+        if (PrimaryReads.isActive() || readYourWrites.isPinned()) {
+            pinnedReads.increment();
+            primaryConnections.increment();
+            return primary.getConnection();
+        }
+
+        ReplicaPool.Replica replica = replicaPool.next();
+        if (replica != null) {
+            try {
+                Connection connection = replica.getConnection();
+                replicaConnections.increment();
+                return connection;
+            } catch (SQLException e) {
+                failedReplicaConnections.increment();
+                replicaPool.markDown(replica, e);
+            }
+        }
+
+        // No replica configured or none healthy, reads are still served
+        if (replicaPool.size() > 0) {
+            fallbackReads.increment();
+        }
+        primaryConnections.increment();
+        return primary.getConnection();
+    }
+
+    // Only reached through LazyConnectionDataSourceProxy.getConnection(username, password), which nothing here
+    // calls. Replica credentials are per pool, so explicit ones can only mean the primary
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        primaryConnections.increment();
+        return primary.getConnection(username, password);
+    }
+
+    public DataSourceRoutingStats stats() {
+        return new DataSourceRoutingStats(
+                replicaPool.size(),
+                replicaPool.healthyCount(),
+                primaryConnections.sum(),
+                replicaConnections.sum(),
+                pinnedReads.sum(),
+                fallbackReads.sum(),
+                failedReplicaConnections.sum());
+    }
+}
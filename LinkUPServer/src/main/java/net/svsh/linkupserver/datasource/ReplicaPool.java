@@ -0,0 +1,192 @@
+package net.svsh.linkupserver.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Connection pools of the read replicas listed in linkup.datasource.replica-urls, empty when there are none.
+// A replica that fails a health check or a connection attempt is skipped until a later check finds it back.
+// So is one that reports more replication lag than linkup.datasource.replica-max-lag-ms.
+@Component
+public class ReplicaPool implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaPool.class);
+
+    private final List<Replica> replicas = new ArrayList<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private final int validationTimeoutSeconds;
+    private final long maxLagMillis;
+    // MySQL 8.4 dropped the old name, MariaDB before 10.5 and MySQL before 8.0.22 only know it
+    private volatile String statusQuery = "SHOW REPLICA STATUS";
+    private final ScheduledExecutorService healthChecker;
+
+    public ReplicaPool(@Value("${linkup.datasource.replica-urls:}") String replicaUrls,
+                       @Value("${linkup.datasource.replica-username:${spring.datasource.username:}}") String username,
+                       @Value("${linkup.datasource.replica-password:${spring.datasource.password:}}") String password,
+                       @Value("${linkup.datasource.replica-pool-size:10}") int poolSize,
+                       @Value("${linkup.datasource.replica-connection-timeout-ms:2000}") long connectionTimeoutMillis,
+                       @Value("${linkup.datasource.health-check-interval-ms:5000}") long healthCheckIntervalMillis,
+                       @Value("${linkup.datasource.replica-max-lag-ms:5000}") long maxLagMillis) {
+        this.validationTimeoutSeconds = (int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(connectionTimeoutMillis));
+        this.maxLagMillis = maxLagMillis;
+        for (String url : replicaUrls.split(",")) {
+            if (url.isBlank()) {
+                continue;
+            }
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setPoolName("replica-" + replicas.size());
+            dataSource.setJdbcUrl(url.trim());
+            dataSource.setUsername(username);
+            dataSource.setPassword(password);
+            dataSource.setMaximumPoolSize(poolSize);
+            dataSource.setConnectionTimeout(connectionTimeoutMillis);
+            // A write that reaches a replica by mistake fails instead of silently diverging from the primary
+            dataSource.setReadOnly(true);
+            // The server starts with a replica down, it is only skipped until it comes up
+            dataSource.setInitializationFailTimeout(-1);
+            replicas.add(new Replica(url.trim(), dataSource));
+        }
+        this.healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-health-checker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (!replicas.isEmpty()) {
+            checkHealth();
+            healthChecker.scheduleWithFixedDelay(this::checkHealth, healthCheckIntervalMillis, healthCheckIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Round robin over the healthy replicas, null when there is none to read from
+    Replica next() {
+        int size = replicas.size();
+        int start = size == 0 ? 0 : Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.healthy) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    void markDown(Replica replica, SQLException cause) {
+        if (replica.healthy) {
+            replica.healthy = false;
+            log.warn("Replica {} marked down", replica.url, cause);
+        }
+    }
+
+    int size() {
+        return replicas.size();
+    }
+
+    int healthyCount() {
+        return (int) replicas.stream().filter(replica -> replica.healthy).count();
+    }
+
+    private void checkHealth() {
+        for (Replica replica : replicas) {
+            String problem;
+            SQLException cause = null;
+            try (Connection connection = replica.dataSource.getConnection()) {
+                problem = connection.isValid(validationTimeoutSeconds) ? lagProblem(connection) : "failed its health check";
+            } catch (SQLException e) {
+                problem = "failed its health check";
+                cause = e;
+            }
+            boolean healthy = problem == null;
+            if (healthy && !replica.healthy) {
+                log.info("Replica {} is back up", replica.url);
+            } else if (!healthy && replica.healthy) {
+                log.warn("Replica {} {}", replica.url, problem, cause);
+            }
+            replica.healthy = healthy;
+        }
+    }
+
+    // Null when the replica is close enough to the primary to read from. Needs the REPLICATION CLIENT privilege,
+    // without it every check fails and reads stay on the primary
+    private String lagProblem(Connection connection) throws SQLException {
+        if (maxLagMillis <= 0) {
+            return null;
+        }
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = replicationStatus(statement)) {
+            // Not replicating from anything, e.g. a copy that is loaded separately
+            if (!resultSet.next()) {
+                return null;
+            }
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            for (int column = 1; column <= metaData.getColumnCount(); column++) {
+                String label = metaData.getColumnLabel(column);
+                // Named after the statement that returned it
+                if (label.equals("Seconds_Behind_Source") || label.equals("Seconds_Behind_Master")) {
+                    long lagSeconds = resultSet.getLong(column);
+                    if (resultSet.wasNull()) {
+                        return "is not replicating";
+                    }
+                    return TimeUnit.SECONDS.toMillis(lagSeconds) > maxLagMillis
+                            ? "is " + lagSeconds + "s behind the primary"
+                            : null;
+                }
+            }
+            return "reports no replication lag";
+        }
+    }
+
+    private ResultSet replicationStatus(Statement statement) throws SQLException {
+        try {
+            return statement.executeQuery(statusQuery);
+        } catch (SQLException e) {
+            if (!statusQuery.equals("SHOW REPLICA STATUS")) {
+                throw e;
+            }
+            try {
+                ResultSet resultSet = statement.executeQuery("SHOW SLAVE STATUS");
+                statusQuery = "SHOW SLAVE STATUS";
+                return resultSet;
+            } catch (SQLException fallback) {
+                e.addSuppressed(fallback);
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        healthChecker.shutdown();
+        healthChecker.awaitTermination(5, TimeUnit.SECONDS);
+        replicas.forEach(replica -> replica.dataSource.close());
+    }
+
+    static final class Replica {
+        private final String url;
+        private final HikariDataSource dataSource;
+        private volatile boolean healthy;
+
+        private Replica(String url, HikariDataSource dataSource) {
+            this.url = url;
+            this.dataSource = dataSource;
+        }
+
+        Connection getConnection() throws SQLException {
+            return dataSource.getConnection();
+        }
+    }
+}
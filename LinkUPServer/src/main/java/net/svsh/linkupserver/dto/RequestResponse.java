@@ -26,5 +26,6 @@ public class RequestResponse {
     private UserRole roles;
     private String password;
     private User user;
-    private List<User> users;
+    private List<UserSummary> users;
+    private Long nextCursor;
 }
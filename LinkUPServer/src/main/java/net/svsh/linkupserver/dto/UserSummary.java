@@ -0,0 +1,7 @@
+package net.svsh.linkupserver.dto;
+
+import net.svsh.linkupserver.user.UserRole;
+
+// Public view of a user, selected without ever reading the password column
+public record UserSummary(Long id, String username, String email, UserRole roles) {
+}
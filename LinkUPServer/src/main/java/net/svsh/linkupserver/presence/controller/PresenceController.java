@@ -0,0 +1,79 @@
+package net.svsh.linkupserver.presence.controller;
+
+import net.svsh.linkupserver.cluster.UserNodeDirectory;
+import net.svsh.linkupserver.presence.dto.PresenceResponse;
+import net.svsh.linkupserver.presence.dto.PresenceView;
+import net.svsh.linkupserver.presence.service.PresenceRegistry;
+import net.svsh.linkupserver.user.User;
+import net.svsh.linkupserver.user.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RestController
+public class PresenceController {
+
+    private static final int MAX_QUERY_SIZE = 1000;
+
+    @Autowired
+    private PresenceRegistry presenceRegistry;
+
+    @Autowired
+    private UserNodeDirectory userNodeDirectory;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    // For clients that are not holding a WebSocket open, connected clients heartbeat over the socket
+    @RequestMapping(value = "api/presence/heartbeat", method = RequestMethod.POST)
+    public ResponseEntity<PresenceResponse> heartbeat() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        User user = userRepository.findByEmail(auth.getName()).orElse(null);
+
+        PresenceResponse response = new PresenceResponse();
+        if (user == null) {
+            response.setStatusCode(404);
+            response.setMessage("User not found");
+        } else {
+            presenceRegistry.heartbeat(user.getId());
+            response.setStatusCode(200);
+            response.setMessage("Heartbeat received");
+        }
+        return ResponseEntity.status(response.getStatusCode()).body(response);
+    }
+
+    @RequestMapping(value = "api/presence/query", method = RequestMethod.POST)
+    public ResponseEntity<PresenceResponse> query(@RequestBody PresenceResponse queryRequest) {
+        PresenceResponse response = new PresenceResponse();
+        List<Long> userIds = queryRequest.getUserIds();
+        if (userIds == null || userIds.size() > MAX_QUERY_SIZE) {
+            response.setStatusCode(400);
+            response.setMessage("Between 0 and " + MAX_QUERY_SIZE + " user ids are required");
+            return ResponseEntity.status(response.getStatusCode()).body(response);
+        }
+        if (userIds.contains(null)) {
+            response.setStatusCode(400);
+            response.setMessage("User ids must not be null");
+            return ResponseEntity.status(response.getStatusCode()).body(response);
+        }
+
+        // Heartbeats only reach the node they were sent to, users with a WebSocket on another node are known from
+        // the directory. A user who only heartbeats over HTTP to another node still shows as offline here
+        List<PresenceView> presence = new ArrayList<>(userIds.size());
+        for (Long userId : userIds) {
+            long lastSeen = presenceRegistry.lastSeen(userId);
+            boolean online = presenceRegistry.isOnline(userId) || userNodeDirectory.isConnectedElsewhere(userId);
+            presence.add(new PresenceView(userId, online, lastSeen == 0 ? null : lastSeen));
+        }
+
+        response.setPresence(presence);
+        response.setStatusCode(200);
+        response.setMessage("Presence successfully found");
+        return ResponseEntity.ok(response);
+    }
+}
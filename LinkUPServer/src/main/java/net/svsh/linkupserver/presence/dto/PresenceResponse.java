@@ -0,0 +1,18 @@
+package net.svsh.linkupserver.presence.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class PresenceResponse {
+    private int statusCode;
+    private String error;
+    private String message;
+    private List<Long> userIds;
+    private List<PresenceView> presence;
+}
@@ -0,0 +1,4 @@
+package net.svsh.linkupserver.presence.dto;
+
+public record PresenceView(Long userId, boolean online, Long lastSeen) {
+}
@@ -0,0 +1,4 @@
+package net.svsh.linkupserver.presence.service;
+
+public record PresenceChange(long userId, boolean online, long lastSeenMillis) {
+}
@@ -0,0 +1,8 @@
+package net.svsh.linkupserver.presence.service;
+
+import java.util.List;
+
+public interface PresenceListener {
+    // A batch holds at most one change per user, the latest
+    void onPresenceChanges(List<PresenceChange> changes);
+}
@@ -0,0 +1,241 @@
+package net.svsh.linkupserver.presence.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Tracks who is online. A heartbeat is a single CAS on the user's entry; expiry is driven by a timer wheel
+// that only looks at entries whose deadline has come round instead of scanning everyone.
+// Listeners are told in batches: changes wait in a bounded map keyed by user, so a user flapping between
+// online and offline costs one notification per interval and a burst of logins cannot grow memory without limit.
+@Component
+public class PresenceRegistry implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(PresenceRegistry.class);
+    private static final long OFFLINE = -1;
+    private static final int NOTIFY_BATCH_SIZE = 500;
+
+    private final ConcurrentHashMap<Long, PresenceEntry>[] stripes;
+    private final ConcurrentHashMap<Long, Long> lastSeenOffline = new ConcurrentHashMap<>();
+    private final List<PresenceListener> listeners = new CopyOnWriteArrayList<>();
+    private final long timeoutMillis;
+    private final TimerWheel<PresenceEntry> timerWheel;
+    private final ScheduledExecutorService ticker;
+    private final ScheduledExecutorService notifier;
+    private final ConcurrentHashMap<Long, PresenceChange> pendingChanges = new ConcurrentHashMap<>();
+    private final int maxPendingChanges;
+    private final LongAdder droppedChanges = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    public PresenceRegistry(@Value("${linkup.presence.timeout-ms:30000}") long timeoutMillis,
+                            @Value("${linkup.presence.tick-ms:1000}") long tickMillis,
+                            @Value("${linkup.presence.stripes:16}") int stripeCount,
+                            @Value("${linkup.presence.notify-interval-ms:200}") long notifyIntervalMillis,
+                            @Value("${linkup.presence.max-pending-changes:100000}") int maxPendingChanges) {
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1) << 1);
+        this.stripes = new ConcurrentHashMap[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ConcurrentHashMap<>();
+        }
+        this.timeoutMillis = timeoutMillis;
+        this.maxPendingChanges = maxPendingChanges;
+        this.timerWheel = new TimerWheel<>(timeoutMillis, tickMillis, System.currentTimeMillis());
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> daemon(runnable, "presence-ticker"));
+        this.notifier = Executors.newSingleThreadScheduledExecutor(runnable -> daemon(runnable, "presence-notifier"));
+        this.ticker.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        this.notifier.scheduleWithFixedDelay(this::drainChanges, notifyIntervalMillis, notifyIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void heartbeat(long userId) {
+        long now = System.currentTimeMillis();
+        ConcurrentHashMap<Long, PresenceEntry> stripe = stripeOf(userId);
+        while (true) {
+            PresenceEntry entry = stripe.get(userId);
+            if (entry == null) {
+                PresenceEntry created = new PresenceEntry(userId, now);
+                if (stripe.putIfAbsent(userId, created) == null) {
+                    timerWheel.schedule(created, now + timeoutMillis);
+                    lastSeenOffline.remove(userId);
+                    notifyListeners(userId, true, now);
+                    return;
+                }
+                continue;
+            }
+            if (entry.touch(now)) {
+                return;
+            }
+            // Lost a race with expiry, the dead entry is replaced on the next pass
+            stripe.remove(userId, entry);
+        }
+    }
+
+    // Marks a user offline straight away, e.g. when their last WebSocket closes
+    public void disconnect(long userId) {
+        PresenceEntry entry = stripeOf(userId).get(userId);
+        if (entry != null) {
+            expire(entry, entry.lastHeartbeat.get());
+        }
+    }
+
+    public boolean isOnline(long userId) {
+        return stripeOf(userId).containsKey(userId);
+    }
+
+    // Returns 0 when the user has not been seen since the server started
+    public long lastSeen(long userId) {
+        PresenceEntry entry = stripeOf(userId).get(userId);
+        if (entry != null) {
+            long lastHeartbeat = entry.lastHeartbeat.get();
+            if (lastHeartbeat != OFFLINE) {
+                return lastHeartbeat;
+            }
+        }
+        return lastSeenOffline.getOrDefault(userId, 0L);
+    }
+
+    // Bulk lookup for contact lists, the result is aligned with the given ids
+    public boolean[] onlineOf(long[] userIds) {
+        boolean[] online = new boolean[userIds.length];
+        for (int i = 0; i < userIds.length; i++) {
+            online[i] = isOnline(userIds[i]);
+        }
+        return online;
+    }
+
+    public int onlineCount() {
+        int count = 0;
+        for (ConcurrentHashMap<Long, PresenceEntry> stripe : stripes) {
+            count += stripe.size();
+        }
+        return count;
+    }
+
+    // Changes not told to listeners because too many were waiting, peers then see a stale status until the next one
+    public long droppedChanges() {
+        return droppedChanges.sum();
+    }
+
+    public void subscribe(PresenceListener listener) {
+        listeners.add(listener);
+    }
+
+    public void unsubscribe(PresenceListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void tick() {
+        long now = System.currentTimeMillis();
+        timerWheel.advance(now, entry -> {
+            long lastHeartbeat = entry.lastHeartbeat.get();
+            if (lastHeartbeat == OFFLINE) {
+                return;
+            }
+            long deadline = lastHeartbeat + timeoutMillis;
+            if (deadline > now || !expire(entry, lastHeartbeat)) {
+                // Heartbeats arrived since it was scheduled, check again at the new deadline
+                timerWheel.schedule(entry, Math.max(deadline, now + 1));
+            }
+        });
+    }
+
+    private boolean expire(PresenceEntry entry, long lastHeartbeat) {
+        if (lastHeartbeat == OFFLINE || !entry.lastHeartbeat.compareAndSet(lastHeartbeat, OFFLINE)) {
+            return false;
+        }
+        lastSeenOffline.put(entry.userId, lastHeartbeat);
+        stripeOf(entry.userId).remove(entry.userId, entry);
+        notifyListeners(entry.userId, false, lastHeartbeat);
+        return true;
+    }
+
+    // A newer change of the same user replaces the waiting one, only new users count against the bound
+    private void notifyListeners(long userId, boolean online, long lastSeenMillis) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        if (pendingChanges.size() >= maxPendingChanges && !pendingChanges.containsKey(userId)) {
+            droppedChanges.increment();
+            return;
+        }
+        pendingChanges.put(userId, new PresenceChange(userId, online, lastSeenMillis));
+    }
+
+    private void drainChanges() {
+        List<PresenceChange> batch = new ArrayList<>(NOTIFY_BATCH_SIZE);
+        for (Long userId : pendingChanges.keySet()) {
+            PresenceChange change = pendingChanges.remove(userId);
+            if (change != null) {
+                batch.add(change);
+            }
+            if (batch.size() == NOTIFY_BATCH_SIZE) {
+                deliver(batch);
+                batch = new ArrayList<>(NOTIFY_BATCH_SIZE);
+            }
+        }
+        if (!batch.isEmpty()) {
+            deliver(batch);
+        }
+    }
+
+    private void deliver(List<PresenceChange> batch) {
+        for (PresenceListener listener : listeners) {
+            try {
+                listener.onPresenceChanges(batch);
+            } catch (RuntimeException e) {
+                log.warn("Presence listener failed for {} changes", batch.size(), e);
+            }
+        }
+    }
+
+    private ConcurrentHashMap<Long, PresenceEntry> stripeOf(long userId) {
+        long hash = userId * 0x9E3779B97F4A7C15L;
+        return stripes[(int) (hash >>> 32) & (stripes.length - 1)];
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    @Override
+    public void destroy() {
+        ticker.shutdownNow();
+        notifier.shutdown();
+    }
+
+    static final class PresenceEntry {
+        final long userId;
+        final AtomicLong lastHeartbeat;
+
+        PresenceEntry(long userId, long now) {
+            this.userId = userId;
+            this.lastHeartbeat = new AtomicLong(now);
+        }
+
+        // Fails only once the entry has been expired, heartbeats never move the timestamp backwards
+        boolean touch(long now) {
+            while (true) {
+                long current = lastHeartbeat.get();
+                if (current == OFFLINE) {
+                    return false;
+                }
+                if (current >= now || lastHeartbeat.compareAndSet(current, now)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package net.svsh.linkupserver.presence.service;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+// Hashed timer wheel: scheduling is O(1) and each tick only visits the entries due in that slot.
+// Deadlines further out than one revolution land in the last slot and are expected to be rescheduled by the caller.
+class TimerWheel<T> {
+
+    private final Queue<T>[] slots;
+    private final long tickMillis;
+    private volatile long currentTick;
+
+    @SuppressWarnings("unchecked")
+    TimerWheel(long spanMillis, long tickMillis, long nowMillis) {
+        int slotCount = (int) (spanMillis / tickMillis) + 2;
+        this.slots = new Queue[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.tickMillis = tickMillis;
+        this.currentTick = nowMillis / tickMillis;
+    }
+
+    // Safe to call from any thread. Racing a tick can at worst delay the item by one revolution.
+    void schedule(T item, long deadlineMillis) {
+        long tick = Math.max(deadlineMillis / tickMillis, tickOf() + 1);
+        tick = Math.min(tick, tickOf() + slots.length - 1);
+        slots[(int) (tick % slots.length)].add(item);
+    }
+
+    // Only called from the single ticking thread, hands every item whose slot has come round to the consumer
+    void advance(long nowMillis, Consumer<T> due) {
+        long targetTick = nowMillis / tickMillis;
+        while (tickOf() < targetTick) {
+            long tick = tickOf() + 1;
+            Queue<T> slot = slots[(int) (tick % slots.length)];
+            currentTick = tick;
+            T item;
+            while ((item = slot.poll()) != null) {
+                due.accept(item);
+            }
+        }
+    }
+
+    private long tickOf() {
+        return currentTick;
+    }
+}
@@ -0,0 +1,188 @@
+package net.svsh.linkupserver.requestlog;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+// Sampled, structured request log. Request threads decide with a thread-local random and hand the entry to a
+// lock-free queue, one writer thread formats and writes it as a JSON line to the "linkup.requests" logger.
+// When the writer falls behind, entries are dropped and counted instead of slowing requests down.
+@Component
+public class RequestLog implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(RequestLog.class);
+    private static final Logger requests = LoggerFactory.getLogger("linkup.requests");
+    private static final String REDACTED = "[REDACTED]";
+
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final double defaultSampleRate;
+    private final List<PathRate> sampleRates;
+    private final long slowNanos;
+    private final int capacity;
+    private final Set<String> redactedParameters;
+    private final Queue<RequestLogEntry> queue = new ConcurrentLinkedQueue<>();
+    // ConcurrentLinkedQueue.size() walks the whole queue, the bound is kept separately
+    private final AtomicInteger queued = new AtomicInteger();
+    private final ScheduledExecutorService writer;
+
+    private final LongAdder sampled = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    // Only the writer touches it, an entry that fails once likely fails the same way every time
+    private boolean serializationFailureLogged;
+
+    public RequestLog(ObjectMapper objectMapper,
+                      @Value("${linkup.request-log.enabled:true}") boolean enabled,
+                      @Value("${linkup.request-log.sample-rate:0.01}") double defaultSampleRate,
+                      @Value("${linkup.request-log.sample-rates:}") String sampleRates,
+                      @Value("${linkup.request-log.slow-ms:1000}") long slowMillis,
+                      @Value("${linkup.request-log.capacity:10000}") int capacity,
+                      @Value("${linkup.request-log.flush-interval-ms:200}") long flushIntervalMillis,
+                      @Value("${linkup.request-log.redact:password,token,refreshToken,access_token,authorization}") String redact) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.defaultSampleRate = defaultSampleRate;
+        this.sampleRates = parseRates(sampleRates);
+        this.slowNanos = TimeUnit.MILLISECONDS.toNanos(slowMillis);
+        this.capacity = capacity;
+        this.redactedParameters = Arrays.stream(redact.split(","))
+                .map(name -> name.trim().toLowerCase(Locale.ROOT))
+                .filter(name -> !name.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        this.writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "request-log-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.writer.scheduleWithFixedDelay(this::drain, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Server errors and slow requests are always kept, everything else at the rate of its path
+    public double sampleRate(String path, int status, long durationNanos) {
+        if (!enabled) {
+            return 0;
+        }
+        if (status >= 500 || durationNanos >= slowNanos) {
+            return 1;
+        }
+        for (PathRate rate : sampleRates) {
+            if (path.startsWith(rate.prefix())) {
+                return rate.rate();
+            }
+        }
+        return defaultSampleRate;
+    }
+
+    public boolean sample(double rate) {
+        return rate >= 1 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    public void submit(RequestLogEntry entry) {
+        sampled.increment();
+        if (queued.incrementAndGet() > capacity) {
+            queued.decrementAndGet();
+            dropped.increment();
+            return;
+        }
+        queue.offer(entry);
+    }
+
+    // Values of credential-like parameters never reach the log, their names still do
+    public String redact(String query) {
+        if (query == null || query.isEmpty()) {
+            return null;
+        }
+        StringBuilder redacted = new StringBuilder(query.length());
+        for (String parameter : query.split("&")) {
+            if (!redacted.isEmpty()) {
+                redacted.append('&');
+            }
+            int separator = parameter.indexOf('=');
+            String name = separator < 0 ? parameter : parameter.substring(0, separator);
+            if (separator >= 0 && redactedParameters.contains(decodeName(name))) {
+                redacted.append(name).append('=').append(REDACTED);
+            } else {
+                redacted.append(parameter);
+            }
+        }
+        return redacted.toString();
+    }
+
+    // A malformed escape is compared as written, it cannot spell a redacted name anyway
+    private static String decodeName(String name) {
+        try {
+            return URLDecoder.decode(name, StandardCharsets.UTF_8).toLowerCase(Locale.ROOT);
+        } catch (IllegalArgumentException e) {
+            return name.toLowerCase(Locale.ROOT);
+        }
+    }
+
+    public RequestLogStats stats() {
+        return new RequestLogStats(enabled, defaultSampleRate, sampled.sum(), written.sum(), dropped.sum(),
+                queued.get(), capacity);
+    }
+
+    private void drain() {
+        RequestLogEntry entry;
+        while ((entry = queue.poll()) != null) {
+            queued.decrementAndGet();
+            try {
+                requests.info(objectMapper.writeValueAsString(entry));
+                written.increment();
+            } catch (JsonProcessingException | RuntimeException e) {
+                dropped.increment();
+                if (!serializationFailureLogged) {
+                    serializationFailureLogged = true;
+                    log.warn("Dropping request log entries that fail to serialize, only the first is logged", e);
+                }
+            }
+        }
+    }
+
+    // Longest prefix first, so /api/admin/datasource can differ from the rest of /api/admin/
+    private static List<PathRate> parseRates(String sampleRates) {
+        List<PathRate> rates = new ArrayList<>();
+        for (String rate : sampleRates.split(",")) {
+            int separator = rate.lastIndexOf('=');
+            if (separator > 0) {
+                rates.add(new PathRate(rate.substring(0, separator).trim(), Double.parseDouble(rate.substring(separator + 1).trim())));
+            }
+        }
+        rates.sort(Comparator.comparingInt((PathRate rate) -> rate.prefix().length()).reversed());
+        return List.copyOf(rates);
+    }
+
+    // Writes what is still queued, requests have stopped by the time beans are destroyed
+    @Override
+    public void destroy() throws InterruptedException {
+        writer.shutdown();
+        writer.awaitTermination(5, TimeUnit.SECONDS);
+        drain();
+    }
+
+    private record PathRate(String prefix, double rate) {
+    }
+}
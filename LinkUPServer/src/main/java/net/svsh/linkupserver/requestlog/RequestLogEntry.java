@@ -0,0 +1,16 @@
+package net.svsh.linkupserver.requestlog;
+
+import java.time.Instant;
+
+// One line of the request log. endpoint is the matched route, e.g. api/users/{userId}, so lines group without
+// ids in them; it falls back to the raw path for requests rejected before routing. sampleRate lets a reader
+// weight sampled lines back up to totals.
+public record RequestLogEntry(Instant timestamp,
+                              String method,
+                              String endpoint,
+                              String query,
+                              int status,
+                              long durationMicros,
+                              String client,
+                              double sampleRate) {
+}
@@ -0,0 +1,10 @@
+package net.svsh.linkupserver.requestlog;
+
+public record RequestLogStats(boolean enabled,
+                              double defaultSampleRate,
+                              long sampled,
+                              long written,
+                              long dropped,
+                              int queued,
+                              int capacity) {
+}
@@ -0,0 +1,25 @@
+package net.svsh.linkupserver.search.controller;
+
+import net.svsh.linkupserver.search.dto.SearchResponse;
+import net.svsh.linkupserver.search.service.MessageSearchService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+public class SearchController {
+
+    @Autowired
+    private MessageSearchService messageSearchService;
+
+    @RequestMapping(value = "api/search/messages", method = RequestMethod.GET)
+    public ResponseEntity<SearchResponse> searchMessages(@RequestParam String q,
+                                                         @RequestParam(required = false) Long before,
+                                                         @RequestParam(required = false) Integer limit) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        SearchResponse response = messageSearchService.search(auth.getName(), q, before, limit);
+        return ResponseEntity.status(response.getStatusCode()).body(response);
+    }
+}
@@ -0,0 +1,20 @@
+package net.svsh.linkupserver.search.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import net.svsh.linkupserver.chat.dto.MessageView;
+
+import java.util.List;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class SearchResponse {
+    private int statusCode;
+    private String error;
+    private String message;
+    private List<MessageView> messages;
+    private Long nextCursor;
+    private Boolean partial;
+}
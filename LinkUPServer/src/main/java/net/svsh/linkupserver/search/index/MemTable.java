@@ -0,0 +1,89 @@
+package net.svsh.linkupserver.search.index;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+// Postings of the messages indexed since the last segment was written. Not thread-safe, SearchIndex guards it
+final class MemTable {
+
+    private final Map<String, Map<Integer, LongList>> postings = new HashMap<>();
+    private int messageCount;
+    private long maxMessageId;
+
+    void add(long messageId, int chatId, Collection<String> terms) {
+        for (String term : terms) {
+            postings.computeIfAbsent(term, key -> new HashMap<>())
+                    .computeIfAbsent(chatId, key -> new LongList())
+                    .add(messageId);
+        }
+        messageCount++;
+        maxMessageId = Math.max(maxMessageId, messageId);
+    }
+
+    int messageCount() {
+        return messageCount;
+    }
+
+    long maxMessageId() {
+        return maxMessageId;
+    }
+
+    boolean isEmpty() {
+        return messageCount == 0;
+    }
+
+    void collect(String term, int[] chatIds, Map<Integer, LongList> out) {
+        Map<Integer, LongList> byChat = postings.get(term);
+        if (byChat == null) {
+            return;
+        }
+        if (byChat.size() < chatIds.length) {
+            byChat.forEach((chatId, ids) -> {
+                if (Arrays.binarySearch(chatIds, chatId) >= 0) {
+                    append(out, chatId, ids);
+                }
+            });
+        } else {
+            for (int chatId : chatIds) {
+                LongList ids = byChat.get(chatId);
+                if (ids != null) {
+                    append(out, chatId, ids);
+                }
+            }
+        }
+    }
+
+    void writeTo(SegmentWriter writer) throws IOException {
+        byte[][] terms = new byte[postings.size()][];
+        String[] names = new String[postings.size()];
+        int index = 0;
+        for (String term : postings.keySet()) {
+            names[index] = term;
+            terms[index++] = term.getBytes(StandardCharsets.UTF_8);
+        }
+        Integer[] order = new Integer[terms.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(terms[a], terms[b]));
+
+        for (int i : order) {
+            Map<Integer, LongList> byChat = postings.get(names[i]);
+            int[] chatIds = byChat.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+            long[][] ids = new long[chatIds.length][];
+            for (int c = 0; c < chatIds.length; c++) {
+                ids[c] = byChat.get(chatIds[c]).toSortedDistinct();
+            }
+            writer.addTerm(terms[i], chatIds, ids);
+        }
+        writer.finish(maxMessageId, messageCount);
+    }
+
+    private static void append(Map<Integer, LongList> out, int chatId, LongList ids) {
+        out.computeIfAbsent(chatId, key -> new LongList()).addAll(ids.toSortedDistinct());
+    }
+}
@@ -0,0 +1,376 @@
+package net.svsh.linkupserver.search.index;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Inverted index over message content, term -> chat -> message ids. New messages go into an in-memory table
+// that is written out as an immutable, memory-mapped segment once it is big enough; small segments are merged
+// in the background. Postings are grouped by chat, so a query only decodes the chats its caller belongs to.
+// Message ids are BIGINT and stored as longs, chat ids are INT columns and stored as ints.
+public class SearchIndex implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchIndex.class);
+
+    private static final Pattern SEGMENT_FILE = Pattern.compile("segment-(\\d+)\\.idx");
+
+    private final Path root;
+    private final int memTableMaxMessages;
+    private final int maxSegments;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock maintenanceLock = new ReentrantLock();
+    private final AtomicLong nextSequence = new AtomicLong();
+
+    // Guarded by lock. flushing is the table being written, still searched until its segment is published
+    private MemTable active = new MemTable();
+    private MemTable flushing;
+    private volatile List<Segment> segments;
+
+    private final LongAdder indexed = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder merges = new LongAdder();
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder queryNanos = new LongAdder();
+
+    public SearchIndex(Path root, int memTableMaxMessages, int maxSegments) throws IOException {
+        this.root = Files.createDirectories(root);
+        this.memTableMaxMessages = memTableMaxMessages;
+        this.maxSegments = Math.max(2, maxSegments);
+        this.segments = List.copyOf(openSegments());
+    }
+
+    public void add(long messageId, long chatId, String content) {
+        Set<String> terms = Tokenizer.terms(content);
+        lock.writeLock().lock();
+        try {
+            active.add(messageId, (int) chatId, terms);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        indexed.increment();
+    }
+
+    public boolean needsFlush() {
+        lock.readLock().lock();
+        try {
+            return active.messageCount() >= memTableMaxMessages;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Ids of messages in the given chats containing every term of the query, newest first and older than before
+    public List<Long> search(String query, long[] chatIds, long before, int limit) {
+        long start = System.nanoTime();
+        try {
+            return find(query, chatIds, before, limit);
+        } finally {
+            queries.increment();
+            queryNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    // Only messages in segments survive a restart, everything after this id has to be indexed again
+    public long maxIndexedMessageId() {
+        long max = 0;
+        for (Segment segment : segments) {
+            max = Math.max(max, segment.maxMessageId());
+        }
+        return max;
+    }
+
+    // Writes the in-memory table as a new segment, then merges if there are too many segments
+    public void flush() throws IOException {
+        maintenanceLock.lock();
+        try {
+            MemTable frozen;
+            lock.writeLock().lock();
+            try {
+                // A table whose earlier write failed is retried before anything newer
+                if (flushing == null) {
+                    if (active.isEmpty()) {
+                        return;
+                    }
+                    flushing = active;
+                    active = new MemTable();
+                }
+                frozen = flushing;
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            Segment segment = writeSegment(frozen::writeTo);
+            lock.writeLock().lock();
+            try {
+                List<Segment> updated = new ArrayList<>(segments);
+                updated.add(segment);
+                segments = List.copyOf(updated);
+                flushing = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            flushes.increment();
+
+            if (segments.size() > maxSegments) {
+                merge();
+            }
+        } finally {
+            maintenanceLock.unlock();
+        }
+    }
+
+    public SearchIndexStats stats() {
+        List<Segment> current = segments;
+        long bytes = 0;
+        long messages = 0;
+        for (Segment segment : current) {
+            bytes += segment.sizeBytes();
+            messages += segment.messageCount();
+        }
+        int memTableMessages;
+        lock.readLock().lock();
+        try {
+            memTableMessages = active.messageCount() + (flushing == null ? 0 : flushing.messageCount());
+        } finally {
+            lock.readLock().unlock();
+        }
+        long queryCount = queries.sum();
+        return new SearchIndexStats(current.size(), bytes, messages, memTableMessages, indexed.sum(),
+                flushes.sum(), merges.sum(), queryCount,
+                queryCount == 0 ? 0 : queryNanos.sum() / 1_000_000.0 / queryCount,
+                maxIndexedMessageId());
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    private List<Long> find(String query, long[] chatIds, long before, int limit) {
+        String[] terms = Tokenizer.terms(query).toArray(String[]::new);
+        int[] candidates = Arrays.stream(chatIds).mapToInt(id -> (int) id).sorted().distinct().toArray();
+        if (terms.length == 0 || candidates.length == 0 || limit <= 0) {
+            return List.of();
+        }
+
+        List<Map<Integer, LongList>> postings = new ArrayList<>(terms.length);
+        List<Segment> searched;
+        lock.readLock().lock();
+        try {
+            searched = segments;
+            for (String term : terms) {
+                Map<Integer, LongList> byChat = new HashMap<>();
+                active.collect(term, candidates, byChat);
+                if (flushing != null) {
+                    flushing.collect(term, candidates, byChat);
+                }
+                postings.add(byChat);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // Each term narrows the chats the next one has to look at in the segments
+        for (int t = 0; t < terms.length && candidates.length > 0; t++) {
+            byte[] term = terms[t].getBytes(StandardCharsets.UTF_8);
+            Map<Integer, LongList> byChat = postings.get(t);
+            for (Segment segment : searched) {
+                segment.collect(term, candidates, byChat);
+            }
+            candidates = Arrays.stream(candidates).filter(byChat::containsKey).toArray();
+        }
+
+        List<Long> hits = new ArrayList<>();
+        for (int chatId : candidates) {
+            long[] matching = postings.get(0).get(chatId).toSortedDistinct();
+            for (int t = 1; t < terms.length && matching.length > 0; t++) {
+                matching = intersect(matching, postings.get(t).get(chatId).toSortedDistinct());
+            }
+            // No chat can contribute more than limit hits
+            int end = lowerBound(matching, before);
+            for (int i = end - 1; i >= Math.max(0, end - limit); i--) {
+                hits.add(matching[i]);
+            }
+        }
+        hits.sort(Comparator.reverseOrder());
+        return hits.size() > limit ? List.copyOf(hits.subList(0, limit)) : hits;
+    }
+
+    private void merge() throws IOException {
+        // Tiered: the smaller half is rewritten, so large segments are not copied on every merge
+        List<Segment> bySize = new ArrayList<>(segments);
+        bySize.sort(Comparator.comparingLong(Segment::sizeBytes));
+        List<Segment> sources = bySize.subList(0, bySize.size() / 2 + 1);
+
+        Segment merged = writeSegment(writer -> mergeInto(sources, writer));
+        lock.writeLock().lock();
+        try {
+            List<Segment> updated = new ArrayList<>(segments);
+            updated.removeAll(sources);
+            updated.add(merged);
+            segments = List.copyOf(updated);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        merges.increment();
+
+        // Running queries keep their mapping, the pages stay valid after the file is unlinked
+        for (Segment source : sources) {
+            Files.deleteIfExists(source.path());
+        }
+    }
+
+    private static void mergeInto(List<Segment> sources, SegmentWriter writer) throws IOException {
+        PriorityQueue<TermCursor> cursors = new PriorityQueue<>((a, b) -> Arrays.compareUnsigned(a.term, b.term));
+        long maxMessageId = 0;
+        long messageCount = 0;
+        for (Segment source : sources) {
+            maxMessageId = Math.max(maxMessageId, source.maxMessageId());
+            messageCount += source.messageCount();
+            if (source.termCount() > 0) {
+                cursors.add(new TermCursor(source, 0));
+            }
+        }
+
+        while (!cursors.isEmpty()) {
+            byte[] term = cursors.peek().term;
+            TreeMap<Integer, LongList> byChat = new TreeMap<>();
+            while (!cursors.isEmpty() && Arrays.equals(cursors.peek().term, term)) {
+                TermCursor cursor = cursors.poll();
+                cursor.segment.collectAll(cursor.index, byChat);
+                if (cursor.index + 1 < cursor.segment.termCount()) {
+                    cursors.add(new TermCursor(cursor.segment, cursor.index + 1));
+                }
+            }
+            int[] chatIds = new int[byChat.size()];
+            long[][] ids = new long[byChat.size()][];
+            int c = 0;
+            for (Map.Entry<Integer, LongList> entry : byChat.entrySet()) {
+                chatIds[c] = entry.getKey();
+                ids[c++] = entry.getValue().toSortedDistinct();
+            }
+            writer.addTerm(term, chatIds, ids);
+        }
+        writer.finish(maxMessageId, messageCount);
+    }
+
+    // Written under a temporary name and renamed, so a crash never leaves a half segment behind
+    private Segment writeSegment(SegmentContent content) throws IOException {
+        long sequence = nextSequence.getAndIncrement();
+        Path temporary = root.resolve("segment-" + sequence + ".tmp");
+        Path target = root.resolve("segment-" + sequence + ".idx");
+        try (SegmentWriter writer = new SegmentWriter(temporary)) {
+            content.writeTo(writer);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+        return Segment.open(sequence, target);
+    }
+
+    // A segment that cannot be read invalidates the watermark, so everything is dropped and rebuilt
+    private List<Segment> openSegments() throws IOException {
+        List<Segment> opened = new ArrayList<>();
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(root, "segment-*")) {
+            stream.forEach(files::add);
+        }
+        boolean corrupt = false;
+        for (Path file : files) {
+            Matcher matcher = SEGMENT_FILE.matcher(file.getFileName().toString());
+            if (!matcher.matches()) {
+                Files.deleteIfExists(file);
+                continue;
+            }
+            long sequence = Long.parseLong(matcher.group(1));
+            nextSequence.accumulateAndGet(sequence + 1, Math::max);
+            try {
+                opened.add(Segment.open(sequence, file));
+            } catch (IOException | RuntimeException e) {
+                log.warn("Search segment {} is unreadable, rebuilding the index", file, e);
+                corrupt = true;
+            }
+        }
+        if (corrupt) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+            return List.of();
+        }
+        opened.sort(Comparator.comparingLong(Segment::sequence));
+        return opened;
+    }
+
+    private static long[] intersect(long[] a, long[] b) {
+        long[] result = new long[Math.min(a.length, b.length)];
+        int i = 0;
+        int j = 0;
+        int size = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[size++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    // Index of the first id that is not older than before
+    private static int lowerBound(long[] ids, long before) {
+        int low = 0;
+        int high = ids.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ids[mid] < before) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private interface SegmentContent {
+        void writeTo(SegmentWriter writer) throws IOException;
+    }
+
+    private static final class TermCursor {
+        private final Segment segment;
+        private final int index;
+        private final byte[] term;
+
+        private TermCursor(Segment segment, int index) {
+            this.segment = segment;
+            this.index = index;
+            this.term = segment.term(index);
+        }
+    }
+}
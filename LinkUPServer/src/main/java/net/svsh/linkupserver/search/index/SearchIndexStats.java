@@ -0,0 +1,13 @@
+package net.svsh.linkupserver.search.index;
+
+public record SearchIndexStats(int segments,
+                               long segmentBytes,
+                               long segmentMessages,
+                               int memTableMessages,
+                               long indexedMessages,
+                               long flushes,
+                               long merges,
+                               long queries,
+                               double averageQueryMillis,
+                               long maxIndexedMessageId) {
+}
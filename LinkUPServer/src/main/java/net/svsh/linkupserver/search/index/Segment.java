@@ -0,0 +1,180 @@
+package net.svsh.linkupserver.search.index;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+
+// Read side of a segment written by SegmentWriter. The file is memory-mapped, so the page cache holds the hot
+// parts and a restart opens it without reading it. Only absolute gets are used, which is safe across threads.
+final class Segment {
+
+    private final long sequence;
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final long maxMessageId;
+    private final long messageCount;
+    private final int termCount;
+    private final int termTableOffset;
+
+    private Segment(long sequence, Path path, MappedByteBuffer buffer) throws IOException {
+        this.sequence = sequence;
+        this.path = path;
+        this.buffer = buffer;
+        if (buffer.capacity() < SegmentWriter.HEADER_SIZE
+                || buffer.getInt(0) != SegmentWriter.MAGIC || buffer.getInt(4) != SegmentWriter.VERSION) {
+            throw new IOException("Not a search segment: " + path);
+        }
+        this.maxMessageId = buffer.getLong(8);
+        this.messageCount = buffer.getLong(16);
+        this.termCount = buffer.getInt(24);
+        this.termTableOffset = buffer.getInt(28);
+    }
+
+    static Segment open(long sequence, Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new Segment(sequence, path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    long sequence() {
+        return sequence;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    long maxMessageId() {
+        return maxMessageId;
+    }
+
+    long messageCount() {
+        return messageCount;
+    }
+
+    int termCount() {
+        return termCount;
+    }
+
+    long sizeBytes() {
+        return buffer.capacity();
+    }
+
+    byte[] term(int index) {
+        int entry = termTableOffset + index * SegmentWriter.TERM_ENTRY_SIZE;
+        byte[] term = new byte[buffer.getInt(entry + 4)];
+        buffer.get(buffer.getInt(entry), term);
+        return term;
+    }
+
+    // Adds the postings of the given chats (sorted ascending) under the term to out
+    void collect(byte[] term, int[] chatIds, Map<Integer, LongList> out) {
+        int index = find(term);
+        if (index < 0) {
+            return;
+        }
+        int entry = termTableOffset + index * SegmentWriter.TERM_ENTRY_SIZE;
+        int chatCount = buffer.getInt(entry + 8);
+        int chatTable = buffer.getInt(entry + 12);
+
+        // Walk whichever side is shorter and binary search the other
+        if (chatCount < chatIds.length) {
+            for (int c = 0; c < chatCount; c++) {
+                int chatEntry = chatTable + c * SegmentWriter.CHAT_ENTRY_SIZE;
+                int chatId = buffer.getInt(chatEntry);
+                if (Arrays.binarySearch(chatIds, chatId) >= 0) {
+                    decode(chatEntry, out.computeIfAbsent(chatId, key -> new LongList()));
+                }
+            }
+        } else {
+            for (int chatId : chatIds) {
+                int c = findChat(chatTable, chatCount, chatId);
+                if (c >= 0) {
+                    decode(chatTable + c * SegmentWriter.CHAT_ENTRY_SIZE, out.computeIfAbsent(chatId, key -> new LongList()));
+                }
+            }
+        }
+    }
+
+    // Every chat of the term at index, used when merging segments
+    void collectAll(int index, Map<Integer, LongList> out) {
+        int entry = termTableOffset + index * SegmentWriter.TERM_ENTRY_SIZE;
+        int chatCount = buffer.getInt(entry + 8);
+        int chatTable = buffer.getInt(entry + 12);
+        for (int c = 0; c < chatCount; c++) {
+            int chatEntry = chatTable + c * SegmentWriter.CHAT_ENTRY_SIZE;
+            decode(chatEntry, out.computeIfAbsent(buffer.getInt(chatEntry), key -> new LongList()));
+        }
+    }
+
+    private void decode(int chatEntry, LongList into) {
+        int count = buffer.getInt(chatEntry + 4);
+        int position = buffer.getInt(chatEntry + 8);
+        long id = 0;
+        for (int i = 0; i < count; i++) {
+            long delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(position++);
+                delta |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            id += delta;
+            into.add(id);
+        }
+    }
+
+    private int find(byte[] term) {
+        int low = 0;
+        int high = termCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int compared = compareTerm(mid, term);
+            if (compared < 0) {
+                low = mid + 1;
+            } else if (compared > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    // Unsigned byte comparison straight against the mapped bytes, no copy per probe
+    private int compareTerm(int index, byte[] term) {
+        int entry = termTableOffset + index * SegmentWriter.TERM_ENTRY_SIZE;
+        int offset = buffer.getInt(entry);
+        int length = buffer.getInt(entry + 4);
+        int common = Math.min(length, term.length);
+        for (int i = 0; i < common; i++) {
+            int compared = Byte.compareUnsigned(buffer.get(offset + i), term[i]);
+            if (compared != 0) {
+                return compared;
+            }
+        }
+        return Integer.compare(length, term.length);
+    }
+
+    private int findChat(int chatTable, int chatCount, int chatId) {
+        int low = 0;
+        int high = chatCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int found = buffer.getInt(chatTable + mid * SegmentWriter.CHAT_ENTRY_SIZE);
+            if (found < chatId) {
+                low = mid + 1;
+            } else if (found > chatId) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+}
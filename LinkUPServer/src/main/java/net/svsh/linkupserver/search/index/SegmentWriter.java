@@ -0,0 +1,119 @@
+package net.svsh.linkupserver.search.index;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Writes one immutable segment. Terms must be added in unsigned UTF-8 byte order, each with its chats in
+// ascending order and every chat's message ids ascending and distinct. Layout:
+//   header   int magic, int version, long maxMessageId, long messageCount, int termCount, int termTableOffset
+//   per term postings of each chat as varlong deltas, then the chat table: (int chatId, int count, int offset)*
+//   term bytes, then the term table: (int bytesOffset, int bytesLength, int chatCount, int chatTableOffset)*
+// All offsets are ints, which is what a single MappedByteBuffer can address anyway.
+final class SegmentWriter implements Closeable {
+
+    static final int MAGIC = 0x4C555358;
+    // Version 1 had int message ids, its segments fail to open and the index is rebuilt
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 32;
+    static final int CHAT_ENTRY_SIZE = 12;
+    static final int TERM_ENTRY_SIZE = 16;
+
+    private final Path path;
+    private final DataOutputStream out;
+    private final List<byte[]> terms = new ArrayList<>();
+    private final List<int[]> termEntries = new ArrayList<>();
+    private byte[] previousTerm;
+
+    SegmentWriter(Path path) throws IOException {
+        this.path = path;
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16));
+        out.write(new byte[HEADER_SIZE]);
+    }
+
+    void addTerm(byte[] term, int[] chatIds, long[][] postings) throws IOException {
+        if (previousTerm != null && Arrays.compareUnsigned(previousTerm, term) >= 0) {
+            throw new IllegalArgumentException("Terms must be added in ascending order");
+        }
+        previousTerm = term;
+
+        int[] offsets = new int[chatIds.length];
+        for (int c = 0; c < chatIds.length; c++) {
+            offsets[c] = position();
+            long previous = 0;
+            for (long id : postings[c]) {
+                writeVarLong(id - previous);
+                previous = id;
+            }
+        }
+
+        int chatTableOffset = position();
+        for (int c = 0; c < chatIds.length; c++) {
+            out.writeInt(chatIds[c]);
+            out.writeInt(postings[c].length);
+            out.writeInt(offsets[c]);
+        }
+
+        terms.add(term);
+        termEntries.add(new int[]{0, term.length, chatIds.length, chatTableOffset});
+    }
+
+    // Writes the term table and header and syncs, the file is complete once this returns
+    void finish(long maxMessageId, long messageCount) throws IOException {
+        for (int t = 0; t < terms.size(); t++) {
+            termEntries.get(t)[0] = position();
+            out.write(terms.get(t));
+        }
+        int termTableOffset = position();
+        for (int[] entry : termEntries) {
+            for (int value : entry) {
+                out.writeInt(value);
+            }
+        }
+        out.close();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                .putInt(MAGIC)
+                .putInt(VERSION)
+                .putLong(maxMessageId)
+                .putLong(messageCount)
+                .putInt(terms.size())
+                .putInt(termTableOffset)
+                .flip();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(header, 0);
+            channel.force(true);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    // DataOutputStream counts bytes in an int and saturates, anything past that cannot be mapped
+    private int position() throws IOException {
+        int position = out.size();
+        if (position == Integer.MAX_VALUE) {
+            throw new IOException("Segment " + path + " is larger than 2 GB");
+        }
+        return position;
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}
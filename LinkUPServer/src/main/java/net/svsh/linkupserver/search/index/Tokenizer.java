@@ -0,0 +1,46 @@
+package net.svsh.linkupserver.search.index;
+
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+// Splits text into lower-cased runs of letters and digits. Messages and queries go through the same rules
+final class Tokenizer {
+
+    static final int MAX_TERM_LENGTH = 64;
+
+    private Tokenizer() {
+    }
+
+    static Set<String> terms(String text) {
+        Set<String> terms = new LinkedHashSet<>();
+        if (text == null) {
+            return terms;
+        }
+        int start = -1;
+        int i = 0;
+        while (i < text.length()) {
+            int codePoint = text.codePointAt(i);
+            if (Character.isLetterOrDigit(codePoint)) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                add(terms, text, start, i);
+                start = -1;
+            }
+            i += Character.charCount(codePoint);
+        }
+        if (start >= 0) {
+            add(terms, text, start, text.length());
+        }
+        return terms;
+    }
+
+    // Overlong runs are usually pasted hashes or links, not something anyone types into a search box
+    private static void add(Set<String> terms, String text, int start, int end) {
+        if (end - start <= MAX_TERM_LENGTH) {
+            terms.add(text.substring(start, end).toLowerCase(Locale.ROOT));
+        }
+    }
+}
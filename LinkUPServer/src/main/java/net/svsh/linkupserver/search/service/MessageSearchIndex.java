@@ -0,0 +1,173 @@
+package net.svsh.linkupserver.search.service;
+
+import net.svsh.linkupserver.chat.Message;
+import net.svsh.linkupserver.chat.persistence.MessageIdAllocator;
+import net.svsh.linkupserver.chat.persistence.MessageWriteBehindQueue;
+import net.svsh.linkupserver.chat.persistence.PersistedMessageListener;
+import net.svsh.linkupserver.search.index.SearchIndex;
+import net.svsh.linkupserver.search.index.SearchIndexStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Feeds the search index from the write-behind queue and keeps its segments on local disk. Messages persisted
+// by other nodes are picked up by scanning the messages table every flush interval.
+// A scan starts one catch-up window before the newest id seen so far: ids are time-ordered, but every node
+// persists asynchronously, so a message can land after a newer one was already scanned. The window is how late
+// it may land. On startup the scan starts a window before the newest id in the written segments.
+// Recent ids are remembered, so a scan skips what the write-behind queue already fed. Anything indexed twice
+// anyway is de-duplicated when its postings are written.
+@Component
+public class MessageSearchIndex implements PersistedMessageListener, InitializingBean, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageSearchIndex.class);
+
+    private static final String SELECT_SINCE = "SELECT id, chat_id, content FROM messages WHERE id >= ? ORDER BY id";
+
+    private final SearchIndex index;
+    private final MessageWriteBehindQueue messageWriteBehindQueue;
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final long flushIntervalMillis;
+    private final long catchUpWindowMillis;
+    private final ScheduledExecutorService maintainer;
+    private volatile boolean catchingUp;
+    private final Set<Long> recentlyIndexed = ConcurrentHashMap.newKeySet();
+    // Newest id read from the messages table, -1 until the startup catch-up finished. Maintainer thread only
+    private long scannedUpTo = -1;
+
+    public MessageSearchIndex(MessageWriteBehindQueue messageWriteBehindQueue,
+                              DataSource dataSource,
+                              @Value("${linkup.search.root:./data/search}") Path root,
+                              @Value("${linkup.search.memtable-max-messages:50000}") int memTableMaxMessages,
+                              @Value("${linkup.search.max-segments:8}") int maxSegments,
+                              @Value("${linkup.search.flush-interval-ms:30000}") long flushIntervalMillis,
+                              @Value("${linkup.search.catch-up-fetch-size:-2147483648}") int fetchSize,
+                              @Value("${linkup.search.catch-up-window-ms:60000}") long catchUpWindowMillis) throws IOException {
+        this.index = new SearchIndex(root, memTableMaxMessages, maxSegments);
+        this.messageWriteBehindQueue = messageWriteBehindQueue;
+        // Same streaming fetch size as UserStreamService, catching up must not buffer millions of rows
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(fetchSize);
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.catchUpWindowMillis = catchUpWindowMillis;
+        this.maintainer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "search-index-maintainer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        messageWriteBehindQueue.subscribe(this);
+        // Checked often so a burst is written out at the size limit, the interval bounds what a crash re-reads
+        long[] sinceFlush = {0};
+        maintainer.scheduleWithFixedDelay(() -> {
+            sinceFlush[0] += 1000;
+            if (sinceFlush[0] >= flushIntervalMillis && scannedUpTo >= 0) {
+                scan(scannedUpTo);
+            }
+            if (index.needsFlush() || sinceFlush[0] >= flushIntervalMillis) {
+                sinceFlush[0] = 0;
+                flush();
+            }
+        }, 1000, 1000, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void onPersisted(List<Message> batch) {
+        for (Message message : batch) {
+            add(message.getId(), message.getChatId(), message.getContent());
+        }
+    }
+
+    // Runs on the maintainer thread, searches meanwhile miss the part that is not indexed yet
+    @EventListener(ApplicationReadyEvent.class)
+    public void catchUp() {
+        catchingUp = true;
+        maintainer.execute(() -> {
+            try {
+                long count = scan(index.maxIndexedMessageId());
+                flush();
+                log.info("Search index caught up with {} messages", count);
+            } finally {
+                catchingUp = false;
+                scannedUpTo = Math.max(scannedUpTo, index.maxIndexedMessageId());
+            }
+        });
+    }
+
+    // Indexes every message from one window before the given id, returns how many were read
+    private long scan(long watermark) {
+        long from = watermark == 0 ? 0
+                : MessageIdAllocator.firstIdAt(MessageIdAllocator.millisOf(watermark) - catchUpWindowMillis);
+        long[] count = {0};
+        try {
+            streamingJdbcTemplate.query(SELECT_SINCE, resultSet -> {
+                long id = resultSet.getLong("id");
+                add(id, resultSet.getLong("chat_id"), resultSet.getString("content"));
+                scannedUpTo = Math.max(scannedUpTo, id);
+                if (++count[0] % 100_000 == 0) {
+                    flush();
+                }
+            }, from);
+        } catch (RuntimeException e) {
+            log.error("Search index scan from message {} failed", from, e);
+        }
+        // Later scans start at or after this one, ids below its start are never offered again
+        recentlyIndexed.removeIf(id -> id < from);
+        return count[0];
+    }
+
+    // Old ids are not remembered, the first catch-up of a large table would otherwise hold all of them
+    private void add(long messageId, long chatId, String content) {
+        long rememberFrom = MessageIdAllocator.firstIdAt(System.currentTimeMillis() - 2 * catchUpWindowMillis);
+        if (messageId < rememberFrom || recentlyIndexed.add(messageId)) {
+            index.add(messageId, chatId, content);
+        }
+    }
+
+    public List<Long> search(String query, long[] chatIds, long before, int limit) {
+        return index.search(query, chatIds, before, limit);
+    }
+
+    public boolean isCatchingUp() {
+        return catchingUp;
+    }
+
+    public SearchIndexStats stats() {
+        return index.stats();
+    }
+
+    private void flush() {
+        try {
+            index.flush();
+        } catch (IOException e) {
+            log.error("Failed to write search segment", e);
+        }
+    }
+
+    // Destroyed before the write-behind queue, whatever it drains after this is indexed by the next catch-up
+    @Override
+    public void destroy() throws IOException, InterruptedException {
+        maintainer.shutdown();
+        maintainer.awaitTermination(30, TimeUnit.SECONDS);
+        index.close();
+    }
+}
@@ -0,0 +1,77 @@
+package net.svsh.linkupserver.search.service;
+
+import net.svsh.linkupserver.chat.ChatParticipantRepository;
+import net.svsh.linkupserver.chat.MessageRepository;
+import net.svsh.linkupserver.chat.dto.MessageView;
+import net.svsh.linkupserver.datasource.PrimaryReads;
+import net.svsh.linkupserver.search.dto.SearchResponse;
+import net.svsh.linkupserver.user.User;
+import net.svsh.linkupserver.user.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Optional;
+
+@Service
+public class MessageSearchService {
+
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+
+    @Autowired
+    private MessageSearchIndex messageSearchIndex;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ChatParticipantRepository chatParticipantRepository;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    // Only the caller's chats are searched, the cursor is the id of the last message of the previous page
+    public SearchResponse search(String email, String query, Long before, Integer limit) {
+        SearchResponse searchResponse = new SearchResponse();
+
+        try {
+            if (query == null || query.isBlank()) {
+                searchResponse.setStatusCode(400);
+                searchResponse.setMessage("Query must not be empty");
+                return searchResponse;
+            }
+
+            Optional<User> user = userRepository.findByEmail(email);
+            if (user.isEmpty()) {
+                searchResponse.setStatusCode(404);
+                searchResponse.setMessage("User not found");
+                return searchResponse;
+            }
+
+            int pageSize = limit == null || limit <= 0 ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+            long cursor = before == null ? Long.MAX_VALUE : before;
+            long[] chatIds = chatParticipantRepository.findChatIdsByUserId(user.get().getId()).stream()
+                    .mapToLong(Long::longValue)
+                    .toArray();
+            List<Long> ids = messageSearchIndex.search(query, chatIds, cursor, pageSize);
+            // The index is fed from the primary, a lagging replica would drop hits it already returned
+            List<MessageView> messages = ids.isEmpty() ? List.of() : PrimaryReads.call(() -> messageRepository.findViewsByIds(ids));
+
+            searchResponse.setMessages(messages);
+            if (ids.size() == pageSize) {
+                searchResponse.setNextCursor(ids.get(ids.size() - 1));
+            }
+            if (messageSearchIndex.isCatchingUp()) {
+                searchResponse.setPartial(true);
+            }
+            searchResponse.setStatusCode(200);
+            searchResponse.setMessage("Search completed");
+        } catch (Exception e) {
+            searchResponse.setStatusCode(500);
+            searchResponse.setError(e.getMessage());
+        }
+
+        return searchResponse;
+    }
+}
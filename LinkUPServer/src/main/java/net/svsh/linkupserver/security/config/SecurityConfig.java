@@ -1,8 +1,10 @@
 package net.svsh.linkupserver.security.config;
 
 import net.svsh.linkupserver.security.jwt.JWTAuthFilter;
+import net.svsh.linkupserver.security.ratelimit.RateLimitFilter;
 import net.svsh.linkupserver.user.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -29,6 +31,12 @@ public class SecurityConfig {
     @Autowired
     private JWTAuthFilter jwtAuthFilter;
 
+    @Autowired
+    private RateLimitFilter rateLimitFilter;
+
+    @Value("${linkup.security.bcrypt-strength:10}")
+    private int bcryptStrength;
+
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http.csrf(AbstractHttpConfigurer::disable)
@@ -36,11 +44,17 @@ public class SecurityConfig {
                 .authorizeHttpRequests(request -> request
                         .requestMatchers("/api/auth/**").permitAll()
                         .requestMatchers("/api/validate-token").permitAll()
+                        .requestMatchers("/ws/**").permitAll() // Authenticated by JWTHandshakeInterceptor
+                        // Only served on the management port, which listens on loopback (management.server.*)
+                        .requestMatchers("/actuator/health", "/actuator/prometheus").permitAll()
                         .requestMatchers("/api/admin/**").hasAnyAuthority("ADMIN")
+                        // The whole directory in one response, and a typeahead over it: only for signed-in users
+                        .requestMatchers("/api/users/stream", "/api/users/search").authenticated()
                         .requestMatchers("/api/users/**").permitAll()
                         .anyRequest().authenticated())
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class)
+                .addFilterBefore(rateLimitFilter, JWTAuthFilter.class)
                 .authenticationProvider(authenticationProvider());
 
         return http.build();
@@ -51,13 +65,15 @@ public class SecurityConfig {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
         authProvider.setUserDetailsService(userService);
         authProvider.setPasswordEncoder(passwordEncoder());
+        authProvider.setUserDetailsPasswordService(userService);
 
         return authProvider;
     }
 
+    // Hashes stored with a lower cost are upgraded on the user's next successful login
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return new BCryptPasswordEncoder(bcryptStrength);
     }
 
     @Bean
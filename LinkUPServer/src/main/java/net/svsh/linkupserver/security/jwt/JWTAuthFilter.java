@@ -1,9 +1,12 @@
 package net.svsh.linkupserver.security.jwt;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import net.svsh.linkupserver.security.token.RevocationList;
 import net.svsh.linkupserver.user.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -15,16 +18,37 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class JWTAuthFilter extends OncePerRequestFilter {
 
     @Autowired
-    private JWTUtils jwtUtils;
+    private VerifiedTokenCache verifiedTokenCache;
 
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private RevocationList revocationList;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Timer tokenParseTimer;
+    private Timer userLookupTimer;
+
+    @Override
+    protected void initFilterBean() {
+        tokenParseTimer = Timer.builder("linkup.auth.filter")
+                .description("Time JWTAuthFilter spends per request, by phase")
+                .tag("phase", "token_parse")
+                .register(meterRegistry);
+        userLookupTimer = Timer.builder("linkup.auth.filter")
+                .description("Time JWTAuthFilter spends per request, by phase")
+                .tag("phase", "user_lookup")
+                .register(meterRegistry);
+    }
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
@@ -44,12 +68,32 @@ public class JWTAuthFilter extends OncePerRequestFilter {
         }
 
         final String authToken = authHeader.substring(7);
-        final String userEmail = jwtUtils.extractUsername(authToken);
+        long parseStart = System.nanoTime();
+        final ParsedToken parsedToken;
+        try {
+            parsedToken = verifiedTokenCache.verify(authToken);
+        } finally {
+            tokenParseTimer.record(System.nanoTime() - parseStart, TimeUnit.NANOSECONDS);
+        }
+        // Refresh tokens only work on the refresh endpoint, revoked sessions nowhere. Both stay unauthenticated
+        if (parsedToken.refresh() || revocationList.isRevoked(parsedToken.sessionId())) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        final String userEmail = parsedToken.subject();
 
         if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = userService.loadUserByUsername(userEmail);
+            long lookupStart = System.nanoTime();
+            UserDetails userDetails;
+            try {
+                userDetails = userService.loadUserByUsername(userEmail);
+            } finally {
+                userLookupTimer.record(System.nanoTime() - lookupStart, TimeUnit.NANOSECONDS);
+            }
 
-            if (jwtUtils.validateToken(authToken, userDetails)) {
+            // Signature was already checked by the cache, only the subject and expiry are left
+            if (parsedToken.isValidFor(userDetails.getUsername())) {
                 SecurityContext securityContext = SecurityContextHolder.createEmptyContext();
                 UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
                         userDetails, null, userDetails.getAuthorities());
@@ -1,6 +1,7 @@
 package net.svsh.linkupserver.security.jwt;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
@@ -8,22 +9,29 @@ import org.springframework.stereotype.Component;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.Base64;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.function.Function;
 
 @Component
 public class JWTUtils {
 
     private SecretKey SECRET_KEY;
-    private static final Long EXPIRATION_TIME = 86400000L; // 24 HOURS
+    private final JwtParser parser;
+    public static final Long EXPIRATION_TIME = 86400000L; // 24 HOURS
+    private static final String SESSION_CLAIM = "sid";
+    private static final String TYPE_CLAIM = "typ";
+    private static final String REFRESH_TYPE = "refresh";
 
-    // Generating the secret key
+    // Generating the secret key, the parser is immutable and shared by every request
     public JWTUtils() {
-        String secretKey = "your_secret_key";
-        byte[] keyBytes = Base64.getDecoder().decode(secretKey.getBytes(StandardCharsets.UTF_8));
-        this.SECRET_KEY = new SecretKeySpec(keyBytes, "HmacSHA256");
+        this(new SecretKeySpec(Base64.getDecoder().decode("your_secret_key".getBytes(StandardCharsets.UTF_8)), "HmacSHA256"));
+    }
+
+    // Tests sign with a key of their own
+    JWTUtils(SecretKey secretKey) {
+        this.SECRET_KEY = secretKey;
+        this.parser = Jwts.parser().verifyWith(SECRET_KEY).build();
     }
 
     // Generating Token
@@ -36,31 +44,47 @@ public class JWTUtils {
                 .compact();
     }
 
-    public String generateRefreshToken(HashMap<String, Object> claims, UserDetails userDetails) {
+    // Access token of a login session, revoking the session revokes the token
+    public String generateToken(UserDetails userDetails, String sessionId) {
         return Jwts.builder()
-                .claims(claims)
                 .subject(userDetails.getUsername())
+                .claim(SESSION_CLAIM, sessionId)
                 .issuedAt(new Date(System.currentTimeMillis()))
                 .expiration(new Date(System.currentTimeMillis() + EXPIRATION_TIME))
                 .signWith(SECRET_KEY)
                 .compact();
     }
 
-    public String extractUsername(String token) {
-        return extractClaims(token, Claims::getSubject);
+    // Only accepted by the refresh endpoint, the id is the token's row in refresh_tokens
+    public String generateRefreshToken(UserDetails userDetails, String tokenId, String sessionId, Instant expiresAt) {
+        return Jwts.builder()
+                .id(tokenId)
+                .subject(userDetails.getUsername())
+                .claim(SESSION_CLAIM, sessionId)
+                .claim(TYPE_CLAIM, REFRESH_TYPE)
+                .issuedAt(new Date(System.currentTimeMillis()))
+                .expiration(Date.from(expiresAt))
+                .signWith(SECRET_KEY)
+                .compact();
     }
 
-    private <T> T extractClaims(String token, Function<Claims, T> claimsResolver) {
-        return claimsResolver.apply(Jwts.parser().verifyWith(SECRET_KEY).build().parseSignedClaims(token).getPayload());
+    // Verifies the signature once and keeps only the claims the server needs
+    public ParsedToken parseToken(String token) {
+        Claims claims = parser.parseSignedClaims(token).getPayload();
+        return new ParsedToken(claims.getSubject(), toInstant(claims.getIssuedAt()), toInstant(claims.getExpiration()),
+                claims.getId(), claims.get(SESSION_CLAIM, String.class), REFRESH_TYPE.equals(claims.get(TYPE_CLAIM, String.class)));
     }
 
-    public Boolean validateToken(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+    private static Instant toInstant(Date date) {
+        return date == null ? null : date.toInstant();
+    }
+
+    public String extractUsername(String token) {
+        return parseToken(token).subject();
     }
 
-    private boolean isTokenExpired(String token) {
-        return extractClaims(token, Claims::getExpiration).before(new Date());
+    public Boolean validateToken(String token, UserDetails userDetails) {
+        return parseToken(token).isValidFor(userDetails.getUsername());
     }
 
 }
@@ -0,0 +1,20 @@
+package net.svsh.linkupserver.security.jwt;
+
+import java.time.Instant;
+
+// Immutable result of a single signature-verified parse of a JWT. sessionId ties access and refresh tokens
+// issued from the same login together, id is only set on refresh tokens
+public record ParsedToken(String subject, Instant issuedAt, Instant expiration, String id, String sessionId, boolean refresh) {
+
+    public long expirationMillis() {
+        return expiration == null ? Long.MAX_VALUE : expiration.toEpochMilli();
+    }
+
+    public boolean isExpired() {
+        return expirationMillis() < System.currentTimeMillis();
+    }
+
+    public boolean isValidFor(String username) {
+        return subject != null && subject.equals(username) && !isExpired();
+    }
+}
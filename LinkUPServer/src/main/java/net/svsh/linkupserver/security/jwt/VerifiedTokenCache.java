@@ -0,0 +1,77 @@
+package net.svsh.linkupserver.security.jwt;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+@Component
+public class VerifiedTokenCache {
+
+    private final JWTUtils jwtUtils;
+    private final Cache<ByteBuffer, ParsedToken> cache;
+
+    public VerifiedTokenCache(JWTUtils jwtUtils, @Value("${linkup.jwt.cache.max-size:10000}") long maxSize) {
+        this.jwtUtils = jwtUtils;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new UntilTokenExpiry())
+                .recordStats()
+                .build();
+    }
+
+    // Returns the verified token, only checking the signature the first time a token is seen
+    public ParsedToken verify(String token) {
+        return cache.get(digest(token), key -> jwtUtils.parseToken(token));
+    }
+
+    // The token if an earlier request already verified it, null otherwise. Never checks a signature
+    public ParsedToken peek(String token) {
+        return cache.getIfPresent(digest(token));
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    // Keyed by a SHA-256 digest so the cache never holds the raw bearer tokens
+    private static ByteBuffer digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return ByteBuffer.wrap(sha256.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class UntilTokenExpiry implements Expiry<ByteBuffer, ParsedToken> {
+
+        @Override
+        public long expireAfterCreate(ByteBuffer key, ParsedToken token, long currentTime) {
+            long remainingMillis = token.expirationMillis() - System.currentTimeMillis();
+            return remainingMillis <= 0 ? 0 : TimeUnit.MILLISECONDS.toNanos(remainingMillis);
+        }
+
+        @Override
+        public long expireAfterUpdate(ByteBuffer key, ParsedToken token, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(ByteBuffer key, ParsedToken token, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
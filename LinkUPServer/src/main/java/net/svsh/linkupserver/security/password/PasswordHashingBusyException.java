@@ -0,0 +1,7 @@
+package net.svsh.linkupserver.security.password;
+
+public class PasswordHashingBusyException extends RuntimeException {
+    public PasswordHashingBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,14 @@
+package net.svsh.linkupserver.security.password;
+
+public record PasswordHashingStats(int threads,
+                                   int queueDepth,
+                                   int queueCapacity,
+                                   long completed,
+                                   long rejected,
+                                   double averageQueueWaitMillis,
+                                   double maxQueueWaitMillis,
+                                   double totalQueueWaitMillis,
+                                   double averageHashMillis,
+                                   double totalHashMillis,
+                                   double maxHashMillis) {
+}
@@ -0,0 +1,64 @@
+package net.svsh.linkupserver.security.ratelimit;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import net.svsh.linkupserver.security.jwt.ParsedToken;
+import net.svsh.linkupserver.security.jwt.VerifiedTokenCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Runs ahead of JWTAuthFilter, so a rejected request never reaches token checks, user lookups or BCrypt
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    @Autowired
+    private RateLimiter rateLimiter;
+
+    @Autowired
+    private VerifiedTokenCache verifiedTokenCache;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        RateLimitGroup group = RateLimitGroup.forPath(request.getRequestURI());
+        if (group == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        long wait = rateLimiter.tryAcquire(group, key(request));
+        if (wait > 0) {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait) + 1)));
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write("{\"statusCode\":429,\"message\":\"Too many requests\"}");
+            return;
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+    // The token's subject once JWTAuthFilter has verified it, so a user keeps one budget across addresses and
+    // users behind one NAT do not share one. Only the verified-token cache is consulted: an unknown token costs
+    // a digest and a lookup, never a signature check, and is limited by address like any anonymous request,
+    // so a stream of made-up tokens cannot open fresh buckets either
+    private String key(HttpServletRequest request) {
+        String authHeader = request.getHeader("Authorization");
+        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            ParsedToken token = verifiedTokenCache.peek(authHeader.substring(7));
+            if (token != null && token.subject() != null && !token.isExpired()) {
+                return "user:" + token.subject();
+            }
+        }
+        // The client address behind the load balancer, see server.forward-headers-strategy
+        return "ip:" + request.getRemoteAddr();
+    }
+}
@@ -0,0 +1,33 @@
+package net.svsh.linkupserver.security.ratelimit;
+
+// Endpoints that share one limit, each key gets a separate bucket per group
+public enum RateLimitGroup {
+    // Login and registration hash passwords with BCrypt, the most expensive requests the server takes
+    AUTH,
+    // Public listings and lookups of the user table
+    USERS,
+    // Chat history, inbox, sync and search reads
+    MESSAGING,
+    // Message frames sent over the chat WebSocket
+    SEND,
+    // Attachment upload chunks and downloads, each one disk I/O
+    ATTACHMENTS;
+
+    // Null for endpoints that are not limited
+    public static RateLimitGroup forPath(String path) {
+        if (path.startsWith("/api/auth/") || path.equals("/api/validate-token")) {
+            return AUTH;
+        }
+        if (path.startsWith("/api/users")) {
+            return USERS;
+        }
+        if (path.startsWith("/api/chats/") || path.startsWith("/api/inbox") || path.startsWith("/api/sync")
+                || path.startsWith("/api/search/")) {
+            return MESSAGING;
+        }
+        if (path.startsWith("/api/attachments/")) {
+            return ATTACHMENTS;
+        }
+        return null;
+    }
+}
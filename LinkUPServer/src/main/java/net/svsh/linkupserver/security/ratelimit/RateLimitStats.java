@@ -0,0 +1,9 @@
+package net.svsh.linkupserver.security.ratelimit;
+
+import java.util.Map;
+
+public record RateLimitStats(boolean enabled,
+                             long trackedKeys,
+                             Map<RateLimitGroup, Long> allowed,
+                             Map<RateLimitGroup, Long> rejected) {
+}
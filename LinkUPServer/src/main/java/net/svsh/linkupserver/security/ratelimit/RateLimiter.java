@@ -0,0 +1,89 @@
+package net.svsh.linkupserver.security.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// In-memory token buckets per (group, key), where the key is a user or a client address. Limits are per node.
+// Lookups go through Caffeine's concurrent map and taking a token is one CAS, so the limiter adds no lock of its own.
+@Component
+public class RateLimiter {
+
+    private final boolean enabled;
+    private final int[] capacities = new int[RateLimitGroup.values().length];
+    private final double[] refillsPerSecond = new double[RateLimitGroup.values().length];
+    private final Cache<String, TokenBucket> buckets;
+    private final LongAdder[] allowed = new LongAdder[RateLimitGroup.values().length];
+    private final LongAdder[] rejected = new LongAdder[RateLimitGroup.values().length];
+
+    public RateLimiter(@Value("${linkup.ratelimit.enabled:true}") boolean enabled,
+                       @Value("${linkup.ratelimit.max-keys:100000}") long maxKeys,
+                       @Value("${linkup.ratelimit.auth.capacity:10}") int authCapacity,
+                       @Value("${linkup.ratelimit.auth.refill-per-second:1}") double authRefill,
+                       @Value("${linkup.ratelimit.users.capacity:30}") int usersCapacity,
+                       @Value("${linkup.ratelimit.users.refill-per-second:10}") double usersRefill,
+                       @Value("${linkup.ratelimit.messaging.capacity:60}") int messagingCapacity,
+                       @Value("${linkup.ratelimit.messaging.refill-per-second:20}") double messagingRefill,
+                       @Value("${linkup.ratelimit.send.capacity:30}") int sendCapacity,
+                       @Value("${linkup.ratelimit.send.refill-per-second:10}") double sendRefill,
+                       @Value("${linkup.ratelimit.attachments.capacity:60}") int attachmentsCapacity,
+                       @Value("${linkup.ratelimit.attachments.refill-per-second:20}") double attachmentsRefill) {
+        this.enabled = enabled;
+        configure(RateLimitGroup.AUTH, authCapacity, authRefill);
+        configure(RateLimitGroup.USERS, usersCapacity, usersRefill);
+        configure(RateLimitGroup.MESSAGING, messagingCapacity, messagingRefill);
+        configure(RateLimitGroup.SEND, sendCapacity, sendRefill);
+        configure(RateLimitGroup.ATTACHMENTS, attachmentsCapacity, attachmentsRefill);
+        // An idle bucket has long refilled by the time it expires, so forgetting it changes nothing
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(Duration.ofMinutes(10))
+                .build();
+        for (int i = 0; i < allowed.length; i++) {
+            allowed[i] = new LongAdder();
+            rejected[i] = new LongAdder();
+        }
+    }
+
+    // 0 when the request may go ahead, otherwise the nanoseconds until the key has a token again
+    public long tryAcquire(RateLimitGroup group, String key) {
+        if (!enabled) {
+            return 0;
+        }
+        int index = group.ordinal();
+        long now = System.nanoTime();
+        TokenBucket bucket = buckets.get(group.name() + ':' + key,
+                k -> new TokenBucket(capacities[index], refillsPerSecond[index], now));
+        long wait = bucket.tryAcquire(now);
+        (wait == 0 ? allowed : rejected)[index].increment();
+        return wait;
+    }
+
+    public RateLimitStats stats() {
+        Map<RateLimitGroup, Long> allowedCounts = new EnumMap<>(RateLimitGroup.class);
+        Map<RateLimitGroup, Long> rejectedCounts = new EnumMap<>(RateLimitGroup.class);
+        for (RateLimitGroup group : RateLimitGroup.values()) {
+            allowedCounts.put(group, allowed[group.ordinal()].sum());
+            rejectedCounts.put(group, rejected[group.ordinal()].sum());
+        }
+        return new RateLimitStats(enabled, buckets.estimatedSize(), allowedCounts, rejectedCounts);
+    }
+
+    public long rejected(RateLimitGroup group) {
+        return rejected[group.ordinal()].sum();
+    }
+
+    private void configure(RateLimitGroup group, int capacity, double refillPerSecond) {
+        if (capacity < 1 || refillPerSecond <= 0) {
+            throw new IllegalArgumentException("Rate limit of " + group + " needs a capacity and refill rate above 0");
+        }
+        capacities[group.ordinal()] = capacity;
+        refillsPerSecond[group.ordinal()] = refillPerSecond;
+    }
+}
@@ -0,0 +1,35 @@
+package net.svsh.linkupserver.security.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Token bucket kept as a single timestamp: the time at which the bucket would be full again. Taking a token
+// pushes it one refill interval further, which is refused once it would lie more than a full bucket ahead.
+// One CAS per request, so concurrent requests of the same key never block each other.
+final class TokenBucket {
+
+    private final long refillIntervalNanos;
+    private final long burstNanos;
+    private final AtomicLong fullAt;
+
+    TokenBucket(int capacity, double refillPerSecond, long nowNanos) {
+        this.refillIntervalNanos = (long) (1_000_000_000L / refillPerSecond);
+        this.burstNanos = refillIntervalNanos * capacity;
+        this.fullAt = new AtomicLong(nowNanos);
+    }
+
+    // 0 when a token was taken, otherwise how long until the next one is available
+    long tryAcquire(long nowNanos) {
+        while (true) {
+            long current = fullAt.get();
+            // nanoTime may be negative, so only differences are compared
+            long next = (current - nowNanos > 0 ? current : nowNanos) + refillIntervalNanos;
+            long ahead = next - nowNanos;
+            if (ahead > burstNanos) {
+                return ahead - burstNanos;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package net.svsh.linkupserver.security.token;
+
+import java.time.Instant;
+
+// One refresh_tokens row as handed to the client, sessionId stays the same across rotations
+public record IssuedRefreshToken(String id, String sessionId, Instant expiresAt) {
+}
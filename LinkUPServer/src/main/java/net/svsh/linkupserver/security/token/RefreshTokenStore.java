@@ -0,0 +1,127 @@
+package net.svsh.linkupserver.security.token;
+
+import net.svsh.linkupserver.security.jwt.JWTUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Issued refresh tokens, one row each. A refresh token is good for exactly one rotation: using it marks it rotated
+// and issues its successor in the same session. Presenting an already rotated token means it was copied, so the
+// whole session is revoked and the thief and the owner both have to log in again.
+@Component
+public class RefreshTokenStore implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(RefreshTokenStore.class);
+
+    private static final String INSERT_TOKEN =
+            "INSERT INTO refresh_tokens (id, session_id, user_id, expires_at) VALUES (?, ?, ?, ?)";
+    private static final String MARK_ROTATED =
+            "UPDATE refresh_tokens SET rotated_at = CURRENT_TIMESTAMP " +
+            "WHERE id = ? AND user_id = ? AND rotated_at IS NULL AND revoked_at IS NULL AND expires_at > CURRENT_TIMESTAMP";
+    private static final String SELECT_REUSED =
+            "SELECT COUNT(*) FROM refresh_tokens WHERE id = ? AND rotated_at IS NOT NULL AND revoked_at IS NULL";
+    private static final String REVOKE_SESSION =
+            "UPDATE refresh_tokens SET revoked_at = CURRENT_TIMESTAMP WHERE session_id = ? AND revoked_at IS NULL";
+    private static final String SELECT_USER_SESSIONS =
+            "SELECT DISTINCT session_id FROM refresh_tokens WHERE user_id = ? AND revoked_at IS NULL";
+    private static final String REVOKE_USER =
+            "UPDATE refresh_tokens SET revoked_at = CURRENT_TIMESTAMP WHERE user_id = ? AND revoked_at IS NULL";
+    private static final String DELETE_EXPIRED = "DELETE FROM refresh_tokens WHERE expires_at < ? LIMIT ?";
+    private static final int PRUNE_BATCH_SIZE = 10_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final RevocationList revocationList;
+    private final Duration refreshTtl;
+    private final ScheduledExecutorService pruner;
+
+    public RefreshTokenStore(JdbcTemplate jdbcTemplate,
+                             TransactionTemplate transactionTemplate,
+                             RevocationList revocationList,
+                             @Value("${linkup.jwt.refresh-ttl:30d}") Duration refreshTtl,
+                             @Value("${linkup.jwt.refresh-prune-interval-ms:3600000}") long pruneIntervalMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.revocationList = revocationList;
+        this.refreshTtl = refreshTtl;
+        this.pruner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "refresh-token-pruner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pruner.scheduleWithFixedDelay(this::prune, pruneIntervalMillis, pruneIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // First token of a new login session
+    public IssuedRefreshToken issue(long userId) {
+        return insert(UUID.randomUUID().toString(), userId);
+    }
+
+    // Empty when the token was revoked, expired or already rotated, the last one also revokes its session
+    public Optional<IssuedRefreshToken> rotate(String tokenId, String sessionId, long userId) {
+        Optional<IssuedRefreshToken> next = transactionTemplate.execute(status -> {
+            if (jdbcTemplate.update(MARK_ROTATED, tokenId, userId) == 1) {
+                return Optional.of(insert(sessionId, userId));
+            }
+            return Optional.empty();
+        });
+        if (next.isEmpty() && jdbcTemplate.queryForObject(SELECT_REUSED, Long.class, tokenId) > 0) {
+            log.warn("Refresh token reused, revoking session {}", sessionId);
+            revokeSession(sessionId);
+        }
+        return next;
+    }
+
+    public void revokeSession(String sessionId) {
+        jdbcTemplate.update(REVOKE_SESSION, sessionId);
+        revocationList.revoke(List.of(sessionId));
+    }
+
+    // Every session of the user, e.g. before the user is deleted
+    public void revokeUser(long userId) {
+        List<String> sessionIds = transactionTemplate.execute(status -> {
+            List<String> sessions = jdbcTemplate.queryForList(SELECT_USER_SESSIONS, String.class, userId);
+            jdbcTemplate.update(REVOKE_USER, userId);
+            return sessions;
+        });
+        revocationList.revoke(sessionIds);
+    }
+
+    private IssuedRefreshToken insert(String sessionId, long userId) {
+        IssuedRefreshToken token = new IssuedRefreshToken(UUID.randomUUID().toString(), sessionId, Instant.now().plus(refreshTtl));
+        jdbcTemplate.update(INSERT_TOKEN, token.id(), sessionId, userId, Timestamp.from(token.expiresAt()));
+        return token;
+    }
+
+    // Rows are kept an access token lifetime past their expiry, the revocation list is rebuilt from them
+    private void prune() {
+        try {
+            Timestamp expiredBefore = new Timestamp(System.currentTimeMillis() - JWTUtils.EXPIRATION_TIME);
+            while (jdbcTemplate.update(DELETE_EXPIRED, expiredBefore, PRUNE_BATCH_SIZE) == PRUNE_BATCH_SIZE) {
+                // Small batches keep each delete's locks short
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to prune refresh tokens", e);
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        pruner.shutdown();
+        pruner.awaitTermination(5, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,141 @@
+package net.svsh.linkupserver.security.token;
+
+import net.svsh.linkupserver.cluster.ClusterBus;
+import net.svsh.linkupserver.cluster.ClusterEnvelope;
+import net.svsh.linkupserver.cluster.ClusterListener;
+import net.svsh.linkupserver.security.jwt.JWTUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Login sessions revoked while access tokens issued for them may still be valid. Checked on every authenticated
+// request without touching the database: the Bloom filter turns away almost every session that was never revoked,
+// only its rare yes is confirmed against the exact set. Loaded from refresh_tokens at startup, revocations on
+// other nodes arrive over the cluster bus.
+@Component
+@DependsOnDatabaseInitialization
+public class RevocationList implements ClusterListener, InitializingBean, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(RevocationList.class);
+
+    private static final String SELECT_REVOKED =
+            "SELECT session_id, MAX(revoked_at) AS revoked_at FROM refresh_tokens WHERE revoked_at > ? GROUP BY session_id";
+
+    private final ClusterBus clusterBus;
+    private final JdbcTemplate jdbcTemplate;
+    private final long expectedSessions;
+    private final double falsePositiveRate;
+    private final long rebuildIntervalMillis;
+    // Session id to the time no access token of it can be valid anymore
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService maintainer;
+    private volatile BloomFilter filter;
+
+    public RevocationList(ClusterBus clusterBus,
+                          JdbcTemplate jdbcTemplate,
+                          @Value("${linkup.jwt.revocation.expected-sessions:100000}") long expectedSessions,
+                          @Value("${linkup.jwt.revocation.false-positive-rate:0.01}") double falsePositiveRate,
+                          @Value("${linkup.jwt.revocation.rebuild-interval-ms:600000}") long rebuildIntervalMillis) {
+        this.clusterBus = clusterBus;
+        this.jdbcTemplate = jdbcTemplate;
+        this.expectedSessions = expectedSessions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.rebuildIntervalMillis = rebuildIntervalMillis;
+        this.filter = new BloomFilter(expectedSessions, falsePositiveRate);
+        this.maintainer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "revocation-list-maintainer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Loaded before the server takes requests, a revoked session must never get a window after a restart
+    @Override
+    public void afterPropertiesSet() {
+        clusterBus.subscribe(this);
+        long now = System.currentTimeMillis();
+        jdbcTemplate.query(SELECT_REVOKED, resultSet -> {
+            add(resultSet.getString("session_id"), resultSet.getTimestamp("revoked_at").getTime() + JWTUtils.EXPIRATION_TIME);
+        }, new Timestamp(now - JWTUtils.EXPIRATION_TIME));
+        rebuild();
+        log.info("Revocation list loaded {} sessions", revoked.size());
+        maintainer.scheduleWithFixedDelay(this::rebuild, rebuildIntervalMillis, rebuildIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isRevoked(String sessionId) {
+        return sessionId != null && filter.mightContain(sessionId) && revoked.containsKey(sessionId);
+    }
+
+    // Called after the store marked the sessions revoked, the other nodes only learn the ids
+    public void revoke(Collection<String> sessionIds) {
+        if (sessionIds.isEmpty()) {
+            return;
+        }
+        long forgetAt = System.currentTimeMillis() + JWTUtils.EXPIRATION_TIME;
+        sessionIds.forEach(sessionId -> add(sessionId, forgetAt));
+        clusterBus.broadcast(ClusterEnvelope.revoked(clusterBus.localNodeId(), new ArrayList<>(sessionIds)));
+    }
+
+    public int size() {
+        return revoked.size();
+    }
+
+    // The exact set first, so a reader that sees the filter bit also finds the entry
+    private synchronized void add(String sessionId, long forgetAt) {
+        revoked.merge(sessionId, forgetAt, Math::max);
+        filter.add(sessionId);
+    }
+
+    // A Bloom filter cannot forget, so expired sessions leave it by building a new one from what is left.
+    // Synchronized with add, otherwise a revocation between the copy and the swap would be lost from the filter
+    private synchronized void rebuild() {
+        try {
+            long now = System.currentTimeMillis();
+            revoked.values().removeIf(forgetAt -> forgetAt < now);
+            BloomFilter rebuilt = new BloomFilter(Math.max(expectedSessions, 2L * revoked.size()), falsePositiveRate);
+            revoked.keySet().forEach(rebuilt::add);
+            filter = rebuilt;
+        } catch (RuntimeException e) {
+            log.error("Failed to rebuild revocation list", e);
+        }
+    }
+
+    @Override
+    public void onEnvelope(ClusterEnvelope envelope) {
+        if (!ClusterEnvelope.REVOKED.equals(envelope.getType())) {
+            return;
+        }
+        long forgetAt = System.currentTimeMillis() + JWTUtils.EXPIRATION_TIME;
+        envelope.getSessionIds().forEach(sessionId -> add(sessionId, forgetAt));
+    }
+
+    // Revocations broadcast while the link was down would otherwise be missed until the peer restarts
+    @Override
+    public void onPeerConnected(String nodeId) {
+        List<String> sessionIds = new ArrayList<>(revoked.keySet());
+        if (!sessionIds.isEmpty()) {
+            clusterBus.send(nodeId, ClusterEnvelope.revoked(clusterBus.localNodeId(), sessionIds));
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        maintainer.shutdown();
+        maintainer.awaitTermination(5, TimeUnit.SECONDS);
+    }
+}
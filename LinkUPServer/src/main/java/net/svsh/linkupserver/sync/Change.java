@@ -0,0 +1,20 @@
+package net.svsh.linkupserver.sync;
+
+import net.svsh.linkupserver.chat.Message;
+
+// One change_log row. userId is null for chat-wide changes and set for changes only that participant syncs.
+// id is 0 until the change is appended.
+public record Change(long id, ChangeType type, long chatId, Long userId, Long messageId) {
+
+    public static Change message(Message message) {
+        return new Change(0, ChangeType.MESSAGE, message.getChatId(), null, message.getId());
+    }
+
+    public static Change read(long userId, long chatId, long messageId) {
+        return new Change(0, ChangeType.READ, chatId, userId, messageId);
+    }
+
+    public boolean isChatWide() {
+        return userId == null;
+    }
+}
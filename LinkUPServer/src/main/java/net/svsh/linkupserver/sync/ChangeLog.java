@@ -0,0 +1,159 @@
+package net.svsh.linkupserver.sync;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Append-only record of what changed in which chat, the source of delta sync. Producers append in the same
+// transaction as the change where there is one. Reads are index range scans from the client's cursor, so a sync
+// costs what changed since then. Rows older than the retention are pruned, cursors from before that get a reset.
+//
+// Ids are handed out at insert but become visible at commit, so a row can turn up after rows with higher ids were
+// already read. Reads therefore hand back two cursors: the continuation, after the last change returned, to page on
+// within one sync, and the settled cursor for the client to keep, which stays before every change younger than the
+// re-read window. Those are read again by the next sync and coalesced away by the client.
+// A transaction that commits more than the window after its insert is still missed, linkup.sync.reread-window-ms
+// has to stay above the longest transaction that appends changes.
+@Component
+public class ChangeLog implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ChangeLog.class);
+
+    private static final String INSERT_CHANGE =
+            "INSERT INTO change_log (type, chat_id, user_id, message_id) VALUES (?, ?, ?, ?)";
+    // idx_change_log_chat, one range per chat the user is in
+    private static final String SELECT_CHAT_WIDE =
+            "SELECT id, type, chat_id, user_id, message_id " +
+            "FROM change_log WHERE chat_id IN (%s) AND user_id IS NULL AND id > ? " +
+            "ORDER BY id LIMIT ?";
+    // idx_change_log_user, also finds changes of chats the user has left since
+    private static final String SELECT_USER_SCOPED =
+            "SELECT id, type, chat_id, user_id, message_id " +
+            "FROM change_log WHERE user_id = ? AND id > ? " +
+            "ORDER BY id LIMIT ?";
+    private static final String SELECT_RANGE = "SELECT MIN(id) AS oldest, MAX(id) AS newest FROM change_log";
+    // idx_change_log_created, only the rows inside the window
+    private static final String SELECT_FIRST_UNSETTLED =
+            "SELECT MIN(id) FROM change_log WHERE created_at >= NOW(3) - INTERVAL %d MICROSECOND";
+    private static final String DELETE_EXPIRED = "DELETE FROM change_log WHERE created_at < ? AND id < ? LIMIT ?";
+    private static final int PRUNE_BATCH_SIZE = 10_000;
+    private static final RowMapper<Change> CHANGE = (resultSet, rowNum) -> {
+        long userId = resultSet.getLong("user_id");
+        boolean chatWide = resultSet.wasNull();
+        long messageId = resultSet.getLong("message_id");
+        boolean noMessage = resultSet.wasNull();
+        return new Change(resultSet.getLong("id"), ChangeType.valueOf(resultSet.getString("type")),
+                resultSet.getLong("chat_id"), chatWide ? null : userId, noMessage ? null : messageId);
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration retention;
+    private final long rereadWindowMicros;
+    private final ScheduledExecutorService pruner;
+
+    public ChangeLog(JdbcTemplate jdbcTemplate,
+                     @Value("${linkup.sync.retention:30d}") Duration retention,
+                     @Value("${linkup.sync.reread-window-ms:30000}") long rereadWindowMillis,
+                     @Value("${linkup.sync.prune-interval-ms:3600000}") long pruneIntervalMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.retention = retention;
+        this.rereadWindowMicros = rereadWindowMillis * 1000;
+        this.pruner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "change-log-pruner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pruner.scheduleWithFixedDelay(this::prune, pruneIntervalMillis, pruneIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void append(List<Change> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_CHANGE, changes, changes.size(), (statement, change) -> {
+            statement.setString(1, change.type().name());
+            statement.setLong(2, change.chatId());
+            statement.setObject(3, change.userId());
+            statement.setObject(4, change.messageId());
+        });
+    }
+
+    // Changes after the cursor in id order, at most limit. The continuation is the last id returned, so a page of
+    // young changes still moves the sync on. The settled cursor is never past it and stays before the first change
+    // in the log still inside the window, whoever it belongs to: everything before that has committed, whichever
+    // page of the sync it was read on.
+    public Page readAfter(long userId, Collection<Long> chatIds, long cursor, int limit) {
+        List<Change> changes = new ArrayList<>(jdbcTemplate.query(SELECT_USER_SCOPED, CHANGE, userId, cursor, limit));
+        if (!chatIds.isEmpty()) {
+            List<Object> args = new ArrayList<>(chatIds);
+            args.add(cursor);
+            args.add(limit);
+            String placeholders = String.join(",", Collections.nCopies(chatIds.size(), "?"));
+            changes.addAll(jdbcTemplate.query(String.format(SELECT_CHAT_WIDE, placeholders), CHANGE, args.toArray()));
+        }
+        changes.sort(Comparator.comparingLong(Change::id));
+        if (changes.size() > limit) {
+            changes = changes.subList(0, limit);
+        }
+
+        long continuation = changes.isEmpty() ? cursor : changes.get(changes.size() - 1).id();
+        Long firstUnsettled = firstUnsettled();
+        long settled = firstUnsettled == null ? continuation : Math.min(continuation, firstUnsettled - 1);
+        return new Page(List.copyOf(changes), continuation, settled, changes.size() == limit);
+    }
+
+    // Where a client that reloaded everything continues: before the first change still inside the window
+    public long settledCursor() {
+        long newest = range()[1];
+        Long firstUnsettled = firstUnsettled();
+        return firstUnsettled == null ? newest : Math.min(newest, firstUnsettled - 1);
+    }
+
+    private Long firstUnsettled() {
+        return jdbcTemplate.queryForObject(String.format(SELECT_FIRST_UNSETTLED, rereadWindowMicros), Long.class);
+    }
+
+    // Ids of the oldest and newest retained change, both 0 while the log is empty
+    public long[] range() {
+        return jdbcTemplate.queryForObject(SELECT_RANGE, (resultSet, rowNum) ->
+                new long[]{resultSet.getLong("oldest"), resultSet.getLong("newest")});
+    }
+
+    // Never deletes the newest row, so the oldest retained id always tells which cursors are still valid
+    private void prune() {
+        try {
+            Timestamp expiredBefore = Timestamp.from(Instant.now().minus(retention));
+            long newest = range()[1];
+            while (jdbcTemplate.update(DELETE_EXPIRED, expiredBefore, newest, PRUNE_BATCH_SIZE) == PRUNE_BATCH_SIZE) {
+                // Small batches keep each delete's locks short
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to prune change log", e);
+        }
+    }
+
+    public record Page(List<Change> changes, long cursor, long settledCursor, boolean hasMore) {
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        pruner.shutdown();
+        pruner.awaitTermination(5, TimeUnit.SECONDS);
+    }
+}
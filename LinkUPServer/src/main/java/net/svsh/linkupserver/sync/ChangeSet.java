@@ -0,0 +1,70 @@
+package net.svsh.linkupserver.sync;
+
+import net.svsh.linkupserver.sync.dto.ChatMessageRef;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Changes coalesced so a message edited twice and a chat read ten times each show up once. Changes have to come
+// in id order, a later change of the same message or chat replaces an earlier one. Changes read again within the
+// re-read window leave the result as it was.
+public final class ChangeSet {
+
+    // Message id to chat id of messages that are new or edited
+    private final Map<Long, Long> changedMessages = new LinkedHashMap<>();
+    private final Map<Long, ChatMessageRef> deleted = new LinkedHashMap<>();
+    private final Map<Long, ChatMessageRef> read = new LinkedHashMap<>();
+    private final Map<Long, Boolean> membership = new LinkedHashMap<>();
+
+    private ChangeSet() {
+    }
+
+    public static ChangeSet of(List<Change> changes) {
+        ChangeSet changeSet = new ChangeSet();
+        for (Change change : changes) {
+            switch (change.type()) {
+                case MESSAGE, EDIT -> changeSet.changedMessages.put(change.messageId(), change.chatId());
+                case DELETE -> {
+                    changeSet.changedMessages.remove(change.messageId());
+                    changeSet.deleted.put(change.messageId(), new ChatMessageRef(change.chatId(), change.messageId()));
+                }
+                case READ -> changeSet.read.put(change.chatId(), new ChatMessageRef(change.chatId(), change.messageId()));
+                case JOIN -> changeSet.membership.put(change.chatId(), true);
+                case LEAVE -> changeSet.membership.put(change.chatId(), false);
+            }
+        }
+        return changeSet;
+    }
+
+    public List<Long> changedMessageIds() {
+        return new ArrayList<>(changedMessages.keySet());
+    }
+
+    public List<ChatMessageRef> deleted() {
+        return new ArrayList<>(deleted.values());
+    }
+
+    public List<ChatMessageRef> read() {
+        return new ArrayList<>(read.values());
+    }
+
+    public List<Long> joined() {
+        return chats(true);
+    }
+
+    public List<Long> left() {
+        return chats(false);
+    }
+
+    private List<Long> chats(boolean member) {
+        List<Long> chatIds = new ArrayList<>();
+        membership.forEach((chatId, isMember) -> {
+            if (isMember == member) {
+                chatIds.add(chatId);
+            }
+        });
+        return chatIds;
+    }
+}
@@ -0,0 +1,12 @@
+package net.svsh.linkupserver.sync;
+
+public enum ChangeType {
+    // Chat-wide, every participant syncs them
+    MESSAGE,
+    EDIT,
+    DELETE,
+    // Scoped to one participant of the chat
+    JOIN,
+    LEAVE,
+    READ
+}
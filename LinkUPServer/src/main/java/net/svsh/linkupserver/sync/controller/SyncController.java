@@ -0,0 +1,27 @@
+package net.svsh.linkupserver.sync.controller;
+
+import net.svsh.linkupserver.sync.dto.SyncResponse;
+import net.svsh.linkupserver.sync.service.SyncService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+public class SyncController {
+
+    @Autowired
+    private SyncService syncService;
+
+    // Without a cursor the response only carries the cursor to start from, after the client's full reload.
+    // Pages follow cursor, the next sync starts from the settledCursor of the last page.
+    // Large deltas are gzip compressed by the server when the client accepts it (server.compression)
+    @RequestMapping(value = "api/sync", method = RequestMethod.GET)
+    public ResponseEntity<SyncResponse> sync(@RequestParam(required = false) Long cursor,
+                                             @RequestParam(required = false) Integer limit) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        SyncResponse response = syncService.sync(auth.getName(), cursor, limit);
+        return ResponseEntity.status(response.getStatusCode()).body(response);
+    }
+}
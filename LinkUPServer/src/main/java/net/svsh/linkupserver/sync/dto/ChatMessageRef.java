@@ -0,0 +1,5 @@
+package net.svsh.linkupserver.sync.dto;
+
+// A message id within its chat, as in "chat 12 read up to message 345"
+public record ChatMessageRef(Long chatId, Long messageId) {
+}
@@ -0,0 +1,29 @@
+package net.svsh.linkupserver.sync.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import net.svsh.linkupserver.chat.dto.MessageView;
+
+import java.util.List;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class SyncResponse {
+    private int statusCode;
+    private String error;
+    private String message;
+    // Where the next page of this sync starts, sent back as cursor while hasMore is set
+    private Long cursor;
+    // What the client keeps and starts its next sync from, behind cursor by the changes that may still move
+    private Long settledCursor;
+    private Boolean hasMore;
+    // The cursor is unknown or older than the change log keeps, reload chats and inbox then sync from cursor
+    private Boolean reset;
+    private List<MessageView> messages;
+    private List<ChatMessageRef> deleted;
+    private List<ChatMessageRef> read;
+    private List<Long> joined;
+    private List<Long> left;
+}
@@ -0,0 +1,115 @@
+package net.svsh.linkupserver.sync.service;
+
+import net.svsh.linkupserver.chat.ChatParticipantRepository;
+import net.svsh.linkupserver.chat.MessageRepository;
+import net.svsh.linkupserver.chat.dto.MessageView;
+import net.svsh.linkupserver.datasource.PrimaryReads;
+import net.svsh.linkupserver.sync.ChangeLog;
+import net.svsh.linkupserver.sync.ChangeSet;
+import net.svsh.linkupserver.sync.dto.SyncResponse;
+import net.svsh.linkupserver.user.User;
+import net.svsh.linkupserver.user.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+@Service
+public class SyncService {
+
+    @Autowired
+    private ChangeLog changeLog;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ChatParticipantRepository chatParticipantRepository;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Value("${linkup.sync.default-limit:500}")
+    private int defaultLimit;
+
+    @Value("${linkup.sync.max-limit:2000}")
+    private int maxLimit;
+
+    // Everything that changed in the user's chats after the cursor, coalesced by ChangeSet. Clients call again with
+    // the returned cursor while hasMore is set, then keep the last settledCursor for the next sync. Changes inside
+    // the re-read window come again on that sync.
+    public SyncResponse sync(String email, Long cursor, Integer limit) {
+        SyncResponse syncResponse = new SyncResponse();
+
+        try {
+            Optional<User> user = userRepository.findByEmail(email);
+            if (user.isEmpty()) {
+                syncResponse.setStatusCode(404);
+                syncResponse.setMessage("User not found");
+                return syncResponse;
+            }
+
+            // Pruned changes cannot be replayed, the client starts over from the newest settled one
+            long[] range = changeLog.range();
+            if (cursor == null || cursor < range[0] - 1) {
+                syncResponse.setReset(true);
+                long settled = changeLog.settledCursor();
+                syncResponse.setCursor(settled);
+                syncResponse.setSettledCursor(settled);
+                syncResponse.setHasMore(false);
+                syncResponse.setStatusCode(200);
+                syncResponse.setMessage("Full reload required");
+                return syncResponse;
+            }
+
+            long userId = user.get().getId();
+            int pageSize = limit == null || limit <= 0 ? defaultLimit : Math.min(limit, maxLimit);
+            // The change log lives on the primary. A lagging replica would miss a chat just joined or a message the
+            // log already lists, and the cursor would move past it for good
+            ChangeLog.Page page = PrimaryReads.call(() -> {
+                List<Long> chatIds = chatParticipantRepository.findChatIdsByUserId(userId);
+                ChangeLog.Page read = changeLog.readAfter(userId, chatIds, cursor, pageSize);
+                fill(ChangeSet.of(read.changes()), syncResponse);
+                return read;
+            });
+
+            syncResponse.setCursor(page.cursor());
+            syncResponse.setSettledCursor(page.settledCursor());
+            syncResponse.setHasMore(page.hasMore());
+            syncResponse.setStatusCode(200);
+            syncResponse.setMessage(page.changes().size() + " changes since " + cursor);
+        } catch (Exception e) {
+            syncResponse.setStatusCode(500);
+            syncResponse.setError(e.getMessage());
+        }
+
+        return syncResponse;
+    }
+
+    private void fill(ChangeSet changeSet, SyncResponse syncResponse) {
+        // Current content, so an edit after the cursor arrives already applied
+        List<Long> changedMessageIds = changeSet.changedMessageIds();
+        if (!changedMessageIds.isEmpty()) {
+            List<MessageView> messages = new ArrayList<>(messageRepository.findViewsByIds(changedMessageIds));
+            messages.sort(Comparator.comparing(MessageView::id));
+            syncResponse.setMessages(messages);
+        }
+        // Empty lists are left out of the response
+        if (!changeSet.deleted().isEmpty()) {
+            syncResponse.setDeleted(changeSet.deleted());
+        }
+        if (!changeSet.read().isEmpty()) {
+            syncResponse.setRead(changeSet.read());
+        }
+        if (!changeSet.joined().isEmpty()) {
+            syncResponse.setJoined(changeSet.joined());
+        }
+        if (!changeSet.left().isEmpty()) {
+            syncResponse.setLeft(changeSet.left());
+        }
+    }
+}
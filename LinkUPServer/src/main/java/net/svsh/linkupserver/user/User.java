@@ -5,6 +5,7 @@ import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import net.svsh.linkupserver.dto.UserSummary;
 import net.svsh.linkupserver.user.service.UserManagementService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.GrantedAuthority;
@@ -62,6 +63,11 @@ public class User implements UserDetails {
         return this.email;
     }
 
+    // getUsername() is the login name Spring Security sees, which is the email. This has the username column
+    public UserSummary toSummary() {
+        return new UserSummary(this.id, this.username, this.email, this.roles);
+    }
+
     @Override
     public boolean isAccountNonExpired() {
         return true;
@@ -6,11 +6,15 @@ import net.svsh.linkupserver.user.User;
 import net.svsh.linkupserver.user.UserRepository;
 import net.svsh.linkupserver.user.service.UserManagementService;
 import net.svsh.linkupserver.user.service.UserService;
+import net.svsh.linkupserver.user.service.UserStreamService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.Map;
 
@@ -23,25 +27,49 @@ public class UserController {
     private UserService userService;
     @Autowired
     private UserRepository userRepository;
+    @Autowired
+    private UserStreamService userStreamService;
 
     @RequestMapping(value = "api/auth/register", method = RequestMethod.POST)
     public ResponseEntity<RequestResponse> register(@RequestBody RequestResponse registerRequest) {
-        return ResponseEntity.ok(userManagementService.register(registerRequest));
+        return okUnlessBusy(userManagementService.register(registerRequest));
     }
 
     @RequestMapping(value = "api/auth/login", method = RequestMethod.POST)
     public ResponseEntity<RequestResponse> login(@RequestBody RequestResponse loginRequest) {
-        return ResponseEntity.ok(userManagementService.login(loginRequest));
+        return okUnlessBusy(userManagementService.login(loginRequest));
     }
 
     @RequestMapping(value = "api/users", method = RequestMethod.GET)
-    public ResponseEntity<RequestResponse> getAllUsers() {
-        return ResponseEntity.ok(userManagementService.getAllUsers());
+    public ResponseEntity<RequestResponse> getAllUsers(@RequestParam(required = false) Long after,
+                                                       @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(userManagementService.getAllUsers(after, limit));
+    }
+
+    @RequestMapping(value = "api/users/search", method = RequestMethod.GET)
+    public ResponseEntity<RequestResponse> searchUsers(@RequestParam(name = "q", required = false) String query,
+                                                       @RequestParam(required = false) Integer limit) {
+        RequestResponse response = userManagementService.searchUsers(query, limit);
+        return ResponseEntity.status(response.getStatusCode()).body(response);
+    }
+
+    @RequestMapping(value = "api/users/stream", method = RequestMethod.GET)
+    public ResponseEntity<StreamingResponseBody> streamUsers() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(userStreamService::streamUsers);
     }
 
     @RequestMapping(value = "api/auth/refreshToken", method = RequestMethod.POST)
     public ResponseEntity<RequestResponse> refreshToken(@RequestBody RequestResponse refreshTokenRequest) {
-        return ResponseEntity.ok(userManagementService.refreshToken(refreshTokenRequest));
+        RequestResponse response = userManagementService.refreshToken(refreshTokenRequest);
+        return ResponseEntity.status(response.getStatusCode()).body(response);
+    }
+
+    @RequestMapping(value = "api/auth/logout", method = RequestMethod.POST)
+    public ResponseEntity<RequestResponse> logout(@RequestBody RequestResponse logoutRequest) {
+        RequestResponse response = userManagementService.logout(logoutRequest);
+        return ResponseEntity.status(response.getStatusCode()).body(response);
     }
 
     @RequestMapping(value = "api/users/{userId}/get", method = RequestMethod.GET)
@@ -56,7 +84,7 @@ public class UserController {
         String email = auth.getName();
         User user = userRepository.findByEmail(email).orElse(null);
         if (user != null && user.getId() == userId) {
-            return ResponseEntity.ok(userManagementService.updateUser(userId, updateRequest));
+            return okUnlessBusy(userManagementService.updateUser(userId, updateRequest));
         } else if (user == null) {
             RequestResponse response = new RequestResponse();
             response.setStatusCode(404);
@@ -102,13 +130,18 @@ public class UserController {
     public ResponseEntity<?> validateToken(@RequestHeader("Authorization") String authHeader, @RequestBody RequestResponse requestUser) {
         // Extract token from Bearer header
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-            System.err.println("ERROR!");
             return ResponseEntity.badRequest().body("Invalid token format");
         }
 
-        System.out.println(requestUser);
-
         String token = authHeader.substring(7);
         return ResponseEntity.ok(userManagementService.isTokenValid(token, requestUser.getEmail()));
     }
+
+    // Password hashing overload is the one error surfaced as a real HTTP status, so clients and proxies back off
+    private static ResponseEntity<RequestResponse> okUnlessBusy(RequestResponse response) {
+        if (response.getStatusCode() == 503) {
+            return ResponseEntity.status(response.getStatusCode()).header(HttpHeaders.RETRY_AFTER, "1").body(response);
+        }
+        return ResponseEntity.ok(response);
+    }
 }
@@ -0,0 +1,325 @@
+package net.svsh.linkupserver.user.directory;
+
+import net.svsh.linkupserver.dto.UserSummary;
+import net.svsh.linkupserver.user.UserRole;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+// Case-insensitive prefix search over usernames and emails. The bulk of the users sits in an immutable snapshot of
+// parallel arrays with two slot orders, one by username and one by email, so a lookup is a binary search plus a scan.
+// Changes go to a small delta that overrides the snapshot until compact() folds it in. Readers never lock,
+// every state is published as a whole through one volatile field.
+public class UserDirectory {
+
+    private static final Comparator<String> KEY_ORDER = String::compareToIgnoreCase;
+    private static final Comparator<Match> MATCH_ORDER = Comparator.comparingInt(Match::rank).thenComparing(Match::key, KEY_ORDER);
+
+    private final Object writeLock = new Object();
+    private volatile State state = new State(Snapshot.EMPTY, Map.of());
+
+    // Replaces everything, e.g. after the initial load from the users table
+    public void load(Collection<UserSummary> users) {
+        Snapshot snapshot = Snapshot.of(users);
+        synchronized (writeLock) {
+            state = new State(snapshot, state.delta);
+        }
+    }
+
+    public void put(UserSummary user) {
+        change(user.id(), new Change(user));
+    }
+
+    public void remove(long userId) {
+        change(userId, new Change(null));
+    }
+
+    // Number of changes not yet folded into the snapshot
+    public int pendingChanges() {
+        return state.delta.size();
+    }
+
+    public int size() {
+        State current = state;
+        int size = current.snapshot.size();
+        for (Map.Entry<Long, Change> entry : current.delta.entrySet()) {
+            boolean inSnapshot = current.snapshot.contains(entry.getKey());
+            if (entry.getValue().user != null && !inSnapshot) {
+                size++;
+            } else if (entry.getValue().user == null && inSnapshot) {
+                size--;
+            }
+        }
+        return size;
+    }
+
+    // Username matches come before email-only matches, each in alphabetical order
+    public List<UserSummary> search(String prefix, int limit) {
+        State current = state;
+        List<Match> matches = new ArrayList<>();
+        current.snapshot.collect(prefix, limit, current.delta.keySet(), matches);
+        // Only the best limit changed users can make it into the result, the heap keeps sorting cheap on a full delta
+        PriorityQueue<Match> changed = new PriorityQueue<>(MATCH_ORDER.reversed());
+        for (Change change : current.delta.values()) {
+            Match match = change.user == null ? null : Match.of(change.user, prefix);
+            if (match == null) {
+                continue;
+            }
+            if (changed.size() < limit) {
+                changed.add(match);
+            } else if (MATCH_ORDER.compare(match, changed.peek()) < 0) {
+                changed.poll();
+                changed.add(match);
+            }
+        }
+        matches.addAll(changed);
+        matches.sort(MATCH_ORDER);
+
+        List<UserSummary> result = new ArrayList<>(Math.min(limit, matches.size()));
+        Set<Long> seen = new HashSet<>();
+        for (Match match : matches) {
+            if (result.size() == limit) {
+                break;
+            }
+            if (seen.add(match.user.id())) {
+                result.add(match.user);
+            }
+        }
+        return result;
+    }
+
+    // Folds the delta into a new snapshot. Linear in the number of users, meant for a background thread.
+    public void compact() {
+        State current = state;
+        if (current.delta.isEmpty()) {
+            return;
+        }
+        Snapshot merged = current.snapshot.merge(current.delta);
+        synchronized (writeLock) {
+            // Changes made while merging are kept, compared by value so a newer change of the same user survives
+            Map<Long, Change> remaining = new HashMap<>(state.delta);
+            current.delta.forEach((userId, change) -> remaining.remove(userId, change));
+            state = new State(merged, Map.copyOf(remaining));
+        }
+    }
+
+    private void change(long userId, Change change) {
+        synchronized (writeLock) {
+            Map<Long, Change> delta = new HashMap<>(state.delta);
+            delta.put(userId, change);
+            state = new State(state.snapshot, Map.copyOf(delta));
+        }
+    }
+
+    private record State(Snapshot snapshot, Map<Long, Change> delta) {
+    }
+
+    // A null user removes it
+    private record Change(UserSummary user) {
+    }
+
+    private record Match(UserSummary user, int rank, String key) {
+        static Match of(UserSummary user, String prefix) {
+            if (startsWith(user.username(), prefix)) {
+                return new Match(user, 0, user.username());
+            }
+            if (startsWith(user.email(), prefix)) {
+                return new Match(user, 1, user.email());
+            }
+            return null;
+        }
+    }
+
+    private static boolean startsWith(String key, String prefix) {
+        return key != null && key.regionMatches(true, 0, prefix, 0, prefix.length());
+    }
+
+    private static final class Snapshot {
+
+        static final Snapshot EMPTY = new Snapshot(new long[0], new String[0], new String[0], new UserRole[0], new int[0], new int[0]);
+
+        // Indexed by slot, sorted by id so contains() is a binary search too
+        private final long[] ids;
+        private final String[] usernames;
+        private final String[] emails;
+        private final UserRole[] roles;
+        private final int[] byUsername;
+        private final int[] byEmail;
+
+        private Snapshot(long[] ids, String[] usernames, String[] emails, UserRole[] roles, int[] byUsername, int[] byEmail) {
+            this.ids = ids;
+            this.usernames = usernames;
+            this.emails = emails;
+            this.roles = roles;
+            this.byUsername = byUsername;
+            this.byEmail = byEmail;
+        }
+
+        static Snapshot of(Collection<UserSummary> users) {
+            UserSummary[] sorted = users.stream()
+                    .sorted(Comparator.comparing(UserSummary::id))
+                    .toArray(UserSummary[]::new);
+            int size = sorted.length;
+            long[] ids = new long[size];
+            String[] usernames = new String[size];
+            String[] emails = new String[size];
+            UserRole[] roles = new UserRole[size];
+            for (int slot = 0; slot < size; slot++) {
+                ids[slot] = sorted[slot].id();
+                usernames[slot] = nonNull(sorted[slot].username());
+                emails[slot] = nonNull(sorted[slot].email());
+                roles[slot] = sorted[slot].roles();
+            }
+            return new Snapshot(ids, usernames, emails, roles, order(usernames), order(emails));
+        }
+
+        int size() {
+            return ids.length;
+        }
+
+        boolean contains(long userId) {
+            return Arrays.binarySearch(ids, userId) >= 0;
+        }
+
+        void collect(String prefix, int limit, Set<Long> overridden, List<Match> out) {
+            collect(prefix, limit, overridden, byUsername, usernames, 0, out);
+            collect(prefix, limit, overridden, byEmail, emails, 1, out);
+        }
+
+        // The first limit matches of a key order are the best ones it has, so neither scan reads further
+        private void collect(String prefix, int limit, Set<Long> overridden, int[] order, String[] keys, int rank, List<Match> out) {
+            int found = 0;
+            for (int i = lowerBound(order, keys, prefix); i < order.length && found < limit; i++) {
+                int slot = order[i];
+                if (!startsWith(keys[slot], prefix)) {
+                    break;
+                }
+                if (!overridden.contains(ids[slot])) {
+                    out.add(new Match(summary(slot), rank, keys[slot]));
+                    found++;
+                }
+            }
+        }
+
+        private UserSummary summary(int slot) {
+            return new UserSummary(ids[slot], usernames[slot], emails[slot], roles[slot]);
+        }
+
+        // Keeps the surviving slots in their existing key orders and merges the changed users in,
+        // so no full sort is needed
+        Snapshot merge(Map<Long, Change> delta) {
+            List<UserSummary> added = new ArrayList<>();
+            for (Change change : delta.values()) {
+                if (change.user != null) {
+                    added.add(change.user);
+                }
+            }
+            added.sort(Comparator.comparing(UserSummary::id));
+
+            int kept = 0;
+            for (long id : ids) {
+                if (!delta.containsKey(id)) {
+                    kept++;
+                }
+            }
+            int size = kept + added.size();
+            long[] newIds = new long[size];
+            String[] newUsernames = new String[size];
+            String[] newEmails = new String[size];
+            UserRole[] newRoles = new UserRole[size];
+            // Old slot to new slot, -1 for users that changed or were removed
+            int[] moved = new int[ids.length];
+            int slot = 0;
+            int next = 0;
+            for (int old = 0; old < ids.length || next < added.size(); ) {
+                boolean takeOld = next == added.size() || (old < ids.length && ids[old] < added.get(next).id());
+                if (takeOld) {
+                    if (delta.containsKey(ids[old])) {
+                        moved[old++] = -1;
+                        continue;
+                    }
+                    newIds[slot] = ids[old];
+                    newUsernames[slot] = usernames[old];
+                    newEmails[slot] = emails[old];
+                    newRoles[slot] = roles[old];
+                    moved[old++] = slot++;
+                } else {
+                    UserSummary user = added.get(next++);
+                    newIds[slot] = user.id();
+                    newUsernames[slot] = nonNull(user.username());
+                    newEmails[slot] = nonNull(user.email());
+                    newRoles[slot] = user.roles();
+                    slot++;
+                }
+            }
+
+            int[] addedSlots = new int[added.size()];
+            for (int i = 0; i < addedSlots.length; i++) {
+                addedSlots[i] = Arrays.binarySearch(newIds, added.get(i).id());
+            }
+            return new Snapshot(newIds, newUsernames, newEmails, newRoles,
+                    mergeOrder(byUsername, moved, addedSlots, newUsernames),
+                    mergeOrder(byEmail, moved, addedSlots, newEmails));
+        }
+
+        private static int[] mergeOrder(int[] oldOrder, int[] moved, int[] addedSlots, String[] keys) {
+            int[] added = sortSlots(addedSlots, keys);
+            int[] order = new int[keys.length];
+            int size = 0;
+            int next = 0;
+            for (int oldSlot : oldOrder) {
+                int slot = moved[oldSlot];
+                if (slot < 0) {
+                    continue;
+                }
+                while (next < added.length && KEY_ORDER.compare(keys[added[next]], keys[slot]) < 0) {
+                    order[size++] = added[next++];
+                }
+                order[size++] = slot;
+            }
+            while (next < added.length) {
+                order[size++] = added[next++];
+            }
+            return order;
+        }
+
+        private static int[] order(String[] keys) {
+            return sortSlots(IntStream.range(0, keys.length).toArray(), keys);
+        }
+
+        private static int[] sortSlots(int[] slots, String[] keys) {
+            return IntStream.of(slots).boxed()
+                    .sorted((a, b) -> KEY_ORDER.compare(keys[a], keys[b]))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+        }
+
+        // First position whose key is not below the prefix, matches of the prefix start there
+        private static int lowerBound(int[] order, String[] keys, String prefix) {
+            int low = 0;
+            int high = order.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (KEY_ORDER.compare(keys[order[mid]], prefix) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private static String nonNull(String key) {
+            return key == null ? "" : key;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package net.svsh.linkupserver.user.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import net.svsh.linkupserver.cache.InvalidatingCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+@Component
+public class UserDetailsCache {
+
+    private final InvalidatingCache<String, UserDetails> cache;
+
+    public UserDetailsCache(@Value("${linkup.user.cache.max-size:10000}") long maxSize,
+                            @Value("${linkup.user.cache.ttl:5m}") Duration ttl) {
+        this.cache = new InvalidatingCache<>(Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build());
+    }
+
+    // Hands out a copy because the authentication manager erases the password of the principal it returns
+    public UserDetails get(String email, Function<String, UserDetails> loader) {
+        return User.withUserDetails(cache.get(email, loader)).build();
+    }
+
+    public void evict(String email) {
+        if (email != null) {
+            cache.invalidate(email);
+        }
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+}
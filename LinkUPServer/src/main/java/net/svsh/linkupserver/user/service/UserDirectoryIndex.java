@@ -0,0 +1,143 @@
+package net.svsh.linkupserver.user.service;
+
+import net.svsh.linkupserver.cluster.ClusterBus;
+import net.svsh.linkupserver.cluster.ClusterEnvelope;
+import net.svsh.linkupserver.cluster.ClusterListener;
+import net.svsh.linkupserver.dto.UserSummary;
+import net.svsh.linkupserver.user.User;
+import net.svsh.linkupserver.user.UserRole;
+import net.svsh.linkupserver.user.directory.UserDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Keeps the user directory in sync with the users table. Local changes are applied directly by
+// UserManagementService and announced to the other nodes, which read the changed users back themselves.
+@Component
+public class UserDirectoryIndex implements ClusterListener, InitializingBean, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(UserDirectoryIndex.class);
+
+    private static final String SELECT_USERS = "SELECT id, username, email, roles FROM users";
+    private static final String SELECT_USER = SELECT_USERS + " WHERE id = ?";
+    private static final RowMapper<UserSummary> SUMMARY = (resultSet, rowNum) -> new UserSummary(
+            resultSet.getLong("id"),
+            resultSet.getString("username"),
+            resultSet.getString("email"),
+            resultSet.getString("roles") == null ? null : UserRole.valueOf(resultSet.getString("roles")));
+
+    private final UserDirectory directory = new UserDirectory();
+    private final ClusterBus clusterBus;
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final int maxPendingChanges;
+    private final ScheduledExecutorService maintainer;
+
+    public UserDirectoryIndex(ClusterBus clusterBus,
+                              JdbcTemplate jdbcTemplate,
+                              DataSource dataSource,
+                              @Value("${linkup.users.directory.max-pending-changes:1024}") int maxPendingChanges,
+                              @Value("${linkup.users.directory.load-fetch-size:-2147483648}") int fetchSize) {
+        this.clusterBus = clusterBus;
+        this.jdbcTemplate = jdbcTemplate;
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(fetchSize);
+        this.maxPendingChanges = maxPendingChanges;
+        this.maintainer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-directory-maintainer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        clusterBus.subscribe(this);
+        maintainer.scheduleWithFixedDelay(() -> {
+            if (directory.pendingChanges() >= maxPendingChanges) {
+                directory.compact();
+            }
+        }, 1000, 1000, TimeUnit.MILLISECONDS);
+    }
+
+    // Changes made while loading land in the delta and win over the loaded rows
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        maintainer.execute(() -> {
+            try {
+                List<UserSummary> users = new ArrayList<>();
+                streamingJdbcTemplate.query(SELECT_USERS, resultSet -> {
+                    users.add(SUMMARY.mapRow(resultSet, 0));
+                });
+                directory.load(users);
+                log.info("User directory loaded {} users", users.size());
+            } catch (RuntimeException e) {
+                log.error("User directory load failed", e);
+            }
+        });
+    }
+
+    public List<UserSummary> search(String prefix, int limit) {
+        return directory.search(prefix, limit);
+    }
+
+    public int size() {
+        return directory.size();
+    }
+
+    public void put(User user) {
+        directory.put(user.toSummary());
+        announce(user.getId());
+    }
+
+    public void remove(long userId) {
+        directory.remove(userId);
+        announce(userId);
+    }
+
+    private void announce(long userId) {
+        clusterBus.broadcast(ClusterEnvelope.directory(ClusterEnvelope.USERS, clusterBus.localNodeId(), List.of(userId)));
+    }
+
+    // Only ids travel, the rows are read on the maintainer thread so the bus thread never waits on the database
+    @Override
+    public void onEnvelope(ClusterEnvelope envelope) {
+        if (!ClusterEnvelope.USERS.equals(envelope.getType())) {
+            return;
+        }
+        maintainer.execute(() -> {
+            for (Long userId : envelope.getUserIds()) {
+                try {
+                    List<UserSummary> users = jdbcTemplate.query(SELECT_USER, SUMMARY, userId);
+                    if (users.isEmpty()) {
+                        directory.remove(userId);
+                    } else {
+                        directory.put(users.get(0));
+                    }
+                } catch (RuntimeException e) {
+                    log.error("Failed to refresh user {} in directory", userId, e);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        maintainer.shutdown();
+        maintainer.awaitTermination(5, TimeUnit.SECONDS);
+    }
+}
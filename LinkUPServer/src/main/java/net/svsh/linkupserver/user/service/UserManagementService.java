@@ -1,11 +1,19 @@
 package net.svsh.linkupserver.user.service;
 
 import net.svsh.linkupserver.dto.RequestResponse;
+import net.svsh.linkupserver.dto.UserSummary;
 import net.svsh.linkupserver.security.jwt.JWTUtils;
+import net.svsh.linkupserver.security.jwt.ParsedToken;
+import net.svsh.linkupserver.security.password.PasswordHashingBusyException;
+import net.svsh.linkupserver.security.password.PasswordHashingExecutor;
+import net.svsh.linkupserver.security.token.IssuedRefreshToken;
+import net.svsh.linkupserver.security.token.RefreshTokenStore;
+import net.svsh.linkupserver.security.token.RevocationList;
 import net.svsh.linkupserver.user.User;
 import net.svsh.linkupserver.user.UserRepository;
 import net.svsh.linkupserver.user.UserRole;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
@@ -13,13 +21,18 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Optional;
 
 @Service
 public class UserManagementService {
 
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int DEFAULT_SEARCH_LIMIT = 10;
+    private static final int MAX_SEARCH_LIMIT = 50;
+    private static final String MISSING_REFRESH_TOKEN = "The refresh token from login is required in refreshToken";
+
     @Autowired
     private UserRepository userRepository;
 
@@ -32,6 +45,21 @@ public class UserManagementService {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private PasswordHashingExecutor passwordHashingExecutor;
+
+    @Autowired
+    private UserDirectoryIndex userDirectoryIndex;
+
+    @Autowired
+    private RefreshTokenStore refreshTokenStore;
+
+    @Autowired
+    private RevocationList revocationList;
+
     public RequestResponse register(RequestResponse registerRequest) {
         RequestResponse registerResponse = new RequestResponse();
 
@@ -42,20 +70,21 @@ public class UserManagementService {
         }
 
         try {
-            System.err.println("Can get here!");
             User user = new User();
             user.setEmail(registerRequest.getEmail());
             user.setUsername(registerRequest.getUsername());
-            user.setPassword(passwordEncoder.encode(registerRequest.getPassword()));
+            user.setPassword(passwordHashingExecutor.call(() -> passwordEncoder.encode(registerRequest.getPassword())));
             user.setRoles(UserRole.USER);
-            System.err.println(user.getEmail() + " " + user.getPassword() + " " + user.getUsername() + " " + user.getRoles());
             User user2 = userRepository.save(user);
             if (user2.getId() > 0) {
-                System.err.println("Works");
+                userDirectoryIndex.put(user2);
                 registerResponse.setUser(user2);
                 registerResponse.setStatusCode(200);
                 registerResponse.setMessage("User registered successfully");
             }
+        } catch (PasswordHashingBusyException e) {
+            registerResponse.setStatusCode(503);
+            registerResponse.setError(e.getMessage());
         } catch (Exception e) {
             registerResponse.setStatusCode(500);
             registerResponse.setError(e.getMessage());
@@ -68,14 +97,14 @@ public class UserManagementService {
         RequestResponse loginResponse = new RequestResponse();
 
         try {
-            authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(loginRequest.getEmail(),
-                    loginRequest.getPassword()));
+            // BCrypt verification, and the rehash when the stored cost is outdated, run on the hashing pool
+            passwordHashingExecutor.call(() -> authenticationManager.authenticate(
+                    new UsernamePasswordAuthenticationToken(loginRequest.getEmail(), loginRequest.getPassword())));
 
             var user2 = userRepository.findByEmail(loginRequest.getEmail()).orElseThrow();
-            var token = jwtUtils.generateToken(user2);
-            var refreshedToken = jwtUtils.generateRefreshToken(new HashMap<>(), user2);
-
-            System.out.println(user2.getEmail() + " " + token);
+            IssuedRefreshToken session = refreshTokenStore.issue(user2.getId());
+            var token = jwtUtils.generateToken(user2, session.sessionId());
+            var refreshedToken = jwtUtils.generateRefreshToken(user2, session.id(), session.sessionId(), session.expiresAt());
 
             loginResponse.setStatusCode(200);
             loginResponse.setToken(token);
@@ -85,6 +114,9 @@ public class UserManagementService {
             loginResponse.setEmail(user2.getEmail());
             loginResponse.setUsername(user2.getUsername());
             loginResponse.setRoles(UserRole.USER);
+        } catch (PasswordHashingBusyException e) {
+            loginResponse.setStatusCode(503);
+            loginResponse.setError(e.getMessage());
         } catch (Exception e) {
             loginResponse.setStatusCode(500);
             loginResponse.setError(e.getMessage());
@@ -93,21 +125,38 @@ public class UserManagementService {
         return loginResponse;
     }
 
+    // Every refresh token is used once, the response carries its successor next to the new access token
     public RequestResponse refreshToken(RequestResponse refreshRequest) {
         RequestResponse refreshResponse = new RequestResponse();
 
         try {
-            String email = jwtUtils.extractUsername(refreshRequest.getToken());
-            User user = userRepository.findByEmail(email).orElseThrow();
-
-            if (jwtUtils.validateToken(refreshRequest.getToken(), user)) {
-                var token = jwtUtils.generateToken(user);
-                refreshResponse.setStatusCode(200);
-                refreshResponse.setToken(token);
-                refreshResponse.setRefreshToken(refreshRequest.getRefreshToken());
-                refreshResponse.setExpirationTime("24 Hours");
-                refreshResponse.setMessage("User refreshed successfully");
+            String refreshToken = refreshTokenOf(refreshRequest);
+            if (refreshToken == null) {
+                refreshResponse.setStatusCode(400);
+                refreshResponse.setMessage(MISSING_REFRESH_TOKEN);
+                return refreshResponse;
+            }
+            ParsedToken parsedToken = jwtUtils.parseToken(refreshToken);
+            Optional<User> user = userRepository.findByEmail(parsedToken.subject());
+            if (!parsedToken.refresh() || user.isEmpty() || !parsedToken.isValidFor(user.get().getUsername())) {
+                refreshResponse.setStatusCode(401);
+                refreshResponse.setMessage("Unauthorized - Invalid refresh token");
+                return refreshResponse;
+            }
+
+            Optional<IssuedRefreshToken> next = refreshTokenStore.rotate(parsedToken.id(), parsedToken.sessionId(), user.get().getId());
+            if (next.isEmpty()) {
+                refreshResponse.setStatusCode(401);
+                refreshResponse.setMessage("Unauthorized - Refresh token revoked or already used");
+                return refreshResponse;
             }
+
+            IssuedRefreshToken session = next.get();
+            refreshResponse.setStatusCode(200);
+            refreshResponse.setToken(jwtUtils.generateToken(user.get(), session.sessionId()));
+            refreshResponse.setRefreshToken(jwtUtils.generateRefreshToken(user.get(), session.id(), session.sessionId(), session.expiresAt()));
+            refreshResponse.setExpirationTime("24 Hours");
+            refreshResponse.setMessage("User refreshed successfully");
         } catch (Exception e) {
             refreshResponse.setStatusCode(500);
             refreshResponse.setError(e.getMessage());
@@ -116,13 +165,58 @@ public class UserManagementService {
         return refreshResponse;
     }
 
-    public RequestResponse getAllUsers() {
+    // Ends the session of the refresh token, its access tokens stop working on every node
+    public RequestResponse logout(RequestResponse logoutRequest) {
+        RequestResponse logoutResponse = new RequestResponse();
+
+        try {
+            String refreshToken = refreshTokenOf(logoutRequest);
+            if (refreshToken == null) {
+                logoutResponse.setStatusCode(400);
+                logoutResponse.setMessage(MISSING_REFRESH_TOKEN);
+                return logoutResponse;
+            }
+            ParsedToken parsedToken = jwtUtils.parseToken(refreshToken);
+            if (!parsedToken.refresh() || parsedToken.sessionId() == null) {
+                logoutResponse.setStatusCode(401);
+                logoutResponse.setMessage("Unauthorized - Invalid refresh token");
+                return logoutResponse;
+            }
+
+            refreshTokenStore.revokeSession(parsedToken.sessionId());
+            logoutResponse.setStatusCode(200);
+            logoutResponse.setMessage("User logged out successfully");
+        } catch (Exception e) {
+            logoutResponse.setStatusCode(500);
+            logoutResponse.setError(e.getMessage());
+        }
+
+        return logoutResponse;
+    }
+
+    // Clients written before refresh tokens were rotated send it in token, the field this endpoint used to read
+    private static String refreshTokenOf(RequestResponse request) {
+        String refreshToken = request.getRefreshToken();
+        if (refreshToken == null || refreshToken.isBlank()) {
+            refreshToken = request.getToken();
+        }
+        return refreshToken == null || refreshToken.isBlank() ? null : refreshToken;
+    }
+
+    // Without a limit every user comes back in one response as before paging existed, api/users/stream is the
+    // better choice for that. With one, nextCursor is set on a full page
+    public RequestResponse getAllUsers(Long after, Integer limit) {
         RequestResponse allUsers = new RequestResponse();
 
         try {
-            List<User> users = userRepository.findAll();
+            int pageSize = limit == null ? 0 : limit <= 0 ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+            Pageable pageable = limit == null ? Pageable.unpaged() : Pageable.ofSize(pageSize);
+            List<UserSummary> users = userRepository.findSummariesAfter(after == null ? 0L : after, pageable);
             if (!users.isEmpty()) {
                 allUsers.setUsers(users);
+                if (limit != null && users.size() == pageSize) {
+                    allUsers.setNextCursor(users.get(users.size() - 1).id());
+                }
                 allUsers.setStatusCode(200);
                 allUsers.setMessage("All users successfully");
             } else {
@@ -137,6 +231,29 @@ public class UserManagementService {
         return allUsers;
     }
 
+    // Typeahead over usernames and emails, served from memory without touching the users table
+    public RequestResponse searchUsers(String query, Integer limit) {
+        RequestResponse searchResponse = new RequestResponse();
+
+        try {
+            String prefix = query == null ? "" : query.trim();
+            if (prefix.isEmpty()) {
+                searchResponse.setStatusCode(400);
+                searchResponse.setError("Query must not be empty");
+                return searchResponse;
+            }
+            int resultSize = limit == null || limit <= 0 ? DEFAULT_SEARCH_LIMIT : Math.min(limit, MAX_SEARCH_LIMIT);
+            searchResponse.setUsers(userDirectoryIndex.search(prefix, resultSize));
+            searchResponse.setStatusCode(200);
+            searchResponse.setMessage("Users found successfully");
+        } catch (Exception e) {
+            searchResponse.setStatusCode(500);
+            searchResponse.setError(e.getMessage());
+        }
+
+        return searchResponse;
+    }
+
     public RequestResponse getUserById(int id) {
         RequestResponse userResponse = new RequestResponse();
 
@@ -159,7 +276,10 @@ public class UserManagementService {
         try {
             Optional<User> user = userRepository.findById(userId);
             if (user.isPresent()) {
+                refreshTokenStore.revokeUser(userId);
                 userRepository.deleteById(userId);
+                userService.evict(user.get().getEmail());
+                userDirectoryIndex.remove(userId);
                 deleteResponse.setStatusCode(200);
                 deleteResponse.setMessage("User with ID " + userId + " successfully deleted");
             } else {
@@ -181,16 +301,20 @@ public class UserManagementService {
             Optional<User> user = userRepository.findById(userId);
             if (user.isPresent()) {
                 User existingUser = user.get();
+                String previousEmail = existingUser.getEmail();
                 existingUser.setUsername(updatedUser.getUsername());
                 existingUser.setEmail(updatedUser.getEmail());
                 existingUser.setPassword(updatedUser.getPassword());
                 existingUser.setRoles(updatedUser.getRoles());
 
                 if (updatedUser.getPassword() != null && !updatedUser.getPassword().isEmpty()) {
-                    existingUser.setPassword(passwordEncoder.encode(updatedUser.getPassword()));
+                    existingUser.setPassword(passwordHashingExecutor.call(() -> passwordEncoder.encode(updatedUser.getPassword())));
                 }
 
                 User savedUser = userRepository.save(existingUser);
+                userService.evict(previousEmail);
+                userService.evict(savedUser.getEmail());
+                userDirectoryIndex.put(savedUser);
                 updateResponse.setUser(savedUser);
                 updateResponse.setStatusCode(200);
                 updateResponse.setMessage("User with ID " + userId + " successfully updated");
@@ -198,6 +322,9 @@ public class UserManagementService {
                 updateResponse.setStatusCode(404);
                 updateResponse.setMessage("No user found");
             }
+        } catch (PasswordHashingBusyException e) {
+            updateResponse.setStatusCode(503);
+            updateResponse.setError(e.getMessage());
         } catch (Exception e) {
             updateResponse.setStatusCode(500);
             updateResponse.setError(e.getMessage());
@@ -232,9 +359,10 @@ public class UserManagementService {
 
         try {
             Optional<User> user = userRepository.findByEmail(email);
-            System.err.println(email);
             if (user.isPresent()) {
-                if (jwtUtils.validateToken(token, user.get())) {
+                ParsedToken parsedToken = jwtUtils.parseToken(token);
+                if (!parsedToken.refresh() && !revocationList.isRevoked(parsedToken.sessionId())
+                        && parsedToken.isValidFor(user.get().getUsername())) {
                     isValidResponse.setStatusCode(200);
                     isValidResponse.setMessage("User with email " + email + " is valid");
                 } else {
@@ -0,0 +1,56 @@
+package net.svsh.linkupserver.user.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+// Writes the user directory to the response row by row, memory use stays flat however many users exist
+@Service
+public class UserStreamService {
+
+    private static final String SELECT_USERS = "SELECT id, username, email, roles FROM users ORDER BY id";
+    private static final int FLUSH_EVERY_ROWS = 500;
+
+    private final JdbcTemplate streamingJdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // MySQL only streams rows instead of buffering the whole result set when the fetch size is Integer.MIN_VALUE
+    public UserStreamService(DataSource dataSource,
+                             @Value("${linkup.users.stream.fetch-size:-2147483648}") int fetchSize) {
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(fetchSize);
+    }
+
+    public void streamUsers(OutputStream outputStream) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.writeStartArray();
+            int[] rows = {0};
+            streamingJdbcTemplate.query(SELECT_USERS, resultSet -> {
+                try {
+                    generator.writeStartObject();
+                    generator.writeNumberField("id", resultSet.getLong("id"));
+                    generator.writeStringField("username", resultSet.getString("username"));
+                    generator.writeStringField("email", resultSet.getString("email"));
+                    generator.writeStringField("roles", resultSet.getString("roles"));
+                    generator.writeEndObject();
+                    if (++rows[0] % FLUSH_EVERY_ROWS == 0) {
+                        generator.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeEndArray();
+        }
+    }
+}
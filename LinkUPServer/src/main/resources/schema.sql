@@ -0,0 +1,238 @@
+CREATE TABLE IF NOT EXISTS chats (
+    id INT UNIQUE NOT NULL AUTO_INCREMENT,
+    name VARCHAR(255),
+    type ENUM('INDIVIDUAL', 'GROUP') NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY(id)
+);
+
+CREATE TABLE IF NOT EXISTS chat_participants (
+    id INT UNIQUE NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    chat_id INT,
+    user_id INT,
+    fanout ENUM('WRITE', 'READ') NOT NULL DEFAULT 'WRITE',
+    UNIQUE INDEX uq_chat_participants_chat_user (chat_id, user_id),
+    INDEX idx_chat_participants_user_fanout (user_id, fanout, chat_id),
+    FOREIGN KEY (chat_id) REFERENCES chats(id),
+    FOREIGN KEY (user_id) REFERENCES users(id)
+);
+
+CREATE TABLE IF NOT EXISTS messages (
+    id BIGINT UNIQUE NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    sender_id INT,
+    chat_id INT,
+    content TEXT NOT NULL,
+    sent_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_messages_chat_id_id (chat_id, id),
+    FOREIGN KEY (sender_id) REFERENCES users(id),
+    FOREIGN KEY (chat_id) REFERENCES chats(id)
+);
+
+-- Databases whose messages table predates the keyset history index get it here. MySQL has no CREATE INDEX
+-- IF NOT EXISTS, so the statement is only prepared when information_schema does not list the index yet.
+SET @create_index = (SELECT IF(COUNT(*) = 0,
+    'CREATE INDEX idx_messages_chat_id_id ON messages (chat_id, id)',
+    'DO 0')
+    FROM information_schema.statistics
+    WHERE table_schema = DATABASE() AND table_name = 'messages' AND index_name = 'idx_messages_chat_id_id');
+PREPARE create_index FROM @create_index;
+EXECUTE create_index;
+DEALLOCATE PREPARE create_index;
+
+-- Messages the database rejected, e.g. for a chat that no longer exists, kept instead of stalling the write-behind queue
+CREATE TABLE IF NOT EXISTS message_dead_letters (
+    id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    message_id BIGINT NOT NULL,
+    sender_id INT,
+    chat_id INT,
+    content LONGTEXT,
+    sent_at TIMESTAMP NULL,
+    error VARCHAR(1000),
+    failed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS attachments (
+    id INT UNIQUE NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    message_id BIGINT,
+    file_url VARCHAR(500) NOT NULL,
+    file_type VARCHAR(50) NOT NULL,
+    INDEX idx_attachments_file_url (file_url),
+    FOREIGN KEY (message_id) REFERENCES messages(id)
+);
+
+-- Downloads are authorized by the attachment rows that point at the file
+SET @create_index = (SELECT IF(COUNT(*) = 0,
+    'CREATE INDEX idx_attachments_file_url ON attachments (file_url)',
+    'DO 0')
+    FROM information_schema.statistics
+    WHERE table_schema = DATABASE() AND table_name = 'attachments' AND index_name = 'idx_attachments_file_url');
+PREPARE create_index FROM @create_index;
+EXECUTE create_index;
+DEALLOCATE PREPARE create_index;
+
+CREATE TABLE IF NOT EXISTS chat_heads (
+    chat_id INT NOT NULL PRIMARY KEY,
+    fanout ENUM('WRITE', 'READ') NOT NULL DEFAULT 'WRITE',
+    last_message_id BIGINT NOT NULL DEFAULT 0,
+    last_sender_id INT,
+    last_preview VARCHAR(255),
+    last_message_at TIMESTAMP NULL,
+    INDEX idx_chat_heads_fanout (fanout),
+    FOREIGN KEY (chat_id) REFERENCES chats(id)
+);
+
+CREATE TABLE IF NOT EXISTS inbox (
+    user_id INT NOT NULL,
+    chat_id INT NOT NULL,
+    last_message_id BIGINT NOT NULL DEFAULT 0,
+    last_sender_id INT,
+    last_preview VARCHAR(255),
+    last_message_at TIMESTAMP NULL,
+    last_read_message_id BIGINT NOT NULL DEFAULT 0,
+    unread_count INT NOT NULL DEFAULT 0,
+    PRIMARY KEY (user_id, chat_id),
+    INDEX idx_inbox_user_last_message (user_id, last_message_id, chat_id),
+    FOREIGN KEY (user_id) REFERENCES users(id),
+    FOREIGN KEY (chat_id) REFERENCES chats(id)
+);
+
+-- One row per one-time data migration the application ran, e.g. InboxWriter's backfill, so it is not repeated
+CREATE TABLE IF NOT EXISTS data_migrations (
+    name VARCHAR(100) NOT NULL PRIMARY KEY,
+    completed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- chat_participants.fanout mirrors the chat's head, so the inbox finds a user's large chats with a range scan
+-- on idx_chat_participants_user_fanout instead of reading every chat the user is in. Existing rows are set by
+-- InboxWriter's reconcile on startup.
+SET @add_column = (SELECT IF(COUNT(*) = 0,
+    'ALTER TABLE chat_participants ADD COLUMN fanout ENUM(''WRITE'', ''READ'') NOT NULL DEFAULT ''WRITE''',
+    'DO 0')
+    FROM information_schema.columns
+    WHERE table_schema = DATABASE() AND table_name = 'chat_participants' AND column_name = 'fanout');
+PREPARE add_column FROM @add_column;
+EXECUTE add_column;
+DEALLOCATE PREPARE add_column;
+
+SET @create_index = (SELECT IF(COUNT(*) = 0,
+    'CREATE INDEX idx_chat_participants_user_fanout ON chat_participants (user_id, fanout, chat_id)',
+    'DO 0')
+    FROM information_schema.statistics
+    WHERE table_schema = DATABASE() AND table_name = 'chat_participants' AND index_name = 'idx_chat_participants_user_fanout');
+PREPARE create_index FROM @create_index;
+EXECUTE create_index;
+DEALLOCATE PREPARE create_index;
+
+SET @create_index = (SELECT IF(COUNT(*) = 0,
+    'CREATE INDEX idx_chat_heads_fanout ON chat_heads (fanout)',
+    'DO 0')
+    FROM information_schema.statistics
+    WHERE table_schema = DATABASE() AND table_name = 'chat_heads' AND index_name = 'idx_chat_heads_fanout');
+PREPARE create_index FROM @create_index;
+EXECUTE create_index;
+DEALLOCATE PREPARE create_index;
+
+-- A user is in a chat once, duplicate rows would count and fan out to them twice. The oldest row of each
+-- duplicate is kept, then the unique index stops new ones. Both only run while the index is missing.
+SET @unique_missing = (SELECT COUNT(*) = 0
+    FROM information_schema.statistics
+    WHERE table_schema = DATABASE() AND table_name = 'chat_participants' AND index_name = 'uq_chat_participants_chat_user');
+SET @dedupe = IF(@unique_missing,
+    'DELETE p FROM chat_participants p JOIN chat_participants q ON q.chat_id = p.chat_id AND q.user_id = p.user_id AND q.id < p.id',
+    'DO 0');
+PREPARE dedupe FROM @dedupe;
+EXECUTE dedupe;
+DEALLOCATE PREPARE dedupe;
+
+SET @create_index = IF(@unique_missing,
+    'CREATE UNIQUE INDEX uq_chat_participants_chat_user ON chat_participants (chat_id, user_id)',
+    'DO 0');
+PREPARE create_index FROM @create_index;
+EXECUTE create_index;
+DEALLOCATE PREPARE create_index;
+
+CREATE TABLE IF NOT EXISTS change_log (
+    id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    type ENUM('MESSAGE', 'EDIT', 'DELETE', 'JOIN', 'LEAVE', 'READ') NOT NULL,
+    chat_id INT NOT NULL,
+    user_id INT,
+    message_id BIGINT,
+    created_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    INDEX idx_change_log_chat (chat_id, user_id, id),
+    INDEX idx_change_log_user (user_id, id),
+    INDEX idx_change_log_created (created_at)
+);
+
+-- Message ids are time-ordered and outgrow INT, databases created with INT message id columns are widened here.
+-- Foreign key checks are off so messages.id and attachments.message_id can change type one after the other.
+SET FOREIGN_KEY_CHECKS = 0;
+
+SET @widen = (SELECT IF(COUNT(*) = 0,
+    'DO 0',
+    'ALTER TABLE messages MODIFY id BIGINT NOT NULL AUTO_INCREMENT')
+    FROM information_schema.columns
+    WHERE table_schema = DATABASE() AND table_name = 'messages' AND column_name = 'id' AND data_type <> 'bigint');
+PREPARE widen FROM @widen;
+EXECUTE widen;
+DEALLOCATE PREPARE widen;
+
+SET @widen = (SELECT IF(COUNT(*) = 0,
+    'DO 0',
+    'ALTER TABLE attachments MODIFY message_id BIGINT')
+    FROM information_schema.columns
+    WHERE table_schema = DATABASE() AND table_name = 'attachments' AND column_name = 'message_id' AND data_type <> 'bigint');
+PREPARE widen FROM @widen;
+EXECUTE widen;
+DEALLOCATE PREPARE widen;
+
+SET @widen = (SELECT IF(COUNT(*) = 0,
+    'DO 0',
+    'ALTER TABLE chat_heads MODIFY last_message_id BIGINT NOT NULL DEFAULT 0')
+    FROM information_schema.columns
+    WHERE table_schema = DATABASE() AND table_name = 'chat_heads' AND column_name = 'last_message_id' AND data_type <> 'bigint');
+PREPARE widen FROM @widen;
+EXECUTE widen;
+DEALLOCATE PREPARE widen;
+
+SET @widen = (SELECT IF(COUNT(*) = 0,
+    'DO 0',
+    'ALTER TABLE inbox MODIFY last_message_id BIGINT NOT NULL DEFAULT 0')
+    FROM information_schema.columns
+    WHERE table_schema = DATABASE() AND table_name = 'inbox' AND column_name = 'last_message_id' AND data_type <> 'bigint');
+PREPARE widen FROM @widen;
+EXECUTE widen;
+DEALLOCATE PREPARE widen;
+
+SET @widen = (SELECT IF(COUNT(*) = 0,
+    'DO 0',
+    'ALTER TABLE inbox MODIFY last_read_message_id BIGINT NOT NULL DEFAULT 0')
+    FROM information_schema.columns
+    WHERE table_schema = DATABASE() AND table_name = 'inbox' AND column_name = 'last_read_message_id' AND data_type <> 'bigint');
+PREPARE widen FROM @widen;
+EXECUTE widen;
+DEALLOCATE PREPARE widen;
+
+SET @widen = (SELECT IF(COUNT(*) = 0,
+    'DO 0',
+    'ALTER TABLE change_log MODIFY message_id BIGINT')
+    FROM information_schema.columns
+    WHERE table_schema = DATABASE() AND table_name = 'change_log' AND column_name = 'message_id' AND data_type <> 'bigint');
+PREPARE widen FROM @widen;
+EXECUTE widen;
+DEALLOCATE PREPARE widen;
+
+SET FOREIGN_KEY_CHECKS = 1;
+
+CREATE TABLE IF NOT EXISTS refresh_tokens (
+    id CHAR(36) NOT NULL PRIMARY KEY,
+    session_id CHAR(36) NOT NULL,
+    user_id INT NOT NULL,
+    issued_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    expires_at TIMESTAMP NOT NULL,
+    rotated_at TIMESTAMP NULL,
+    revoked_at TIMESTAMP NULL,
+    INDEX idx_refresh_tokens_session (session_id),
+    INDEX idx_refresh_tokens_user (user_id),
+    INDEX idx_refresh_tokens_expires (expires_at),
+    INDEX idx_refresh_tokens_revoked (revoked_at)
+);
@@ -0,0 +1,78 @@
+package net.svsh.linkupserver.attachment.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AttachmentStorageTests {
+
+    private static final long TTL = 60_000;
+
+    @Test
+    void chunkPastTheDeclaredSizeIsRejectedAndNotKept() throws Exception {
+        AttachmentStorage storage = storage();
+        try {
+            AttachmentStorage.Upload upload = storage.createUpload("a@linkup.net", "a.bin", "application/octet-stream", 4);
+            assertEquals(2L, storage.appendChunk(upload, 0, new ByteArrayInputStream(new byte[2])));
+
+            assertThrows(AttachmentStorage.ChunkTooLargeException.class,
+                    () -> storage.appendChunk(upload, 2, new ByteArrayInputStream(new byte[3])));
+            assertEquals(2L, storage.findUpload(upload.uploadId()).offset());
+        } finally {
+            storage.destroy();
+        }
+    }
+
+    @Test
+    void chunkAtTheWrongOffsetReportsWhereToResume() throws Exception {
+        AttachmentStorage storage = storage();
+        try {
+            AttachmentStorage.Upload upload = storage.createUpload("a@linkup.net", "a.bin", "application/octet-stream", 4);
+            storage.appendChunk(upload, 0, new ByteArrayInputStream(new byte[3]));
+
+            AttachmentStorage.OffsetMismatchException mismatch = assertThrows(AttachmentStorage.OffsetMismatchException.class,
+                    () -> storage.appendChunk(upload, 1, new ByteArrayInputStream(new byte[1])));
+            assertEquals(3L, mismatch.getExpectedOffset());
+        } finally {
+            storage.destroy();
+        }
+    }
+
+    @Test
+    void uploadsWithoutChunksForTheTtlAreRemoved() throws Exception {
+        Path root = Files.createTempDirectory("attachments");
+        AttachmentStorage storage = new AttachmentStorage(root, TTL, 3_600_000);
+        try {
+            AttachmentStorage.Upload stale = storage.createUpload("a@linkup.net", "old.bin", "application/octet-stream", 4);
+            AttachmentStorage.Upload active = storage.createUpload("a@linkup.net", "new.bin", "application/octet-stream", 4);
+            long now = System.currentTimeMillis();
+            age(root, stale.uploadId(), now - 2 * TTL);
+            age(root, active.uploadId(), now - 2 * TTL);
+            storage.appendChunk(active, 0, new ByteArrayInputStream(new byte[1]));
+
+            assertEquals(1, storage.removeAbandonedUploads(now));
+            assertNull(storage.findUpload(stale.uploadId()));
+            assertNotNull(storage.findUpload(active.uploadId()));
+        } finally {
+            storage.destroy();
+        }
+    }
+
+    private static AttachmentStorage storage() throws IOException {
+        return new AttachmentStorage(Files.createTempDirectory("attachments"), TTL, 3_600_000);
+    }
+
+    private static void age(Path root, String uploadId, long millis) throws IOException {
+        Files.setLastModifiedTime(root.resolve("uploads").resolve(uploadId + ".part"), FileTime.fromMillis(millis));
+        Files.setLastModifiedTime(root.resolve("uploads").resolve(uploadId + ".meta"), FileTime.fromMillis(millis));
+    }
+}
@@ -0,0 +1,78 @@
+package net.svsh.linkupserver.attachment.service;
+
+import net.svsh.linkupserver.attachment.Attachment;
+import net.svsh.linkupserver.attachment.AttachmentRepository;
+import net.svsh.linkupserver.chat.MessageRepository;
+import net.svsh.linkupserver.chat.persistence.MessageIdAllocator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// The retrier's own schedule never comes round during a test, retry() is called directly
+class PendingAttachmentsTests {
+
+    private static final String EMAIL = "alice@linkup.local";
+
+    private final MessageRepository messageRepository = mock(MessageRepository.class);
+    private final AttachmentRepository attachmentRepository = mock(AttachmentRepository.class);
+    private final PendingAttachments pendingAttachments =
+            new PendingAttachments(messageRepository, attachmentRepository, 60_000, 3_600_000);
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        pendingAttachments.destroy();
+    }
+
+    @Test
+    void onlyRecentlyAllocatedIdsMayStillArrive() {
+        long now = System.currentTimeMillis();
+
+        assertTrue(pendingAttachments.mayStillArrive(MessageIdAllocator.firstIdAt(now)));
+        assertFalse(pendingAttachments.mayStillArrive(MessageIdAllocator.firstIdAt(now - 120_000)));
+        assertFalse(pendingAttachments.mayStillArrive(42));
+    }
+
+    @Test
+    void anAttachmentIsSavedOnceItsMessageIsWritten() {
+        long messageId = MessageIdAllocator.firstIdAt(System.currentTimeMillis());
+        when(messageRepository.isSender(messageId, EMAIL)).thenReturn(false);
+        pendingAttachments.defer(messageId, EMAIL, "/api/attachments/abc", "image/png");
+
+        pendingAttachments.retry();
+        verify(attachmentRepository, never()).save(any());
+
+        when(messageRepository.isSender(messageId, EMAIL)).thenReturn(true);
+        pendingAttachments.retry();
+        pendingAttachments.retry();
+
+        ArgumentCaptor<Attachment> saved = ArgumentCaptor.forClass(Attachment.class);
+        verify(attachmentRepository, times(1)).save(saved.capture());
+        assertEquals(messageId, saved.getValue().getMessageId());
+        assertEquals("/api/attachments/abc", saved.getValue().getFileUrl());
+        assertEquals("image/png", saved.getValue().getFileType());
+    }
+
+    // Past the grace window the message was lost, or is someone else's, and the file stays unattached
+    @Test
+    void anAttachmentWhoseMessageNeverArrivesIsDropped() {
+        long messageId = MessageIdAllocator.firstIdAt(System.currentTimeMillis() - 120_000);
+        pendingAttachments.defer(messageId, EMAIL, "/api/attachments/abc", "image/png");
+
+        pendingAttachments.retry();
+        when(messageRepository.isSender(messageId, EMAIL)).thenReturn(true);
+        pendingAttachments.retry();
+
+        verify(messageRepository, times(1)).isSender(messageId, EMAIL);
+        verify(attachmentRepository, never()).save(any());
+    }
+}
@@ -0,0 +1,44 @@
+package net.svsh.linkupserver.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class InvalidatingCacheTests {
+
+    private final InvalidatingCache<Long, String> cache = new InvalidatingCache<>(Caffeine.newBuilder().build());
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void aLoadedValueIsKeptUntilInvalidated() {
+        assertEquals("1", cache.get(1L, this::load));
+        assertEquals("1", cache.get(1L, this::load));
+        assertEquals(1, loads.get());
+
+        cache.invalidate(1L);
+
+        assertEquals("2", cache.get(1L, this::load));
+        assertEquals(2, loads.get());
+    }
+
+    // The invalidation lands while the loader is still reading, what it read may be from before the change
+    @Test
+    void aLoadOverlappingAnInvalidationIsReturnedButNotKept() {
+        String overlapped = cache.get(1L, key -> {
+            cache.invalidate(2L);
+            return load(key);
+        });
+
+        assertEquals("1", overlapped);
+        assertEquals(0, cache.estimatedSize());
+        assertEquals("2", cache.get(1L, this::load));
+        assertEquals(1, cache.estimatedSize());
+    }
+
+    private String load(Long key) {
+        return String.valueOf(loads.incrementAndGet());
+    }
+}
@@ -0,0 +1,75 @@
+package net.svsh.linkupserver.chat.persistence;
+
+import net.svsh.linkupserver.chat.FanoutMode;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FanoutPolicyTests {
+
+    @Test
+    void aChatSwitchesToReadsAtTheThresholdAndBackOnlyBelowThreeQuarters() {
+        ParticipantCounts counts = new ParticipantCounts();
+        FanoutPolicy policy = new FanoutPolicy(counts, 100);
+
+        assertEquals(FanoutMode.WRITE, modeAt(policy, counts, 99, FanoutMode.WRITE));
+        assertEquals(FanoutMode.READ, modeAt(policy, counts, 100, FanoutMode.WRITE));
+        assertEquals(FanoutMode.READ, modeAt(policy, counts, 99, FanoutMode.READ));
+        assertEquals(FanoutMode.READ, modeAt(policy, counts, 75, FanoutMode.READ));
+        assertEquals(FanoutMode.WRITE, modeAt(policy, counts, 74, FanoutMode.READ));
+        assertEquals(FanoutMode.WRITE, modeAt(policy, counts, 74, FanoutMode.WRITE));
+    }
+
+    // Live delivery has no hysteresis, it only looks at the current size
+    @Test
+    void largeMeansAtLeastTheThreshold() {
+        ParticipantCounts counts = new ParticipantCounts();
+        FanoutPolicy policy = new FanoutPolicy(counts, 100);
+
+        counts.count.set(99);
+        assertFalse(policy.isLarge(1));
+        policy.invalidate(1);
+        counts.count.set(100);
+        assertTrue(policy.isLarge(1));
+    }
+
+    @Test
+    void countsAreCachedUntilMembershipChanges() {
+        ParticipantCounts counts = new ParticipantCounts();
+        FanoutPolicy policy = new FanoutPolicy(counts, 100);
+        counts.count.set(10);
+
+        assertEquals(10, policy.participantCount(1));
+        counts.count.set(20);
+        assertEquals(10, policy.participantCount(1));
+        assertEquals(1, counts.queries.get());
+
+        policy.invalidate(1);
+
+        assertEquals(20, policy.participantCount(1));
+        assertEquals(2, counts.queries.get());
+    }
+
+    private static FanoutMode modeAt(FanoutPolicy policy, ParticipantCounts counts, int participants, FanoutMode current) {
+        policy.invalidate(1);
+        counts.count.set(participants);
+        return policy.next(1, current);
+    }
+
+    // Answers the participant count query with whatever the test set
+    private static final class ParticipantCounts extends JdbcTemplate {
+        private final AtomicInteger count = new AtomicInteger();
+        private final AtomicInteger queries = new AtomicInteger();
+
+        @Override
+        public <T> T queryForObject(String sql, Class<T> requiredType, Object... args) {
+            queries.incrementAndGet();
+            return requiredType.cast(count.get());
+        }
+    }
+}
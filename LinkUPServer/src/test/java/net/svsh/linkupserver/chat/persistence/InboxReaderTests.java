@@ -0,0 +1,85 @@
+package net.svsh.linkupserver.chat.persistence;
+
+import net.svsh.linkupserver.chat.dto.InboxEntryView;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class InboxReaderTests {
+
+    // Chat 2 reads its head: its own inbox row went stale when it switched and must not show up as well
+    @Test
+    void chatsThatFanOutOnReadComeFromTheirHeadOnly() {
+        JdbcTemplate jdbcTemplate = InboxTables.create();
+        InboxTables.chat(jdbcTemplate, 1, 10);
+        InboxTables.chat(jdbcTemplate, 2, 10);
+        head(jdbcTemplate, 1, "WRITE", 5);
+        inboxRow(jdbcTemplate, 10, 1, 5);
+        head(jdbcTemplate, 2, "READ", 8);
+        inboxRow(jdbcTemplate, 10, 2, 3);
+        jdbcTemplate.update("UPDATE chat_participants SET fanout = 'READ' WHERE chat_id = 2");
+
+        List<InboxEntryView> page = new InboxReader(jdbcTemplate).page(10, Long.MAX_VALUE, Long.MAX_VALUE, 10);
+
+        assertEquals(List.of(2L, 1L), chatIds(page));
+        assertEquals(List.of(8L, 5L), page.stream().map(InboxEntryView::lastMessageId).toList());
+    }
+
+    // A participant whose mode is not reconciled yet does not see the large chat's head
+    @Test
+    void aHeadIsOnlyReadByParticipantsMarkedToReadIt() {
+        JdbcTemplate jdbcTemplate = InboxTables.create();
+        InboxTables.chat(jdbcTemplate, 1, 10, 20);
+        head(jdbcTemplate, 1, "READ", 8);
+        jdbcTemplate.update("UPDATE chat_participants SET fanout = 'READ' WHERE user_id = 10");
+
+        InboxReader reader = new InboxReader(jdbcTemplate);
+
+        assertEquals(List.of(1L), chatIds(reader.page(10, Long.MAX_VALUE, Long.MAX_VALUE, 10)));
+        assertEquals(List.of(), chatIds(reader.page(20, Long.MAX_VALUE, Long.MAX_VALUE, 10)));
+    }
+
+    // Chats without messages all sit at message 0, the chat id orders them across both sources and pages
+    @Test
+    void equalLastMessagesAreOrderedAndPagedByChatId() {
+        JdbcTemplate jdbcTemplate = InboxTables.create();
+        for (long chatId = 1; chatId <= 4; chatId++) {
+            InboxTables.chat(jdbcTemplate, chatId, 10);
+        }
+        head(jdbcTemplate, 1, "WRITE", 0);
+        inboxRow(jdbcTemplate, 10, 1, 0);
+        head(jdbcTemplate, 2, "READ", 0);
+        jdbcTemplate.update("UPDATE chat_participants SET fanout = 'READ' WHERE chat_id = 2");
+        head(jdbcTemplate, 3, "WRITE", 0);
+        inboxRow(jdbcTemplate, 10, 3, 0);
+        head(jdbcTemplate, 4, "WRITE", 7);
+        inboxRow(jdbcTemplate, 10, 4, 7);
+        InboxReader reader = new InboxReader(jdbcTemplate);
+
+        List<InboxEntryView> first = reader.page(10, Long.MAX_VALUE, Long.MAX_VALUE, 2);
+        assertEquals(List.of(4L, 3L), chatIds(first));
+
+        InboxEntryView last = first.get(first.size() - 1);
+        List<InboxEntryView> second = reader.page(10, last.lastMessageId(), last.chatId(), 2);
+        assertEquals(List.of(2L, 1L), chatIds(second));
+
+        assertEquals(List.of(), chatIds(reader.page(10, 0, 1, 2)));
+    }
+
+    private static List<Long> chatIds(List<InboxEntryView> page) {
+        return page.stream().map(InboxEntryView::chatId).toList();
+    }
+
+    private static void head(JdbcTemplate jdbcTemplate, long chatId, String fanout, long lastMessageId) {
+        jdbcTemplate.update("INSERT INTO chat_heads (chat_id, fanout, last_message_id) VALUES (?, ?, ?)",
+                chatId, fanout, lastMessageId);
+    }
+
+    private static void inboxRow(JdbcTemplate jdbcTemplate, long userId, long chatId, long lastMessageId) {
+        jdbcTemplate.update("INSERT INTO inbox (user_id, chat_id, last_message_id) VALUES (?, ?, ?)",
+                userId, chatId, lastMessageId);
+    }
+}
@@ -0,0 +1,52 @@
+package net.svsh.linkupserver.chat.persistence;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.UUID;
+
+// The tables InboxWriter and InboxReader use, with the columns they touch, in an in-memory H2 database in MySQL mode
+final class InboxTables {
+
+    private InboxTables() {
+    }
+
+    static JdbcTemplate create() {
+        String url = "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(url, "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE chats (id INT NOT NULL PRIMARY KEY, name VARCHAR(255), type VARCHAR(16) NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE chat_participants (" +
+                "chat_id INT NOT NULL, " +
+                "user_id INT NOT NULL, " +
+                "fanout VARCHAR(5) NOT NULL DEFAULT 'WRITE', " +
+                "PRIMARY KEY (chat_id, user_id))");
+        jdbcTemplate.execute("CREATE TABLE chat_heads (" +
+                "chat_id INT NOT NULL PRIMARY KEY, " +
+                "fanout VARCHAR(5) NOT NULL DEFAULT 'WRITE', " +
+                "last_message_id BIGINT NOT NULL DEFAULT 0, " +
+                "last_sender_id INT, " +
+                "last_preview VARCHAR(255), " +
+                "last_message_at TIMESTAMP NULL)");
+        jdbcTemplate.execute("CREATE TABLE inbox (" +
+                "user_id INT NOT NULL, " +
+                "chat_id INT NOT NULL, " +
+                "last_message_id BIGINT NOT NULL DEFAULT 0, " +
+                "last_sender_id INT, " +
+                "last_preview VARCHAR(255), " +
+                "last_message_at TIMESTAMP NULL, " +
+                "last_read_message_id BIGINT NOT NULL DEFAULT 0, " +
+                "unread_count INT NOT NULL DEFAULT 0, " +
+                "PRIMARY KEY (user_id, chat_id))");
+        jdbcTemplate.execute("CREATE TABLE data_migrations (" +
+                "name VARCHAR(100) NOT NULL PRIMARY KEY, " +
+                "completed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+        return jdbcTemplate;
+    }
+
+    static void chat(JdbcTemplate jdbcTemplate, long chatId, long... members) {
+        jdbcTemplate.update("INSERT INTO chats (id, name, type) VALUES (?, ?, 'GROUP')", chatId, "chat " + chatId);
+        for (long userId : members) {
+            jdbcTemplate.update("INSERT INTO chat_participants (chat_id, user_id) VALUES (?, ?)", chatId, userId);
+        }
+    }
+}
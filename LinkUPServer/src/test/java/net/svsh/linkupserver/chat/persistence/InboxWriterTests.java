@@ -0,0 +1,106 @@
+package net.svsh.linkupserver.chat.persistence;
+
+import net.svsh.linkupserver.chat.Message;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class InboxWriterTests {
+
+    @Test
+    void shortContentIsItsOwnPreview() {
+        assertEquals("hello", InboxWriter.preview("hello"));
+        String exact = "x".repeat(InboxWriter.PREVIEW_LENGTH);
+        assertEquals(exact, InboxWriter.preview(exact));
+    }
+
+    @Test
+    void longContentIsCutToTheColumnLength() {
+        assertEquals("y".repeat(InboxWriter.PREVIEW_LENGTH), InboxWriter.preview("y".repeat(InboxWriter.PREVIEW_LENGTH + 10)));
+    }
+
+    @Test
+    void aSurrogatePairOnTheBoundaryIsLeftOutWhole() {
+        String content = "z".repeat(InboxWriter.PREVIEW_LENGTH - 1) + "\uD83D\uDE00" + "tail";
+
+        String preview = InboxWriter.preview(content);
+
+        assertEquals(InboxWriter.PREVIEW_LENGTH - 1, preview.length());
+        assertEquals("z".repeat(InboxWriter.PREVIEW_LENGTH - 1), preview);
+    }
+
+    @Test
+    void aWriteMovesTheHeadAndEveryParticipantsInboxRowToTheNewestMessage() throws InterruptedException {
+        JdbcTemplate jdbcTemplate = InboxTables.create();
+        InboxTables.chat(jdbcTemplate, 1, 10, 20, 30);
+        InboxWriter writer = new InboxWriter(jdbcTemplate, new FanoutPolicy(jdbcTemplate, 100), 60_000);
+        try {
+            writer.apply(List.of(message(100, 10, 1, "first"), message(102, 20, 1, "second"), message(101, 30, 1, "late")));
+
+            assertEquals(Map.of("last_message_id", 102L, "last_sender_id", 20, "last_preview", "second"), head(jdbcTemplate, 1));
+            assertEquals(List.of(102L, 102L, 102L), inboxMessageIds(jdbcTemplate, 1));
+
+            // An older message flushed after a newer one leaves both alone
+            writer.apply(List.of(message(99, 30, 1, "older")));
+
+            assertEquals(Map.of("last_message_id", 102L, "last_sender_id", 20, "last_preview", "second"), head(jdbcTemplate, 1));
+            assertEquals(List.of(102L, 102L, 102L), inboxMessageIds(jdbcTemplate, 1));
+            assertEquals(2, writer.fanoutStats().writeFanouts());
+        } finally {
+            writer.destroy();
+        }
+    }
+
+    // At the threshold the chat switches to reads: only the head moves, participants are marked to read it
+    @Test
+    void aLargeChatOnlyMovesItsHead() throws InterruptedException {
+        JdbcTemplate jdbcTemplate = InboxTables.create();
+        InboxTables.chat(jdbcTemplate, 1, 10, 20, 30);
+        InboxWriter writer = new InboxWriter(jdbcTemplate, new FanoutPolicy(jdbcTemplate, 3), 60_000);
+        try {
+            writer.apply(List.of(message(100, 10, 1, "hello")));
+
+            assertEquals(100L, head(jdbcTemplate, 1).get("last_message_id"));
+            assertEquals("READ", jdbcTemplate.queryForObject("SELECT fanout FROM chat_heads WHERE chat_id = 1", String.class));
+            assertEquals(List.of("READ", "READ", "READ"),
+                    jdbcTemplate.queryForList("SELECT fanout FROM chat_participants WHERE chat_id = 1", String.class));
+            assertEquals(List.of(), inboxMessageIds(jdbcTemplate, 1));
+            assertEquals(1, writer.fanoutStats().switchedToRead());
+        } finally {
+            writer.destroy();
+        }
+    }
+
+    // There is no messages table here, a backfill that ran anyway would fail
+    @Test
+    void aCompletedBackfillIsNotRepeated() throws InterruptedException {
+        JdbcTemplate jdbcTemplate = InboxTables.create();
+        InboxTables.chat(jdbcTemplate, 1, 10);
+        jdbcTemplate.update("INSERT INTO data_migrations (name) VALUES ('inbox-backfill')");
+        InboxWriter writer = new InboxWriter(jdbcTemplate, new FanoutPolicy(jdbcTemplate, 100), 60_000);
+        try {
+            writer.backfill();
+
+            assertEquals(List.of(), inboxMessageIds(jdbcTemplate, 1));
+        } finally {
+            writer.destroy();
+        }
+    }
+
+    private static Message message(long id, long senderId, long chatId, String content) {
+        return new Message(id, senderId, chatId, content, Instant.now());
+    }
+
+    private static Map<String, Object> head(JdbcTemplate jdbcTemplate, long chatId) {
+        return jdbcTemplate.queryForMap("SELECT last_message_id, last_sender_id, last_preview FROM chat_heads WHERE chat_id = ?", chatId);
+    }
+
+    private static List<Long> inboxMessageIds(JdbcTemplate jdbcTemplate, long chatId) {
+        return jdbcTemplate.queryForList("SELECT last_message_id FROM inbox WHERE chat_id = ? ORDER BY user_id", Long.class, chatId);
+    }
+}
@@ -0,0 +1,101 @@
+package net.svsh.linkupserver.chat.persistence;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageIdAllocatorTests {
+
+    private static final long NOW = Instant.parse("2026-06-01T12:00:00Z").toEpochMilli();
+
+    @Test
+    void idsOfDifferentNodesSortBySendTime() {
+        AtomicLong clock = new AtomicLong(NOW);
+        MessageIdAllocator early = new MessageIdAllocator(7, clock::get);
+        MessageIdAllocator late = new MessageIdAllocator(0, clock::get);
+
+        long first = early.nextId();
+        clock.incrementAndGet();
+        long second = late.nextId();
+
+        assertTrue(first < second);
+    }
+
+    @Test
+    void nodesNeverHandOutTheSameId() {
+        MessageIdAllocator a = new MessageIdAllocator(0, () -> NOW);
+        MessageIdAllocator b = new MessageIdAllocator(1, () -> NOW);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(ids.add(a.nextId()));
+            assertTrue(ids.add(b.nextId()));
+        }
+    }
+
+    // 128 ids fit in a millisecond, the next one borrows the following millisecond instead of wrapping
+    @Test
+    void fullSequenceMovesToTheNextMillisecond() {
+        MessageIdAllocator allocator = new MessageIdAllocator(3, () -> NOW);
+        long previous = allocator.nextId();
+        for (int i = 0; i < 1000; i++) {
+            long next = allocator.nextId();
+            assertTrue(next > previous);
+            assertEquals(3L, next >>> MessageIdAllocator.SEQUENCE_BITS & (MessageIdAllocator.MAX_NODES - 1));
+            previous = next;
+        }
+    }
+
+    @Test
+    void clockSteppingBackKeepsIdsIncreasing() {
+        AtomicLong clock = new AtomicLong(NOW);
+        MessageIdAllocator allocator = new MessageIdAllocator(0, clock::get);
+        long before = allocator.nextId();
+        clock.addAndGet(-60_000);
+        assertTrue(allocator.nextId() > before);
+    }
+
+    @Test
+    void concurrentCallersGetDistinctIdsBelowTwoToThe53() throws InterruptedException {
+        MessageIdAllocator allocator = new MessageIdAllocator(MessageIdAllocator.MAX_NODES - 1);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    long id = allocator.nextId();
+                    assertTrue(id < 1L << 53);
+                    ids.add(id);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(80_000, ids.size());
+    }
+
+    @Test
+    void rejectsNodeIndexesThatDoNotFit() {
+        assertThrows(IllegalArgumentException.class, () -> new MessageIdAllocator(MessageIdAllocator.MAX_NODES));
+        assertThrows(IllegalArgumentException.class, () -> new MessageIdAllocator(-1));
+    }
+
+    @Test
+    void firstIdAtIsBelowEveryIdAllocatedFromThatTime() {
+        MessageIdAllocator allocator = new MessageIdAllocator(31, () -> NOW);
+        long id = allocator.nextId();
+
+        assertTrue(MessageIdAllocator.firstIdAt(NOW) <= id);
+        assertTrue(MessageIdAllocator.firstIdAt(NOW + 1) > id);
+        assertEquals(NOW, MessageIdAllocator.millisOf(id));
+        assertEquals(0L, MessageIdAllocator.firstIdAt(0));
+    }
+}
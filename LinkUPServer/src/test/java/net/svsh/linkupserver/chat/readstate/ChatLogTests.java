@@ -0,0 +1,153 @@
+package net.svsh.linkupserver.chat.readstate;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatLogTests {
+
+    @Test
+    void countsTheIdsAfterTheCursor() {
+        ChatLog log = new ChatLog(10);
+        for (long id = 1; id <= 5; id++) {
+            log.append(id * 10);
+        }
+
+        assertEquals(5, log.countAfter(0));
+        assertEquals(3, log.countAfter(20));
+        assertEquals(3, log.countAfter(25));
+        assertEquals(0, log.countAfter(50));
+    }
+
+    @Test
+    void outOfOrderAndRepeatedIdsAreSortedOnce() {
+        ChatLog log = new ChatLog(10);
+        log.append(30);
+        log.append(10);
+        log.append(20);
+        log.append(30);
+        log.append(10);
+
+        assertEquals(3, log.countAfter(0));
+        assertEquals(1, log.countAfter(20));
+    }
+
+    @Test
+    void aFullLogKeepsTheNewestIdsAcrossTheWrap() {
+        ChatLog log = new ChatLog(4);
+        for (long id = 1; id <= 10; id++) {
+            log.append(id);
+        }
+
+        // Only 7..10 are kept, a cursor older than them saturates at the capacity
+        assertEquals(4, log.countAfter(0));
+        assertEquals(4, log.countAfter(6));
+        assertEquals(2, log.countAfter(8));
+
+        log.append(3);
+        assertEquals(2, log.countAfter(8));
+        log.append(11);
+        assertEquals(3, log.countAfter(8));
+    }
+
+    @Test
+    void anIdOlderThanAFullLogIsDroppedButANewerLateOneIsInserted() {
+        ChatLog log = new ChatLog(3);
+        log.append(10);
+        log.append(20);
+        log.append(40);
+
+        log.append(5);
+        assertEquals(3, log.countAfter(9));
+
+        log.append(30);
+        assertEquals(3, log.countAfter(15));
+        assertEquals(1, log.countAfter(30));
+    }
+
+    @Test
+    void theArrayGrowsWithTheIdsUpToTheCapacity() {
+        ChatLog log = new ChatLog(100);
+        assertEquals(16, log.length());
+
+        for (long id = 1; id <= 40; id++) {
+            log.append(id);
+        }
+        assertEquals(64, log.length());
+        assertEquals(40, log.countAfter(0));
+        assertEquals(10, log.countAfter(30));
+
+        for (long id = 41; id <= 150; id++) {
+            log.append(id);
+        }
+        assertEquals(100, log.length());
+        assertEquals(100, log.countAfter(0));
+        assertEquals(20, log.countAfter(130));
+    }
+
+    // A load grows the array once to what it needs, keeping what was appended before
+    @Test
+    void aLoadGrowsTheArrayToFitTheLoadedIds() {
+        ChatLog log = new ChatLog(1_000);
+        log.append(1_001);
+        log.append(1_002);
+
+        List<Long> newestFirst = new ArrayList<>();
+        for (long id = 1_000; id > 500; id--) {
+            newestFirst.add(id);
+        }
+        log.load(newestFirst);
+
+        assertEquals(512, log.length());
+        assertEquals(502, log.countAfter(0));
+        assertEquals(2, log.countAfter(1_000));
+    }
+
+    @Test
+    void loadMergesThePersistedIdsWithAppendedOnes() {
+        ChatLog log = new ChatLog(10);
+        log.append(50);
+        assertFalse(log.isLoaded());
+
+        log.load(List.of(50L, 40L, 30L));
+
+        assertTrue(log.isLoaded());
+        assertEquals(3, log.countAfter(0));
+        assertEquals(1, log.countAfter(40));
+    }
+
+    @Test
+    void concurrentAppendsAreAllCounted() throws InterruptedException {
+        ChatLog log = new ChatLog(10_000);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int thread = 0; thread < 4; thread++) {
+            long first = thread;
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                for (long id = first; id < 8_000; id += 4) {
+                    log.append(id + 1);
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(8_000, log.countAfter(0));
+        assertEquals(1_000, log.countAfter(7_000));
+    }
+}
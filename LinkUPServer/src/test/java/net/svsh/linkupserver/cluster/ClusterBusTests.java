@@ -0,0 +1,209 @@
+package net.svsh.linkupserver.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClusterBusTests {
+
+    private static final String SECRET = "cluster-test-secret";
+
+    @Test
+    void loopbackSendsOnlyToTargetNode() throws InterruptedException {
+        try (LoopbackClusterBus a = new LoopbackClusterBus("loopback-test", "a");
+             LoopbackClusterBus b = new LoopbackClusterBus("loopback-test", "b");
+             LoopbackClusterBus c = new LoopbackClusterBus("loopback-test", "c")) {
+            BlockingQueue<ClusterEnvelope> inboxB = inbox(b);
+            BlockingQueue<ClusterEnvelope> inboxC = inbox(c);
+
+            a.send("b", ClusterEnvelope.message("a", 1L, "hello"));
+
+            ClusterEnvelope received = inboxB.poll(5, TimeUnit.SECONDS);
+            assertNotNull(received);
+            assertEquals("hello", received.getPayload());
+            assertNull(inboxC.poll(200, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    @Test
+    void tcpMeshDeliversBetweenLocalNodes() throws IOException, InterruptedException {
+        int portA = freePort();
+        int portB = freePort();
+        Map<String, InetSocketAddress> peers = TcpClusterBus.parsePeers("a@127.0.0.1:" + portA + ",b@127.0.0.1:" + portB);
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        try (TcpClusterBus a = new TcpClusterBus("a", new InetSocketAddress("127.0.0.1", portA), peers, SECRET, 100, objectMapper);
+             TcpClusterBus b = new TcpClusterBus("b", new InetSocketAddress("127.0.0.1", portB), peers, SECRET, 100, objectMapper)) {
+            BlockingQueue<ClusterEnvelope> inboxA = inbox(a);
+            BlockingQueue<ClusterEnvelope> inboxB = inbox(b);
+
+            a.send("b", ClusterEnvelope.message("a", 7L, "hello"));
+            b.broadcast(ClusterEnvelope.directory(ClusterEnvelope.JOIN, "b", List.of(1L, 2L)));
+
+            ClusterEnvelope message = inboxB.poll(5, TimeUnit.SECONDS);
+            assertNotNull(message);
+            assertEquals(7L, message.getChatId());
+            ClusterEnvelope join = inboxA.poll(5, TimeUnit.SECONDS);
+            assertNotNull(join);
+            assertEquals(List.of(1L, 2L), join.getUserIds());
+        }
+    }
+
+    @Test
+    void tcpMeshRejectsNodesWithoutTheSecret() throws IOException, InterruptedException {
+        int portA = freePort();
+        int portB = freePort();
+        Map<String, InetSocketAddress> peers = TcpClusterBus.parsePeers("a@127.0.0.1:" + portA + ",b@127.0.0.1:" + portB);
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        try (TcpClusterBus a = new TcpClusterBus("a", new InetSocketAddress("127.0.0.1", portA), peers, SECRET, 100, objectMapper);
+             TcpClusterBus b = new TcpClusterBus("b", new InetSocketAddress("127.0.0.1", portB), peers, "wrong", 100, objectMapper)) {
+            BlockingQueue<ClusterEnvelope> inboxA = inbox(a);
+
+            b.send("a", ClusterEnvelope.message("b", 7L, "hello"));
+
+            assertNull(inboxA.poll(500, TimeUnit.MILLISECONDS));
+            assertTrue(a.rejectedConnectionCount() > 0);
+        }
+    }
+
+    @Test
+    void tcpBusRequiresASecret() {
+        assertThrows(IllegalArgumentException.class, () -> new TcpClusterBus("a", new InetSocketAddress("127.0.0.1", 0),
+                Map.of(), " ", 100, new ObjectMapper()));
+    }
+
+    // Listeners resend their state once the envelopes that did not fit have been written
+    @Test
+    void droppedEnvelopesTriggerAResync() throws IOException, InterruptedException {
+        int portA = freePort();
+        int portB = freePort();
+        Map<String, InetSocketAddress> peers = TcpClusterBus.parsePeers("a@127.0.0.1:" + portA + ",b@127.0.0.1:" + portB);
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        try (TcpClusterBus a = new TcpClusterBus("a", new InetSocketAddress("127.0.0.1", portA), peers, SECRET, 1, objectMapper);
+             TcpClusterBus b = new TcpClusterBus("b", new InetSocketAddress("127.0.0.1", portB), peers, SECRET, 1, objectMapper)) {
+            BlockingQueue<String> resyncs = new LinkedBlockingQueue<>();
+            a.subscribe(new ClusterListener() {
+                @Override
+                public void onEnvelope(ClusterEnvelope envelope) {
+                }
+
+                @Override
+                public void onPeerConnected(String nodeId) {
+                    resyncs.add(nodeId);
+                }
+            });
+            assertEquals("b", resyncs.poll(10, TimeUnit.SECONDS));
+
+            for (int i = 0; i < 10_000; i++) {
+                a.send("b", ClusterEnvelope.message("a", 1L, "flood"));
+            }
+            assertTrue(a.droppedCount() > 0);
+            assertEquals("b", resyncs.poll(10, TimeUnit.SECONDS));
+        }
+    }
+
+    // The receiving end learns of the gap from the marker, which never reaches onEnvelope
+    @Test
+    void theReceiverIsToldWhenItMayHaveMissedEnvelopes() throws IOException, InterruptedException {
+        int portA = freePort();
+        int portB = freePort();
+        Map<String, InetSocketAddress> peers = TcpClusterBus.parsePeers("a@127.0.0.1:" + portA + ",b@127.0.0.1:" + portB);
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        try (TcpClusterBus a = new TcpClusterBus("a", new InetSocketAddress("127.0.0.1", portA), peers, SECRET, 1, objectMapper);
+             TcpClusterBus b = new TcpClusterBus("b", new InetSocketAddress("127.0.0.1", portB), peers, SECRET, 1, objectMapper)) {
+            BlockingQueue<String> missed = new LinkedBlockingQueue<>();
+            BlockingQueue<String> types = new LinkedBlockingQueue<>();
+            b.subscribe(new ClusterListener() {
+                @Override
+                public void onEnvelope(ClusterEnvelope envelope) {
+                    types.add(envelope.getType());
+                }
+
+                @Override
+                public void onEnvelopesMissed(String nodeId) {
+                    missed.add(nodeId);
+                }
+            });
+            a.send("b", ClusterEnvelope.message("a", 1L, "first"));
+            assertEquals(ClusterEnvelope.MESSAGE, types.poll(10, TimeUnit.SECONDS));
+            missed.clear();
+
+            for (int i = 0; i < 10_000; i++) {
+                a.send("b", ClusterEnvelope.message("a", 1L, "flood"));
+            }
+
+            assertTrue(a.droppedCount() > 0);
+            assertEquals("a", missed.poll(10, TimeUnit.SECONDS));
+            assertTrue(types.stream().noneMatch(ClusterEnvelope.RESYNC::equals));
+        }
+    }
+
+    // A restart inside the grace period goes unnoticed, a node that stays away is reported once the period ends
+    @Test
+    void aPeerIsReportedGoneOnlyWhenItStaysAway() throws IOException, InterruptedException {
+        int portA = freePort();
+        int portB = freePort();
+        Map<String, InetSocketAddress> peers = TcpClusterBus.parsePeers("a@127.0.0.1:" + portA + ",b@127.0.0.1:" + portB);
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        try (TcpClusterBus b = new TcpClusterBus("b", new InetSocketAddress("127.0.0.1", portB), peers, SECRET, 100, objectMapper, 1000)) {
+            BlockingQueue<String> connected = new LinkedBlockingQueue<>();
+            BlockingQueue<String> gone = new LinkedBlockingQueue<>();
+            b.subscribe(new ClusterListener() {
+                @Override
+                public void onEnvelope(ClusterEnvelope envelope) {
+                }
+
+                @Override
+                public void onEnvelopesMissed(String nodeId) {
+                    connected.add(nodeId);
+                }
+
+                @Override
+                public void onPeerDisconnected(String nodeId) {
+                    gone.add(nodeId);
+                }
+            });
+
+            try (TcpClusterBus a = new TcpClusterBus("a", new InetSocketAddress("127.0.0.1", portA), peers, SECRET, 100, objectMapper)) {
+                assertEquals("a", connected.poll(10, TimeUnit.SECONDS));
+            }
+            // Only its link to b matters here, the old port may not be free again yet
+            try (TcpClusterBus restarted = new TcpClusterBus("a", new InetSocketAddress("127.0.0.1", freePort()), peers, SECRET, 100, objectMapper)) {
+                assertEquals("a", connected.poll(10, TimeUnit.SECONDS));
+                assertNull(gone.poll(1500, TimeUnit.MILLISECONDS));
+            }
+
+            assertEquals("a", gone.poll(10, TimeUnit.SECONDS));
+        }
+    }
+
+    private static BlockingQueue<ClusterEnvelope> inbox(ClusterBus bus) {
+        BlockingQueue<ClusterEnvelope> inbox = new LinkedBlockingQueue<>();
+        bus.subscribe(inbox::add);
+        return inbox;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package net.svsh.linkupserver.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLException;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Two in-memory H2 databases stand in for the primary and a replica, each answers which one it is
+class ReadWriteRoutingDataSourceTests {
+
+    private HikariDataSource primary;
+    private ReplicaPool replicaPool;
+    private ReadWriteRoutingDataSource routing;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readOnly;
+    private TransactionTemplate readWrite;
+
+    @BeforeEach
+    void setUp() {
+        String name = UUID.randomUUID().toString();
+        String primaryUrl = "jdbc:h2:mem:primary-" + name + ";DB_CLOSE_DELAY=-1";
+        String replicaUrl = "jdbc:h2:mem:replica-" + name + ";DB_CLOSE_DELAY=-1";
+        primary = new HikariDataSource();
+        primary.setJdbcUrl(primaryUrl);
+        primary.setUsername("sa");
+        createRole(primaryUrl, "primary");
+        createRole(replicaUrl, "replica");
+        replicaPool = new ReplicaPool(replicaUrl, "sa", "", 2, 2000, 60_000, 0);
+        setUpRouting(replicaPool);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        replicaPool.destroy();
+        primary.close();
+    }
+
+    @Test
+    void readOnlyTransactionsReadFromTheReplica() {
+        assertEquals("replica", readOnly.execute(status -> role()));
+        assertEquals(1, routing.stats().replicaConnections());
+    }
+
+    @Test
+    void writesAndReadsOutsideATransactionUseThePrimary() {
+        assertEquals("primary", readWrite.execute(status -> role()));
+        assertEquals("primary", role());
+        assertEquals(0, routing.stats().replicaConnections());
+    }
+
+    @Test
+    void primaryReadsStayOnThePrimaryInsideReadOnlyTransactions() {
+        assertEquals("primary", PrimaryReads.call(() -> readOnly.execute(status -> role())));
+        assertEquals("replica", readOnly.execute(status -> role()));
+        assertEquals(1, routing.stats().pinnedReads());
+    }
+
+    @Test
+    void readsFallBackToThePrimaryWhileNoReplicaIsHealthy() throws InterruptedException {
+        // Nothing listens there, the first health check marks it down
+        ReplicaPool unreachable = new ReplicaPool("jdbc:h2:tcp://127.0.0.1:1/unreachable", "sa", "", 2, 250, 60_000, 0);
+        try {
+            setUpRouting(unreachable);
+
+            assertEquals("primary", readOnly.execute(status -> role()));
+            assertEquals(0, routing.stats().healthyReplicas());
+            assertEquals(1, routing.stats().fallbackReads());
+        } finally {
+            unreachable.destroy();
+        }
+    }
+
+    // Hikari does not take credentials per call, the caller gets that as an SQLException from the primary
+    @Test
+    void explicitCredentialsGoToThePrimary() {
+        // The lazy proxy already took one primary connection to read the connection defaults
+        long before = routing.stats().primaryConnections();
+
+        assertThrows(SQLException.class, () -> routing.getConnection("sa", ""));
+        assertEquals(before + 1, routing.stats().primaryConnections());
+    }
+
+    private void setUpRouting(ReplicaPool pool) {
+        routing = new ReadWriteRoutingDataSource(primary, pool, new ReadYourWrites(2000, 1000));
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(routing);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readWrite = new TransactionTemplate(transactionManager);
+    }
+
+    private String role() {
+        return jdbcTemplate.queryForObject("SELECT name FROM role", String.class);
+    }
+
+    private static void createRole(String url, String role) {
+        JdbcTemplate template = new JdbcTemplate(new DriverManagerDataSource(url, "sa", ""));
+        template.execute("CREATE TABLE role (name VARCHAR(16))");
+        template.update("INSERT INTO role (name) VALUES (?)", role);
+    }
+}
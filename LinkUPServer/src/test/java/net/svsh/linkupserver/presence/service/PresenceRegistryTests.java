@@ -0,0 +1,56 @@
+package net.svsh.linkupserver.presence.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PresenceRegistryTests {
+
+    @Test
+    void changesOfOneUserAreCoalescedIntoTheLatest() throws InterruptedException {
+        PresenceRegistry registry = new PresenceRegistry(30_000, 1_000, 4, 1_000, 1_000);
+        try {
+            BlockingQueue<List<PresenceChange>> batches = new LinkedBlockingQueue<>();
+            registry.subscribe(batches::add);
+
+            registry.heartbeat(1);
+            registry.disconnect(1);
+            registry.heartbeat(2);
+
+            List<PresenceChange> batch = batches.poll(5, TimeUnit.SECONDS);
+            assertNotNull(batch);
+            assertEquals(2, batch.size());
+            PresenceChange first = batch.stream().filter(change -> change.userId() == 1).findFirst().orElseThrow();
+            assertFalse(first.online());
+            assertTrue(batch.stream().anyMatch(change -> change.userId() == 2 && change.online()));
+        } finally {
+            registry.destroy();
+        }
+    }
+
+    @Test
+    void changesBeyondTheBoundAreDroppedAndCounted() throws InterruptedException {
+        PresenceRegistry registry = new PresenceRegistry(30_000, 1_000, 4, 60_000, 2);
+        try {
+            registry.subscribe(changes -> {
+            });
+
+            registry.heartbeat(1);
+            registry.heartbeat(2);
+            registry.heartbeat(3);
+            registry.disconnect(1);
+
+            assertEquals(1, registry.droppedChanges());
+        } finally {
+            registry.destroy();
+        }
+    }
+}
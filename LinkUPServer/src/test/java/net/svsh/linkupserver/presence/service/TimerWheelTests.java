@@ -0,0 +1,66 @@
+package net.svsh.linkupserver.presence.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimerWheelTests {
+
+    @Test
+    void firesItemsInTheTickOfTheirDeadline() {
+        TimerWheel<String> wheel = new TimerWheel<>(10_000, 1_000, 0);
+        wheel.schedule("a", 3_000);
+        wheel.schedule("b", 5_500);
+
+        List<String> due = new ArrayList<>();
+        wheel.advance(2_999, due::add);
+        assertTrue(due.isEmpty());
+        wheel.advance(3_000, due::add);
+        assertEquals(List.of("a"), due);
+        wheel.advance(5_999, due::add);
+        assertEquals(List.of("a", "b"), due);
+    }
+
+    @Test
+    void pastDeadlinesFireOnTheNextTick() {
+        TimerWheel<String> wheel = new TimerWheel<>(10_000, 1_000, 5_000);
+        wheel.schedule("late", 1_000);
+
+        List<String> due = new ArrayList<>();
+        wheel.advance(5_999, due::add);
+        assertTrue(due.isEmpty());
+        wheel.advance(6_000, due::add);
+        assertEquals(List.of("late"), due);
+    }
+
+    // Further than one revolution is clamped to the last slot, the caller reschedules when it comes round early
+    @Test
+    void deadlinesBeyondOneRevolutionFireWithinIt() {
+        TimerWheel<String> wheel = new TimerWheel<>(10_000, 1_000, 0);
+        wheel.schedule("far", 60_000);
+
+        List<String> due = new ArrayList<>();
+        wheel.advance(10_000, due::add);
+        assertTrue(due.isEmpty());
+        wheel.advance(11_000, due::add);
+        assertEquals(List.of("far"), due);
+    }
+
+    @Test
+    void advancingOverManyTicksVisitsEverySlotOnce() {
+        TimerWheel<Integer> wheel = new TimerWheel<>(10_000, 1_000, 0);
+        for (int i = 1; i <= 10; i++) {
+            wheel.schedule(i, i * 1_000L);
+        }
+
+        List<Integer> due = new ArrayList<>();
+        wheel.advance(10_000, due::add);
+        assertEquals(List.of(1, 2, 3, 4, 5, 6, 7, 8, 9, 10), due);
+        wheel.advance(30_000, due::add);
+        assertEquals(10, due.size());
+    }
+}
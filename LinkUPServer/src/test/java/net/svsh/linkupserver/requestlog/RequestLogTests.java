@@ -0,0 +1,108 @@
+package net.svsh.linkupserver.requestlog;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RequestLogTests {
+
+    private static final String REDACT = "password,token,refreshToken,access_token,authorization";
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private RequestLog requestLog;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        requestLog.destroy();
+    }
+
+    @Test
+    void credentialValuesAreRedactedAndEverythingElseIsKept() {
+        requestLog = requestLog(new ObjectMapper(), "");
+
+        assertEquals("q=alice&password=[REDACTED]&limit=10", requestLog.redact("q=alice&password=secret&limit=10"));
+        assertEquals("token=[REDACTED]&access_token=[REDACTED]", requestLog.redact("token=a&access_token=b"));
+        assertNull(requestLog.redact(""));
+        assertNull(requestLog.redact(null));
+    }
+
+    @Test
+    void namesMatchIgnoringCase() {
+        requestLog = requestLog(new ObjectMapper(), "");
+
+        assertEquals("RefreshToken=[REDACTED]&PASSWORD=[REDACTED]", requestLog.redact("RefreshToken=a&PASSWORD=b"));
+    }
+
+    // The name is matched decoded and written as it came
+    @Test
+    void encodedNamesAreRedacted() {
+        requestLog = requestLog(new ObjectMapper(), "");
+
+        assertEquals("pass%77ord=[REDACTED]", requestLog.redact("pass%77ord=secret"));
+        assertEquals("access%5Ftoken=[REDACTED]", requestLog.redact("access%5Ftoken=secret"));
+        assertEquals("%zz=1&token=[REDACTED]", requestLog.redact("%zz=1&token=secret"));
+    }
+
+    // Without a separator there is no value to hide, an empty value is still redacted
+    @Test
+    void aParameterWithoutAValueIsKept() {
+        requestLog = requestLog(new ObjectMapper(), "");
+
+        assertEquals("password&q=alice", requestLog.redact("password&q=alice"));
+        assertEquals("q=&token=[REDACTED]", requestLog.redact("q=&token="));
+    }
+
+    @Test
+    void theLongestMatchingPrefixSetsTheRate() {
+        requestLog = requestLog(new ObjectMapper(), "/api/=0.5, /api/admin/datasource=0.25 ,/api/admin/=1.0,ignored");
+
+        assertEquals(0.25, requestLog.sampleRate("/api/admin/datasource/stats", 200, FAST));
+        assertEquals(1.0, requestLog.sampleRate("/api/admin/users", 200, FAST));
+        assertEquals(0.5, requestLog.sampleRate("/api/chats", 200, FAST));
+        assertEquals(0.01, requestLog.sampleRate("/ws", 200, FAST));
+    }
+
+    @Test
+    void serverErrorsAndSlowRequestsAreAlwaysSampled() {
+        requestLog = requestLog(new ObjectMapper(), "/api/=0");
+
+        assertEquals(1.0, requestLog.sampleRate("/api/chats", 503, FAST));
+        assertEquals(1.0, requestLog.sampleRate("/api/chats", 200, TimeUnit.SECONDS.toNanos(1)));
+        assertEquals(0.0, requestLog.sampleRate("/api/chats", 404, FAST));
+    }
+
+    @Test
+    void entriesThatFailToSerializeAreCountedAsDropped() throws InterruptedException {
+        requestLog = requestLog(new ObjectMapper() {
+            @Override
+            public String writeValueAsString(Object value) throws JsonProcessingException {
+                throw new JsonProcessingException("unserializable") {
+                };
+            }
+        }, "");
+        requestLog.submit(entry());
+        requestLog.submit(entry());
+
+        requestLog.destroy();
+
+        assertEquals(2, requestLog.stats().dropped());
+        assertEquals(0, requestLog.stats().written());
+        assertEquals(0, requestLog.stats().queued());
+    }
+
+    // The writer only runs on destroy, an interval this long never comes round during a test
+    private static RequestLog requestLog(ObjectMapper objectMapper, String sampleRates) {
+        return new RequestLog(objectMapper, true, 0.01, sampleRates, 1000, 100, 3_600_000, REDACT);
+    }
+
+    private static RequestLogEntry entry() {
+        return new RequestLogEntry(Instant.now(), "GET", "api/chats", null, 200, 1000, "127.0.0.1", 1);
+    }
+}
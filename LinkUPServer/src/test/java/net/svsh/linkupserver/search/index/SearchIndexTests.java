@@ -0,0 +1,145 @@
+package net.svsh.linkupserver.search.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SearchIndexTests {
+
+    private static final long BASE = 1L << 40;
+    private static final long[] CHATS = {1, 2};
+
+    @Test
+    void tokenizerLowerCasesAndSplitsOnEverythingButLettersAndDigits() {
+        assertEquals(List.of("hello", "w\u00f6rld", "42", "x"), new ArrayList<>(Tokenizer.terms("Hello, W\u00d6RLD!  42-x hello")));
+        assertEquals(Set.of(), Tokenizer.terms(null));
+        assertEquals(Set.of(), Tokenizer.terms(" .,;"));
+        assertEquals(Set.of("ok"), Tokenizer.terms("ok " + "a".repeat(Tokenizer.MAX_TERM_LENGTH + 1)));
+        assertEquals(Set.of("a".repeat(Tokenizer.MAX_TERM_LENGTH)), Tokenizer.terms("a".repeat(Tokenizer.MAX_TERM_LENGTH)));
+    }
+
+    @Test
+    void segmentRoundTripsTermsChatsAndLargeIds() throws IOException {
+        Path file = Files.createTempDirectory("linkup-segment").resolve("segment-0.idx");
+        try (SegmentWriter writer = new SegmentWriter(file)) {
+            writer.addTerm(bytes("apple"), new int[]{1, 7}, new long[][]{{BASE, BASE + 1}, {BASE + 300}});
+            writer.addTerm(bytes("pear"), new int[]{Integer.MAX_VALUE}, new long[][]{{Long.MAX_VALUE >>> 11}});
+            writer.finish(Long.MAX_VALUE >>> 11, 4);
+        }
+
+        Segment segment = Segment.open(0, file);
+        assertEquals(2, segment.termCount());
+        assertEquals(Long.MAX_VALUE >>> 11, segment.maxMessageId());
+        assertEquals(4, segment.messageCount());
+        assertArrayEquals(bytes("apple"), segment.term(0));
+
+        Map<Integer, LongList> byChat = new HashMap<>();
+        segment.collect(bytes("apple"), new int[]{1, 2, 7}, byChat);
+        assertArrayEquals(new long[]{BASE, BASE + 1}, byChat.get(1).toSortedDistinct());
+        assertArrayEquals(new long[]{BASE + 300}, byChat.get(7).toSortedDistinct());
+        assertEquals(2, byChat.size());
+
+        byChat.clear();
+        segment.collect(bytes("pear"), new int[]{Integer.MAX_VALUE}, byChat);
+        assertArrayEquals(new long[]{Long.MAX_VALUE >>> 11}, byChat.get(Integer.MAX_VALUE).toSortedDistinct());
+
+        byChat.clear();
+        segment.collect(bytes("plum"), new int[]{1}, byChat);
+        assertTrue(byChat.isEmpty());
+    }
+
+    @Test
+    void findsMessagesContainingEveryTermNewestFirst() throws IOException {
+        SearchIndex index = new SearchIndex(Files.createTempDirectory("linkup-search"), 1000, 8);
+        index.add(BASE + 1, 1, "lunch at noon");
+        index.add(BASE + 2, 1, "Lunch tomorrow?");
+        index.add(BASE + 3, 2, "no lunch for me");
+        index.add(BASE + 4, 3, "lunch in a chat the caller is not in");
+        index.flush();
+        index.add(BASE + 5, 1, "LUNCH now");
+
+        assertEquals(List.of(BASE + 5, BASE + 3, BASE + 2, BASE + 1), index.search("lunch", CHATS, Long.MAX_VALUE, 10));
+        assertEquals(List.of(BASE + 5, BASE + 3), index.search("lunch", CHATS, Long.MAX_VALUE, 2));
+        assertEquals(List.of(BASE + 2, BASE + 1), index.search("lunch", new long[]{1}, BASE + 5, 10));
+        assertEquals(List.of(BASE + 1), index.search("noon lunch", CHATS, Long.MAX_VALUE, 10));
+        assertEquals(List.of(), index.search("dinner", CHATS, Long.MAX_VALUE, 10));
+    }
+
+    @Test
+    void segmentsSurviveAReopenAndTheWatermarkComesFromThem() throws IOException {
+        Path root = Files.createTempDirectory("linkup-search");
+        SearchIndex index = new SearchIndex(root, 1000, 8);
+        index.add(BASE + 1, 1, "kept after restart");
+        index.flush();
+        index.add(BASE + 2, 1, "kept only by close");
+        index.close();
+
+        SearchIndex reopened = new SearchIndex(root, 1000, 8);
+        assertEquals(BASE + 2, reopened.maxIndexedMessageId());
+        assertEquals(List.of(BASE + 2, BASE + 1), reopened.search("kept", CHATS, Long.MAX_VALUE, 10));
+        assertEquals(2, reopened.stats().segments());
+    }
+
+    @Test
+    void mergeKeepsEveryPostingAndDropsDuplicates() throws IOException {
+        Path root = Files.createTempDirectory("linkup-search");
+        SearchIndex index = new SearchIndex(root, 1000, 2);
+        for (int i = 0; i < 6; i++) {
+            index.add(BASE + i, 1 + i % 2, "word" + i + " common");
+            // A message indexed again by a catch-up scan
+            index.add(BASE + i, 1 + i % 2, "word" + i + " common");
+            index.flush();
+        }
+
+        assertTrue(index.stats().segments() <= 2);
+        assertTrue(index.stats().merges() > 0);
+        assertEquals(List.of(BASE + 5, BASE + 4, BASE + 3, BASE + 2, BASE + 1, BASE), index.search("common", CHATS, Long.MAX_VALUE, 10));
+        assertEquals(List.of(BASE + 3), index.search("word3", CHATS, Long.MAX_VALUE, 10));
+        assertEquals(BASE + 5, index.maxIndexedMessageId());
+
+        // Merged sources are deleted, a reopen sees the same postings
+        assertEquals(index.stats().segments(), countSegmentFiles(root));
+        SearchIndex reopened = new SearchIndex(root, 1000, 2);
+        assertEquals(index.search("common", CHATS, Long.MAX_VALUE, 10), reopened.search("common", CHATS, Long.MAX_VALUE, 10));
+    }
+
+    @Test
+    void anUnreadableSegmentDropsTheIndexForARebuild() throws IOException {
+        Path root = Files.createTempDirectory("linkup-search");
+        SearchIndex index = new SearchIndex(root, 1000, 8);
+        index.add(BASE + 1, 1, "hello");
+        index.close();
+        Files.write(root.resolve("segment-9.idx"), new byte[]{1, 2, 3});
+
+        SearchIndex reopened = new SearchIndex(root, 1000, 8);
+        assertEquals(0, reopened.maxIndexedMessageId());
+        assertEquals(0, countSegmentFiles(root));
+    }
+
+    private static long countSegmentFiles(Path root) throws IOException {
+        long count = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(root, "segment-*.idx")) {
+            for (Path ignored : stream) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static byte[] bytes(String term) {
+        return term.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,94 @@
+package net.svsh.linkupserver.security.jwt;
+
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.SignatureException;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import javax.crypto.SecretKey;
+import java.time.Instant;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JWTUtilsTests {
+
+    private static final UserDetails ALICE = User.withUsername("alice").password("-").roles("USER").build();
+
+    private final SecretKey key = Jwts.SIG.HS256.key().build();
+    private final JWTUtils jwtUtils = new JWTUtils(key);
+
+    @Test
+    void anAccessTokenParsesToItsClaims() {
+        ParsedToken token = jwtUtils.parseToken(jwtUtils.generateToken(ALICE, "session"));
+
+        assertEquals("alice", token.subject());
+        assertEquals("session", token.sessionId());
+        assertNull(token.id());
+        assertFalse(token.refresh());
+        // Both claims are whole seconds, read from the clock one after the other
+        long lifetime = token.expirationMillis() - token.issuedAt().toEpochMilli();
+        assertTrue(Math.abs(lifetime - JWTUtils.EXPIRATION_TIME) <= 1000, "lifetime: " + lifetime);
+        assertTrue(token.isValidFor("alice"));
+    }
+
+    @Test
+    void aRefreshTokenIsMarkedAsOne() {
+        Instant expiresAt = Instant.now().plusSeconds(60);
+
+        ParsedToken token = jwtUtils.parseToken(jwtUtils.generateRefreshToken(ALICE, "id", "session", expiresAt));
+
+        assertTrue(token.refresh());
+        assertEquals("id", token.id());
+        assertEquals(expiresAt.getEpochSecond(), token.expiration().getEpochSecond());
+    }
+
+    @Test
+    void aTokenIsOnlyValidForItsSubject() {
+        ParsedToken token = jwtUtils.parseToken(jwtUtils.generateToken(ALICE, "session"));
+
+        assertFalse(token.isValidFor("bob"));
+        assertFalse(token.isValidFor(null));
+        assertFalse(new ParsedToken(null, null, null, null, null, false).isValidFor("alice"));
+    }
+
+    // The parser already refuses expired tokens, isValidFor still checks for a token parsed just before its exp
+    @Test
+    void anExpiredTokenIsRefused() {
+        String expired = Jwts.builder()
+                .subject("alice")
+                .issuedAt(new Date(System.currentTimeMillis() - 120_000))
+                .expiration(new Date(System.currentTimeMillis() - 60_000))
+                .signWith(key)
+                .compact();
+
+        assertThrows(ExpiredJwtException.class, () -> jwtUtils.parseToken(expired));
+        ParsedToken parsedBeforeExpiry = new ParsedToken("alice", null, Instant.now().minusMillis(1), null, null, false);
+        assertTrue(parsedBeforeExpiry.isExpired());
+        assertFalse(parsedBeforeExpiry.isValidFor("alice"));
+    }
+
+    @Test
+    void aTokenWithoutExpirationNeverExpires() {
+        ParsedToken token = new ParsedToken("alice", null, null, null, null, false);
+
+        assertEquals(Long.MAX_VALUE, token.expirationMillis());
+        assertTrue(token.isValidFor("alice"));
+    }
+
+    @Test
+    void aTokenSignedWithAnotherKeyIsRefused() {
+        String foreign = new JWTUtils(Jwts.SIG.HS256.key().build()).generateToken(ALICE, "session");
+        String[] parts = jwtUtils.generateToken(ALICE, "session").split("\\.");
+        String resigned = parts[0] + "." + parts[1] + "." + foreign.split("\\.")[2];
+
+        assertThrows(SignatureException.class, () -> jwtUtils.parseToken(foreign));
+        assertThrows(SignatureException.class, () -> jwtUtils.parseToken(resigned));
+    }
+}
@@ -0,0 +1,116 @@
+package net.svsh.linkupserver.security.jwt;
+
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.svsh.linkupserver.cluster.LoopbackClusterBus;
+import net.svsh.linkupserver.security.token.RevocationList;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class VerifiedTokenCacheTests {
+
+    private static final UserDetails ALICE = User.withUsername("alice").password("-").roles("USER").build();
+    private static final UserDetails BOB = User.withUsername("bob").password("-").roles("USER").build();
+
+    private final JWTUtils jwtUtils = new JWTUtils(Jwts.SIG.HS256.key().build());
+    private final VerifiedTokenCache cache = new VerifiedTokenCache(jwtUtils, 100);
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void aTokenIsVerifiedOnceAndThenServedFromTheCache() {
+        String token = jwtUtils.generateToken(ALICE, "session");
+
+        ParsedToken first = cache.verify(token);
+        ParsedToken second = cache.verify(token);
+
+        assertSame(first, second);
+        assertEquals("alice", second.subject());
+        assertEquals(1, cache.stats().missCount());
+        assertEquals(1, cache.stats().hitCount());
+        assertSame(first, cache.peek(token));
+    }
+
+    @Test
+    void peekNeverVerifiesAToken() {
+        String token = jwtUtils.generateToken(ALICE, "session");
+
+        assertNull(cache.peek(token));
+        assertEquals(0, cache.size());
+    }
+
+    // JWT expiry has a one second resolution, the token below lives for between one and two seconds
+    @Test
+    void anEntryExpiresAtTheTokensExpiration() throws InterruptedException {
+        String token = jwtUtils.generateRefreshToken(ALICE, "id", "session", Instant.now().plusSeconds(2));
+        ParsedToken parsed = cache.verify(token);
+        assertNotNull(cache.peek(token));
+
+        Thread.sleep(Math.max(0, parsed.expirationMillis() - System.currentTimeMillis()) + 100);
+
+        assertNull(cache.peek(token));
+        assertThrows(ExpiredJwtException.class, () -> cache.verify(token));
+    }
+
+    @Test
+    void tamperedTokensAreRejectedAndNeverCached() {
+        String[] alice = jwtUtils.generateToken(ALICE, "session").split("\\.");
+        String[] bob = jwtUtils.generateToken(BOB, "session").split("\\.");
+        String swappedPayload = alice[0] + "." + bob[1] + "." + alice[2];
+        String otherKey = new JWTUtils(Jwts.SIG.HS256.key().build()).generateToken(ALICE, "session");
+
+        assertThrows(JwtException.class, () -> cache.verify(swappedPayload));
+        assertThrows(JwtException.class, () -> cache.verify(otherKey));
+        assertEquals(0, cache.size());
+        assertNull(cache.peek(swappedPayload));
+    }
+
+    // Revocation is not the cache's business, JWTAuthFilter checks it on every request, cached or not.
+    // The revoked path returns before the user lookup, so the filter runs without a UserService
+    @Test
+    void aCachedTokenOfARevokedSessionIsTurnedAway() throws Exception {
+        String sessionId = UUID.randomUUID().toString();
+        String token = jwtUtils.generateToken(ALICE, sessionId);
+        cache.verify(token);
+        try (LoopbackClusterBus bus = new LoopbackClusterBus("verified-token-cache-test-" + sessionId, "a")) {
+            RevocationList revocationList = new RevocationList(bus, null, 100, 0.01, 60_000);
+            revocationList.revoke(List.of(sessionId));
+            JWTAuthFilter filter = new JWTAuthFilter();
+            ReflectionTestUtils.setField(filter, "verifiedTokenCache", cache);
+            ReflectionTestUtils.setField(filter, "revocationList", revocationList);
+            ReflectionTestUtils.setField(filter, "meterRegistry", new SimpleMeterRegistry());
+            filter.initFilterBean();
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/chats");
+            request.addHeader("Authorization", "Bearer " + token);
+            MockFilterChain chain = new MockFilterChain();
+
+            filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+            assertEquals(1, cache.stats().hitCount());
+            assertNull(SecurityContextHolder.getContext().getAuthentication());
+            assertNotNull(chain.getRequest());
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package net.svsh.linkupserver.security.password;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// One hashing thread and room for one waiting call
+class PasswordHashingExecutorTests {
+
+    private final PasswordHashingExecutor executor = new PasswordHashingExecutor(1, 1);
+
+    @AfterEach
+    void tearDown() {
+        executor.destroy();
+    }
+
+    @Test
+    void aCallRunsOnTheHashingPoolAndReturnsItsResult() {
+        String thread = executor.call(() -> Thread.currentThread().getName());
+
+        assertTrue(thread.startsWith("password-hashing-"), thread);
+        assertEquals(1, executor.stats().completed());
+    }
+
+    @Test
+    void callsAreTurnedAwayOnceTheQueueIsFull() throws InterruptedException {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread hashing = new Thread(() -> executor.call(() -> {
+            running.countDown();
+            await(release);
+            return "first";
+        }));
+        hashing.start();
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        Thread queued = new Thread(() -> executor.call(() -> "second"));
+        queued.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (executor.stats().queueDepth() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+
+        assertThrows(PasswordHashingBusyException.class, () -> executor.call(() -> "third"));
+
+        release.countDown();
+        hashing.join();
+        queued.join();
+        assertEquals(1, executor.stats().rejected());
+        assertEquals(2, executor.stats().completed());
+    }
+
+    // Login relies on BadCredentialsException arriving as itself
+    @Test
+    void exceptionsThrownByTheTaskReachTheCallerUnchanged() {
+        IllegalArgumentException failure = new IllegalArgumentException("bad credentials");
+        AssertionError error = new AssertionError("broken");
+
+        assertSame(failure, assertThrows(IllegalArgumentException.class, () -> executor.call(() -> {
+            throw failure;
+        })));
+        assertSame(error, assertThrows(AssertionError.class, () -> executor.call(() -> {
+            throw error;
+        })));
+        assertEquals(2, executor.stats().completed());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package net.svsh.linkupserver.security.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketTests {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void aFullBucketAllowsItsCapacityThenReportsTheWait() {
+        long now = 5 * SECOND;
+        TokenBucket bucket = new TokenBucket(10, 1, now);
+
+        assertEquals(10, acquire(bucket, now, 20));
+        assertEquals(SECOND, bucket.tryAcquire(now));
+        assertEquals(SECOND / 2, bucket.tryAcquire(now + SECOND / 2));
+    }
+
+    @Test
+    void tokensComeBackAtTheRefillRateUpToTheCapacity() {
+        long now = 0;
+        TokenBucket bucket = new TokenBucket(10, 4, now);
+        acquire(bucket, now, 10);
+
+        assertEquals(2, acquire(bucket, now + SECOND / 2, 10));
+        assertEquals(10, acquire(bucket, now + 60 * SECOND, 20));
+    }
+
+    // System.nanoTime may be negative and may wrap, only differences are meaningful
+    @Test
+    void worksAcrossNegativeAndWrappingClocks() {
+        long now = -5 * SECOND;
+        TokenBucket bucket = new TokenBucket(10, 1, now);
+        assertEquals(10, acquire(bucket, now, 20));
+        assertEquals(2, acquire(bucket, now + 2 * SECOND, 20));
+
+        now = Long.MAX_VALUE - SECOND / 2;
+        TokenBucket wrapping = new TokenBucket(2, 1, now);
+        assertEquals(2, acquire(wrapping, now, 5));
+        assertEquals(1, acquire(wrapping, now + SECOND, 5));
+    }
+
+    @Test
+    void concurrentCallersNeverTakeMoreThanTheCapacity() throws InterruptedException {
+        long now = 0;
+        TokenBucket bucket = new TokenBucket(1_000, 1, now);
+        AtomicInteger taken = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int thread = 0; thread < 8; thread++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                taken.addAndGet(acquire(bucket, now, 500));
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(1_000, taken.get());
+    }
+
+    @Test
+    void pathsMapToTheirGroups() {
+        assertEquals(RateLimitGroup.AUTH, RateLimitGroup.forPath("/api/auth/login"));
+        assertEquals(RateLimitGroup.USERS, RateLimitGroup.forPath("/api/users/search"));
+        assertEquals(RateLimitGroup.MESSAGING, RateLimitGroup.forPath("/api/sync"));
+        assertEquals(RateLimitGroup.ATTACHMENTS, RateLimitGroup.forPath("/api/attachments/uploads/1"));
+        assertNull(RateLimitGroup.forPath("/actuator/health"));
+    }
+
+    private static int acquire(TokenBucket bucket, long now, int attempts) {
+        int taken = 0;
+        for (int i = 0; i < attempts; i++) {
+            if (bucket.tryAcquire(now) == 0) {
+                taken++;
+            }
+        }
+        return taken;
+    }
+}
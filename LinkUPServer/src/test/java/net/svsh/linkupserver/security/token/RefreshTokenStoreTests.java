@@ -0,0 +1,129 @@
+package net.svsh.linkupserver.security.token;
+
+import net.svsh.linkupserver.cluster.LoopbackClusterBus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Runs against an in-memory H2 database in MySQL mode with the refresh_tokens columns the store uses
+class RefreshTokenStoreTests {
+
+    private LoopbackClusterBus bus;
+    private JdbcTemplate jdbcTemplate;
+    private RevocationList revocationList;
+    private RefreshTokenStore store;
+
+    @BeforeEach
+    void setUp() {
+        String name = UUID.randomUUID().toString();
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE refresh_tokens (" +
+                "id CHAR(36) NOT NULL PRIMARY KEY, " +
+                "session_id CHAR(36) NOT NULL, " +
+                "user_id INT NOT NULL, " +
+                "issued_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
+                "expires_at TIMESTAMP NOT NULL, " +
+                "rotated_at TIMESTAMP NULL, " +
+                "revoked_at TIMESTAMP NULL)");
+        bus = new LoopbackClusterBus("refresh-test-" + name, "a");
+        revocationList = new RevocationList(bus, jdbcTemplate, 100, 0.01, 600_000);
+        revocationList.afterPropertiesSet();
+        store = new RefreshTokenStore(jdbcTemplate, new TransactionTemplate(new DataSourceTransactionManager(dataSource)),
+                revocationList, Duration.ofDays(30), 3_600_000);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        store.destroy();
+        revocationList.destroy();
+        bus.close();
+    }
+
+    @Test
+    void aRefreshTokenRotatesExactlyOnce() {
+        IssuedRefreshToken first = store.issue(1);
+
+        Optional<IssuedRefreshToken> next = store.rotate(first.id(), first.sessionId(), 1);
+
+        assertTrue(next.isPresent());
+        assertEquals(first.sessionId(), next.get().sessionId());
+        assertNotEquals(first.id(), next.get().id());
+        assertTrue(store.rotate(first.id(), first.sessionId(), 1).isEmpty());
+    }
+
+    @Test
+    void reusingARotatedTokenRevokesTheWholeSession() {
+        IssuedRefreshToken first = store.issue(1);
+        IssuedRefreshToken next = store.rotate(first.id(), first.sessionId(), 1).orElseThrow();
+        IssuedRefreshToken otherSession = store.issue(1);
+
+        assertTrue(store.rotate(first.id(), first.sessionId(), 1).isEmpty());
+
+        assertTrue(revocationList.isRevoked(first.sessionId()));
+        // The legitimate successor dies with the session
+        assertTrue(store.rotate(next.id(), next.sessionId(), 1).isEmpty());
+        assertFalse(revocationList.isRevoked(otherSession.sessionId()));
+        assertTrue(store.rotate(otherSession.id(), otherSession.sessionId(), 1).isPresent());
+    }
+
+    @Test
+    void anotherUsersTokenIsRefusedWithoutRevokingIt() {
+        IssuedRefreshToken token = store.issue(1);
+
+        assertTrue(store.rotate(token.id(), token.sessionId(), 2).isEmpty());
+
+        assertFalse(revocationList.isRevoked(token.sessionId()));
+        assertTrue(store.rotate(token.id(), token.sessionId(), 1).isPresent());
+    }
+
+    // JWTAuthFilter turns away access tokens whose session the revocation list reports
+    @Test
+    void accessTokensOfASessionAreRejectedAfterLogoutAndAfterARestart() throws InterruptedException {
+        IssuedRefreshToken session = store.issue(1);
+        IssuedRefreshToken kept = store.issue(1);
+
+        store.revokeSession(session.sessionId());
+
+        assertTrue(revocationList.isRevoked(session.sessionId()));
+        assertFalse(revocationList.isRevoked(kept.sessionId()));
+        assertTrue(store.rotate(session.id(), session.sessionId(), 1).isEmpty());
+
+        try (LoopbackClusterBus restartedBus = new LoopbackClusterBus("refresh-test-restart-" + UUID.randomUUID(), "a")) {
+            RevocationList restarted = new RevocationList(restartedBus, jdbcTemplate, 100, 0.01, 600_000);
+            restarted.afterPropertiesSet();
+            try {
+                assertTrue(restarted.isRevoked(session.sessionId()));
+                assertFalse(restarted.isRevoked(kept.sessionId()));
+            } finally {
+                restarted.destroy();
+            }
+        }
+    }
+
+    @Test
+    void revokingAUserEndsEverySessionOfThatUserOnly() {
+        IssuedRefreshToken first = store.issue(1);
+        IssuedRefreshToken second = store.issue(1);
+        IssuedRefreshToken otherUser = store.issue(2);
+
+        store.revokeUser(1);
+
+        assertTrue(revocationList.isRevoked(first.sessionId()));
+        assertTrue(revocationList.isRevoked(second.sessionId()));
+        assertFalse(revocationList.isRevoked(otherUser.sessionId()));
+    }
+}
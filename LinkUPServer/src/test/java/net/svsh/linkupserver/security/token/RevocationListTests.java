@@ -0,0 +1,83 @@
+package net.svsh.linkupserver.security.token;
+
+import net.svsh.linkupserver.cluster.LoopbackClusterBus;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RevocationListTests {
+
+    @Test
+    void bloomFilterNeverForgetsAnAddedKey() {
+        BloomFilter filter = new BloomFilter(1_000, 0.01);
+        List<String> keys = sessionIds(1_000);
+        keys.forEach(filter::add);
+
+        assertTrue(keys.stream().allMatch(filter::mightContain));
+    }
+
+    @Test
+    void bloomFilterFalsePositiveRateStaysNearTheConfiguredOne() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        sessionIds(10_000).forEach(filter::add);
+
+        long falsePositives = sessionIds(100_000).stream().filter(filter::mightContain).count();
+
+        assertTrue(falsePositives < 2_000, "false positives: " + falsePositives);
+    }
+
+    // A filter far too small for its keys says yes to most sessions, the exact set still says no
+    @Test
+    void filterFalsePositivesAreConfirmedAgainstTheExactSet() {
+        try (LoopbackClusterBus bus = new LoopbackClusterBus("revocation-test-exact", "a")) {
+            RevocationList list = new RevocationList(bus, null, 1, 0.5, 60_000);
+            List<String> revoked = sessionIds(200);
+            list.revoke(revoked);
+            // Filters are deterministic, this one has the same bits as the list's
+            BloomFilter sameBits = new BloomFilter(1, 0.5);
+            revoked.forEach(sameBits::add);
+
+            List<String> others = sessionIds(1_000);
+            long filterPositives = others.stream().filter(sameBits::mightContain).count();
+
+            assertTrue(filterPositives > 0);
+            assertTrue(revoked.stream().allMatch(list::isRevoked));
+            assertTrue(others.stream().noneMatch(list::isRevoked));
+            assertFalse(list.isRevoked(null));
+            assertEquals(200, list.size());
+        }
+    }
+
+    @Test
+    void revocationsReachOtherNodes() throws InterruptedException {
+        try (LoopbackClusterBus a = new LoopbackClusterBus("revocation-test-nodes", "a");
+             LoopbackClusterBus b = new LoopbackClusterBus("revocation-test-nodes", "b")) {
+            RevocationList onA = new RevocationList(a, null, 100, 0.01, 60_000);
+            RevocationList onB = new RevocationList(b, null, 100, 0.01, 60_000);
+            b.subscribe(onB);
+
+            onA.revoke(List.of("session-1"));
+
+            assertTrue(onA.isRevoked("session-1"));
+            for (int i = 0; i < 100 && !onB.isRevoked("session-1"); i++) {
+                Thread.sleep(50);
+            }
+            assertTrue(onB.isRevoked("session-1"));
+            assertFalse(onB.isRevoked("session-2"));
+        }
+    }
+
+    private static List<String> sessionIds(int count) {
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(UUID.randomUUID().toString());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,136 @@
+package net.svsh.linkupserver.sync;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChangeLogTests {
+
+    // Every change is still inside the window, paging has to go on all the same
+    @Test
+    void aFullPageOfYoungChangesMovesTheContinuationButNotTheSettledCursor() throws InterruptedException {
+        ChangeRows rows = new ChangeRows(1L, chatWide(1, 10), chatWide(2, 10), chatWide(3, 10));
+        ChangeLog changeLog = new ChangeLog(rows, null, 30_000, 3_600_000);
+        try {
+            ChangeLog.Page first = changeLog.readAfter(7, List.of(10L), 0, 2);
+            assertEquals(List.of(1L, 2L), ids(first));
+            assertEquals(2, first.cursor());
+            assertEquals(0, first.settledCursor());
+            assertTrue(first.hasMore());
+
+            ChangeLog.Page second = changeLog.readAfter(7, List.of(10L), first.cursor(), 2);
+            assertEquals(List.of(3L), ids(second));
+            assertEquals(3, second.cursor());
+            assertEquals(0, second.settledCursor());
+            assertFalse(second.hasMore());
+        } finally {
+            changeLog.destroy();
+        }
+    }
+
+    @Test
+    void theSettledCursorStopsBeforeTheFirstChangeInTheWindow() throws InterruptedException {
+        ChangeRows rows = new ChangeRows(4L, chatWide(1, 10), userScoped(2, 11, 7), chatWide(3, 10),
+                chatWide(4, 10), userScoped(5, 11, 7));
+        ChangeLog changeLog = new ChangeLog(rows, null, 30_000, 3_600_000);
+        try {
+            ChangeLog.Page page = changeLog.readAfter(7, List.of(10L), 0, 10);
+
+            assertEquals(List.of(1L, 2L, 3L, 4L, 5L), ids(page));
+            assertEquals(5, page.cursor());
+            assertEquals(3, page.settledCursor());
+            assertFalse(page.hasMore());
+        } finally {
+            changeLog.destroy();
+        }
+    }
+
+    // Both ranges are read with the limit, only the lowest ids of the two make the page
+    @Test
+    void userScopedAndChatWideChangesAreMergedInIdOrder() throws InterruptedException {
+        ChangeRows rows = new ChangeRows(null, userScoped(1, 11, 7), chatWide(2, 10), userScoped(3, 11, 7),
+                chatWide(4, 10));
+        ChangeLog changeLog = new ChangeLog(rows, null, 30_000, 3_600_000);
+        try {
+            ChangeLog.Page page = changeLog.readAfter(7, List.of(10L), 0, 3);
+
+            assertEquals(List.of(1L, 2L, 3L), ids(page));
+            assertEquals(3, page.cursor());
+            assertEquals(3, page.settledCursor());
+            assertTrue(page.hasMore());
+        } finally {
+            changeLog.destroy();
+        }
+    }
+
+    @Test
+    void nothingNewLeavesBothCursorsWhereTheyWere() throws InterruptedException {
+        ChangeRows rows = new ChangeRows(null, chatWide(1, 10));
+        ChangeLog changeLog = new ChangeLog(rows, null, 30_000, 3_600_000);
+        try {
+            ChangeLog.Page page = changeLog.readAfter(7, List.of(10L), 1, 10);
+
+            assertTrue(page.changes().isEmpty());
+            assertEquals(1, page.cursor());
+            assertEquals(1, page.settledCursor());
+            assertFalse(page.hasMore());
+        } finally {
+            changeLog.destroy();
+        }
+    }
+
+    private static List<Long> ids(ChangeLog.Page page) {
+        return page.changes().stream().map(Change::id).toList();
+    }
+
+    private static Change chatWide(long id, long chatId) {
+        return new Change(id, ChangeType.MESSAGE, chatId, null, id * 100);
+    }
+
+    private static Change userScoped(long id, long chatId, long userId) {
+        return new Change(id, ChangeType.READ, chatId, userId, id * 100);
+    }
+
+    // Answers the two range reads from a list and the window query with the id the test set
+    private static final class ChangeRows extends JdbcTemplate {
+        private final Long firstUnsettled;
+        private final List<Change> changes;
+
+        ChangeRows(Long firstUnsettled, Change... changes) {
+            this.firstUnsettled = firstUnsettled;
+            this.changes = Arrays.asList(changes);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) {
+            boolean userScoped = sql.contains("user_id = ?");
+            long cursor = ((Number) args[args.length - 2]).longValue();
+            int limit = ((Number) args[args.length - 1]).intValue();
+            List<Object> chatIds = Arrays.asList(args).subList(0, args.length - 2);
+            List<Change> page = new ArrayList<>();
+            for (Change change : changes) {
+                boolean matches = userScoped
+                        ? change.userId() != null && change.userId() == ((Number) args[0]).longValue()
+                        : change.isChatWide() && chatIds.contains(change.chatId());
+                if (matches && change.id() > cursor && page.size() < limit) {
+                    page.add(change);
+                }
+            }
+            return (List<T>) page;
+        }
+
+        @Override
+        public <T> T queryForObject(String sql, Class<T> requiredType, Object... args) {
+            return requiredType.cast(firstUnsettled);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package net.svsh.linkupserver.sync;
+
+import net.svsh.linkupserver.sync.dto.ChatMessageRef;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ChangeSetTests {
+
+    @Test
+    void aMessageChangedSeveralTimesIsListedOnce() {
+        ChangeSet changeSet = ChangeSet.of(List.of(
+                change(1, ChangeType.MESSAGE, 10, null, 100L),
+                change(2, ChangeType.EDIT, 10, null, 100L),
+                change(3, ChangeType.MESSAGE, 11, null, 101L),
+                change(4, ChangeType.EDIT, 10, null, 100L)));
+
+        assertEquals(List.of(100L, 101L), changeSet.changedMessageIds());
+        assertEquals(List.of(), changeSet.deleted());
+    }
+
+    @Test
+    void aDeleteReplacesEarlierChangesOfTheMessage() {
+        ChangeSet changeSet = ChangeSet.of(List.of(
+                change(1, ChangeType.MESSAGE, 10, null, 100L),
+                change(2, ChangeType.EDIT, 10, null, 100L),
+                change(3, ChangeType.DELETE, 10, null, 100L)));
+
+        assertEquals(List.of(), changeSet.changedMessageIds());
+        assertEquals(List.of(new ChatMessageRef(10L, 100L)), changeSet.deleted());
+    }
+
+    @Test
+    void onlyTheLastReadCursorOfAChatIsKept() {
+        ChangeSet changeSet = ChangeSet.of(List.of(
+                change(1, ChangeType.READ, 10, 7L, 100L),
+                change(2, ChangeType.READ, 11, 7L, 200L),
+                change(3, ChangeType.READ, 10, 7L, 105L)));
+
+        assertEquals(List.of(new ChatMessageRef(10L, 105L), new ChatMessageRef(11L, 200L)), changeSet.read());
+    }
+
+    @Test
+    void theLastMembershipChangeOfAChatWins() {
+        ChangeSet changeSet = ChangeSet.of(List.of(
+                change(1, ChangeType.JOIN, 10, 7L, null),
+                change(2, ChangeType.LEAVE, 10, 7L, null),
+                change(3, ChangeType.LEAVE, 11, 7L, null),
+                change(4, ChangeType.JOIN, 11, 7L, null),
+                change(5, ChangeType.JOIN, 12, 7L, null)));
+
+        assertEquals(List.of(11L, 12L), changeSet.joined());
+        assertEquals(List.of(10L), changeSet.left());
+    }
+
+    // The cursor stays before changes inside the re-read window, so the next sync reads them again
+    @Test
+    void changesReadAgainGiveTheSameResult() {
+        List<Change> first = List.of(
+                change(1, ChangeType.MESSAGE, 10, null, 100L),
+                change(2, ChangeType.JOIN, 11, 7L, null),
+                change(3, ChangeType.DELETE, 10, null, 100L),
+                change(4, ChangeType.READ, 11, 7L, 300L));
+        Change late = change(5, ChangeType.LEAVE, 11, 7L, null);
+        List<Change> all = new ArrayList<>(first);
+        all.add(late);
+        List<Change> reread = new ArrayList<>(first.subList(2, 4));
+        reread.add(late);
+
+        ChangeSet once = ChangeSet.of(all);
+        ChangeSet again = ChangeSet.of(reread);
+
+        assertEquals(once.changedMessageIds(), again.changedMessageIds());
+        assertEquals(once.deleted(), again.deleted());
+        assertEquals(once.read(), again.read());
+        assertEquals(once.left(), again.left());
+        assertEquals(List.of(11L), again.left());
+    }
+
+    private static Change change(long id, ChangeType type, long chatId, Long userId, Long messageId) {
+        return new Change(id, type, chatId, userId, messageId);
+    }
+}
@@ -0,0 +1,93 @@
+package net.svsh.linkupserver.user.directory;
+
+import net.svsh.linkupserver.dto.UserSummary;
+import net.svsh.linkupserver.user.UserRole;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UserDirectoryTests {
+
+    @Test
+    void usernameMatchesComeBeforeEmailMatchesIgnoringCase() {
+        UserDirectory directory = new UserDirectory();
+        directory.load(List.of(
+                user(1, "bob", "anna.b@linkup.net"),
+                user(2, "Anna", "a@linkup.net"),
+                user(3, "carl", "c@linkup.net"),
+                user(4, "annabel", "x@linkup.net")));
+
+        assertEquals(List.of(2L, 4L, 1L), ids(directory.search("ANN", 10)));
+        assertEquals(List.of(2L, 4L), ids(directory.search("ann", 2)));
+        assertEquals(List.of(), ids(directory.search("zed", 10)));
+    }
+
+    @Test
+    void theDeltaOverridesTheSnapshotUntilCompacted() {
+        UserDirectory directory = new UserDirectory();
+        directory.load(List.of(user(1, "alice", "alice@linkup.net"), user(2, "albert", "albert@linkup.net")));
+
+        directory.put(user(1, "zoe", "zoe@linkup.net"));
+        directory.put(user(3, "alfred", "alfred@linkup.net"));
+        directory.remove(2);
+
+        assertEquals(List.of(3L), ids(directory.search("al", 10)));
+        assertEquals(List.of(1L), ids(directory.search("zo", 10)));
+        assertEquals(2, directory.size());
+        assertEquals(3, directory.pendingChanges());
+
+        directory.compact();
+
+        assertEquals(0, directory.pendingChanges());
+        assertEquals(List.of(3L), ids(directory.search("al", 10)));
+        assertEquals(List.of(1L), ids(directory.search("zo", 10)));
+        assertEquals(2, directory.size());
+    }
+
+    @Test
+    void compactingMergesIntoTheSortedSnapshot() {
+        UserDirectory directory = new UserDirectory();
+        List<UserSummary> loaded = new ArrayList<>();
+        for (int i = 0; i < 100; i += 2) {
+            loaded.add(user(i, String.format("user%03d", i), "u" + i + "@linkup.net"));
+        }
+        directory.load(loaded);
+        for (int i = 1; i < 100; i += 2) {
+            directory.put(user(i, String.format("user%03d", i), "u" + i + "@linkup.net"));
+        }
+        directory.compact();
+
+        List<Long> expected = new ArrayList<>();
+        for (long i = 0; i < 100; i++) {
+            expected.add(i);
+        }
+        assertEquals(expected, ids(directory.search("user", 100)));
+        assertEquals(List.of(10L, 11L, 12L), ids(directory.search("user01", 3)));
+        assertEquals(100, directory.size());
+    }
+
+    @Test
+    void aChangeWhileLoadingWinsOverTheLoadedRow() {
+        UserDirectory directory = new UserDirectory();
+        directory.put(user(1, "renamed", "r@linkup.net"));
+        directory.load(List.of(user(1, "original", "o@linkup.net")));
+
+        assertEquals(List.of(1L), ids(directory.search("ren", 10)));
+        assertEquals(List.of(), ids(directory.search("orig", 10)));
+
+        directory.compact();
+        assertEquals(List.of(1L), ids(directory.search("ren", 10)));
+        assertEquals(1, directory.size());
+    }
+
+    private static UserSummary user(long id, String username, String email) {
+        return new UserSummary(id, username, email, UserRole.USER);
+    }
+
+    private static List<Long> ids(List<UserSummary> users) {
+        return users.stream().map(UserSummary::id).toList();
+    }
+}
@@ -0,0 +1,119 @@
+package net.svsh.linkupserver.user.service;
+
+import net.svsh.linkupserver.security.token.RefreshTokenStore;
+import net.svsh.linkupserver.user.User;
+import net.svsh.linkupserver.user.UserRepository;
+import net.svsh.linkupserver.user.UserRole;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// The repository holds a single user row, every findByEmail that reaches it is counted
+class UserDetailsCacheTests {
+
+    private static final String EMAIL = "alice@linkup.local";
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private User row;
+    private UserDetailsCache cache;
+    private UserService userService;
+    private UserManagementService userManagementService;
+
+    @BeforeEach
+    void setUp() {
+        row = new User("alice", EMAIL, "hash-1", UserRole.USER);
+        row.setId(1L);
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findByEmail(anyString())).thenAnswer(invocation -> {
+            loads.incrementAndGet();
+            return Optional.ofNullable(row).filter(user -> user.getEmail().equals(invocation.getArgument(0)));
+        });
+        when(userRepository.findById(anyInt())).thenAnswer(invocation -> Optional.ofNullable(row));
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        cache = new UserDetailsCache(100, Duration.ofMinutes(5));
+        userService = new UserService(userRepository, cache);
+        userManagementService = new UserManagementService();
+        ReflectionTestUtils.setField(userManagementService, "userRepository", userRepository);
+        ReflectionTestUtils.setField(userManagementService, "userService", userService);
+        ReflectionTestUtils.setField(userManagementService, "userDirectoryIndex", mock(UserDirectoryIndex.class));
+        ReflectionTestUtils.setField(userManagementService, "refreshTokenStore", mock(RefreshTokenStore.class));
+    }
+
+    @Test
+    void aUserIsLoadedOnceAndHandedOutAsACopy() {
+        UserDetails first = userService.loadUserByUsername(EMAIL);
+        UserDetails second = userService.loadUserByUsername(EMAIL);
+
+        assertEquals(1, loads.get());
+        assertEquals("hash-1", second.getPassword());
+        // The authentication manager erases the password of the principal it got, never the cached one
+        ((org.springframework.security.core.userdetails.User) first).eraseCredentials();
+        assertEquals("hash-1", userService.loadUserByUsername(EMAIL).getPassword());
+    }
+
+    @Test
+    void updateUserEvictsTheEntry() {
+        userService.loadUserByUsername(EMAIL);
+        User updated = new User("alice", EMAIL, null, UserRole.ADMIN);
+
+        assertEquals(200, userManagementService.updateUser(1, updated).getStatusCode());
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void deleteUserEvictsTheEntry() {
+        userService.loadUserByUsername(EMAIL);
+
+        assertEquals(200, userManagementService.deleteUser(1).getStatusCode());
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void aPasswordRehashEvictsTheEntry() {
+        UserDetails cached = userService.loadUserByUsername(EMAIL);
+
+        userService.updatePassword(cached, "hash-2");
+
+        assertEquals(0, cache.size());
+        assertEquals("hash-2", userService.loadUserByUsername(EMAIL).getPassword());
+        assertEquals(3, loads.get());
+    }
+
+    // The evict lands while the loader is still reading, what it read may be the row from before the change
+    @Test
+    void aLoadRacingAnEvictionIsNotCached() {
+        AtomicInteger loaderCalls = new AtomicInteger();
+
+        UserDetails loaded = cache.get(EMAIL, email -> {
+            loaderCalls.incrementAndGet();
+            UserDetails stale = org.springframework.security.core.userdetails.User.withUsername(email)
+                    .password("hash-1").roles("USER").build();
+            cache.evict(email);
+            return stale;
+        });
+
+        assertEquals("hash-1", loaded.getPassword());
+        assertEquals(0, cache.size());
+        cache.get(EMAIL, email -> {
+            loaderCalls.incrementAndGet();
+            return org.springframework.security.core.userdetails.User.withUsername(email)
+                    .password("hash-2").roles("USER").build();
+        });
+        assertEquals(2, loaderCalls.get());
+        assertEquals(1, cache.size());
+    }
+}